@@ -22,20 +22,35 @@ public class PhotoAlbumMain {
       inputFile = scanner.nextLine();
 
 
-      System.out.print("View type (web, graphical, or both): ");
+      System.out.print("View type (web, shared, pages, graphical, both, archive, or compile): ");
       viewType = scanner.nextLine().toUpperCase();
 
 
-      if (viewType.equals("WEB") || viewType.equals("BOTH")) {
+      if (viewType.equals("WEB") || viewType.equals("SHARED") || viewType.equals("PAGES")
+              || viewType.equals("BOTH") || viewType.equals("ARCHIVE")
+              || viewType.equals("COMPILE")) {
         System.out.print("Output file: ");
         outputFile = scanner.nextLine();
       }
 
 
+      System.out.print("Input mode (read, follow, or watch): ");
+      String mode = scanner.hasNextLine() ? scanner.nextLine().trim() : "";
+      if (mode.isEmpty()) {
+        mode = "read";
+      }
+
+      System.out.print("Report (verbose or quiet): ");
+      String reporting = scanner.hasNextLine() ? scanner.nextLine().trim() : "";
+      if (reporting.isEmpty()) {
+        reporting = "verbose";
+      }
+
+
       if (inputFile == null || viewType == null) {
         System.out.println("Error: Input file and view type are required.");
         System.out.println("Usage: -in <input-file> -view <type-of-view> [-out <output-file>] [xmax] [ymax]");
-        System.out.println("View types: web, graphical, both");
+        System.out.println("View types: web, shared, pages, graphical, both, archive, compile");
         return;
       }
 
@@ -43,17 +58,20 @@ public class PhotoAlbumMain {
       try {
         view = ViewType.valueOf(viewType);
       } catch (IllegalArgumentException e) {
-        System.out.println("Must adhere to keywords: web, graphical, both");
+        System.out.println("Must adhere to keywords: web, shared, pages, graphical, both, archive, compile");
         return;
       }
 
-      if (view == ViewType.WEB && outputFile == null) {
-        System.out.println("Output File required for web view");
+      if ((view == ViewType.WEB || view == ViewType.SHARED || view == ViewType.PAGES
+              || view == ViewType.ARCHIVE || view == ViewType.COMPILE) && outputFile == null) {
+        System.out.println("Output File required for web, shared, pages, archive and compile "
+                + "views");
         return;
       }
 
+      String output = outputFile != null ? outputFile : "unused.html";
       PhotoAlbumController controller = PhotoAlbumController.createController(
-              new String[]{inputFile, viewType, outputFile != null ? outputFile : "unused.html"}
+              new String[]{inputFile, viewType, output, mode, reporting}
       );
       if (controller != null) {
         controller.run();
@@ -0,0 +1,336 @@
+package photoalbum.controller;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+import photoalbum.model.PhotoAlbum;
+import photoalbum.model.Snapshot;
+import photoalbum.model.SnapshotArchive;
+import photoalbum.views.WebView;
+
+/**
+ * Processes many command files in one run, each into its own album and its own output file.
+ * Every file gets its own thread, a virtual thread when the runtime has them, and a semaphore
+ * bounds how many files are read at once. Each file is read on its one thread, since the files
+ * already keep every core busy. A failure in one file does not stop the others, and the result
+ * of every file is reported in the order the files were given.
+ * Each output is named after its input without the extension, or with it when two inputs would
+ * otherwise share an output, so no output is written over another.
+ * Files are read quietly, so the only output is the summary of every file.
+ */
+public class BatchProcessor {
+  private final ViewType viewType;
+  private final Path outputDirectory;
+  private final int maxConcurrent;
+
+  /**
+   * Constructor for a batch processor.
+   *
+   * @param viewType the kind of output written for each file: WEB, SHARED, ARCHIVE or COMPILE.
+   * @param outputDirectory the directory the output files are written to.
+   * @param maxConcurrent the most files processed at the same time.
+   * @throws IllegalArgumentException if the view type has no output file or the bound is not
+   *         positive.
+   */
+  public BatchProcessor(ViewType viewType, Path outputDirectory, int maxConcurrent)
+          throws IllegalArgumentException {
+    if (viewType == ViewType.GRAPHICAL || viewType == ViewType.BOTH
+            || viewType == ViewType.PAGES) {
+      throw new IllegalArgumentException("Batch mode needs a web, archive or compile view");
+    }
+    if (maxConcurrent < 1) {
+      throw new IllegalArgumentException("Need at least one file at a time");
+    }
+    this.viewType = viewType;
+    this.outputDirectory = outputDirectory;
+    this.maxConcurrent = maxConcurrent;
+  }
+
+  /**
+   * Method to find the command files named by a directory or a glob. A directory gives every
+   * regular file in it; a glob such as "input/*.txt" is matched against the file names in the
+   * directory it starts with.
+   *
+   * @param pattern a directory or a glob.
+   * @return the files, sorted by path.
+   * @throws IOException if the directory cannot be listed.
+   */
+  public static List<Path> resolve(String pattern) throws IOException {
+    Path directory = Path.of(pattern);
+    PathMatcher matcher = file -> true;
+    if (!Files.isDirectory(directory)) {
+      int slash = Math.max(pattern.lastIndexOf('/'), pattern.lastIndexOf('\\'));
+      directory = slash < 0 ? Path.of(".") : Path.of(pattern.substring(0, slash + 1));
+      PathMatcher glob = FileSystems.getDefault()
+              .getPathMatcher("glob:" + pattern.substring(slash + 1));
+      matcher = file -> glob.matches(file.getFileName());
+    }
+
+    PathMatcher selected = matcher;
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(Files::isRegularFile).filter(selected::matches).sorted().toList();
+    }
+  }
+
+  /**
+   * Method to process every file, waiting until all of them are done.
+   *
+   * @param inputs the command files.
+   * @return the result for each file, in the same order.
+   * @throws IOException if the output directory cannot be created.
+   * @throws InterruptedException if the thread is interrupted while waiting.
+   */
+  public List<Result> process(List<Path> inputs) throws IOException, InterruptedException {
+    Files.createDirectories(outputDirectory);
+    List<String> names = outputNames(inputs);
+    Semaphore permits = new Semaphore(maxConcurrent);
+    List<Future<Result>> pending = new ArrayList<>(inputs.size());
+    ExecutorService executor = newExecutor();
+    try {
+      for (int i = 0; i < inputs.size(); i++) {
+        Path input = inputs.get(i);
+        if (names.get(i) == null) {
+          pending.add(CompletableFuture.completedFuture(Result.failed(input,
+                  new IllegalArgumentException("Another input has the same file name"),
+                  Duration.ZERO)));
+          continue;
+        }
+        Path output = outputDirectory.resolve(names.get(i));
+        pending.add(executor.submit(() -> {
+          permits.acquire();
+          try {
+            return processFile(input, output);
+          } finally {
+            permits.release();
+          }
+        }));
+      }
+
+      List<Result> results = new ArrayList<>(inputs.size());
+      for (int i = 0; i < inputs.size(); i++) {
+        try {
+          results.add(pending.get(i).get());
+        } catch (ExecutionException e) {
+          results.add(Result.failed(inputs.get(i), e.getCause(), Duration.ZERO));
+        }
+      }
+      return results;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Method to read one file into a new album and write its output.
+   *
+   * @param input the command file.
+   * @param output the output file.
+   * @return the result for the file.
+   */
+  private Result processFile(Path input, Path output) {
+    long start = System.nanoTime();
+    try {
+      if (!Files.isReadable(input)) {
+        throw new IOException("Cannot read " + input);
+      }
+      if (viewType == ViewType.COMPILE) {
+        CommandCompiler.compile(input, output);
+        return new Result(input, output, 0, 0, null, elapsedSince(start));
+      }
+
+      PhotoAlbum album = new PhotoAlbum();
+      InputProcessor processor = new InputProcessor(album,
+              new Diagnostics(Diagnostics.Mode.QUIET));
+      processor.readDoc(input.toString(), 1);
+      List<Snapshot> snapshots = album.getSnapshots();
+      if (viewType == ViewType.ARCHIVE) {
+        SnapshotArchive.write(output, snapshots);
+      } else {
+        WebView view = new WebView(snapshots, viewType == ViewType.SHARED
+                ? WebView.Output.SHARED : WebView.Output.FULL);
+        view.startWebPage(output.toString());
+        for (Snapshot snapshot : snapshots) {
+          view.appendSnapshot(snapshot);
+        }
+        view.finishWebPage();
+      }
+      return new Result(input, output, snapshots.size(), processor.getErrorCount(), null,
+              elapsedSince(start));
+    } catch (IOException | RuntimeException e) {
+      return Result.failed(input, e, elapsedSince(start));
+    }
+  }
+
+  /**
+   * Method to name the output file of every input file. An output is named after its input
+   * without the extension, unless another input would get the same name, as a.txt and a.ndjson
+   * would; then both keep their extensions, as in a.txt.html. Inputs that still share a name,
+   * having the same file name in different directories, get no output.
+   *
+   * @param inputs the command files.
+   * @return the file name of each output, or null for an input that shares its file name.
+   */
+  private List<String> outputNames(List<Path> inputs) {
+    List<String> names = new ArrayList<>(inputs.size());
+    for (Path input : inputs) {
+      names.add(outputName(input, false));
+    }
+    Map<String, Integer> uses = countUses(names);
+    for (int i = 0; i < inputs.size(); i++) {
+      if (uses.get(names.get(i)) > 1) {
+        names.set(i, outputName(inputs.get(i), true));
+      }
+    }
+    uses = countUses(names);
+    for (int i = 0; i < inputs.size(); i++) {
+      if (uses.get(names.get(i)) > 1) {
+        names.set(i, null);
+      }
+    }
+    return names;
+  }
+
+  /**
+   * Method to name the output file of an input file, after the input.
+   *
+   * @param input the command file.
+   * @param keepExtension whether the input's extension is kept in the name.
+   * @return the file name of the output.
+   */
+  private String outputName(Path input, boolean keepExtension) {
+    String name = input.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    String base = dot > 0 && !keepExtension ? name.substring(0, dot) : name;
+    return switch (viewType) {
+      case ARCHIVE -> base + ".snaps";
+      case COMPILE -> base + ".pac";
+      default -> base + ".html";
+    };
+  }
+
+  /**
+   * Method to create an executor that starts a new virtual thread for each task, or a pool of
+   * platform threads on a runtime without virtual threads.
+   *
+   * @return the executor.
+   */
+  private ExecutorService newExecutor() {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factory.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newFixedThreadPool(maxConcurrent);
+    }
+  }
+
+  private static Map<String, Integer> countUses(List<String> names) {
+    Map<String, Integer> uses = new HashMap<>();
+    for (String name : names) {
+      uses.merge(name, 1, Integer::sum);
+    }
+    return uses;
+  }
+
+  private static Duration elapsedSince(long start) {
+    return Duration.ofNanos(System.nanoTime() - start);
+  }
+
+  /**
+   * Method to print a line for each file and a total, and to say whether every file succeeded.
+   *
+   * @param results the results of a batch.
+   * @return true if no file failed.
+   */
+  public static boolean printSummary(List<Result> results) {
+    int failed = 0;
+    int errors = 0;
+    for (Result result : results) {
+      if (result.succeeded()) {
+        System.out.printf("OK    %s -> %s (%d snapshots, %d errors, %d ms)%n", result.input(),
+                result.output(), result.snapshots(), result.errors(),
+                result.elapsed().toMillis());
+        errors += result.errors();
+      } else {
+        System.out.printf("FAIL  %s: %s%n", result.input(), result.failure());
+        failed++;
+      }
+    }
+    System.out.printf("%d files, %d succeeded, %d failed, %d command errors%n", results.size(),
+            results.size() - failed, failed, errors);
+    return failed == 0;
+  }
+
+  /**
+   * Runs a batch from the command line.
+   *
+   * @param args a directory or glob, the view type, the output directory, and optionally the
+   *             most files processed at once.
+   */
+  public static void main(String[] args) {
+    if (args.length != 3 && args.length != 4) {
+      System.out.println("Usage: java -cp photoalbum.jar photoalbum.controller.BatchProcessor "
+              + "<directory-or-glob> <view-type> <output-directory> [max-concurrent]");
+      System.out.println("View Types: WEB, SHARED, ARCHIVE, COMPILE");
+      return;
+    }
+    try {
+      int maxConcurrent = args.length == 4 ? Integer.parseInt(args[3])
+              : Runtime.getRuntime().availableProcessors();
+      BatchProcessor batch = new BatchProcessor(ViewType.valueOf(args[1].toUpperCase()),
+              Path.of(args[2]), maxConcurrent);
+      if (!printSummary(batch.process(resolve(args[0])))) {
+        System.exit(1);
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      System.err.println("Error: " + e.getMessage());
+      System.exit(2);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      System.exit(2);
+    }
+  }
+
+  /**
+   * A tuple for the outcome of processing one file.
+   *
+   * @param input the command file.
+   * @param output the output file, or null if the file failed.
+   * @param snapshots the number of snapshots written.
+   * @param errors the number of commands that failed.
+   * @param failure why the file failed, or null if it succeeded.
+   * @param elapsed how long the file took.
+   */
+  public record Result(Path input, Path output, int snapshots, int errors, String failure,
+                       Duration elapsed) {
+
+    /**
+     * Method to check whether the file was processed and its output written.
+     *
+     * @return true if it was.
+     */
+    public boolean succeeded() {
+      return failure == null;
+    }
+
+    private static Result failed(Path input, Throwable cause, Duration elapsed) {
+      String message = cause.getMessage() != null ? cause.getMessage() : cause.toString();
+      return new Result(input, null, 0, 0, message, elapsed);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package photoalbum.controller;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The directories the caches keep their entries in. Whatever a cache reads back ends up in an
+ * album or a web page, so a cache directory must belong to the user running the program and be
+ * closed to everyone else; a directory somebody else could have created or written to, such as a
+ * fixed name in the shared temporary directory, is refused.
+ *
+ * <p>Each cache gets its own directory under ".cache/photoalbum" in the user's home. On file
+ * systems with POSIX permissions it is created readable and writable by its owner only, and
+ * checked to still be so every time it is opened.
+ */
+public final class CacheDirectories {
+  private static final Set<PosixFilePermission> OWNER_ONLY =
+          PosixFilePermissions.fromString("rwx------");
+
+  /**
+   * Constructor that is not used, as this class only has static methods.
+   */
+  private CacheDirectories() {
+  }
+
+  /**
+   * Method to open the directory of one cache under the user's home.
+   *
+   * @param name the name of the cache.
+   * @return the directory, which exists and is private to the user.
+   * @throws IOException if the directory cannot be created, or is not private to the user.
+   */
+  public static Path forUser(String name) throws IOException {
+    return open(Path.of(System.getProperty("user.home"), ".cache", "photoalbum"), name);
+  }
+
+  /**
+   * Method to open the directory of one cache under the given directory, creating it if needed.
+   *
+   * @param root the directory the caches are kept in.
+   * @param name the name of the cache.
+   * @return the directory, which exists and is private to the user.
+   * @throws IOException if the directory cannot be created, or is not private to the user.
+   */
+  public static Path open(Path root, String name) throws IOException {
+    Path directory = root.resolve(name);
+    boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    Files.createDirectories(root);
+    try {
+      if (posix) {
+        Files.createDirectory(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+      } else {
+        Files.createDirectory(directory);
+      }
+    } catch (FileAlreadyExistsException e) {
+      // checked below like a directory that was just created
+    }
+
+    if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)) {
+      throw new IOException("Cache directory is not a directory: " + directory);
+    }
+    if (posix) {
+      PosixFileAttributes attributes = Files.readAttributes(directory,
+              PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+      UserPrincipal user = FileSystems.getDefault().getUserPrincipalLookupService()
+              .lookupPrincipalByName(System.getProperty("user.name"));
+      Set<PosixFilePermission> others = new HashSet<>(attributes.permissions());
+      others.removeAll(OWNER_ONLY);
+      if (!attributes.owner().equals(user) || !others.isEmpty()) {
+        throw new IOException("Cache directory is not private to " + user.getName() + ": "
+                + directory);
+      }
+    }
+    return directory;
+  }
+}
@@ -0,0 +1,397 @@
+package photoalbum.controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import photoalbum.model.Color;
+import photoalbum.model.Command;
+import photoalbum.model.Coordinate;
+import photoalbum.model.IShape;
+import photoalbum.model.Oval;
+import photoalbum.model.Rectangle;
+
+/**
+ * A compact binary form of a command file. Compiling parses the text once and stores each line
+ * as a one-byte opcode followed by its operands, so loading it later needs no tokenizing and no
+ * number parsing. Shape names, snapshot descriptions and messages are stored once in a
+ * dictionary at the front of the file and referred to by index. The numbers of a line are stored
+ * as 4-byte ints when all of them are whole and fit in an int, and as 8-byte doubles otherwise.
+ *
+ * <p>Lines that do not parse are compiled too, so replaying a compiled file prints the same
+ * messages, with the same line and column numbers, as reading the text it came from. Blank and
+ * comment lines are not stored; a skip record in their place keeps the line numbers of the lines
+ * after them right.
+ *
+ * <p>The layout is: magic, version, dictionary size, record count, the dictionary as a length
+ * and UTF-8 bytes per entry, then the records.
+ */
+public final class CommandCompiler {
+  private static final int MAGIC = 0x50414343;
+  private static final int VERSION = 2;
+  private static final int HEADER_BYTES = 16;
+
+  private static final byte RECTANGLE = 1;
+  private static final byte OVAL = 2;
+  private static final byte MOVE = 3;
+  private static final byte COLOR = 4;
+  private static final byte RESIZE = 5;
+  private static final byte REMOVE = 6;
+  private static final byte LAYER = 7;
+  private static final byte SNAPSHOT = 8;
+  private static final byte BEGIN = 9;
+  private static final byte COMMIT = 10;
+  private static final byte UNKNOWN = 11;
+  private static final byte FAILURE = 12;
+  private static final byte SKIP = 13;
+  private static final byte PACKED = (byte) 0x80;
+
+  private final Map<String, Integer> dictionary;
+  private final List<String> entries;
+  private ByteBuffer lines;
+  private int recordCount;
+  private int lastLine;
+
+  /**
+   * Constructor for a compiler with an empty dictionary and no lines.
+   */
+  private CommandCompiler() {
+    this.dictionary = new HashMap<>();
+    this.entries = new ArrayList<>();
+    this.lines = ByteBuffer.allocate(64 * 1024);
+  }
+
+  /**
+   * Method to compile a command file, replacing the output file if it exists. The input can be
+   * in any format an InputReader reads, such as gzipped commands or NDJSON.
+   *
+   * @param input the command file.
+   * @param output the compiled file.
+   * @throws IOException if the command file cannot be read or the output cannot be written.
+   */
+  public static void compile(Path input, Path output) throws IOException {
+    CommandCompiler compiler = new CommandCompiler();
+    InputReaders.read(input, compiler::add);
+    compiler.write(output);
+  }
+
+  /**
+   * Method to check whether a file is a compiled command file.
+   *
+   * @param path the file.
+   * @return true if the file starts with the header of a compiled command file.
+   */
+  public static boolean isCompiled(Path path) {
+    if (!Files.isRegularFile(path)) {
+      return false;
+    }
+    try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(8);
+      if (in.read(header, 0) != 8) {
+        return false;
+      }
+      header.flip();
+      return isCompiled(header);
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Method to check whether bytes start with the header of a compiled command file.
+   *
+   * @param input the bytes, from position 0.
+   * @return true if they do.
+   */
+  static boolean isCompiled(ByteBuffer input) {
+    return input.limit() >= 8 && input.getInt(0) == MAGIC && input.getInt(4) == VERSION;
+  }
+
+  /**
+   * Method to add one parsed line to the compiled form.
+   *
+   * @param line the parsed line.
+   * @param lineOffset the number of lines before the text the line's number counts from.
+   */
+  private void add(ParsedLine line, int lineOffset) {
+    int number = line.line() + lineOffset;
+    if (number != lastLine + 1) {
+      recordCount++;
+      room(5).put(SKIP).putInt(number - lastLine - 1);
+    }
+    lastLine = number;
+    recordCount++;
+    if (line instanceof ParsedLine.Apply apply) {
+      addCommand(apply.command());
+    } else if (line instanceof ParsedLine.Begin) {
+      room(1).put(BEGIN);
+    } else if (line instanceof ParsedLine.Commit) {
+      room(1).put(COMMIT);
+    } else if (line instanceof ParsedLine.Unknown unknown) {
+      room(5).put(UNKNOWN).putInt(index(unknown.command()));
+    } else if (line instanceof ParsedLine.Failure failure) {
+      room(9).put(FAILURE).putInt(failure.column()).putInt(index(failure.message()));
+    }
+  }
+
+  /**
+   * Method to add a line holding a change to the album.
+   *
+   * @param command the change.
+   */
+  private void addCommand(Command command) {
+    if (command instanceof Command.AddShape add) {
+      IShape shape = add.shape();
+      Color color = shape.getColor();
+      putNumbers(shape instanceof Oval ? OVAL : RECTANGLE, shape.getName(),
+              shape.getPosition().x(), shape.getPosition().y(), shape.getFirstDimension(),
+              shape.getSecondDimension(), color.r(), color.g(), color.b());
+    } else if (command instanceof Command.MoveShape move) {
+      putNumbers(MOVE, move.name(), move.position().x(), move.position().y());
+    } else if (command instanceof Command.SetColor set) {
+      putNumbers(COLOR, set.name(), set.color().r(), set.color().g(), set.color().b());
+    } else if (command instanceof Command.ResizeShape resize) {
+      putNumbers(RESIZE, resize.name(), resize.width(), resize.height());
+    } else if (command instanceof Command.RemoveShape remove) {
+      room(5).put(REMOVE).putInt(index(remove.name()));
+    } else if (command instanceof Command.SetZIndex layer) {
+      room(13).put(LAYER).putInt(index(layer.name())).putLong(layer.zIndex());
+    } else if (command instanceof Command.TakeSnapshot snapshot) {
+      room(5).put(SNAPSHOT).putInt(index(snapshot.description()));
+    }
+  }
+
+  /**
+   * Method to add a line made of an opcode, a name and some numbers, packing the numbers as ints
+   * when none of them loses anything by it.
+   *
+   * @param opcode the opcode of the line.
+   * @param name the name of the shape.
+   * @param numbers the numbers of the line.
+   */
+  private void putNumbers(byte opcode, String name, double... numbers) {
+    boolean packed = true;
+    for (double number : numbers) {
+      packed &= fitsInt(number);
+    }
+    ByteBuffer out = room(5 + numbers.length * (packed ? Integer.BYTES : Double.BYTES));
+    out.put(packed ? (byte) (opcode | PACKED) : opcode).putInt(index(name));
+    for (double number : numbers) {
+      if (packed) {
+        out.putInt((int) number);
+      } else {
+        out.putDouble(number);
+      }
+    }
+  }
+
+  /**
+   * Method to check whether a number survives being stored as an int.
+   *
+   * @param number the number.
+   * @return true if it is whole, in range, and not negative zero.
+   */
+  private static boolean fitsInt(double number) {
+    int whole = (int) number;
+    return whole == number && (whole != 0 || Double.doubleToRawLongBits(number) == 0);
+  }
+
+  /**
+   * Method to get the dictionary index of a String, adding it if it is new.
+   *
+   * @param text the String.
+   * @return its index.
+   */
+  private int index(String text) {
+    Integer known = dictionary.get(text);
+    if (known != null) {
+      return known;
+    }
+    dictionary.put(text, entries.size());
+    entries.add(text);
+    return entries.size() - 1;
+  }
+
+  /**
+   * Method to make sure the line buffer has room for more bytes, growing it if needed.
+   *
+   * @param bytes the number of bytes about to be written.
+   * @return the line buffer.
+   */
+  private ByteBuffer room(int bytes) {
+    if (lines.remaining() < bytes) {
+      ByteBuffer bigger = ByteBuffer.allocate(Math.max(lines.capacity() * 2,
+              lines.position() + bytes));
+      lines.flip();
+      lines = bigger.put(lines);
+    }
+    return lines;
+  }
+
+  /**
+   * Method to write the compiled file.
+   *
+   * @param output the compiled file.
+   * @throws IOException if the file cannot be written.
+   */
+  private void write(Path output) throws IOException {
+    List<byte[]> encoded = new ArrayList<>(entries.size());
+    int size = 0;
+    for (String entry : entries) {
+      byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+      encoded.add(bytes);
+      size += Integer.BYTES + bytes.length;
+    }
+    ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES + size);
+    head.putInt(MAGIC).putInt(VERSION).putInt(entries.size()).putInt(recordCount);
+    for (byte[] bytes : encoded) {
+      head.putInt(bytes.length).put(bytes);
+    }
+    head.flip();
+    lines.flip();
+
+    try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      while (head.hasRemaining() || lines.hasRemaining()) {
+        out.write(new ByteBuffer[] {head, lines});
+      }
+    }
+  }
+
+  /**
+   * A reader that turns the lines of a compiled file back into ParsedLines, one at a time.
+   */
+  static final class Loader {
+    private final ByteBuffer input;
+    private final String[] dictionary;
+    private int remaining;
+    private int line;
+
+    /**
+     * Constructor for a loader over the bytes of a compiled file.
+     *
+     * @param input the whole compiled file, from position 0.
+     * @throws IllegalArgumentException if the bytes are not a compiled command file.
+     */
+    Loader(ByteBuffer input) throws IllegalArgumentException {
+      if (!isCompiled(input)) {
+        throw new IllegalArgumentException("Not a compiled command file");
+      }
+      this.input = input.duplicate().position(8);
+      this.dictionary = new String[this.input.getInt()];
+      this.remaining = this.input.getInt();
+      for (int i = 0; i < dictionary.length; i++) {
+        byte[] bytes = new byte[this.input.getInt()];
+        this.input.get(bytes);
+        dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+      }
+    }
+
+    /**
+     * Method to read the next line.
+     *
+     * @return the line, or null if there are no more.
+     * @throws IllegalArgumentException if the file is damaged.
+     */
+    ParsedLine next() throws IllegalArgumentException {
+      if (remaining == 0) {
+        return null;
+      }
+      remaining--;
+      byte opcode = input.get();
+      if (opcode == SKIP) {
+        line += input.getInt();
+        return next();
+      }
+      line++;
+      boolean packed = (opcode & PACKED) != 0;
+      switch (opcode & ~PACKED) {
+        case RECTANGLE:
+        case OVAL:
+          return shape(opcode & ~PACKED, packed);
+        case MOVE: {
+          String name = name();
+          return apply(new Command.MoveShape(name,
+                  new Coordinate(number(packed), number(packed))));
+        }
+        case COLOR: {
+          String name = name();
+          return apply(new Command.SetColor(name, color(packed)));
+        }
+        case RESIZE: {
+          String name = name();
+          return apply(new Command.ResizeShape(name, number(packed), number(packed)));
+        }
+        case REMOVE:
+          return apply(new Command.RemoveShape(name()));
+        case LAYER: {
+          String name = name();
+          return apply(new Command.SetZIndex(name, input.getLong()));
+        }
+        case SNAPSHOT:
+          return apply(new Command.TakeSnapshot(name()));
+        case BEGIN:
+          return new ParsedLine.Begin(line);
+        case COMMIT:
+          return new ParsedLine.Commit(line);
+        case UNKNOWN:
+          return new ParsedLine.Unknown(line, name());
+        case FAILURE: {
+          int column = input.getInt();
+          return new ParsedLine.Failure(line, column,
+                  CommandSyntaxException.withMessage(name(), column));
+        }
+        default:
+          throw new IllegalArgumentException("Unknown opcode: " + opcode);
+      }
+    }
+
+    /**
+     * Method to read a line that adds a shape.
+     *
+     * @param type RECTANGLE or OVAL.
+     * @param packed whether the numbers are stored as ints.
+     * @return the parsed line.
+     */
+    private ParsedLine shape(int type, boolean packed) {
+      String name = name();
+      Coordinate position = new Coordinate(number(packed), number(packed));
+      double width = number(packed);
+      double height = number(packed);
+      double r = number(packed);
+      double g = number(packed);
+      double b = number(packed);
+      Color color = new Color(r, g, b);
+      return apply(new Command.AddShape(type == OVAL
+              ? new Oval(name, position, color, width, height)
+              : new Rectangle(name, position, width, height, color)));
+    }
+
+    private ParsedLine apply(Command command) {
+      return new ParsedLine.Apply(line, command);
+    }
+
+    private Color color(boolean packed) {
+      double r = number(packed);
+      double g = number(packed);
+      double b = number(packed);
+      return new Color(r, g, b);
+    }
+
+    private String name() {
+      return dictionary[input.getInt()];
+    }
+
+    private double number(boolean packed) {
+      return packed ? input.getInt() : input.getDouble();
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package photoalbum.controller;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An exception for a line of the command language that does not parse. Malformed lines can be
+ * common in generated input, so this exception is cheap to throw: it records no stack trace, and
+ * its message is only put together if someone asks for it.
+ */
+final class CommandSyntaxException extends IllegalArgumentException {
+  private static final long serialVersionUID = 1L;
+
+  private final String message;
+  private final String expected;
+  private final ByteBuffer input;
+  private final int from;
+  private final int to;
+  private final int column;
+
+  /**
+   * Constructor for the exception; use one of the factory methods.
+   *
+   * @param message the whole message, or null to build it from the other parts.
+   * @param expected what the line should have had, such as "a number".
+   * @param input the input holding the token that was found, or null if there was none.
+   * @param from where the token starts.
+   * @param to where the token ends.
+   * @param column the column the exception is about, counting from 1, or 0 for the whole line.
+   */
+  private CommandSyntaxException(String message, String expected, ByteBuffer input, int from,
+                                 int to, int column) {
+    this.message = message;
+    this.expected = expected;
+    this.input = input;
+    this.from = from;
+    this.to = to;
+    this.column = column;
+  }
+
+  /**
+   * Method to create an exception for a line that ended before a token it needed.
+   *
+   * @param expected what the line should have had, such as "a number".
+   * @param column the column where the line ended.
+   * @return the exception.
+   */
+  static CommandSyntaxException missing(String expected, int column) {
+    return new CommandSyntaxException(null, expected, null, 0, 0, column);
+  }
+
+  /**
+   * Method to create an exception for a token that is not what the line needed.
+   *
+   * @param expected what the line should have had, such as "a number".
+   * @param input the input holding the token.
+   * @param from where the token starts.
+   * @param to where the token ends.
+   * @param column the column of the token.
+   * @return the exception.
+   */
+  static CommandSyntaxException mismatch(String expected, ByteBuffer input, int from, int to,
+                                         int column) {
+    return new CommandSyntaxException(null, expected, input, from, to, column);
+  }
+
+  /**
+   * Method to create an exception with a ready message, such as one read back from a compiled
+   * file.
+   *
+   * @param message the message.
+   * @param column the column the message is about, or 0 for the whole line.
+   * @return the exception.
+   */
+  static CommandSyntaxException withMessage(String message, int column) {
+    return new CommandSyntaxException(message, null, null, 0, 0, column);
+  }
+
+  /**
+   * Method to get the column of the token the exception is about.
+   *
+   * @return the column, counting from 1, or 0 for the whole line.
+   */
+  int getColumn() {
+    return column;
+  }
+
+  @Override
+  public String getMessage() {
+    if (message != null) {
+      return message;
+    }
+    if (input == null) {
+      return "expected " + expected;
+    }
+    byte[] found = new byte[to - from];
+    input.get(from, found);
+    return "expected " + expected + " but found " + new String(found, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+}
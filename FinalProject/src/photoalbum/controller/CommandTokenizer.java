@@ -0,0 +1,406 @@
+package photoalbum.controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A tokenizer for the command language that works directly on the bytes of the input. Numbers
+ * are parsed from the bytes without building a String, keywords are matched against their
+ * encoded form, and shape names go through a dictionary, so a name that was seen before does not
+ * allocate again. Files are read through a memory mapping.
+ *
+ * <p>The tokenizer walks the input one line at a time. Blank lines and lines starting with '#'
+ * are skipped. Within a line, tokens are separated by spaces or tabs. A token that is missing or
+ * malformed is reported with a CommandSyntaxException, which is cheap to throw.
+ */
+final class CommandTokenizer {
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+  private static final int MAX_EXACT_DIGITS = 15;
+
+  private final ByteBuffer input;
+  private final int limit;
+  private final Names names;
+  private int next;
+  private int lineStart;
+  private int position;
+  private int lineEnd;
+  private int lineNumber;
+  private int tokenStart;
+  private int tokenEnd;
+
+  /**
+   * The words of the command language, matched without regard to case.
+   */
+  enum Keyword {
+    SHAPE, MOVE, COLOR, RESIZE, REMOVE, LAYER, SNAPSHOT, BEGIN, COMMIT, RECTANGLE, OVAL;
+
+    private final byte[] lower = name().toLowerCase().getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Constructor for a tokenizer over the given bytes.
+   *
+   * @param input the bytes of the commands, from its position to its limit.
+   */
+  CommandTokenizer(ByteBuffer input) {
+    this.input = input;
+    this.next = input.position();
+    this.limit = input.limit();
+    this.names = new Names();
+    this.lineEnd = next;
+  }
+
+  /**
+   * Method to map a whole command file into memory.
+   *
+   * @param file the command file.
+   * @return a read-only buffer over the file.
+   * @throws IOException if the file cannot be read or is larger than 2 GB.
+   */
+  static ByteBuffer map(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("Command file is too large to map: " + file);
+      }
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+  }
+
+  /**
+   * Method to move to the next line that holds a command.
+   *
+   * @return false if there are no more lines.
+   */
+  boolean nextLine() {
+    while (next < limit) {
+      int end = next;
+      while (end < limit && input.get(end) != '\n') {
+        end++;
+      }
+      position = next;
+      lineStart = next;
+      lineEnd = end;
+      next = end + 1;
+      lineNumber++;
+      skipSpace();
+      if (position < lineEnd && input.get(position) != '#') {
+        return true;
+      }
+    }
+    position = lineEnd;
+    return false;
+  }
+
+  /**
+   * Method to get the number of the current line, counting from 1.
+   *
+   * @return the line number.
+   */
+  int lineNumber() {
+    return lineNumber;
+  }
+
+  /**
+   * Method to get the column of the token read last.
+   *
+   * @return the column, counting from 1.
+   */
+  int column() {
+    return tokenStart - lineStart + 1;
+  }
+
+  /**
+   * Method to get where the line after the current one starts.
+   *
+   * @return the index of the next line in the input, or the limit if there is none.
+   */
+  int nextLineStart() {
+    return Math.min(next, limit);
+  }
+
+  /**
+   * Method to check whether the current line has tokens left.
+   *
+   * @return true if another token follows.
+   */
+  boolean hasNext() {
+    skipSpace();
+    return position < lineEnd;
+  }
+
+  /**
+   * Method to read a keyword.
+   *
+   * @return the Keyword, or null if the token is not one.
+   * @throws IllegalArgumentException if the line has no more tokens.
+   */
+  Keyword nextKeyword() throws IllegalArgumentException {
+    requireToken("a command");
+    int length = tokenEnd - tokenStart;
+    for (Keyword keyword : Keyword.values()) {
+      if (keyword.lower.length == length && matchesIgnoreCase(keyword.lower)) {
+        return keyword;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Method to get the text of the token read last, for messages about it.
+   *
+   * @return the token as a String.
+   */
+  String lastToken() {
+    return decode(tokenStart, tokenEnd);
+  }
+
+  /**
+   * Method to read a shape name.
+   *
+   * @return the name, shared with every earlier read of the same name.
+   * @throws IllegalArgumentException if the line has no more tokens.
+   */
+  String nextName() throws IllegalArgumentException {
+    requireToken("a name");
+    return names.intern(input, tokenStart, tokenEnd);
+  }
+
+  /**
+   * Method to read a decimal number.
+   *
+   * @return the number.
+   * @throws IllegalArgumentException if there is no token or it is not a number.
+   */
+  double nextDouble() throws IllegalArgumentException {
+    requireToken("a number");
+    int i = tokenStart;
+    boolean negative = false;
+    byte c = input.get(i);
+    if (c == '-' || c == '+') {
+      negative = c == '-';
+      i++;
+    }
+
+    long mantissa = 0;
+    int significant = 0;
+    int exponent = 0;
+    boolean digits = false;
+    boolean exact = true;
+    boolean fraction = false;
+    for (; i < tokenEnd; i++) {
+      c = input.get(i);
+      if (c == '.' && !fraction) {
+        fraction = true;
+        continue;
+      }
+      if (c < '0' || c > '9') {
+        break;
+      }
+      digits = true;
+      if (significant < MAX_EXACT_DIGITS) {
+        mantissa = mantissa * 10 + (c - '0');
+        if (mantissa != 0) {
+          significant++;
+        }
+        if (fraction) {
+          exponent--;
+        }
+      } else if (c != '0' || !fraction) {
+        exact = false;
+      }
+    }
+
+    if (!digits || i != tokenEnd || !exact || exponent < -22) {
+      return parseSlowly();
+    }
+    double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa;
+    return negative ? -value : value;
+  }
+
+  /**
+   * Method to read a whole number.
+   *
+   * @return the number.
+   * @throws IllegalArgumentException if there is no token or it is not a whole number.
+   */
+  long nextLong() throws IllegalArgumentException {
+    requireToken("a whole number");
+    int i = tokenStart;
+    boolean negative = input.get(i) == '-';
+    if (negative || input.get(i) == '+') {
+      i++;
+    }
+    if (i == tokenEnd) {
+      throw mismatch("a whole number");
+    }
+    long value = 0;
+    for (; i < tokenEnd; i++) {
+      byte c = input.get(i);
+      if (c < '0' || c > '9') {
+        throw mismatch("a whole number");
+      }
+      try {
+        value = Math.addExact(Math.multiplyExact(value, 10), negative ? '0' - c : c - '0');
+      } catch (ArithmeticException e) {
+        throw mismatch("a whole number");
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Method to read the rest of the line as text, with single spaces between its words.
+   *
+   * @return the rest of the line, or an empty String if nothing is left.
+   */
+  String rest() {
+    StringBuilder text = new StringBuilder();
+    while (hasNext()) {
+      readToken();
+      if (text.length() > 0) {
+        text.append(' ');
+      }
+      text.append(decode(tokenStart, tokenEnd));
+    }
+    return text.toString();
+  }
+
+  private double parseSlowly() throws IllegalArgumentException {
+    try {
+      return Double.parseDouble(lastToken());
+    } catch (NumberFormatException e) {
+      throw mismatch("a number");
+    }
+  }
+
+  private void requireToken(String expected) throws IllegalArgumentException {
+    if (!hasNext()) {
+      throw CommandSyntaxException.missing(expected, position - lineStart + 1);
+    }
+    readToken();
+  }
+
+  private void readToken() {
+    tokenStart = position;
+    while (position < lineEnd && !isSpace(input.get(position))) {
+      position++;
+    }
+    tokenEnd = position;
+  }
+
+  private void skipSpace() {
+    while (position < lineEnd && isSpace(input.get(position))) {
+      position++;
+    }
+  }
+
+  private boolean matchesIgnoreCase(byte[] lower) {
+    for (int i = 0; i < lower.length; i++) {
+      byte c = input.get(tokenStart + i);
+      if (c >= 'A' && c <= 'Z') {
+        c += 'a' - 'A';
+      }
+      if (c != lower[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Method to create the exception for a token read last that is not what the line needed.
+   *
+   * @param expected what the line should have had, such as "a number".
+   * @return the exception, whose message is only built if it is asked for.
+   */
+  CommandSyntaxException mismatch(String expected) {
+    return CommandSyntaxException.mismatch(expected, input, tokenStart, tokenEnd, column());
+  }
+
+  private String decode(int from, int to) {
+    byte[] bytes = new byte[to - from];
+    input.get(from, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static boolean isSpace(byte c) {
+    return c == ' ' || c == '\t' || c == '\r' || c == '\f' || c == 0x0B;
+  }
+
+  /**
+   * An open-addressing dictionary from the bytes of a name to its String.
+   */
+  private static final class Names {
+    private byte[][] keys = new byte[64][];
+    private String[] values = new String[64];
+    private int size;
+
+    String intern(ByteBuffer input, int from, int to) {
+      int hash = 1;
+      for (int i = from; i < to; i++) {
+        hash = 31 * hash + input.get(i);
+      }
+      int mask = keys.length - 1;
+      int slot = (hash ^ (hash >>> 16)) & mask;
+      while (keys[slot] != null) {
+        if (matches(keys[slot], input, from, to)) {
+          return values[slot];
+        }
+        slot = (slot + 1) & mask;
+      }
+
+      byte[] key = new byte[to - from];
+      input.get(from, key);
+      String value = new String(key, StandardCharsets.UTF_8);
+      keys[slot] = key;
+      values[slot] = value;
+      if (++size * 2 > keys.length) {
+        grow();
+      }
+      return value;
+    }
+
+    private static boolean matches(byte[] key, ByteBuffer input, int from, int to) {
+      if (key.length != to - from) {
+        return false;
+      }
+      for (int i = 0; i < key.length; i++) {
+        if (key[i] != input.get(from + i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void grow() {
+      byte[][] oldKeys = keys;
+      String[] oldValues = values;
+      keys = new byte[oldKeys.length * 2][];
+      values = new String[oldKeys.length * 2];
+      int mask = keys.length - 1;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] == null) {
+          continue;
+        }
+        int hash = 1;
+        for (byte b : oldKeys[i]) {
+          hash = 31 * hash + b;
+        }
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (keys[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+}
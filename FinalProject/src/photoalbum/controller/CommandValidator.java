@@ -0,0 +1,407 @@
+package photoalbum.controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import photoalbum.model.Command;
+import photoalbum.model.IShape;
+
+/**
+ * Checks a whole command file before anything is applied to an album, and reports every problem
+ * in it at once rather than one at a time. A file with no errors in the report applies without
+ * any failing line.
+ *
+ * <p>Syntax and value ranges, such as colors above 255 or negative sizes, are checked while
+ * parsing, which runs on every core for large files just as when reading them. The parsed lines
+ * then go through one quick pass in file order that follows the life of every shape name, from
+ * the line that adds it to the line that removes it, and reports lines that use a name that does
+ * not exist at that point, add one that already does, or commit without a batch. The commands of
+ * a batch are held until its "commit" line and then checked together; if any of them fails, the
+ * names are followed as if none of them was applied, just as the album rolls the batch back. A
+ * batch that is dropped, by another "begin" line or by the end of the file, is never checked, as
+ * its commands are never applied. If the file
+ * starts with a "# canvas x y width height" comment, shapes that are added, moved or resized
+ * past the edges of the canvas are reported as warnings.
+ */
+public class CommandValidator {
+  private final int workers;
+
+  /**
+   * Constructor for a validator that parses on every core.
+   */
+  public CommandValidator() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructor for a validator that parses on the given number of threads.
+   *
+   * @param workers the number of threads parsing a file; 1 parses on the calling thread.
+   * @throws IllegalArgumentException if the number of workers is less than 1.
+   */
+  public CommandValidator(int workers) throws IllegalArgumentException {
+    if (workers < 1) {
+      throw new IllegalArgumentException("Need at least one worker");
+    }
+    this.workers = workers;
+  }
+
+  /**
+   * Method to check a command file, in any format InputReaders reads.
+   *
+   * @param file the command file.
+   * @return every warning and error found, in the order they were found.
+   * @throws IOException if the file cannot be read.
+   */
+  public List<Diagnostics.Diagnostic> validate(Path file) throws IOException {
+    ByteBuffer input = CommandTokenizer.map(file);
+    InputReader reader = InputReaders.find(String.valueOf(file.getFileName()),
+            input.slice(0, Math.min(input.limit(), InputReaders.HEAD_BYTES)));
+    Pass pass = new Pass();
+    if (reader != InputReaders.TEXT) {
+      InputReaders.read(file, pass);
+    } else {
+      pass.canvas = readCanvas(input, pass);
+      if (workers == 1) {
+        InputReaders.parseLines(input, 0, pass);
+      } else {
+        try {
+          InputProcessor.parsePipelined(input, workers, pass);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while validating " + file, e);
+        }
+      }
+    }
+    pass.finish();
+    return List.copyOf(pass.found);
+  }
+
+  /**
+   * Method to check whether a report holds any errors.
+   *
+   * @param report what validate returned.
+   * @return true if it does.
+   */
+  public static boolean hasErrors(List<Diagnostics.Diagnostic> report) {
+    return report.stream().anyMatch(found -> found.severity() == Diagnostics.Severity.ERROR);
+  }
+
+  /**
+   * Method to read the canvas from a "# canvas" comment among the comments at the top of a file.
+   *
+   * @param input the whole file.
+   * @param pass where a malformed canvas line is reported.
+   * @return the canvas, or null if there is none.
+   */
+  private static Canvas readCanvas(ByteBuffer input, Pass pass) {
+    int start = 0;
+    int line = 0;
+    while (start < input.limit()) {
+      int end = start;
+      while (end < input.limit() && input.get(end) != '\n') {
+        end++;
+      }
+      byte[] bytes = new byte[end - start];
+      input.get(start, bytes);
+      String text = new String(bytes, StandardCharsets.UTF_8).trim();
+      line++;
+      start = end + 1;
+      if (text.isEmpty()) {
+        continue;
+      }
+      if (!text.startsWith("#")) {
+        return null;
+      }
+      String[] words = text.substring(1).trim().split("\\s+");
+      if (words[0].equalsIgnoreCase("canvas")) {
+        try {
+          if (words.length == 5) {
+            return new Canvas(Double.parseDouble(words[1]), Double.parseDouble(words[2]),
+                    Double.parseDouble(words[3]), Double.parseDouble(words[4]));
+          }
+        } catch (NumberFormatException e) {
+          // reported below
+        }
+        pass.report(Diagnostics.Severity.WARNING, line,
+                "Canvas line should be \"# canvas x y width height\"");
+        return null;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Checks the command files named on the command line, printing what it finds in each.
+   * Exits with status 1 if any file has an error or cannot be read.
+   *
+   * @param args the command files.
+   */
+  public static void main(String[] args) {
+    if (args.length == 0) {
+      System.out.println("Usage: java -cp photoalbum.jar photoalbum.controller.CommandValidator "
+              + "<input-file>...");
+      return;
+    }
+    CommandValidator validator = new CommandValidator();
+    boolean failed = false;
+    for (String file : args) {
+      try {
+        List<Diagnostics.Diagnostic> report = validator.validate(Path.of(file));
+        for (Diagnostics.Diagnostic found : report) {
+          System.out.println(file + ": " + found);
+        }
+        long errors = report.stream()
+                .filter(found -> found.severity() == Diagnostics.Severity.ERROR).count();
+        System.out.printf("%s: %d errors, %d warnings%n", file, errors,
+                report.size() - errors);
+        failed |= errors > 0;
+      } catch (IOException | InvalidPathException e) {
+        System.err.println("Error: Could not read " + file + ": " + e.getMessage());
+        failed = true;
+      }
+    }
+    if (failed) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * A tuple for the area shapes are drawn in.
+   *
+   * @param x the left edge.
+   * @param y the top edge.
+   * @param width the width.
+   * @param height the height.
+   */
+  private record Canvas(double x, double y, double width, double height) {
+
+    boolean contains(Box box) {
+      return box.x >= x && box.y >= y && box.x + box.width <= x + width
+              && box.y + box.height <= y + height;
+    }
+  }
+
+  /**
+   * A tuple for where a live shape is and the line that added it.
+   *
+   * @param x the left edge.
+   * @param y the top edge.
+   * @param width the width.
+   * @param height the height.
+   * @param added the line that added the shape.
+   */
+  private record Box(double x, double y, double width, double height, int added) {
+  }
+
+  /**
+   * The pass in file order over the parsed lines, which follows each shape name and collects
+   * what it finds.
+   */
+  private static final class Pass implements InputReader.Sink {
+    private final List<Diagnostics.Diagnostic> found = new ArrayList<>();
+    private final Map<String, Box> live = new HashMap<>();
+    private final Map<String, Integer> removed = new HashMap<>();
+    private Canvas canvas;
+    private List<Pending> batch;
+    private int batchStart;
+    private int errors;
+
+    @Override
+    public void accept(ParsedLine line, int lineOffset) {
+      int number = line.line() + lineOffset;
+      if (line instanceof ParsedLine.Failure failure) {
+        found.add(new Diagnostics.Diagnostic(Diagnostics.Severity.ERROR, number,
+                failure.column(), failure.message()));
+      } else if (line instanceof ParsedLine.Unknown unknown) {
+        report(Diagnostics.Severity.WARNING, number, "Unknown command: " + unknown.command());
+      } else if (line instanceof ParsedLine.Begin) {
+        if (batch != null) {
+          report(Diagnostics.Severity.ERROR, number, "Begin inside the batch opened on line "
+                  + batchStart + " drops its " + batch.size() + " commands");
+        }
+        batch = new ArrayList<>();
+        batchStart = number;
+      } else if (line instanceof ParsedLine.Commit) {
+        if (batch == null) {
+          report(Diagnostics.Severity.ERROR, number, "Commit without begin");
+        } else {
+          commit();
+        }
+      } else if (line instanceof ParsedLine.Apply apply) {
+        if (batch != null) {
+          batch.add(new Pending(apply.command(), number));
+        } else {
+          check(apply.command(), number);
+        }
+      }
+    }
+
+    /**
+     * Method to check the commands of the open batch in order, then put every shape they touch
+     * back the way it was if any of them failed.
+     */
+    private void commit() {
+      List<Pending> commands = batch;
+      batch = null;
+      Map<String, Box> liveBefore = new HashMap<>();
+      Map<String, Integer> removedBefore = new HashMap<>();
+      for (Pending pending : commands) {
+        String name = nameOf(pending.command);
+        if (name != null) {
+          liveBefore.put(name, live.get(name));
+          removedBefore.put(name, removed.get(name));
+        }
+      }
+
+      int errorsBefore = errors;
+      for (Pending pending : commands) {
+        check(pending.command, pending.line);
+      }
+      if (errors > errorsBefore) {
+        liveBefore.forEach((name, box) -> restore(live, name, box));
+        removedBefore.forEach((name, line) -> restore(removed, name, line));
+      }
+    }
+
+    /**
+     * Method to check one command against the shapes that are live before it.
+     *
+     * @param command the command.
+     * @param line the line it is on.
+     */
+    private void check(Command command, int line) {
+      if (command instanceof Command.AddShape add) {
+        IShape shape = add.shape();
+        Box existing = live.get(shape.getName());
+        if (existing != null) {
+          report(Diagnostics.Severity.ERROR, line, "Shape " + shape.getName()
+                  + " already exists, added on line " + existing.added);
+          return;
+        }
+        removed.remove(shape.getName());
+        place(shape.getName(), new Box(shape.getPosition().x(), shape.getPosition().y(),
+                shape.getFirstDimension(), shape.getSecondDimension(), line), line);
+      } else if (command instanceof Command.MoveShape move) {
+        Box box = require(move.name(), line);
+        if (box != null) {
+          place(move.name(), new Box(move.position().x(), move.position().y(), box.width,
+                  box.height, box.added), line);
+        }
+      } else if (command instanceof Command.ResizeShape resize) {
+        Box box = require(resize.name(), line);
+        if (box != null) {
+          place(resize.name(), new Box(box.x, box.y, resize.width(), resize.height(),
+                  box.added), line);
+        }
+      } else if (command instanceof Command.RemoveShape remove) {
+        if (require(remove.name(), line) != null) {
+          live.remove(remove.name());
+          removed.put(remove.name(), line);
+        }
+      } else if (command instanceof Command.SetColor color) {
+        require(color.name(), line);
+      } else if (command instanceof Command.SetZIndex layer) {
+        require(layer.name(), line);
+      }
+    }
+
+    /**
+     * Method to look up a shape that a line changes, reporting it if it does not exist.
+     *
+     * @param name the name of the shape.
+     * @param line the line that changes it.
+     * @return where the shape is, or null if it does not exist.
+     */
+    private Box require(String name, int line) {
+      Box box = live.get(name);
+      if (box == null) {
+        Integer gone = removed.get(name);
+        report(Diagnostics.Severity.ERROR, line, gone == null
+                ? "Shape " + name + " is not defined"
+                : "Shape " + name + " was removed on line " + gone);
+      }
+      return box;
+    }
+
+    /**
+     * Method to record where a shape is now, reporting it if it goes past the canvas.
+     *
+     * @param name the name of the shape.
+     * @param box where it is.
+     * @param line the line that put it there.
+     */
+    private void place(String name, Box box, int line) {
+      live.put(name, box);
+      if (canvas != null && !canvas.contains(box)) {
+        report(Diagnostics.Severity.WARNING, line, "Shape " + name
+                + " goes outside the canvas");
+      }
+    }
+
+    /**
+     * Method to report a batch that is never committed, at the end of a file.
+     */
+    private void finish() {
+      if (batch != null) {
+        report(Diagnostics.Severity.ERROR, batchStart, "Batch is never committed, so its "
+                + batch.size() + " commands are not applied");
+      }
+      batch = null;
+    }
+
+    private void report(Diagnostics.Severity severity, int line, String message) {
+      if (severity == Diagnostics.Severity.ERROR) {
+        errors++;
+      }
+      found.add(new Diagnostics.Diagnostic(severity, line, 0, message));
+    }
+
+    private static <V> void restore(Map<String, V> map, String name, V value) {
+      if (value == null) {
+        map.remove(name);
+      } else {
+        map.put(name, value);
+      }
+    }
+
+    /**
+     * Method to get the name of the shape a command is about.
+     *
+     * @param command the command.
+     * @return the name, or null for a snapshot.
+     */
+    private static String nameOf(Command command) {
+      if (command instanceof Command.AddShape add) {
+        return add.shape().getName();
+      } else if (command instanceof Command.RemoveShape remove) {
+        return remove.name();
+      } else if (command instanceof Command.MoveShape move) {
+        return move.name();
+      } else if (command instanceof Command.ResizeShape resize) {
+        return resize.name();
+      } else if (command instanceof Command.SetColor color) {
+        return color.name();
+      } else if (command instanceof Command.SetZIndex layer) {
+        return layer.name();
+      }
+      return null;
+    }
+  }
+
+  /**
+   * A tuple for a command held in a batch until its commit.
+   *
+   * @param command the command.
+   * @param line the line it is on.
+   */
+  private record Pending(Command command, int line) {
+  }
+}
@@ -0,0 +1,253 @@
+package photoalbum.controller;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Collects what happens while command files are read: a count of every command applied, and the
+ * notes, warnings and errors raised along the way, each with the line and column it is about.
+ * Messages are passed as suppliers and only built when they are printed or kept, so a file full
+ * of bad lines costs little more than counting them.
+ *
+ * <p>In verbose mode every note, warning and error is printed as it happens, as the program
+ * always has. In quiet mode nothing is printed until the report at the end, which lists the
+ * first few warnings and errors and counts the rest.
+ */
+public class Diagnostics {
+  private static final int KEPT = 20;
+
+  private final Mode mode;
+  private final int[] counts;
+  private final Map<String, Integer> commands;
+  private final List<Diagnostic> kept;
+
+  /**
+   * Constructor for a collector.
+   *
+   * @param mode whether to print as things happen or only in the report.
+   */
+  public Diagnostics(Mode mode) {
+    this.mode = mode;
+    this.counts = new int[Severity.values().length];
+    this.commands = new LinkedHashMap<>();
+    this.kept = new ArrayList<>();
+  }
+
+  /**
+   * Method to note something that went as expected, such as a shape being created.
+   *
+   * @param message builds the note.
+   */
+  public synchronized void info(Supplier<String> message) {
+    counts[Severity.INFO.ordinal()]++;
+    if (mode == Mode.VERBOSE) {
+      System.out.println(message.get());
+    }
+  }
+
+  /**
+   * Method to report something the reader skipped over, such as an unknown command.
+   *
+   * @param line the line it is on, counting from 1, or 0 if it is not about one line.
+   * @param column the column it is at, counting from 1, or 0 for the whole line.
+   * @param message builds the message.
+   */
+  public void warning(int line, int column, Supplier<String> message) {
+    report(Severity.WARNING, line, column, message);
+  }
+
+  /**
+   * Method to report something that failed, such as a line that does not parse.
+   *
+   * @param line the line it is on, counting from 1, or 0 if it is not about one line.
+   * @param column the column it is at, counting from 1, or 0 for the whole line.
+   * @param message builds the message.
+   */
+  public void error(int line, int column, Supplier<String> message) {
+    report(Severity.ERROR, line, column, message);
+  }
+
+  /**
+   * Method to count a command that was applied.
+   *
+   * @param command the name of the command, such as "move".
+   */
+  public synchronized void count(String command) {
+    commands.merge(command, 1, Integer::sum);
+  }
+
+  /**
+   * Method to get the number of reports of one severity so far.
+   *
+   * @param severity the severity.
+   * @return the number of reports.
+   */
+  public synchronized int getCount(Severity severity) {
+    return counts[severity.ordinal()];
+  }
+
+  /**
+   * Method to get the number of times a command was applied.
+   *
+   * @param command the name of the command, such as "move".
+   * @return the number of times, 0 if never.
+   */
+  public synchronized int getCommandCount(String command) {
+    return commands.getOrDefault(command, 0);
+  }
+
+  /**
+   * Method to get the first warnings and errors, in the order they were reported. Only the first
+   * 20 are kept.
+   *
+   * @return the warnings and errors.
+   */
+  public synchronized List<Diagnostic> getDiagnostics() {
+    return Collections.unmodifiableList(new ArrayList<>(kept));
+  }
+
+  /**
+   * Method to sum up what has been reported so far, so that it can be replayed later without
+   * reading the input again.
+   *
+   * @return the command counts, the warning and error counts and the kept warnings and errors.
+   */
+  public synchronized Summary summary() {
+    return new Summary(new LinkedHashMap<>(commands), counts[Severity.WARNING.ordinal()],
+            counts[Severity.ERROR.ordinal()], new ArrayList<>(kept));
+  }
+
+  /**
+   * Method to report everything a summary holds again, as if its input had just been read: the
+   * kept warnings and errors are printed or kept as they were the first time, and the commands,
+   * warnings and errors are all counted.
+   *
+   * @param summary the summary of an earlier read.
+   */
+  public synchronized void replay(Summary summary) {
+    summary.commands().forEach((command, count) -> commands.merge(command, count, Integer::sum));
+    int warnings = summary.warnings();
+    int errors = summary.errors();
+    for (Diagnostic diagnostic : summary.diagnostics()) {
+      report(diagnostic.severity(), diagnostic.line(), diagnostic.column(), diagnostic::message);
+      if (diagnostic.severity() == Severity.WARNING) {
+        warnings--;
+      } else {
+        errors--;
+      }
+    }
+    counts[Severity.WARNING.ordinal()] += Math.max(warnings, 0);
+    counts[Severity.ERROR.ordinal()] += Math.max(errors, 0);
+  }
+
+  /**
+   * Method to print the report: the number of each command applied and the number of warnings
+   * and errors, after the kept ones themselves in quiet mode.
+   *
+   * @param out where the report is printed.
+   */
+  public synchronized void report(PrintStream out) {
+    if (mode == Mode.QUIET) {
+      for (Diagnostic diagnostic : kept) {
+        out.println(diagnostic);
+      }
+      int unlisted = counts[Severity.WARNING.ordinal()] + counts[Severity.ERROR.ordinal()]
+              - kept.size();
+      if (unlisted > 0) {
+        out.println("... and " + unlisted + " more");
+      }
+    }
+
+    StringBuilder summary = new StringBuilder("Applied ");
+    int total = 0;
+    StringBuilder perCommand = new StringBuilder();
+    for (Map.Entry<String, Integer> entry : commands.entrySet()) {
+      total += entry.getValue();
+      perCommand.append(perCommand.length() == 0 ? " (" : ", ")
+              .append(entry.getKey()).append(' ').append(entry.getValue());
+    }
+    summary.append(total).append(total == 1 ? " command" : " commands").append(perCommand);
+    if (perCommand.length() > 0) {
+      summary.append(')');
+    }
+    int warnings = counts[Severity.WARNING.ordinal()];
+    int errors = counts[Severity.ERROR.ordinal()];
+    summary.append("; ").append(warnings).append(warnings == 1 ? " warning, " : " warnings, ")
+            .append(errors).append(errors == 1 ? " error" : " errors");
+    out.println(summary);
+  }
+
+  /**
+   * Method to count a warning or an error and print or keep it.
+   *
+   * @param severity the severity.
+   * @param line the line it is on, or 0.
+   * @param column the column it is at, or 0.
+   * @param message builds the message.
+   */
+  private synchronized void report(Severity severity, int line, int column,
+                                   Supplier<String> message) {
+    counts[severity.ordinal()]++;
+    if (mode == Mode.VERBOSE) {
+      Diagnostic diagnostic = new Diagnostic(severity, line, column, message.get());
+      if (kept.size() < KEPT) {
+        kept.add(diagnostic);
+      }
+      System.err.println(diagnostic);
+    } else if (kept.size() < KEPT) {
+      kept.add(new Diagnostic(severity, line, column, message.get()));
+    }
+  }
+
+  /**
+   * How serious a report is.
+   */
+  public enum Severity {
+    INFO, WARNING, ERROR
+  }
+
+  /**
+   * Whether reports are printed as they happen or only in the report at the end.
+   */
+  public enum Mode {
+    VERBOSE, QUIET
+  }
+
+  /**
+   * A tuple for what was reported while reading some input.
+   *
+   * @param commands the number of times each command was applied, by name.
+   * @param warnings the number of warnings.
+   * @param errors the number of errors.
+   * @param diagnostics the first warnings and errors, in the order they were reported.
+   */
+  public record Summary(Map<String, Integer> commands, int warnings, int errors,
+                        List<Diagnostic> diagnostics) {
+  }
+
+  /**
+   * A tuple for one warning or error.
+   *
+   * @param severity how serious it is.
+   * @param line the line it is on, counting from 1, or 0 if it is not about one line.
+   * @param column the column it is at, counting from 1, or 0 for the whole line.
+   * @param message what happened.
+   */
+  public record Diagnostic(Severity severity, int line, int column, String message) {
+
+    @Override
+    public String toString() {
+      String prefix = severity == Severity.ERROR ? "Error: " : "Warning: ";
+      if (line == 0) {
+        return prefix + message;
+      }
+      return prefix + "Line " + line + (column == 0 ? "" : ", column " + column) + ": "
+              + message;
+    }
+  }
+}
@@ -0,0 +1,12 @@
+package photoalbum.controller;
+
+/**
+ * An enum for the ways the controller reads its input. READ reads it once. FOLLOW keeps reading
+ * as commands are appended to it. WATCH reads it again every time it is edited, starting from
+ * the last snapshot before the first changed line.
+ */
+public enum InputMode {
+  READ,
+  FOLLOW,
+  WATCH
+}
@@ -1,10 +1,29 @@
 package photoalbum.controller;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import photoalbum.model.Color;
+import photoalbum.model.Command;
 import photoalbum.model.Coordinate;
 import photoalbum.model.IPhotoalbum;
 import photoalbum.model.Oval;
@@ -12,37 +31,105 @@ import photoalbum.model.Rectangle;
 
 /**
  * The class responsible for reading and processing the input commands that define all the
- * attributes of the shapes created.
+ * attributes of the shapes created. Commands between a "begin" line and a "commit" line are
+ * applied as one batch, so a failure in any of them leaves the album as it was before the batch.
+ * A batch that is still open at the end of the input, or when another "begin" line is read, is
+ * dropped with an error, and every input starts outside a batch.
+ * Input is read through a CommandTokenizer, which parses straight from the bytes of the file, or
+ * from a file made by CommandCompiler, which needs no parsing at all. Other formats, such as
+ * gzip and zip files or NDJSON, are streamed through the InputReader that fits them.
+ *
+ * <p>Parsing a line does not need the album, so large files are parsed in a pipeline: worker
+ * threads parse line-aligned chunks of the file into ParsedLines, and the calling thread applies
+ * the chunks one after another in file order. Only a few chunks are parsed ahead of the one being
+ * applied, and the album sees exactly the same calls in the same order as when reading on one
+ * thread.
+ *
+ * <p>Input that is still being written, such as a file another program appends to or standard
+ * input, can be followed instead: every complete line is applied as soon as it arrives, and a
+ * line that has only partly arrived waits in a buffer for the rest of it.
  */
 public class InputProcessor {
+  private static final int PARALLEL_THRESHOLD_BYTES = 8 * 1024 * 1024;
+  private static final int MIN_CHUNK_BYTES = 1024 * 1024;
+  private static final int CHUNKS_PER_WORKER = 4;
+  private static final int FOLLOW_BUFFER_BYTES = 64 * 1024;
+  private static final long FOLLOW_POLL_MILLIS = 50;
+
   private final IPhotoalbum photoAlbum;
+  private final Diagnostics diagnostics;
+  private List<Command> batch;
+  private int batchLine;
 
   /**
-   * Constructor for the InputProcessor Class.
+   * Constructor for the InputProcessor Class, printing every note and error as it happens.
    *
    * @param photoAlbum the photo album being used.
    */
   public InputProcessor(IPhotoalbum photoAlbum) {
+    this(photoAlbum, new Diagnostics(Diagnostics.Mode.VERBOSE));
+  }
+
+  /**
+   * Constructor for the InputProcessor Class, reporting to the given diagnostics.
+   *
+   * @param photoAlbum the photo album being used.
+   * @param diagnostics where notes, warnings, errors and command counts are reported.
+   */
+  public InputProcessor(IPhotoalbum photoAlbum, Diagnostics diagnostics) {
     this.photoAlbum = photoAlbum;
+    this.diagnostics = diagnostics;
   }
 
   /**
-   * Method to read the input file.
+   * Method to read the input file. Files large enough to benefit are parsed on every core.
    *
    * @param file the file path as a String.
    */
   public void readDoc(String file) {
-    try (Scanner scanner = new Scanner(new File(file))) {
-      while (scanner.hasNextLine()) {
-        String line = scanner.nextLine().trim();
-        if (line.isEmpty() || line.startsWith("#")) {
-          continue;
-        }
+    int cores = Runtime.getRuntime().availableProcessors();
+    readDoc(file, cores, PARALLEL_THRESHOLD_BYTES);
+  }
 
-        processInput(line);
-      }
-    } catch (FileNotFoundException e) {
-      System.err.println("Error reading file: " + e.getMessage());
+  /**
+   * Method to read the input file with the given number of parsing threads.
+   *
+   * @param file the file path as a String.
+   * @param workers the number of threads parsing the file; 1 parses on the calling thread.
+   * @throws IllegalArgumentException if the number of workers is less than 1.
+   */
+  public void readDoc(String file, int workers) throws IllegalArgumentException {
+    readDoc(file, workers, 0);
+  }
+
+  /**
+   * Method to follow a file that is still being written, applying each line once it is complete.
+   * When the end of the file is reached, the file is checked again every 50 milliseconds. This
+   * runs until the thread is interrupted.
+   *
+   * @param file the file path as a String.
+   */
+  public void followFile(String file) {
+    try (FileChannel channel = FileChannel.open(Path.of(file), StandardOpenOption.READ)) {
+      follow(channel, true);
+    } catch (ClosedByInterruptException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException | InvalidPathException e) {
+      error("Could not read file: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Method to follow a stream of commands, such as standard input, applying each line once it
+   * is complete. This runs until the stream ends.
+   *
+   * @param input the stream of commands.
+   */
+  public void followStream(InputStream input) {
+    try {
+      follow(Channels.newChannel(input), false);
+    } catch (IOException e) {
+      error("Could not read input: " + e.getMessage());
     }
   }
 
@@ -52,126 +139,562 @@ public class InputProcessor {
    * @param input the input line.
    */
   public void processInput(String input) {
-    Scanner scanner = new Scanner(input);
-    String command = scanner.next().toLowerCase();
+    CommandTokenizer tokens = new CommandTokenizer(
+            ByteBuffer.wrap(input.getBytes(StandardCharsets.UTF_8)));
+    if (tokens.nextLine()) {
+      replay(parse(tokens), 0);
+    }
+  }
+
+  /**
+   * Method to read the input file, in a pipeline if it is at least the given size.
+   *
+   * @param file the file path as a String.
+   * @param workers the number of threads parsing the file.
+   * @param parallelThreshold the smallest file, in bytes, that is parsed in a pipeline.
+   * @throws IllegalArgumentException if the number of workers is less than 1.
+   */
+  private void readDoc(String file, int workers, int parallelThreshold)
+          throws IllegalArgumentException {
+    if (workers < 1) {
+      throw new IllegalArgumentException("Need at least one worker");
+    }
+    Path path;
+    ByteBuffer input;
+    try {
+      path = Path.of(file);
+      input = CommandTokenizer.map(path);
+    } catch (IOException | InvalidPathException e) {
+      error("Could not read file: " + e.getMessage());
+      return;
+    }
+
+    InputReader reader = InputReaders.find(String.valueOf(path.getFileName()),
+            input.slice(0, Math.min(input.limit(), InputReaders.HEAD_BYTES)));
+    batch = null;
+    if (CommandCompiler.isCompiled(input)) {
+      readCompiled(input);
+    } else if (reader != InputReaders.TEXT) {
+      readWith(path);
+    } else if (workers == 1 || input.limit() < parallelThreshold) {
+      applyLines(input, 0);
+    } else {
+      readPipelined(input, workers);
+    }
+    dropOpenBatch();
+  }
+
+  /**
+   * Method to stream a file that is not plain command text, such as a gzip or zip file, through
+   * the reader that fits it.
+   *
+   * @param file the file.
+   */
+  private void readWith(Path file) {
+    try {
+      InputReaders.read(file, new InputReader.Sink() {
+        @Override
+        public void accept(ParsedLine line, int lineOffset) {
+          replay(line, lineOffset);
+        }
+
+        @Override
+        public void startFile(String name) {
+          dropOpenBatch();
+          diagnostics.info(() -> "Reading " + name);
+        }
+      });
+    } catch (IOException e) {
+      error("Could not read file: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Method to read commands as they arrive, applying the complete lines after every read.
+   *
+   * @param input the channel the commands arrive on.
+   * @param tail whether to wait for more input at the end instead of stopping.
+   * @throws IOException if the channel cannot be read.
+   */
+  private void follow(ReadableByteChannel input, boolean tail) throws IOException {
+    ByteBuffer pending = ByteBuffer.allocate(FOLLOW_BUFFER_BYTES);
+    int lineOffset = 0;
+    while (!Thread.currentThread().isInterrupted()) {
+      if (!pending.hasRemaining()) {
+        pending = ByteBuffer.allocate(pending.capacity() * 2).put(pending.flip());
+      }
+      int read = input.read(pending);
+      if (read > 0) {
+        lineOffset = InputReaders.parseCompleteLines(pending, lineOffset, this::replay);
+      } else if (read < 0 && !tail) {
+        break;
+      } else {
+        try {
+          Thread.sleep(FOLLOW_POLL_MILLIS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    if (!tail) {
+      batch = null;
+      applyLines(pending.slice(0, pending.position()), lineOffset);
+      dropOpenBatch();
+    }
+  }
+
+  /**
+   * Method to apply the lines of some input one at a time, stopping after each snapshot line
+   * that is outside a batch so the caller can checkpoint the album there. Any batch left open by
+   * earlier input is dropped first, and one still open at the end is dropped with an error.
+   *
+   * @param lines the bytes of the lines.
+   * @param lineOffset the number of lines applied before them.
+   * @param boundary called after each snapshot line that is outside a batch.
+   */
+  void applyLines(ByteBuffer lines, int lineOffset, SnapshotBoundary boundary) {
+    batch = null;
+    CommandTokenizer tokens = new CommandTokenizer(lines);
+    while (tokens.nextLine()) {
+      ParsedLine line = parse(tokens);
+      replay(line, lineOffset);
+      if (batch == null && line instanceof ParsedLine.Apply apply
+              && apply.command() instanceof Command.TakeSnapshot) {
+        boundary.reached(tokens.nextLineStart(), lineOffset + tokens.lineNumber());
+      }
+    }
+    dropOpenBatch();
+  }
+
+  /**
+   * Method to parse and apply every line of some input.
+   *
+   * @param lines the bytes of the lines.
+   * @param lineOffset the number of lines applied before them.
+   * @return the number of lines applied, including these.
+   */
+  private int applyLines(ByteBuffer lines, int lineOffset) {
+    return InputReaders.parseLines(lines, lineOffset, this::replay);
+  }
+
+  /**
+   * Method to replay a compiled command file.
+   *
+   * @param input the whole compiled file.
+   */
+  private void readCompiled(ByteBuffer input) {
+    try {
+      CommandCompiler.Loader loader = new CommandCompiler.Loader(input);
+      for (ParsedLine line = loader.next(); line != null; line = loader.next()) {
+        replay(line, 0);
+      }
+    } catch (IllegalArgumentException | BufferUnderflowException | IndexOutOfBoundsException e) {
+      error("Could not read file: damaged compiled file");
+    }
+  }
+
+  /**
+   * Method to parse chunks of the input on worker threads while applying them in order.
+   *
+   * @param input the whole input.
+   * @param workers the number of threads parsing the file.
+   */
+  private void readPipelined(ByteBuffer input, int workers) {
+    try {
+      parsePipelined(input, workers, this::replay);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      error("Could not read file: interrupted");
+    }
+  }
+
+  /**
+   * Method to parse chunks of the input on worker threads and hand the lines to a sink in file
+   * order, on the calling thread.
+   *
+   * @param input the whole input.
+   * @param workers the number of threads parsing the file.
+   * @param sink where the lines go.
+   * @throws InterruptedException if the thread is interrupted while waiting for a chunk.
+   */
+  static void parsePipelined(ByteBuffer input, int workers, InputReader.Sink sink)
+          throws InterruptedException {
+    int limit = input.limit();
+    int chunkSize = Math.max(MIN_CHUNK_BYTES, limit / (workers * CHUNKS_PER_WORKER));
+    ExecutorService pool = Executors.newFixedThreadPool(workers);
+    try {
+      Deque<Future<ParsedChunk>> window = new ArrayDeque<>();
+      int start = 0;
+      int lineOffset = 0;
+      while (start < limit || !window.isEmpty()) {
+        while (start < limit && window.size() < workers * 2) {
+          int end = lineBoundary(input, (int) Math.min(limit, (long) start + chunkSize));
+          ByteBuffer chunk = input.slice(start, end - start);
+          window.add(pool.submit(() -> parseChunk(chunk)));
+          start = end;
+        }
+        ParsedChunk parsed = window.poll().get();
+        for (ParsedLine line : parsed.lines) {
+          sink.accept(line, lineOffset);
+        }
+        lineOffset += parsed.lineCount;
+      }
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Parsing failed", e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Method to parse every line of a chunk.
+   *
+   * @param chunk the bytes of whole lines.
+   * @return the parsed lines and the number of lines the chunk spans.
+   */
+  private static ParsedChunk parseChunk(ByteBuffer chunk) {
+    CommandTokenizer tokens = new CommandTokenizer(chunk);
+    List<ParsedLine> lines = new ArrayList<>();
+    while (tokens.nextLine()) {
+      lines.add(parse(tokens));
+    }
+    return new ParsedChunk(lines, tokens.lineNumber());
+  }
+
+  /**
+   * Method to find the end of the line a position falls in.
+   *
+   * @param input the whole input.
+   * @param from the position.
+   * @return the position just after the next line break, or the end of the input.
+   */
+  private static int lineBoundary(ByteBuffer input, int from) {
+    int limit = input.limit();
+    while (from < limit && input.get(from - 1) != '\n') {
+      from++;
+    }
+    return from;
+  }
 
+  /**
+   * Method to parse the line the tokenizer is on.
+   *
+   * @param tokens the tokenizer, positioned at the start of a command.
+   * @return the parsed line.
+   */
+  static ParsedLine parse(CommandTokenizer tokens) {
+    int line = tokens.lineNumber();
     try {
-      switch (command) {
-        case "shape":
-          processShapeCommand(scanner);
-          break;
-        case "move":
-          processMoveCommand(scanner);
-          break;
-        case "color":
-          processColorCommand(scanner);
-          break;
-        case "resize":
-          processResizeCommand(scanner);
-          break;
-        case "remove":
-          processShapeRemove(scanner);
-          break;
-        case "snapshot":
-          processSnapshot(scanner);
-          break;
-        default:
-          System.out.println("Unknown command: " + command);
+      CommandTokenizer.Keyword command = tokens.nextKeyword();
+      if (command == null) {
+        return new ParsedLine.Unknown(line, tokens.lastToken().toLowerCase());
       }
+      return switch (command) {
+        case SHAPE -> new ParsedLine.Apply(line, parseShapeCommand(tokens));
+        case MOVE -> new ParsedLine.Apply(line, parseMoveCommand(tokens));
+        case COLOR -> new ParsedLine.Apply(line, parseColorCommand(tokens));
+        case RESIZE -> new ParsedLine.Apply(line, parseResizeCommand(tokens));
+        case REMOVE -> new ParsedLine.Apply(line, new Command.RemoveShape(tokens.nextName()));
+        case LAYER -> new ParsedLine.Apply(line, parseLayerCommand(tokens));
+        case SNAPSHOT -> new ParsedLine.Apply(line, new Command.TakeSnapshot(tokens.rest()));
+        case BEGIN -> new ParsedLine.Begin(line);
+        case COMMIT -> new ParsedLine.Commit(line);
+        default -> new ParsedLine.Unknown(line, command.name().toLowerCase());
+      };
+    } catch (CommandSyntaxException e) {
+      return new ParsedLine.Failure(line, e.getColumn(), e);
     } catch (IllegalArgumentException e) {
-      System.err.println("Error processing command: " + e.getMessage());
+      return new ParsedLine.Failure(line, 0, e);
     }
   }
 
   /**
-   * Method to create a shape.
+   * Method to apply a parsed line to the album.
    *
-   * @param scanner the instance used to read the file.
-   * @throws IllegalArgumentException An exception thrown if the shape is not there.
+   * @param line the parsed line.
+   * @param lineOffset the number of lines before the chunk the line was parsed in.
    */
-  private void processShapeCommand(Scanner scanner) throws IllegalArgumentException {
-    String id = scanner.next().trim();
-    String type = scanner.next().toLowerCase().trim();
+  private void replay(ParsedLine line, int lineOffset) {
+    int number = line.line() + lineOffset;
+    try {
+      if (line instanceof ParsedLine.Apply apply) {
+        apply(apply.command());
+      } else if (line instanceof ParsedLine.Begin) {
+        processBegin(number);
+      } else if (line instanceof ParsedLine.Commit) {
+        processCommit();
+      } else if (line instanceof ParsedLine.Unknown unknown) {
+        diagnostics.warning(number, 0, () -> "Unknown command: " + unknown.command());
+      } else if (line instanceof ParsedLine.Failure failure) {
+        diagnostics.error(number, failure.column(), failure::message);
+      }
+    } catch (IllegalArgumentException e) {
+      diagnostics.error(number, 0,
+              () -> Objects.requireNonNullElse(e.getMessage(), "invalid value"));
+    }
+  }
 
-    double x = scanner.nextDouble();
-    double y = scanner.nextDouble();
-    Coordinate coordinate = new Coordinate(x, y);
+  /**
+   * Method to parse the creation of a shape.
+   *
+   * @param tokens the tokenizer reading the line.
+   * @return the command adding the shape.
+   * @throws IllegalArgumentException if the line is malformed or the shape type is unknown.
+   */
+  private static Command parseShapeCommand(CommandTokenizer tokens)
+          throws IllegalArgumentException {
+    String id = tokens.nextName();
+    CommandTokenizer.Keyword type = tokens.nextKeyword();
+    if (type != CommandTokenizer.Keyword.RECTANGLE && type != CommandTokenizer.Keyword.OVAL) {
+      throw tokens.mismatch("rectangle or oval");
+    }
 
-    double width = scanner.nextDouble();
-    double height = scanner.nextDouble();
+    double x = tokens.nextDouble();
+    double y = tokens.nextDouble();
+    Coordinate coordinate = new Coordinate(x, y);
 
-    int r = scanner.nextInt();
-    int g = scanner.nextInt();
-    int b = scanner.nextInt();
-    Color color = new Color(r, g, b);
+    double width = nextSize(tokens);
+    double height = nextSize(tokens);
+    Color color = parseColor(tokens);
 
-    switch (type) {
-      case "rectangle" -> photoAlbum.addShape(new Rectangle(id, coordinate, width, height, color));
-      case "oval" -> photoAlbum.addShape(new Oval(id, coordinate, color, width, height));
-      default -> throw new IllegalArgumentException("Unsupported shape type: " + type);
+    if (type == CommandTokenizer.Keyword.RECTANGLE) {
+      return new Command.AddShape(new Rectangle(id, coordinate, width, height, color));
     }
+    return new Command.AddShape(new Oval(id, coordinate, color, width, height));
+  }
+
+  /**
+   * Method to parse moving a shape.
+   *
+   * @param tokens the tokenizer reading the line.
+   * @return the command moving the shape.
+   */
+  private static Command parseMoveCommand(CommandTokenizer tokens) {
+    String id = tokens.nextName();
+    double x = tokens.nextDouble();
+    double y = tokens.nextDouble();
+    return new Command.MoveShape(id, new Coordinate(x, y));
+  }
+
+  /**
+   * Method to parse changing the color of a shape.
+   *
+   * @param tokens the tokenizer reading the line.
+   * @return the command changing the color.
+   */
+  private static Command parseColorCommand(CommandTokenizer tokens) {
+    String id = tokens.nextName();
+    return new Command.SetColor(id, parseColor(tokens));
+  }
 
-    System.out.println("Successfully created " + type + " with ID: " + id);
+  /**
+   * Method to parse resizing a shape.
+   *
+   * @param tokens the tokenizer reading the line.
+   * @return the command resizing the shape.
+   */
+  private static Command parseResizeCommand(CommandTokenizer tokens) {
+    String id = tokens.nextName();
+    double width = nextSize(tokens);
+    double height = nextSize(tokens);
+    return new Command.ResizeShape(id, width, height);
   }
 
   /**
-   * Method to move a shape.
+   * Method to parse moving a shape to another layer.
    *
-   * @param scanner the instance used to read the file.
+   * @param tokens the tokenizer reading the line.
+   * @return the command changing the layer.
    */
-  private void processMoveCommand(Scanner scanner) {
-    String id = scanner.next();
-    double x = scanner.nextDouble();
-    double y = scanner.nextDouble();
-    photoAlbum.moveShape(id, new Coordinate(x, y));
+  private static Command parseLayerCommand(CommandTokenizer tokens) {
+    String id = tokens.nextName();
+    long zIndex = tokens.nextLong();
+    return new Command.SetZIndex(id, zIndex);
   }
 
   /**
-   * Method to change the color of a shape.
+   * Method to read the red, green and blue values of a color.
    *
-   * @param scanner the instance used to read the file.
+   * @param tokens the tokenizer reading the line.
+   * @return the Color that was read.
+   * @throws IllegalArgumentException if a value is missing or out of range.
    */
-  private void processColorCommand(Scanner scanner) {
-    String id = scanner.next();
-    int r = scanner.nextInt();
-    int g = scanner.nextInt();
-    int b = scanner.nextInt();
-    Color color = new Color(r, g, b);
-    photoAlbum.setColor(id, color);
+  private static Color parseColor(CommandTokenizer tokens) throws IllegalArgumentException {
+    double r = nextColorValue(tokens);
+    double g = nextColorValue(tokens);
+    double b = nextColorValue(tokens);
+    return new Color(r, g, b);
   }
 
   /**
-   * Method to resize the shape.
+   * Method to read a width or height, which cannot be negative.
    *
-   * @param scanner the instance used to read the file.
+   * @param tokens the tokenizer reading the line.
+   * @return the size.
+   * @throws IllegalArgumentException if the size is missing or negative.
    */
-  private void processResizeCommand(Scanner scanner) {
-    String id = scanner.next();
-    int width = scanner.nextInt();
-    int height = scanner.nextInt();
-    photoAlbum.resizeShape(id, width, height);
+  private static double nextSize(CommandTokenizer tokens) throws IllegalArgumentException {
+    double size = tokens.nextDouble();
+    if (!(size >= 0)) {
+      throw tokens.mismatch("a size of at least 0");
+    }
+    return size;
   }
 
   /**
-   * Method to remove a shape.
+   * Method to read a red, green or blue value, from 0 to 255.
    *
-   * @param scanner the instance for reading the next line.
+   * @param tokens the tokenizer reading the line.
+   * @return the value.
+   * @throws IllegalArgumentException if the value is missing or out of range.
    */
-  private void processShapeRemove(Scanner scanner) {
-    String id = scanner.next();
-    photoAlbum.removeShape(photoAlbum.getShape(id));
+  private static double nextColorValue(CommandTokenizer tokens)
+          throws IllegalArgumentException {
+    double value = tokens.nextDouble();
+    if (!(value >= 0 && value <= 255)) {
+      throw tokens.mismatch("a color value from 0 to 255");
+    }
+    return value;
   }
 
   /**
-   * Method to take a snapshot and view it.
+   * Method to open a batch, dropping the one already open with an error, as batches do not nest.
    *
-   * @param scanner the instance used to read the file.
+   * @param number the number of the "begin" line.
    */
-  private void processSnapshot(Scanner scanner) {
-    StringBuilder description = new StringBuilder();
-    while (scanner.hasNext()) {
-      description.append(scanner.next()).append(" ");
+  private void processBegin(int number) {
+    if (batch != null) {
+      int dropped = batch.size();
+      diagnostics.error(number, 0, () -> "Begin inside an open batch; dropped the " + dropped
+              + " commands since line " + batchLine);
     }
-    photoAlbum.takeSnapshot(description.toString().trim());
+    batch = new ArrayList<>();
+    batchLine = number;
+  }
+
+  /**
+   * Method to drop a batch still open at the end of the input, reporting it as an error at its
+   * "begin" line.
+   */
+  private void dropOpenBatch() {
+    if (batch != null) {
+      int dropped = batch.size();
+      batch = null;
+      diagnostics.error(batchLine, 0,
+              () -> "Begin without commit; dropped the " + dropped + " commands in the batch");
+    }
+  }
+
+  /**
+   * Method to apply the commands collected since the last "begin" line as one batch.
+   *
+   * @throws IllegalArgumentException if there is no open batch or a command in it fails.
+   */
+  private void processCommit() throws IllegalArgumentException {
+    if (batch == null) {
+      throw new IllegalArgumentException("Commit without begin");
+    }
+    List<Command> commands = batch;
+    batch = null;
+    photoAlbum.applyBatch(commands);
+    for (Command command : commands) {
+      diagnostics.count(commandName(command));
+    }
+    diagnostics.info(() -> "Successfully applied batch of " + commands.size() + " commands");
+  }
+
+  /**
+   * Method to apply a command now, or to hold it for the open batch.
+   *
+   * @param command the command that was read.
+   * @throws IllegalArgumentException if the album rejects the command.
+   */
+  private void apply(Command command) throws IllegalArgumentException {
+    if (batch != null) {
+      batch.add(command);
+      return;
+    }
+    command.applyTo(photoAlbum);
+    diagnostics.count(commandName(command));
+    if (command instanceof Command.AddShape add) {
+      diagnostics.info(() -> "Successfully created " + add.shape().getType() + " with ID: "
+              + add.shape().getName());
+    }
+  }
+
+  /**
+   * Method to name a command the way the command language spells it, for the counters.
+   *
+   * @param command the command.
+   * @return the name.
+   */
+  private static String commandName(Command command) {
+    if (command instanceof Command.AddShape) {
+      return "shape";
+    } else if (command instanceof Command.RemoveShape) {
+      return "remove";
+    } else if (command instanceof Command.MoveShape) {
+      return "move";
+    } else if (command instanceof Command.SetColor) {
+      return "color";
+    } else if (command instanceof Command.ResizeShape) {
+      return "resize";
+    } else if (command instanceof Command.SetZIndex) {
+      return "layer";
+    }
+    return "snapshot";
+  }
+
+  /**
+   * Method to get the number of errors reported so far, for lines that failed and for input that
+   * could not be read.
+   *
+   * @return the number of errors.
+   */
+  public int getErrorCount() {
+    return diagnostics.getCount(Diagnostics.Severity.ERROR);
+  }
+
+  /**
+   * Method to get the diagnostics this processor reports to.
+   *
+   * @return the diagnostics.
+   */
+  public Diagnostics getDiagnostics() {
+    return diagnostics;
+  }
+
+  /**
+   * Method to report an error that is not about one line, such as input that cannot be read.
+   *
+   * @param message the message.
+   */
+  private void error(String message) {
+    diagnostics.error(0, 0, () -> message);
+  }
+
+  /**
+   * A callback for the point just after a snapshot line.
+   */
+  @FunctionalInterface
+  interface SnapshotBoundary {
+
+    /**
+     * Method called once the album has applied a snapshot line.
+     *
+     * @param nextLineStart where the line after the snapshot starts in the input.
+     * @param lines the number of lines applied so far, including the snapshot line.
+     */
+    void reached(int nextLineStart, int lines);
+  }
+
+  /**
+   * A tuple for the result of parsing one chunk of the input.
+   *
+   * @param lines the parsed lines, in file order.
+   * @param lineCount the number of lines the chunk spans, including skipped ones.
+   */
+  private record ParsedChunk(List<ParsedLine> lines, int lineCount) {
   }
-}
\ No newline at end of file
+}
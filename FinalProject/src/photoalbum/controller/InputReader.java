@@ -0,0 +1,63 @@
+package photoalbum.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A reader for one kind of input, such as the command language, NDJSON, or a gzip or zip file
+ * holding other input. A reader streams its input and hands each line it reads to a Sink as a
+ * ParsedLine, so every format goes through the same pipeline as a plain command file. Readers
+ * that wrap other input, like gzip and zip, pick the reader for what is inside with
+ * InputReaders.find.
+ *
+ * <p>The built-in readers are tried first. Other readers can be added by listing them in
+ * META-INF/services/photoalbum.controller.InputReader.
+ */
+public interface InputReader {
+
+  /**
+   * Method to check whether this reader can read an input.
+   *
+   * @param name the file name of the input, which may be empty for a stream.
+   * @param head the first bytes of the input, up to InputReaders.HEAD_BYTES of them, from
+   *             position 0.
+   * @return true if it can.
+   */
+  boolean accepts(String name, ByteBuffer head);
+
+  /**
+   * Method to read the whole input, handing every line to the sink in order. The stream is left
+   * open.
+   *
+   * @param input the input.
+   * @param name the file name of the input, which may be empty for a stream.
+   * @param sink where the lines go.
+   * @throws IOException if the input cannot be read.
+   */
+  void read(InputStream input, String name, Sink sink) throws IOException;
+
+  /**
+   * Where a reader sends the lines it reads.
+   */
+  @FunctionalInterface
+  interface Sink {
+
+    /**
+     * Method to take one line.
+     *
+     * @param line the line.
+     * @param lineOffset the number of lines before the text the line's number counts from.
+     */
+    void accept(ParsedLine line, int lineOffset);
+
+    /**
+     * Method called when a reader starts on a new file inside its input, such as an entry of a
+     * zip file. Line numbers start again from 1 in each file.
+     *
+     * @param name the name of the file.
+     */
+    default void startFile(String name) {
+    }
+  }
+}
@@ -0,0 +1,248 @@
+package photoalbum.controller;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * The InputReaders that are known, and the readers for the formats built in: the command
+ * language, compiled command files, NDJSON, and gzip and zip files holding any of them. Gzip and
+ * zip input is decompressed as it is read, never to disk, and the reader for what is inside is
+ * picked from its name and its first bytes the same way as for a file.
+ */
+public final class InputReaders {
+  /**
+   * The most bytes of an input a reader is shown to decide whether it can read it.
+   */
+  public static final int HEAD_BYTES = 512;
+
+  static final InputReader TEXT = new TextReader();
+
+  private static final int BUFFER_BYTES = 64 * 1024;
+  private static final List<InputReader> READERS = load();
+
+  /**
+   * Constructor that prevents instances; every method is static.
+   */
+  private InputReaders() {
+  }
+
+  /**
+   * Method to list the built-in readers followed by those registered as services.
+   *
+   * @return the readers, in the order they are tried.
+   */
+  private static List<InputReader> load() {
+    List<InputReader> readers = new ArrayList<>(List.of(new GzipReader(), new ZipReader(),
+            new CompiledReader(), new NdjsonReader()));
+    for (InputReader reader : ServiceLoader.load(InputReader.class)) {
+      readers.add(reader);
+    }
+    return List.copyOf(readers);
+  }
+
+  /**
+   * Method to find the reader for an input. Input no other reader accepts is read as the
+   * command language.
+   *
+   * @param name the file name of the input, which may be empty for a stream.
+   * @param head the first bytes of the input, from position 0.
+   * @return the reader.
+   */
+  public static InputReader find(String name, ByteBuffer head) {
+    for (InputReader reader : READERS) {
+      if (reader.accepts(name, head.duplicate())) {
+        return reader;
+      }
+    }
+    return TEXT;
+  }
+
+  /**
+   * Method to read a file with the reader that fits it.
+   *
+   * @param file the file.
+   * @param sink where the lines go.
+   * @throws IOException if the file cannot be read.
+   */
+  public static void read(Path file, InputReader.Sink sink) throws IOException {
+    try (InputStream input = Files.newInputStream(file)) {
+      read(input, String.valueOf(file.getFileName()), sink);
+    }
+  }
+
+  /**
+   * Method to read a stream with the reader that fits it. The stream is left open.
+   *
+   * @param input the input.
+   * @param name the file name of the input, which may be empty.
+   * @param sink where the lines go.
+   * @throws IOException if the input cannot be read.
+   */
+  public static void read(InputStream input, String name, InputReader.Sink sink)
+          throws IOException {
+    InputStream buffered = input.markSupported() ? input
+            : new BufferedInputStream(input, BUFFER_BYTES);
+    buffered.mark(HEAD_BYTES);
+    ByteBuffer head = ByteBuffer.wrap(buffered.readNBytes(HEAD_BYTES));
+    buffered.reset();
+    find(name, head).read(buffered, name, sink);
+  }
+
+  /**
+   * Method to parse every line of some command language text.
+   *
+   * @param lines the bytes of the lines.
+   * @param lineOffset the number of lines before them.
+   * @param sink where the lines go.
+   * @return the number of lines before them plus the number they span.
+   */
+  static int parseLines(ByteBuffer lines, int lineOffset, InputReader.Sink sink) {
+    CommandTokenizer tokens = new CommandTokenizer(lines);
+    while (tokens.nextLine()) {
+      sink.accept(InputProcessor.parse(tokens), lineOffset);
+    }
+    return lineOffset + tokens.lineNumber();
+  }
+
+  /**
+   * Method to parse the complete lines at the front of a buffer and keep the partial line after
+   * them.
+   *
+   * @param pending the bytes read so far, from 0 to its position.
+   * @param lineOffset the number of lines before the buffer.
+   * @param sink where the lines go.
+   * @return the number of lines before the buffer plus the number of complete lines in it.
+   */
+  static int parseCompleteLines(ByteBuffer pending, int lineOffset, InputReader.Sink sink) {
+    int end = pending.position();
+    while (end > 0 && pending.get(end - 1) != '\n') {
+      end--;
+    }
+    if (end == 0) {
+      return lineOffset;
+    }
+
+    int parsed = parseLines(pending.slice(0, end), lineOffset, sink);
+    pending.flip().position(end);
+    pending.compact();
+    return parsed;
+  }
+
+  /**
+   * A reader for the command language, parsing each block of complete lines as it arrives.
+   */
+  private static final class TextReader implements InputReader {
+
+    @Override
+    public boolean accepts(String name, ByteBuffer head) {
+      return true;
+    }
+
+    @Override
+    public void read(InputStream input, String name, Sink sink) throws IOException {
+      ReadableByteChannel channel = Channels.newChannel(input);
+      ByteBuffer pending = ByteBuffer.allocate(BUFFER_BYTES);
+      int lineOffset = 0;
+      while (true) {
+        if (!pending.hasRemaining()) {
+          pending = ByteBuffer.allocate(pending.capacity() * 2).put(pending.flip());
+        }
+        if (channel.read(pending) < 0) {
+          break;
+        }
+        lineOffset = parseCompleteLines(pending, lineOffset, sink);
+      }
+      parseLines(pending.slice(0, pending.position()), lineOffset, sink);
+    }
+  }
+
+  /**
+   * A reader for gzip input, which reads whatever the decompressed input holds. A ".gz" at the
+   * end of the name is dropped when picking the reader for it.
+   */
+  private static final class GzipReader implements InputReader {
+
+    @Override
+    public boolean accepts(String name, ByteBuffer head) {
+      return head.limit() >= 2 && head.get(0) == (byte) 0x1f && head.get(1) == (byte) 0x8b;
+    }
+
+    @Override
+    public void read(InputStream input, String name, Sink sink) throws IOException {
+      String inner = name.endsWith(".gz") ? name.substring(0, name.length() - 3) : name;
+      InputReaders.read(new GZIPInputStream(input, BUFFER_BYTES), inner, sink);
+    }
+  }
+
+  /**
+   * A reader for zip input, which reads each entry that looks like a command file in turn.
+   * Directories, hidden files, macOS resource forks and files with other extensions, such as
+   * source code bundled alongside, are skipped.
+   */
+  private static final class ZipReader implements InputReader {
+    private static final Set<String> EXTENSIONS = Set.of("", "txt", "ndjson", "jsonl", "pac",
+            "gz");
+
+    @Override
+    public boolean accepts(String name, ByteBuffer head) {
+      return head.limit() >= 4 && head.getInt(0) == 0x504b0304;
+    }
+
+    @Override
+    public void read(InputStream input, String name, Sink sink) throws IOException {
+      ZipInputStream zip = new ZipInputStream(input);
+      for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+        String path = entry.getName();
+        String file = path.substring(path.lastIndexOf('/') + 1);
+        int dot = file.lastIndexOf('.');
+        String extension = dot < 0 ? "" : file.substring(dot + 1).toLowerCase();
+        if (entry.isDirectory() || file.startsWith(".") || path.startsWith("__MACOSX/")
+                || !EXTENSIONS.contains(extension)) {
+          continue;
+        }
+        sink.startFile(path);
+        InputReaders.read(zip, file, sink);
+      }
+    }
+  }
+
+  /**
+   * A reader for a compiled command file that is not a file of its own, such as one inside a
+   * zip file. It has to be read whole before it can be replayed.
+   */
+  private static final class CompiledReader implements InputReader {
+
+    @Override
+    public boolean accepts(String name, ByteBuffer head) {
+      return CommandCompiler.isCompiled(head);
+    }
+
+    @Override
+    public void read(InputStream input, String name, Sink sink) throws IOException {
+      try {
+        CommandCompiler.Loader loader = new CommandCompiler.Loader(
+                ByteBuffer.wrap(input.readAllBytes()));
+        for (ParsedLine line = loader.next(); line != null; line = loader.next()) {
+          sink.accept(line, 0);
+        }
+      } catch (IllegalArgumentException | BufferUnderflowException
+               | IndexOutOfBoundsException e) {
+        throw new IOException("damaged compiled file", e);
+      }
+    }
+  }
+}
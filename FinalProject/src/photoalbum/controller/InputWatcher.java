@@ -0,0 +1,153 @@
+package photoalbum.controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import photoalbum.model.AlbumEvent;
+import photoalbum.model.PhotoAlbum;
+
+/**
+ * Keeps an album in step with a command file that is being edited. After every snapshot line
+ * the album is checkpointed, along with where in the file the next line starts. When the file
+ * changes, the first byte that differs is found, the album is restored to the last checkpoint
+ * before the line holding it, and only the rest of the file is applied again. The snapshots
+ * taken before that checkpoint are kept as they are, so views only need to redraw the ones
+ * after it.
+ */
+public class InputWatcher {
+  private static final long SETTLE_MILLIS = 25;
+
+  private final Path file;
+  private final PhotoAlbum album;
+  private final InputProcessor processor;
+  private final List<Mark> marks;
+  private byte[] contents;
+  private int snapshots;
+
+  /**
+   * Constructor for a watcher that keeps an album in step with a file.
+   *
+   * @param file the command file.
+   * @param album the album the commands are applied to.
+   */
+  public InputWatcher(Path file, PhotoAlbum album) {
+    this.file = file;
+    this.album = album;
+    this.processor = new InputProcessor(album);
+    this.marks = new ArrayList<>();
+    this.snapshots = album.getSnapshots().size();
+    marks.add(new Mark(0, 0, snapshots, album.checkpoint()));
+    album.addListener(event -> {
+      for (AlbumEvent change : event.unpack()) {
+        if (change.kind() == AlbumEvent.Kind.SNAPSHOT_TAKEN) {
+          snapshots++;
+        }
+      }
+    });
+  }
+
+  /**
+   * Method to bring the album up to date with the file, applying only what changed.
+   *
+   * @return the index of the first snapshot that changed, or -1 if none did.
+   * @throws IOException if the file cannot be read.
+   */
+  public int refresh() throws IOException {
+    byte[] next = Files.readAllBytes(file);
+    int changed = contents == null ? 0 : Arrays.mismatch(contents, next);
+    if (changed < 0) {
+      return -1;
+    }
+    while (changed > 0 && next[changed - 1] != '\n') {
+      changed--;
+    }
+
+    int keep = 0;
+    while (keep + 1 < marks.size() && marks.get(keep + 1).offset <= changed) {
+      keep++;
+    }
+    Mark resume = marks.get(keep);
+    marks.subList(keep + 1, marks.size()).clear();
+    int before = snapshots;
+    album.restore(resume.checkpoint);
+    snapshots = resume.snapshots;
+
+    processor.applyLines(ByteBuffer.wrap(next, resume.offset, next.length - resume.offset)
+            .slice(), resume.lines, (nextLineStart, lines) -> marks.add(new Mark(
+                    resume.offset + nextLineStart, lines, snapshots, album.checkpoint())));
+    contents = next;
+    return resume.snapshots < Math.max(before, snapshots) ? resume.snapshots : -1;
+  }
+
+  /**
+   * Method to get the number of checkpoints kept, one for the start of the file and one after
+   * each snapshot line outside a batch.
+   *
+   * @return the number of checkpoints.
+   */
+  public int getCheckpointCount() {
+    return marks.size();
+  }
+
+  /**
+   * Method to watch the file and bring the album up to date every time it changes. This runs
+   * until the thread is interrupted or the file's directory goes away.
+   *
+   * @param onChange called with the index of the first changed snapshot after each update that
+   *                 changed any.
+   * @throws IOException if the directory cannot be watched.
+   * @throws InterruptedException if the thread is interrupted.
+   */
+  public void watch(IntConsumer onChange) throws IOException, InterruptedException {
+    Path directory = file.toAbsolutePath().getParent();
+    Path name = file.getFileName();
+    try (WatchService watcher = directory.getFileSystem().newWatchService()) {
+      directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+              StandardWatchEventKinds.ENTRY_MODIFY);
+      while (true) {
+        WatchKey key = watcher.take();
+        // Editors often save in several writes, so let them finish before reading
+        Thread.sleep(SETTLE_MILLIS);
+        boolean touched = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+          touched |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                  || name.equals(event.context());
+        }
+        if (touched) {
+          try {
+            int first = refresh();
+            if (first >= 0) {
+              onChange.accept(first);
+            }
+          } catch (IOException e) {
+            System.err.println("Error reading file: " + e.getMessage());
+          }
+        }
+        if (!key.reset()) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * A tuple for a checkpoint and where in the file it was taken.
+   *
+   * @param offset where the line after the checkpoint starts.
+   * @param lines the number of lines before that point.
+   * @param snapshots the number of snapshots in the album at that point.
+   * @param checkpoint the state of the album at that point.
+   */
+  private record Mark(int offset, int lines, int snapshots, PhotoAlbum.Checkpoint checkpoint) {
+  }
+}
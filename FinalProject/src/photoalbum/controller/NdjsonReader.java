@@ -0,0 +1,417 @@
+package photoalbum.controller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import photoalbum.model.Color;
+import photoalbum.model.Command;
+import photoalbum.model.Coordinate;
+import photoalbum.model.Oval;
+import photoalbum.model.Rectangle;
+
+/**
+ * A reader for commands written as newline-delimited JSON, one flat object per line, such as
+ * {"command": "move", "name": "R1", "x": 10, "y": 20}. The fields of each command are named
+ * after the words of the command language:
+ *
+ * <ul>
+ *   <li>shape: name, type ("rectangle" or "oval"), x, y, width, height, r, g, b</li>
+ *   <li>move: name, x, y</li>
+ *   <li>color: name, r, g, b</li>
+ *   <li>resize: name, width, height</li>
+ *   <li>remove: name</li>
+ *   <li>layer: name, z</li>
+ *   <li>snapshot: description, which may be left out</li>
+ *   <li>begin and commit: no fields</li>
+ * </ul>
+ *
+ * <p>Input is read one line at a time, and each line is parsed on its own by a small parser that
+ * only knows flat objects of strings, numbers, booleans and nulls. Blank lines are skipped.
+ * A line that is not such an object, or that lacks a field its command needs, fails with the
+ * column of the problem.
+ */
+final class NdjsonReader implements InputReader {
+
+  @Override
+  public boolean accepts(String name, ByteBuffer head) {
+    if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+      return true;
+    }
+    while (head.hasRemaining()) {
+      byte next = head.get();
+      if (next != ' ' && next != '\t' && next != '\r' && next != '\n') {
+        return next == '{';
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void read(InputStream input, String name, Sink sink) throws IOException {
+    BufferedReader lines = new BufferedReader(
+            new InputStreamReader(input, StandardCharsets.UTF_8), 64 * 1024);
+    int number = 0;
+    for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+      number++;
+      if (!line.isBlank()) {
+        sink.accept(parse(line, number), 0);
+      }
+    }
+  }
+
+  /**
+   * Method to parse one line.
+   *
+   * @param text the line.
+   * @param line the number of the line.
+   * @return the parsed line.
+   */
+  static ParsedLine parse(String text, int line) {
+    try {
+      Fields fields = new Parser(text).object();
+      String command = fields.string("command").toLowerCase();
+      return switch (command) {
+        case "shape" -> new ParsedLine.Apply(line, shape(fields));
+        case "move" -> new ParsedLine.Apply(line, new Command.MoveShape(fields.string("name"),
+                new Coordinate(fields.number("x"), fields.number("y"))));
+        case "color" -> new ParsedLine.Apply(line,
+                new Command.SetColor(fields.string("name"), color(fields)));
+        case "resize" -> new ParsedLine.Apply(line, new Command.ResizeShape(
+                fields.string("name"), fields.size("width"), fields.size("height")));
+        case "remove" -> new ParsedLine.Apply(line,
+                new Command.RemoveShape(fields.string("name")));
+        case "layer" -> new ParsedLine.Apply(line,
+                new Command.SetZIndex(fields.string("name"), fields.whole("z")));
+        case "snapshot" -> new ParsedLine.Apply(line,
+                new Command.TakeSnapshot(fields.optionalString("description")));
+        case "begin" -> new ParsedLine.Begin(line);
+        case "commit" -> new ParsedLine.Commit(line);
+        default -> new ParsedLine.Unknown(line, command);
+      };
+    } catch (CommandSyntaxException e) {
+      return new ParsedLine.Failure(line, e.getColumn(), e);
+    } catch (IllegalArgumentException e) {
+      return new ParsedLine.Failure(line, 0, e);
+    }
+  }
+
+  /**
+   * Method to build the command adding a shape.
+   *
+   * @param fields the fields of the line.
+   * @return the command.
+   * @throws IllegalArgumentException if a field is missing or the shape is invalid.
+   */
+  private static Command shape(Fields fields) throws IllegalArgumentException {
+    String name = fields.string("name");
+    String type = fields.string("type");
+    Coordinate position = new Coordinate(fields.number("x"), fields.number("y"));
+    double width = fields.size("width");
+    double height = fields.size("height");
+    Color color = color(fields);
+    if (type.equalsIgnoreCase("rectangle")) {
+      return new Command.AddShape(new Rectangle(name, position, width, height, color));
+    } else if (type.equalsIgnoreCase("oval")) {
+      return new Command.AddShape(new Oval(name, position, color, width, height));
+    }
+    throw CommandSyntaxException.withMessage("expected rectangle or oval but found " + type,
+            fields.column("type"));
+  }
+
+  private static Color color(Fields fields) {
+    return new Color(fields.colorValue("r"), fields.colorValue("g"), fields.colorValue("b"));
+  }
+
+  /**
+   * The fields of one object, each with the column its value starts at.
+   */
+  private static final class Fields {
+    private final Map<String, Object> values = new HashMap<>();
+    private final Map<String, Integer> columns = new HashMap<>();
+    private int end;
+
+    private Object require(String key) {
+      Object value = values.get(key);
+      if (value == null) {
+        throw CommandSyntaxException.missing("a field \"" + key + "\"", end);
+      }
+      return value;
+    }
+
+    private int column(String key) {
+      return columns.getOrDefault(key, end);
+    }
+
+    private String string(String key) {
+      Object value = require(key);
+      if (!(value instanceof String text)) {
+        throw CommandSyntaxException.withMessage("expected a string for \"" + key + "\"",
+                column(key));
+      }
+      return text;
+    }
+
+    private String optionalString(String key) {
+      return values.get(key) == null ? "" : string(key);
+    }
+
+    private double number(String key) {
+      Object value = require(key);
+      if (!(value instanceof JsonNumber number)) {
+        throw CommandSyntaxException.withMessage("expected a number for \"" + key + "\"",
+                column(key));
+      }
+      return number.value;
+    }
+
+    private double size(String key) {
+      double size = number(key);
+      if (!(size >= 0)) {
+        throw CommandSyntaxException.withMessage("expected a size of at least 0 for \"" + key
+                + "\"", column(key));
+      }
+      return size;
+    }
+
+    private double colorValue(String key) {
+      double value = number(key);
+      if (!(value >= 0 && value <= 255)) {
+        throw CommandSyntaxException.withMessage("expected a color value from 0 to 255 for \""
+                + key + "\"", column(key));
+      }
+      return value;
+    }
+
+    private long whole(String key) {
+      Object value = require(key);
+      if (value instanceof JsonNumber number) {
+        try {
+          return Long.parseLong(number.text);
+        } catch (NumberFormatException e) {
+          if (number.value == Math.rint(number.value) && Math.abs(number.value) < 0x1p63) {
+            return (long) number.value;
+          }
+        }
+      }
+      throw CommandSyntaxException.withMessage("expected a whole number for \"" + key + "\"",
+              column(key));
+    }
+  }
+
+  /**
+   * A tuple for a JSON number, kept as written so whole numbers do not go through a double.
+   *
+   * @param text the number as written.
+   * @param value the number.
+   */
+  private record JsonNumber(String text, double value) {
+  }
+
+  /**
+   * A parser for one line holding a flat JSON object.
+   */
+  private static final class Parser {
+    private final String text;
+    private int position;
+
+    /**
+     * Constructor for a parser over one line.
+     *
+     * @param text the line.
+     */
+    private Parser(String text) {
+      this.text = text;
+    }
+
+    /**
+     * Method to parse the line as one object, with nothing but spaces after it.
+     *
+     * @return the fields of the object.
+     * @throws CommandSyntaxException if the line is not a flat object.
+     */
+    private Fields object() throws CommandSyntaxException {
+      expect('{');
+      Fields fields = new Fields();
+      if (peek() != '}') {
+        do {
+          skipSpace();
+          String key = string();
+          expect(':');
+          skipSpace();
+          fields.columns.put(key, position + 1);
+          fields.values.put(key, value());
+        } while (accept(','));
+      }
+      if (!accept('}')) {
+        throw fail("',' or '}'");
+      }
+      skipSpace();
+      if (position < text.length()) {
+        throw fail("the end of the line");
+      }
+      fields.end = text.length() + 1;
+      return fields;
+    }
+
+    /**
+     * Method to parse the value that starts here.
+     *
+     * @return a String, a JsonNumber, a Boolean, or null.
+     * @throws CommandSyntaxException if there is no value here, or it is an object or array.
+     */
+    private Object value() throws CommandSyntaxException {
+      if (position >= text.length()) {
+        throw fail("a value");
+      }
+      char next = text.charAt(position);
+      if (next == '"') {
+        return string();
+      } else if (next == '-' || (next >= '0' && next <= '9')) {
+        return number();
+      } else if (text.startsWith("true", position)) {
+        position += 4;
+        return Boolean.TRUE;
+      } else if (text.startsWith("false", position)) {
+        position += 5;
+        return Boolean.FALSE;
+      } else if (text.startsWith("null", position)) {
+        position += 4;
+        return null;
+      }
+      throw fail("a string, number, true, false or null");
+    }
+
+    private String string() throws CommandSyntaxException {
+      if (position >= text.length() || text.charAt(position) != '"') {
+        throw fail("a string");
+      }
+      position++;
+      StringBuilder out = null;
+      int start = position;
+      while (position < text.length()) {
+        char next = text.charAt(position);
+        if (next == '"') {
+          String tail = text.substring(start, position++);
+          return out == null ? tail : out.append(tail).toString();
+        }
+        if (next != '\\') {
+          position++;
+          continue;
+        }
+        if (out == null) {
+          out = new StringBuilder();
+        }
+        out.append(text, start, position);
+        out.append(escape());
+        start = position;
+      }
+      throw fail("a closing quote");
+    }
+
+    /**
+     * Method to decode the escape sequence that starts here.
+     *
+     * @return the character it stands for.
+     * @throws CommandSyntaxException if it is not a valid escape.
+     */
+    private char escape() throws CommandSyntaxException {
+      int start = position;
+      position++;
+      if (position >= text.length()) {
+        position = start;
+        throw fail("an escape sequence");
+      }
+      char kind = text.charAt(position++);
+      switch (kind) {
+        case '"':
+        case '\\':
+        case '/':
+          return kind;
+        case 'b':
+          return '\b';
+        case 'f':
+          return '\f';
+        case 'n':
+          return '\n';
+        case 'r':
+          return '\r';
+        case 't':
+          return '\t';
+        case 'u':
+          if (position + 4 <= text.length()) {
+            try {
+              char decoded = (char) Integer.parseInt(text.substring(position, position + 4), 16);
+              position += 4;
+              return decoded;
+            } catch (NumberFormatException e) {
+              // reported below
+            }
+          }
+          break;
+        default:
+          break;
+      }
+      position = start;
+      throw fail("an escape sequence");
+    }
+
+    private JsonNumber number() throws CommandSyntaxException {
+      int start = position;
+      while (position < text.length() && "+-.0123456789eE".indexOf(text.charAt(position)) >= 0) {
+        position++;
+      }
+      String number = text.substring(start, position);
+      try {
+        return new JsonNumber(number, Double.parseDouble(number));
+      } catch (NumberFormatException e) {
+        position = start;
+        throw fail("a number");
+      }
+    }
+
+    private void expect(char expected) throws CommandSyntaxException {
+      if (!accept(expected)) {
+        throw fail("'" + expected + "'");
+      }
+    }
+
+    private boolean accept(char expected) {
+      if (peek() == expected) {
+        position++;
+        return true;
+      }
+      return false;
+    }
+
+    private char peek() {
+      skipSpace();
+      return position < text.length() ? text.charAt(position) : 0;
+    }
+
+    private void skipSpace() {
+      while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+        position++;
+      }
+    }
+
+    /**
+     * Method to report that something else was expected at the current position.
+     *
+     * @param expected what was expected.
+     * @return the exception, for the caller to throw.
+     */
+    private CommandSyntaxException fail(String expected) {
+      if (position >= text.length()) {
+        return CommandSyntaxException.missing(expected, position + 1);
+      }
+      return CommandSyntaxException.withMessage("expected " + expected + " but found '"
+              + text.charAt(position) + "'", position + 1);
+    }
+  }
+}
@@ -0,0 +1,303 @@
+package photoalbum.controller;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import photoalbum.model.IShape;
+import photoalbum.model.Snapshot;
+import photoalbum.model.SnapshotArchive;
+
+/**
+ * An on-disk cache of parsed command files. An entry is keyed by the SHA-256 hash of the file's
+ * extensions and contents, as the extension can decide which reader parses a file. It holds the
+ * snapshots the file produced, followed by the shapes left in the album at the end, as a
+ * SnapshotArchive. Next to it is a small file summing up what was reported while
+ * reading, so a hit reports the same counts, warnings and errors as parsing the file again.
+ * Reading an input whose contents were seen before reads the entry onto the heap instead of
+ * parsing the file again, and leaves nothing open, so the entry can be evicted at any time.
+ *
+ * <p>What is read back becomes the album, so the directory must be private to the user, such as
+ * one opened by CacheDirectories.
+ *
+ * <p>The cache keeps its entries under a total size. Every hit marks its entry as used, and after
+ * each store the least recently used entries are deleted until the cache fits again.
+ */
+public class ParseCache {
+  private static final String SUFFIX = ".snaps";
+  private static final String SUMMARY_SUFFIX = ".diag";
+  private static final String FORMAT = "photoalbum-parse-cache-2";
+
+  private final Path directory;
+  private final long maxBytes;
+
+  /**
+   * Constructor for a cache kept in the given directory.
+   *
+   * @param directory the directory holding the entries; it is created when first needed.
+   * @param maxBytes the total size the entries are kept under.
+   * @throws IllegalArgumentException if the size is not positive.
+   */
+  public ParseCache(Path directory, long maxBytes) throws IllegalArgumentException {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("Cache size must be positive");
+    }
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Method to compute the cache key of an input file.
+   *
+   * @param input the input file.
+   * @return the SHA-256 hash of the file's extensions and contents, in hex.
+   * @throws IOException if the file cannot be read.
+   */
+  public static String key(Path input) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+    digest.update(FORMAT.getBytes(StandardCharsets.US_ASCII));
+    digest.update(extensions(input).getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+    ByteBuffer contents = CommandTokenizer.map(input);
+    digest.update(contents);
+    StringBuilder hex = new StringBuilder();
+    for (byte b : digest.digest()) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+
+  /**
+   * Method to look up an entry, marking it as recently used.
+   *
+   * @param key the key of the input file.
+   * @return the entry, or null if the cache does not hold a readable one.
+   */
+  public Entry lookup(String key) {
+    Path file = entryFile(key);
+    Path summaryFile = summaryFile(key);
+    if (!Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)
+            || !Files.isRegularFile(summaryFile, LinkOption.NOFOLLOW_LINKS)) {
+      return null;
+    }
+    try {
+      Diagnostics.Summary summary = readSummary(summaryFile);
+      List<Snapshot> stored = SnapshotArchive.readAll(file);
+      if (stored.isEmpty()) {
+        return null;
+      }
+      Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+      return new Entry(stored.subList(0, stored.size() - 1),
+              stored.get(stored.size() - 1).getShapes(), summary);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Method to store the result of parsing an input file, then evict entries until the cache fits.
+   * Each file of the entry is written to a temporary file first, so a reader never sees half of
+   * it, and the summary is written before the archive, so a reader never finds an archive
+   * without it.
+   *
+   * @param key the key of the input file.
+   * @param snapshots the snapshots the file produced.
+   * @param shapes the shapes in the album after the file was read.
+   * @param summary what was reported while the file was read.
+   * @throws IOException if the entry cannot be written.
+   */
+  public void store(String key, List<Snapshot> snapshots, List<IShape> shapes,
+                    Diagnostics.Summary summary) throws IOException {
+    Files.createDirectories(directory);
+    List<Snapshot> stored = new ArrayList<>(snapshots);
+    stored.add(new Snapshot("album", shapes));
+    Path temporary = Files.createTempFile(directory, key, ".tmp");
+    try {
+      writeSummary(temporary, summary);
+      Files.move(temporary, summaryFile(key), StandardCopyOption.REPLACE_EXISTING,
+              StandardCopyOption.ATOMIC_MOVE);
+      SnapshotArchive.write(temporary, stored);
+      Files.move(temporary, entryFile(key), StandardCopyOption.REPLACE_EXISTING,
+              StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+    evict();
+  }
+
+  /**
+   * Method to delete the least recently used entries until the cache is under its size.
+   *
+   * @throws IOException if the directory cannot be listed.
+   */
+  private void evict() throws IOException {
+    List<Path> entries;
+    try (Stream<Path> files = Files.list(directory)) {
+      entries = files.filter(file -> file.getFileName().toString().endsWith(SUFFIX))
+              .sorted(Comparator.comparing(ParseCache::lastUsed).reversed())
+              .toList();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    long total = 0;
+    for (Path entry : entries) {
+      Path summary = entry.resolveSibling(entry.getFileName().toString()
+              .replace(SUFFIX, SUMMARY_SUFFIX));
+      total += Files.size(entry) + (Files.exists(summary) ? Files.size(summary) : 0);
+      if (total > maxBytes) {
+        Files.deleteIfExists(entry);
+        Files.deleteIfExists(summary);
+      }
+    }
+  }
+
+  /**
+   * Method to get the extensions of a file name, everything from its first dot, such as
+   * ".ndjson.gz".
+   *
+   * @param input the input file.
+   * @return the extensions, or an empty String if the name has none.
+   */
+  private static String extensions(Path input) {
+    Path fileName = input.getFileName();
+    String name = fileName == null ? "" : fileName.toString();
+    int dot = name.indexOf('.');
+    return dot < 0 ? "" : name.substring(dot);
+  }
+
+  /**
+   * Method to get the file holding an entry.
+   *
+   * @param key the key of the entry.
+   * @return the path of the entry.
+   */
+  private Path entryFile(String key) {
+    return directory.resolve(key + SUFFIX);
+  }
+
+  /**
+   * Method to get the file holding the summary of an entry.
+   *
+   * @param key the key of the entry.
+   * @return the path of the summary.
+   */
+  private Path summaryFile(String key) {
+    return directory.resolve(key + SUMMARY_SUFFIX);
+  }
+
+  /**
+   * Method to write the summary of an entry.
+   *
+   * @param file the file being written.
+   * @param summary what was reported while the input was read.
+   * @throws IOException if the file cannot be written.
+   */
+  private static void writeSummary(Path file, Diagnostics.Summary summary) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(file)))) {
+      out.writeInt(summary.warnings());
+      out.writeInt(summary.errors());
+      out.writeInt(summary.commands().size());
+      for (Map.Entry<String, Integer> command : summary.commands().entrySet()) {
+        writeString(out, command.getKey());
+        out.writeInt(command.getValue());
+      }
+      out.writeInt(summary.diagnostics().size());
+      for (Diagnostics.Diagnostic diagnostic : summary.diagnostics()) {
+        out.writeByte(diagnostic.severity().ordinal());
+        out.writeInt(diagnostic.line());
+        out.writeInt(diagnostic.column());
+        writeString(out, diagnostic.message());
+      }
+    }
+  }
+
+  /**
+   * Method to read the summary of an entry.
+   *
+   * @param file the file of the summary.
+   * @return what was reported while the input was read.
+   * @throws IOException if the file cannot be read or is damaged.
+   */
+  private static Diagnostics.Summary readSummary(Path file) throws IOException {
+    ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+    try {
+      int warnings = in.getInt();
+      int errors = in.getInt();
+      Map<String, Integer> commands = new LinkedHashMap<>();
+      for (int i = in.getInt(); i > 0; i--) {
+        commands.put(getString(in), in.getInt());
+      }
+      List<Diagnostics.Diagnostic> diagnostics = new ArrayList<>();
+      for (int i = in.getInt(); i > 0; i--) {
+        diagnostics.add(new Diagnostics.Diagnostic(Diagnostics.Severity.values()[in.get()],
+                in.getInt(), in.getInt(), getString(in)));
+      }
+      return new Diagnostics.Summary(commands, warnings, errors, diagnostics);
+    } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+      throw new IOException("Damaged cache summary: " + file, e);
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String getString(ByteBuffer in) {
+    int length = in.getInt();
+    String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+    in.position(in.position() + length);
+    return value;
+  }
+
+  /**
+   * Method to get the time an entry was last stored or read.
+   *
+   * @param entry the file of the entry.
+   * @return the time it was last used.
+   * @throws UncheckedIOException if the time cannot be read.
+   */
+  private static FileTime lastUsed(Path entry) throws UncheckedIOException {
+    try {
+      return Files.getLastModifiedTime(entry);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * A tuple for a cached result of parsing an input file.
+   *
+   * @param snapshots the snapshots the file produced.
+   * @param shapes the shapes in the album after the file was read, in draw order.
+   * @param summary what was reported while the file was read.
+   */
+  public record Entry(List<Snapshot> snapshots, List<IShape> shapes,
+                      Diagnostics.Summary summary) {
+  }
+}
@@ -0,0 +1,74 @@
+package photoalbum.controller;
+
+import java.util.Objects;
+
+import photoalbum.model.Command;
+
+/**
+ * One line of a command file after it has been parsed but before it is applied. Parsing needs no
+ * album, so lines can be parsed on any thread and applied later in file order. Every line knows
+ * its number within the text it was parsed from, for diagnostics. An InputReader for another
+ * format makes these directly, so its input goes through the same pipeline as command files.
+ */
+public sealed interface ParsedLine {
+
+  /**
+   * Method to get the number of the line within the text it was parsed from.
+   *
+   * @return the line number, counting from 1.
+   */
+  int line();
+
+  /**
+   * A line holding a change to the album.
+   *
+   * @param line the number of the line.
+   * @param command the change.
+   */
+  record Apply(int line, Command command) implements ParsedLine {
+  }
+
+  /**
+   * A line that opens a batch.
+   *
+   * @param line the number of the line.
+   */
+  record Begin(int line) implements ParsedLine {
+  }
+
+  /**
+   * A line that applies the open batch.
+   *
+   * @param line the number of the line.
+   */
+  record Commit(int line) implements ParsedLine {
+  }
+
+  /**
+   * A line starting with a word that is not a command.
+   *
+   * @param line the number of the line.
+   * @param command the word, in lower case.
+   */
+  record Unknown(int line, String command) implements ParsedLine {
+  }
+
+  /**
+   * A line that could not be parsed. The message is only built when it is asked for.
+   *
+   * @param line the number of the line.
+   * @param column the column the problem was found at, or 0 for the whole line.
+   * @param error what was wrong with the line.
+   */
+  record Failure(int line, int column, IllegalArgumentException error) implements ParsedLine {
+
+    /**
+     * Method to get what was wrong with the line.
+     *
+     * @return the message.
+     */
+    public String message() {
+      return Objects.requireNonNullElse(error.getMessage(), "invalid value");
+    }
+  }
+}
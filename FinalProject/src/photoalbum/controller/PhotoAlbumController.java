@@ -1,21 +1,57 @@
 package photoalbum.controller;
 
-import java.util.Scanner;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
 import javax.swing.*;
+import photoalbum.model.AlbumEvent;
 import photoalbum.model.IPhotoalbum;
+import photoalbum.model.IShape;
 import photoalbum.model.PhotoAlbum;
+import photoalbum.model.Snapshot;
+import photoalbum.model.SnapshotArchive;
+import photoalbum.views.FragmentCache;
 import photoalbum.views.GraphicalView;
+import photoalbum.views.IGraphicalView;
 import photoalbum.views.IPhotoAlbumView;
+import photoalbum.views.IWebView;
 import photoalbum.views.WebView;
 
 /**
  * A class for the constructor of the photo album.
  * Coordinates the actions between the model and the view.
+ * Running with the system property photoalbum.parseCache set to true looks command files up in
+ * a ParseCache in the user's cache directory first, so an input that has not changed since an
+ * earlier run is not parsed again; it still reports what parsing it reported.
+ * In follow mode the input is read while it is still being written, and each snapshot is sent
+ * to the views as soon as it is taken. In watch mode the input is read again whenever it is
+ * edited, and the views only redraw the snapshots that changed.
+ * Once the input has been read, one report says how many of each command were applied and how
+ * many lines failed; in quiet mode nothing else is printed while reading.
+ * The shapes a web page renders are cached in memory, so a page written again in watch mode only
+ * renders the snapshots that changed. Running with the system property photoalbum.diskFragments
+ * set to true also keeps them in the user's cache directory, for later runs.
  */
 public class PhotoAlbumController implements IPhotoAlbumController {
+  private static final long CACHE_BYTES = 256L * 1024 * 1024;
+  private static final long FRAGMENT_MEMORY_BYTES = 64L * 1024 * 1024;
+  private static final int SNAPSHOTS_PER_PAGE = 50;
+  private static final String DISK_FRAGMENTS_PROPERTY = "photoalbum.diskFragments";
+  private static final String PARSE_CACHE_PROPERTY = "photoalbum.parseCache";
+
   private final IPhotoalbum photoAlbum;
+  private final ParseCache cache;
+  private final Diagnostics diagnostics;
+  private final WebView.Output webOutput;
+  private final FragmentCache fragments;
   private InputProcessor inputProcessor;
   private IPhotoAlbumView graphicalView;
+  private List<Snapshot> stored;
+  private String followed;
+  private IWebView liveWebView;
+  private InputWatcher watcher;
+  private String watchedOutput;
+  private boolean watchesGraphical;
 
   /**
    * Constructor for a controller, has the input file, viewType and output file.
@@ -25,11 +61,57 @@ public class PhotoAlbumController implements IPhotoAlbumController {
    * @param output the output file.
    */
   public PhotoAlbumController(String input, ViewType viewType, String output) {
-    this.photoAlbum = new PhotoAlbum();
-    this.inputProcessor = new InputProcessor(photoAlbum);
+    this(input, viewType, output, InputMode.READ);
+  }
+
+  /**
+   * Constructor for a controller that can keep reading its input after it was first read.
+   *
+   * @param input the input file, or "-" to follow standard input.
+   * @param viewType the viewType for the display.
+   * @param output the output file.
+   * @param mode how the input is read; in FOLLOW and WATCH mode run() keeps reading it.
+   * @throws IllegalArgumentException if following or watching with a view type that is not
+   *         graphical or web.
+   */
+  public PhotoAlbumController(String input, ViewType viewType, String output, InputMode mode)
+          throws IllegalArgumentException {
+    this(input, viewType, output, mode, Diagnostics.Mode.VERBOSE);
+  }
+
+  /**
+   * Constructor for a controller that can keep reading its input and can read it quietly.
+   *
+   * @param input the input file, or "-" to follow standard input.
+   * @param viewType the viewType for the display.
+   * @param output the output file.
+   * @param mode how the input is read; in FOLLOW and WATCH mode run() keeps reading it.
+   * @param reporting whether each line's outcome is printed, or only the report at the end.
+   * @throws IllegalArgumentException if following or watching with a view type that is not
+   *         graphical or web.
+   */
+  public PhotoAlbumController(String input, ViewType viewType, String output, InputMode mode,
+                              Diagnostics.Mode reporting) throws IllegalArgumentException {
+    PhotoAlbum album = new PhotoAlbum();
+    this.photoAlbum = album;
+    this.cache = newParseCache();
+    this.diagnostics = new Diagnostics(reporting);
+    this.webOutput = viewType == ViewType.SHARED ? WebView.Output.SHARED : WebView.Output.FULL;
+    this.fragments = newFragmentCache();
+    this.inputProcessor = new InputProcessor(photoAlbum, diagnostics);
 
+    if (mode == InputMode.FOLLOW) {
+      initFollowing(input, viewType, output);
+      return;
+    }
+    if (mode == InputMode.WATCH) {
+      initWatching(input, viewType, output, album);
+      return;
+    }
 
-    processFiles(input);
+    if (viewType != ViewType.COMPILE) {
+      processFiles(input);
+    }
 
     try {
       switch (viewType) {
@@ -43,12 +125,34 @@ public class PhotoAlbumController implements IPhotoAlbumController {
           initWebView(output);
           break;
 
+        case SHARED:
+          System.out.println("Initializing web view with shared shapes...");
+          initWebView(output);
+          break;
+
+        case PAGES:
+          System.out.println("Writing paged web view...");
+          newWebView(snapshots()).generateWebPages(output, SNAPSHOTS_PER_PAGE);
+          System.out.println("Paged web view written to: " + output);
+          break;
+
         case BOTH:
           System.out.println("Initializing both views...");
           initGraphicalView();
           initWebView(output);
           break;
 
+        case ARCHIVE:
+          System.out.println("Writing snapshot archive...");
+          writeArchive(output);
+          break;
+
+        case COMPILE:
+          System.out.println("Compiling command file...");
+          CommandCompiler.compile(Path.of(input), Path.of(output));
+          System.out.println("Compiled command file written at: " + output);
+          break;
+
         default:
           throw new IllegalArgumentException("Unsupported view type: " + viewType);
       }
@@ -64,22 +168,27 @@ public class PhotoAlbumController implements IPhotoAlbumController {
    * @return a new controller instance or null.
    */
   public static PhotoAlbumController createController(String[] args) {
-    try (Scanner scanner = new Scanner(System.in)) {
-      if (args.length != 3) {
+    try {
+      if (args.length < 3 || args.length > 5) {
         System.out.println("Usage: java -jar photoalbum.jar <input-file> "
-                + "<view-type> <output-file>");
-        System.out.println("View Types: GRAPHICAL, WEB, BOTH");
+                + "<view-type> <output-file> [read|follow|watch] [verbose|quiet]");
+        System.out.println("View Types: GRAPHICAL, WEB, BOTH, ARCHIVE, COMPILE, SHARED, PAGES");
         return null;
       }
 
       String inputFile = args[0];
       ViewType viewType = ViewType.valueOf(args[1].toUpperCase());
       String outputFile = args[2];
+      InputMode mode = args.length >= 4 ? InputMode.valueOf(args[3].toUpperCase())
+              : InputMode.READ;
+      Diagnostics.Mode reporting = args.length == 5
+              ? Diagnostics.Mode.valueOf(args[4].toUpperCase()) : Diagnostics.Mode.VERBOSE;
 
-      return new PhotoAlbumController(inputFile, viewType, outputFile);
+      return new PhotoAlbumController(inputFile, viewType, outputFile, mode, reporting);
     } catch (IllegalArgumentException e) {
       System.err.println("Error: " + e.getMessage());
-      System.err.println("Valid view types are: GRAPHICAL, WEB, BOTH");
+      System.err.println("Valid view types are: GRAPHICAL, WEB, BOTH, ARCHIVE, COMPILE, SHARED, "
+              + "PAGES");
     } catch (Exception e) {
       System.err.println("Error processing photo album: " + e.getMessage());
     }
@@ -88,7 +197,8 @@ public class PhotoAlbumController implements IPhotoAlbumController {
   }
 
   /**
-   * Method to run an instance of the controller.
+   * Method to run an instance of the controller. In follow mode this reads the input until it
+   * ends, or until the thread is interrupted when following a file.
    */
   public void run() {
     if (graphicalView instanceof JFrame) {
@@ -97,15 +207,204 @@ public class PhotoAlbumController implements IPhotoAlbumController {
         ((JFrame) graphicalView).repaint();
       });
     }
+
+    if (followed != null) {
+      if (followed.equals("-")) {
+        inputProcessor.followStream(System.in);
+      } else {
+        inputProcessor.followFile(followed);
+      }
+      diagnostics.report(System.out);
+      if (liveWebView != null) {
+        liveWebView.finishWebPage();
+      }
+    }
+
+    if (watcher != null) {
+      try {
+        watcher.watch(this::showChanges);
+      } catch (IOException e) {
+        System.err.println("Error watching file: " + e.getMessage());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Method to read the input for watching, and to set up the views that are redrawn when it
+   * changes.
+   *
+   * @param input the input file.
+   * @param viewType the viewType for the display.
+   * @param output the output file.
+   * @param album the album the input is applied to.
+   * @throws IllegalArgumentException if the view type is not graphical or web.
+   */
+  private void initWatching(String input, ViewType viewType, String output, PhotoAlbum album)
+          throws IllegalArgumentException {
+    if (viewType != ViewType.GRAPHICAL && viewType != ViewType.WEB && viewType != ViewType.BOTH
+            && viewType != ViewType.SHARED) {
+      throw new IllegalArgumentException("Watch mode needs a graphical or web view");
+    }
+    watcher = new InputWatcher(Path.of(input), album);
+    try {
+      watcher.refresh();
+    } catch (IOException e) {
+      System.err.println("Error reading file: " + e.getMessage());
+    }
+
+    if (viewType != ViewType.GRAPHICAL) {
+      watchedOutput = output;
+      liveWebView = newWebView(List.of());
+    }
+    showChanges(0);
+    if (viewType != ViewType.WEB && viewType != ViewType.SHARED) {
+      watchesGraphical = true;
+      initGraphicalView();
+    }
+  }
+
+  /**
+   * Method to redraw the snapshots from the first one that changed.
+   *
+   * @param firstChanged the index of the first snapshot that changed.
+   */
+  private void showChanges(int firstChanged) {
+    List<Snapshot> snapshots = photoAlbum.getSnapshots();
+    if (liveWebView != null) {
+      try {
+        liveWebView.updateWebPage(watchedOutput, snapshots, firstChanged);
+        System.out.println("Web view updated at: " + watchedOutput);
+      } catch (IOException e) {
+        System.err.println("Error writing web view: " + e.getMessage());
+      }
+    }
+    if (watchesGraphical) {
+      SwingUtilities.invokeLater(() -> {
+        if (graphicalView instanceof IGraphicalView view) {
+          view.updateSnapshots(firstChanged, snapshots);
+        }
+      });
+    }
+  }
+
+  /**
+   * Method to set up the views for following the input, and to send them each snapshot as it is
+   * taken. The web page gets the snapshot on the reading thread; the graphical view gets it on
+   * the event dispatch thread.
+   *
+   * @param input the input file, or "-" for standard input.
+   * @param viewType the viewType for the display.
+   * @param output the output file.
+   * @throws IllegalArgumentException if the view type is not graphical or web.
+   */
+  private void initFollowing(String input, ViewType viewType, String output)
+          throws IllegalArgumentException {
+    boolean graphical = viewType == ViewType.GRAPHICAL || viewType == ViewType.BOTH;
+    boolean web = viewType == ViewType.WEB || viewType == ViewType.BOTH
+            || viewType == ViewType.SHARED;
+    if (!graphical && !web) {
+      throw new IllegalArgumentException("Follow mode needs a graphical or web view");
+    }
+    followed = input;
+    stored = List.of();
+
+    if (web) {
+      liveWebView = newWebView(stored);
+      try {
+        liveWebView.startWebPage(output);
+      } catch (IOException e) {
+        throw new IllegalStateException("Failed to initialize view: " + e.getMessage(), e);
+      }
+      System.out.println("Web view streaming to: " + output);
+    }
+    if (graphical) {
+      initGraphicalView();
+    }
+
+    photoAlbum.addListener(event -> {
+      for (AlbumEvent change : event.unpack()) {
+        if (change.kind() != AlbumEvent.Kind.SNAPSHOT_TAKEN) {
+          continue;
+        }
+        Snapshot snapshot = change.snapshot();
+        if (web) {
+          liveWebView.appendSnapshot(snapshot);
+        }
+        if (graphical) {
+          SwingUtilities.invokeLater(
+                  () -> ((IGraphicalView) graphicalView).addSnapshot(snapshot));
+        }
+      }
+    });
   }
 
   @Override
   public void processFiles(String input) {
+    if (SnapshotArchive.isArchive(Path.of(input))) {
+      try (SnapshotArchive archive = SnapshotArchive.open(Path.of(input))) {
+        stored = List.copyOf(archive.asList());
+        return;
+      } catch (IOException e) {
+        System.err.println("Error reading archive: " + e.getMessage());
+      }
+    }
+
+    String key = null;
+    if (cache != null) {
+      try {
+        key = ParseCache.key(Path.of(input));
+        ParseCache.Entry cached = cache.lookup(key);
+        if (cached != null) {
+          restore(cached);
+          System.out.println("Loaded " + input + " from the parse cache");
+          diagnostics.replay(cached.summary());
+          diagnostics.report(System.out);
+          return;
+        }
+      } catch (IOException e) {
+        key = null;
+      }
+    }
+
     if (this.inputProcessor == null) {
-      this.inputProcessor = new InputProcessor(photoAlbum);
+      this.inputProcessor = new InputProcessor(photoAlbum, diagnostics);
     }
 
     this.inputProcessor.readDoc(input);
+    this.inputProcessor.getDiagnostics().report(System.out);
+
+    if (key != null) {
+      try {
+        cache.store(key, photoAlbum.getSnapshots(), photoAlbum.getAllShapes(),
+                diagnostics.summary());
+      } catch (IOException e) {
+        System.err.println("Error writing parse cache: " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Method to put the album back in the state a cached parse of the input left it in.
+   *
+   * @param cached the cache entry.
+   */
+  private void restore(ParseCache.Entry cached) {
+    stored = cached.snapshots();
+    for (IShape shape : cached.shapes()) {
+      photoAlbum.addShape(shape);
+      photoAlbum.setZIndex(shape.getName(), shape.getZIndex());
+    }
+  }
+
+  /**
+   * Method to get the snapshots shown by the views, either from the album or from an archive.
+   *
+   * @return the List of snapshots.
+   */
+  private List<Snapshot> snapshots() {
+    return stored != null ? stored : photoAlbum.getSnapshots();
   }
 
   /**
@@ -113,7 +412,7 @@ public class PhotoAlbumController implements IPhotoAlbumController {
    */
   private void initGraphicalView() {
     SwingUtilities.invokeLater(() -> {
-      graphicalView = new GraphicalView(photoAlbum.getSnapshots());
+      graphicalView = new GraphicalView(snapshots());
       ((JFrame) graphicalView).setVisible(true);
     });
   }
@@ -124,11 +423,72 @@ public class PhotoAlbumController implements IPhotoAlbumController {
    * @param output the output file path.
    */
   private void initWebView(String output) {
-    IPhotoAlbumView webView = new WebView(photoAlbum.getSnapshots());
+    IPhotoAlbumView webView = newWebView(snapshots());
     ((WebView) webView).generateWebPage(output);
     System.out.println("Web view generated at: " + output);
   }
 
+  /**
+   * Method to create a web view that keeps the shapes it renders in the fragment cache, so a
+   * page generated again for an edited input only renders the snapshots that changed.
+   *
+   * @param snapshots the snapshots of the view.
+   * @return the web view.
+   */
+  private WebView newWebView(List<Snapshot> snapshots) {
+    WebView view = new WebView(snapshots, webOutput);
+    view.setFragmentCache(fragments);
+    return view;
+  }
+
+  /**
+   * Method to create the parse cache in the user's cache directory, or none if the user did not
+   * ask for it or that directory cannot be made private to the user.
+   *
+   * @return the parse cache, or null.
+   */
+  private static ParseCache newParseCache() {
+    if (!Boolean.getBoolean(PARSE_CACHE_PROPERTY)) {
+      return null;
+    }
+    try {
+      return new ParseCache(CacheDirectories.forUser("parse"), CACHE_BYTES);
+    } catch (IOException e) {
+      System.err.println("Not caching parsed input: " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Method to create the fragment cache, in memory and, if the user asked for it, in the user's
+   * cache directory. The directory is left out if it cannot be made private to the user.
+   *
+   * @return the fragment cache.
+   */
+  private static FragmentCache newFragmentCache() {
+    if (!Boolean.getBoolean(DISK_FRAGMENTS_PROPERTY)) {
+      return new FragmentCache(FRAGMENT_MEMORY_BYTES);
+    }
+    try {
+      return new FragmentCache(FRAGMENT_MEMORY_BYTES, CacheDirectories.forUser("fragments"),
+              CACHE_BYTES);
+    } catch (IOException e) {
+      System.err.println("Not caching web fragments on disk: " + e.getMessage());
+      return new FragmentCache(FRAGMENT_MEMORY_BYTES);
+    }
+  }
+
+  /**
+   * Method to write the snapshots to an archive.
+   *
+   * @param output the archive file path.
+   * @throws IOException if the archive cannot be written.
+   */
+  private void writeArchive(String output) throws IOException {
+    SnapshotArchive.write(Path.of(output), snapshots());
+    System.out.println("Snapshot archive written at: " + output);
+  }
+
   /**
    * Generic file reader.
    *
@@ -1,10 +1,19 @@
 package photoalbum.controller;
 
 /**
- * An enum for the types of Views.
+ * An enum for the types of Views. ARCHIVE writes the snapshots to a binary snapshot archive
+ * that can later be opened as input instead of a command file. COMPILE writes the commands
+ * themselves to a compiled command file that loads without being parsed again. SHARED writes a
+ * web page in which each distinct shape is written once and later snapshots refer to it. PAGES
+ * writes a directory with an index page that loads the snapshots a page at a time as they are
+ * scrolled to, for albums too big for one page.
  */
 public enum ViewType {
   GRAPHICAL,
   WEB,
-  BOTH
+  BOTH,
+  ARCHIVE,
+  COMPILE,
+  SHARED,
+  PAGES
 }
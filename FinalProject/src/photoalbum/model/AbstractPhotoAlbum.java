@@ -0,0 +1,231 @@
+package photoalbum.model;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Class to represent the snapshot bookkeeping shared by every album, independent of how the
+ * album stores its shapes. The snapshot list is guarded by the album's lock, so albums that are
+ * shared between threads can use it as it is.
+ * Batches hold the lock while they run and are rolled back through the beginBatch and endBatch
+ * hooks, which each album implements for its own storage.
+ * Listeners are called on the thread that made a change. Single changes reach them after the
+ * album's lock is released. The events of a batch are held back until it commits and are dropped
+ * if it rolls back; a committed batch is sent as one event while it still holds the lock, so
+ * batches reach the listeners in the order they committed.
+ * Events carry the shape that changed frozen, as the album keeps it, so no listener can change
+ * the album, its snapshots or what the other listeners see.
+ */
+abstract class AbstractPhotoAlbum implements IPhotoalbum {
+  private final List<Snapshot> snapshotList;
+  private final Map<Long, Integer> snapshotIndex;
+  private final Clock clock;
+  private final List<AlbumListener> listeners;
+  private final ThreadLocal<List<AlbumEvent>> batchEvents;
+
+  /**
+   * A constructor for the AbstractPhotoAlbum.
+   *
+   * @param clock the clock used to timestamp snapshots.
+   */
+  AbstractPhotoAlbum(Clock clock) {
+    this.clock = clock;
+    this.snapshotList = new ArrayList<>();
+    this.snapshotIndex = new HashMap<>();
+    this.listeners = new CopyOnWriteArrayList<>();
+    this.batchEvents = new ThreadLocal<>();
+  }
+
+  /**
+   * Method to append a snapshot whose shapes come from the given source and tell the listeners.
+   *
+   * @param description the message for the snapshot.
+   * @param shapes the source of the frozen shapes.
+   * @return the new Snapshot.
+   */
+  protected Snapshot addSnapshot(String description, Supplier<List<IShape>> shapes) {
+    Snapshot snapshot = recordSnapshot(description, shapes);
+    fireSnapshot(snapshot);
+    return snapshot;
+  }
+
+  /**
+   * Method to append a snapshot without telling the listeners, for albums that need to hold
+   * their own lock while the snapshot is taken. They call fireSnapshot once it is released.
+   *
+   * @param description the message for the snapshot.
+   * @param shapes the source of the frozen shapes.
+   * @return the new Snapshot.
+   */
+  protected synchronized Snapshot recordSnapshot(String description,
+                                                 Supplier<List<IShape>> shapes) {
+    Snapshot snapshot = new Snapshot(description, shapes, clock);
+    snapshotIndex.put(snapshot.getId(), snapshotList.size());
+    snapshotList.add(snapshot);
+    return snapshot;
+  }
+
+  /**
+   * Method to tell the listeners a snapshot was taken.
+   *
+   * @param snapshot the new snapshot.
+   */
+  protected void fireSnapshot(Snapshot snapshot) {
+    if (!listeners.isEmpty()) {
+      fire(AlbumEvent.ofSnapshot(snapshot));
+    }
+  }
+
+  /**
+   * Method to tell the listeners about a change that did not make a snapshot.
+   *
+   * @param kind the kind of change.
+   * @param name the name of the shape that changed, or null.
+   * @param shape the shape after the change, frozen or not held by anyone else, or null.
+   */
+  protected void fireShape(AlbumEvent.Kind kind, String name, IShape shape) {
+    if (!listeners.isEmpty()) {
+      fire(AlbumEvent.ofShape(kind, name, shape == null ? null : FrozenShape.of(shape)));
+    }
+  }
+
+  /**
+   * Method to check whether anyone is listening, so albums can skip building event data.
+   *
+   * @return true if the album has at least one listener.
+   */
+  protected boolean hasListeners() {
+    return !listeners.isEmpty();
+  }
+
+  @Override
+  public void addListener(AlbumListener listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void removeListener(AlbumListener listener) {
+    listeners.remove(listener);
+  }
+
+  @Override
+  public synchronized void applyBatch(List<Command> commands) throws IllegalArgumentException {
+    List<AlbumEvent> events = new ArrayList<>();
+    batchEvents.set(events);
+    try {
+      applyBatchLocked(commands, events);
+    } finally {
+      batchEvents.remove();
+    }
+    if (!events.isEmpty()) {
+      fire(AlbumEvent.ofBatch(events));
+    }
+  }
+
+  /**
+   * Method to apply a batch while holding the album's lock, retrying it if the album asks to.
+   *
+   * @param commands the changes, in the order they are applied.
+   * @param events the list collecting the events of the batch.
+   * @throws IllegalArgumentException if any of the commands is rejected.
+   */
+  private void applyBatchLocked(List<Command> commands, List<AlbumEvent> events)
+          throws IllegalArgumentException {
+    int snapshots = snapshotList.size();
+    boolean committed = false;
+    while (!committed) {
+      events.clear();
+      beginBatch();
+      try {
+        for (Command command : commands) {
+          command.applyTo(this);
+        }
+      } catch (RuntimeException e) {
+        endBatch(false);
+        truncateSnapshots(snapshots);
+        throw e;
+      }
+      committed = endBatch(true);
+      if (!committed) {
+        truncateSnapshots(snapshots);
+      }
+    }
+  }
+
+  /**
+   * Method to start recording what a batch changes, so it can be undone.
+   */
+  protected abstract void beginBatch();
+
+  /**
+   * Method to finish a batch, either keeping its changes or undoing all of them.
+   *
+   * @param commit true to keep the changes, false to undo them.
+   * @return false if the changes could not be kept and the batch has to be applied again.
+   */
+  protected abstract boolean endBatch(boolean commit);
+
+  @Override
+  public synchronized List<Snapshot> getSnapshots() {
+    return new ArrayList<>(snapshotList);
+  }
+
+  @Override
+  public synchronized Snapshot getSnapshot(long id) throws IllegalArgumentException {
+    return snapshotList.get(getSnapshotIndex(id));
+  }
+
+  @Override
+  public synchronized int getSnapshotIndex(long id) throws IllegalArgumentException {
+    Integer index = snapshotIndex.get(id);
+    if (index == null) {
+      throw new IllegalArgumentException("Snapshot does not exist");
+    }
+    return index;
+  }
+
+  /**
+   * Method to send an event to the listeners, or to hold it if this thread is in a batch.
+   *
+   * @param event the change that was made.
+   */
+  private void fire(AlbumEvent event) {
+    List<AlbumEvent> held = batchEvents.get();
+    if (held != null) {
+      held.add(event);
+      return;
+    }
+    for (AlbumListener listener : listeners) {
+      listener.onEvent(event);
+    }
+  }
+
+  /**
+   * Method to drop the snapshots taken after a point.
+   *
+   * @param size the number of snapshots to keep.
+   */
+  protected synchronized void truncateSnapshots(int size) {
+    while (snapshotList.size() > size) {
+      Snapshot snapshot = snapshotList.remove(snapshotList.size() - 1);
+      snapshotIndex.remove(snapshot.getId());
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    StringBuilder sb = new StringBuilder();
+
+    sb.append("Printing Snapshots\n");
+    for (Snapshot snapshot : snapshotList) {
+      sb.append(snapshot.toString()).append("\n");
+    }
+
+    return sb.toString();
+  }
+}
@@ -9,6 +9,7 @@ abstract class AbstractShape implements IShape {
   protected Coordinate position;
   protected double firstDimension;
   protected double secondDimension;
+  protected long zIndex;
 
   /**
    * A constructor for the AbstractShape.
@@ -65,6 +66,16 @@ abstract class AbstractShape implements IShape {
     return secondDimension;
   }
 
+  @Override
+  public long getZIndex() {
+    return zIndex;
+  }
+
+  @Override
+  public void setZIndex(long zIndex) {
+    this.zIndex = zIndex;
+  }
+
   @Override
   public void resize(double firstDimension, double secondDimension) throws IllegalArgumentException {
     if (firstDimension < 0 || secondDimension < 0) {
@@ -0,0 +1,75 @@
+package photoalbum.model;
+
+import java.util.List;
+
+/**
+ * A tuple describing one change to an album, as sent to its listeners. A batch is sent as a
+ * single event that holds the changes it made, in order.
+ *
+ * @param kind the kind of change.
+ * @param name the name of the shape that changed, or null if the change is not to one shape.
+ * @param shape the shape after the change, which cannot be changed, or null if it was removed or
+ *        no shape changed.
+ * @param snapshot the snapshot that was taken, or null for changes to shapes.
+ * @param changes the changes made by a batch, in order, or an empty list for other events.
+ */
+public record AlbumEvent(Kind kind, String name, IShape shape, Snapshot snapshot,
+                         List<AlbumEvent> changes) {
+
+  /**
+   * The kinds of changes an album reports.
+   */
+  public enum Kind {
+    SHAPE_ADDED,
+    SHAPE_REMOVED,
+    SHAPE_MOVED,
+    SHAPE_RECOLORED,
+    SHAPE_RESIZED,
+    SHAPE_LAYERED,
+    SNAPSHOT_TAKEN,
+    ALBUM_RESET,
+    BATCH_APPLIED
+  }
+
+  /**
+   * Method to create an event for a change to one shape.
+   *
+   * @param kind the kind of change.
+   * @param name the name of the shape.
+   * @param shape the shape after the change, or null if it was removed.
+   * @return the new event.
+   */
+  static AlbumEvent ofShape(Kind kind, String name, IShape shape) {
+    return new AlbumEvent(kind, name, shape, null, List.of());
+  }
+
+  /**
+   * Method to create an event for a snapshot that was taken.
+   *
+   * @param snapshot the new snapshot.
+   * @return the new event.
+   */
+  static AlbumEvent ofSnapshot(Snapshot snapshot) {
+    return new AlbumEvent(Kind.SNAPSHOT_TAKEN, null, null, snapshot, List.of());
+  }
+
+  /**
+   * Method to create the event for a batch that committed.
+   *
+   * @param changes the changes the batch made, in order.
+   * @return the new event.
+   */
+  static AlbumEvent ofBatch(List<AlbumEvent> changes) {
+    return new AlbumEvent(Kind.BATCH_APPLIED, null, null, null, List.copyOf(changes));
+  }
+
+  /**
+   * Method to list the single changes this event stands for, for listeners that handle each
+   * change on its own.
+   *
+   * @return the changes of a batch, or a List holding only this event.
+   */
+  public List<AlbumEvent> unpack() {
+    return kind == Kind.BATCH_APPLIED ? changes : List.of(this);
+  }
+}
@@ -0,0 +1,54 @@
+package photoalbum.model;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * A Flow.Publisher of the changes made to an album. Each subscriber gets its own bounded buffer
+ * and is fed on its own executor task. When a subscriber falls a full buffer behind, the thread
+ * changing the album waits for it, so a slow consumer slows the producer down instead of
+ * letting events pile up.
+ */
+public class AlbumEventPublisher implements Flow.Publisher<AlbumEvent>, AutoCloseable {
+  private final IPhotoalbum album;
+  private final SubmissionPublisher<AlbumEvent> publisher;
+  private final AlbumListener listener;
+
+  /**
+   * A constructor for a publisher with the default buffer size.
+   *
+   * @param album the album whose changes are published.
+   */
+  public AlbumEventPublisher(IPhotoalbum album) {
+    this(album, Flow.defaultBufferSize());
+  }
+
+  /**
+   * A constructor for a publisher with the given buffer size.
+   *
+   * @param album the album whose changes are published.
+   * @param bufferSize the most events held for each subscriber.
+   * @throws IllegalArgumentException if the buffer size is not positive.
+   */
+  public AlbumEventPublisher(IPhotoalbum album, int bufferSize) throws IllegalArgumentException {
+    this.album = album;
+    this.publisher = new SubmissionPublisher<>(ForkJoinPool.commonPool(), bufferSize);
+    this.listener = publisher::submit;
+    album.addListener(listener);
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super AlbumEvent> subscriber) {
+    publisher.subscribe(subscriber);
+  }
+
+  /**
+   * Method to stop listening to the album and complete every subscriber.
+   */
+  @Override
+  public void close() {
+    album.removeListener(listener);
+    publisher.close();
+  }
+}
@@ -0,0 +1,16 @@
+package photoalbum.model;
+
+/**
+ * An interface for objects that want to hear about every change made to an album.
+ */
+@FunctionalInterface
+public interface AlbumListener {
+
+  /**
+   * Method called after the album has changed. It runs on the thread that made the change, so
+   * it should return quickly.
+   *
+   * @param event the change that was made.
+   */
+  void onEvent(AlbumEvent event);
+}
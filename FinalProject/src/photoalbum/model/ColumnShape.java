@@ -0,0 +1,114 @@
+package photoalbum.model;
+
+/**
+ * A flyweight shape that reads one slot of a ShapeColumns instead of holding its own fields.
+ * It cannot be changed: the album changes its columns itself, so that every change is logged,
+ * and hands out copies of the shapes in its live columns.
+ */
+class ColumnShape implements IShape {
+  private final ShapeColumns columns;
+  private final int slot;
+
+  /**
+   * A constructor for a view over one slot.
+   *
+   * @param columns the columns holding the shape.
+   * @param slot the slot of the shape in the columns.
+   */
+  ColumnShape(ShapeColumns columns, int slot) {
+    this.columns = columns;
+    this.slot = slot;
+  }
+
+  @Override
+  public String getName() {
+    return columns.names[columns.nameIndex[slot]];
+  }
+
+  @Override
+  public Color getColor() {
+    return columns.getColor(slot);
+  }
+
+  @Override
+  public void setColor(Color color) {
+    throw readOnly();
+  }
+
+  @Override
+  public Coordinate getPosition() {
+    return new Coordinate(columns.x[slot], columns.y[slot]);
+  }
+
+  @Override
+  public void setPosition(Coordinate position) {
+    throw readOnly();
+  }
+
+  @Override
+  public String getType() {
+    return columns.type[slot] == ShapeColumns.OVAL ? "oval" : "rectangle";
+  }
+
+  @Override
+  public long getZIndex() {
+    return columns.z[slot];
+  }
+
+  @Override
+  public void setZIndex(long zIndex) {
+    throw readOnly();
+  }
+
+  @Override
+  public IShape copy() {
+    Coordinate position = getPosition();
+    Color color = getColor();
+    IShape shape = columns.type[slot] == ShapeColumns.OVAL
+            ? new Oval(getName(), position, color, getFirstDimension(), getSecondDimension())
+            : new Rectangle(getName(), position, getFirstDimension(), getSecondDimension(), color);
+    shape.setZIndex(getZIndex());
+    return shape;
+  }
+
+  @Override
+  public void resize(double dx, double dy) {
+    throw readOnly();
+  }
+
+  @Override
+  public double getFirstDimension() {
+    return columns.width[slot];
+  }
+
+  @Override
+  public double getSecondDimension() {
+    return columns.height[slot];
+  }
+
+  @Override
+  public boolean contains(Coordinate point) {
+    double x = columns.x[slot];
+    double y = columns.y[slot];
+    double w = columns.width[slot];
+    double h = columns.height[slot];
+    if (columns.type[slot] == ShapeColumns.OVAL) {
+      return Oval.contains(x, y, w, h, point);
+    }
+    return point.x() >= x && point.x() <= x + w && point.y() >= y && point.y() <= y + h;
+  }
+
+  /**
+   * Method to create the exception for an attempt to change the shape.
+   *
+   * @return the UnsupportedOperationException.
+   */
+  private static UnsupportedOperationException readOnly() {
+    return new UnsupportedOperationException("Album shapes cannot be changed; change a copy");
+  }
+
+  @Override
+  public String toString() {
+    return copy().toString();
+  }
+}
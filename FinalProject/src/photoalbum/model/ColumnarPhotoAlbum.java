@@ -0,0 +1,344 @@
+package photoalbum.model;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A photo album for very large numbers of shapes. Instead of one object per shape, the shapes
+ * live in parallel primitive arrays (position, size, color channels, a type byte and an index into
+ * a name dictionary). Snapshots copy the arrays, which costs a few large allocations instead of
+ * one per shape, and their shapes are read-only flyweight views over the copies. Every other shape
+ * the album hands out is a copy, since a view over the live arrays would change with the album
+ * and see another shape once its slot is reused.
+ * Colors keep their exact channel values, as in PhotoAlbum. The columns also keep the slots in
+ * drawing order, which new shapes only append to, so it is sorted only after a layer change or
+ * removal.
+ * Spatial queries use a grid of slot numbers that reads the boxes from the coordinate arrays, so
+ * the index adds no object per shape either. Inside a batch every change logs how to undo itself,
+ * index included, so a failed batch is rolled back without copying the columns.
+ */
+public class ColumnarPhotoAlbum extends AbstractPhotoAlbum {
+  private final Map<String, Integer> nameIds;
+  private String[] names;
+  private int nameCount;
+  private int[] slotByName;
+  private final ShapeColumns columns;
+  private final SlotGrid grid;
+  private int[] freeSlots;
+  private int freeCount;
+  private int size;
+  private long topZIndex;
+  private List<Runnable> undoLog;
+
+  /**
+   * A constructor for the columnar photo album class.
+   */
+  public ColumnarPhotoAlbum() {
+    this(Clock.systemDefaultZone());
+  }
+
+  /**
+   * A constructor for a columnar photo album that reads snapshot timestamps from the given clock.
+   *
+   * @param clock the clock used to timestamp snapshots.
+   */
+  public ColumnarPhotoAlbum(Clock clock) {
+    super(clock);
+    nameIds = new HashMap<>();
+    names = new String[16];
+    slotByName = new int[16];
+    columns = new ShapeColumns(names);
+    grid = new SlotGrid(columns, GridCells.CELL_SIZE);
+    freeSlots = new int[16];
+  }
+
+  @Override
+  public void addShape(IShape shape) throws IllegalArgumentException {
+    int id = nameId(shape.getName());
+    if (slotByName[id] >= 0) {
+      throw new IllegalArgumentException("This shape exists");
+    }
+    byte type = ShapeColumns.typeOf(shape.getType());
+
+    int slot;
+    boolean reused = freeCount > 0;
+    if (reused) {
+      slot = freeSlots[--freeCount];
+    } else {
+      columns.ensureCapacity();
+      slot = columns.count++;
+    }
+    long previousTop = topZIndex;
+    remember(() -> {
+      grid.remove(slot);
+      columns.type[slot] = ShapeColumns.FREE;
+      slotByName[id] = -1;
+      if (reused) {
+        freeSlots[freeCount++] = slot;
+      } else {
+        columns.count--;
+      }
+      columns.invalidateOrder();
+      topZIndex = previousTop;
+      size--;
+    });
+    columns.x[slot] = shape.getPosition().x();
+    columns.y[slot] = shape.getPosition().y();
+    columns.width[slot] = shape.getFirstDimension();
+    columns.height[slot] = shape.getSecondDimension();
+    columns.setColor(slot, shape.getColor());
+    columns.type[slot] = type;
+    columns.z[slot] = ++topZIndex;
+    columns.nameIndex[slot] = id;
+    slotByName[id] = slot;
+    grid.add(slot);
+    columns.appendToOrder(slot);
+    size++;
+    notifyListeners(AlbumEvent.Kind.SHAPE_ADDED, slot);
+  }
+
+  @Override
+  public void removeShape(IShape shape) throws IllegalArgumentException {
+    int slot = slotOf(shape.getName(), "Shape is not in the Album");
+    byte type = columns.type[slot];
+    remember(() -> {
+      freeCount--;
+      columns.type[slot] = type;
+      slotByName[columns.nameIndex[slot]] = slot;
+      grid.add(slot);
+      columns.invalidateOrder();
+      size++;
+    });
+    grid.remove(slot);
+    columns.type[slot] = ShapeColumns.FREE;
+    slotByName[columns.nameIndex[slot]] = -1;
+    if (freeCount == freeSlots.length) {
+      freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+    }
+    freeSlots[freeCount++] = slot;
+    columns.invalidateOrder();
+    size--;
+    fireShape(AlbumEvent.Kind.SHAPE_REMOVED, shape.getName(), null);
+  }
+
+  @Override
+  public IShape getShape(String name) throws IllegalArgumentException {
+    return new ColumnShape(columns, slotOf(name, "Getter: Shape does not exist")).copy();
+  }
+
+  @Override
+  public List<IShape> getAllShapes() {
+    return copiesOf(columns.drawOrder());
+  }
+
+  @Override
+  public void moveShape(String name, Coordinate pos) {
+    int slot = slotOf(name, "Transpose: Shape does not exist");
+    double oldX = columns.x[slot];
+    double oldY = columns.y[slot];
+    remember(() -> place(slot, oldX, oldY, columns.width[slot], columns.height[slot]));
+    place(slot, pos.x(), pos.y(), columns.width[slot], columns.height[slot]);
+    notifyListeners(AlbumEvent.Kind.SHAPE_MOVED, slot);
+  }
+
+  @Override
+  public void setColor(String name, Color color) {
+    int slot = slotOf(name, "Color: Shape does not exist");
+    Color oldColor = columns.getColor(slot);
+    remember(() -> columns.setColor(slot, oldColor));
+    columns.setColor(slot, color);
+    notifyListeners(AlbumEvent.Kind.SHAPE_RECOLORED, slot);
+  }
+
+  @Override
+  public void resizeShape(String name, double x, double y) {
+    int slot = slotOf(name, "Transform: Shape does not exist");
+    if (x < 0 || y < 0) {
+      throw new IllegalArgumentException();
+    }
+    double oldWidth = columns.width[slot];
+    double oldHeight = columns.height[slot];
+    remember(() -> place(slot, columns.x[slot], columns.y[slot], oldWidth, oldHeight));
+    place(slot, columns.x[slot], columns.y[slot], x, y);
+    notifyListeners(AlbumEvent.Kind.SHAPE_RESIZED, slot);
+  }
+
+  @Override
+  public void setZIndex(String name, long zIndex) {
+    int slot = slotOf(name, "Layer: Shape does not exist");
+    long oldZ = columns.z[slot];
+    long previousTop = topZIndex;
+    remember(() -> {
+      columns.z[slot] = oldZ;
+      columns.invalidateOrder();
+      topZIndex = previousTop;
+    });
+    columns.z[slot] = zIndex;
+    columns.invalidateOrder();
+    topZIndex = Math.max(topZIndex, zIndex);
+    notifyListeners(AlbumEvent.Kind.SHAPE_LAYERED, slot);
+  }
+
+  @Override
+  public List<IShape> shapesIntersecting(double x, double y, double width, double height) {
+    return copiesOf(grid.intersecting(x, y, width, height));
+  }
+
+  @Override
+  public List<IShape> shapesContaining(Coordinate point) {
+    List<IShape> result = new ArrayList<>();
+    for (int slot : grid.intersecting(point.x(), point.y(), 0, 0)) {
+      ColumnShape shape = new ColumnShape(columns, slot);
+      if (shape.contains(point)) {
+        result.add(shape.copy());
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public List<IShape> nearestShapes(Coordinate point, int k) {
+    return copiesOf(grid.nearest(point.x(), point.y(), Math.min(k, size)));
+  }
+
+  @Override
+  public void takeSnapshot(String s) {
+    addSnapshot(s, columns.freeze(size)::views);
+  }
+
+  @Override
+  public void reset() {
+    Arrays.fill(columns.type, 0, columns.count, ShapeColumns.FREE);
+    Arrays.fill(slotByName, 0, nameCount, -1);
+    columns.count = 0;
+    columns.clearOrder();
+    grid.clear();
+    freeCount = 0;
+    size = 0;
+    fireShape(AlbumEvent.Kind.ALBUM_RESET, null, null);
+  }
+
+  @Override
+  protected void beginBatch() {
+    undoLog = new ArrayList<>();
+  }
+
+  @Override
+  protected boolean endBatch(boolean commit) {
+    if (!commit) {
+      for (int i = undoLog.size() - 1; i >= 0; i--) {
+        undoLog.get(i).run();
+      }
+    }
+    undoLog = null;
+    return true;
+  }
+
+  /**
+   * Method to get the number of shapes currently in the album.
+   *
+   * @return the number of shapes.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Method to tell the listeners about a change to one slot. Listeners get a copy, since the
+   * slot may hold another shape by the time they look at it.
+   *
+   * @param kind the kind of change.
+   * @param slot the slot that changed.
+   */
+  private void notifyListeners(AlbumEvent.Kind kind, int slot) {
+    if (hasListeners()) {
+      IShape shape = new ColumnShape(columns, slot).copy();
+      fireShape(kind, shape.getName(), shape);
+    }
+  }
+
+  /**
+   * Method to change the box of a slot, keeping the grid up to date.
+   *
+   * @param slot the slot.
+   * @param x the new left edge.
+   * @param y the new top edge.
+   * @param width the new width.
+   * @param height the new height.
+   */
+  private void place(int slot, double x, double y, double width, double height) {
+    grid.remove(slot);
+    columns.x[slot] = x;
+    columns.y[slot] = y;
+    columns.width[slot] = width;
+    columns.height[slot] = height;
+    grid.add(slot);
+  }
+
+  /**
+   * Method to copy the shapes in some slots.
+   *
+   * @param slots the slots.
+   * @return a List of copies of their shapes, in the order of the slots.
+   */
+  private List<IShape> copiesOf(int[] slots) {
+    List<IShape> result = new ArrayList<>(slots.length);
+    for (int slot : slots) {
+      result.add(new ColumnShape(columns, slot).copy());
+    }
+    return result;
+  }
+
+  /**
+   * Method to log how to undo a change, if a batch is running.
+   *
+   * @param undo the action that puts back what the change is about to overwrite.
+   */
+  private void remember(Runnable undo) {
+    if (undoLog != null) {
+      undoLog.add(undo);
+    }
+  }
+
+  /**
+   * Method to find the dictionary index of a name, adding the name if it is new.
+   *
+   * @param name the name of a shape.
+   * @return the index of the name in the dictionary.
+   */
+  private int nameId(String name) {
+    Integer id = nameIds.get(name);
+    if (id != null) {
+      return id;
+    }
+    if (nameCount == names.length) {
+      names = Arrays.copyOf(names, names.length * 2);
+      slotByName = Arrays.copyOf(slotByName, names.length);
+      columns.names = names;
+    }
+    names[nameCount] = name;
+    slotByName[nameCount] = -1;
+    nameIds.put(name, nameCount);
+    return nameCount++;
+  }
+
+  /**
+   * Method to find the slot of a shape or fail with the given message.
+   *
+   * @param name the name of the shape.
+   * @param message the message for the exception if the shape is missing.
+   * @return the slot holding the shape.
+   * @throws IllegalArgumentException if the shape is not in the album.
+   */
+  private int slotOf(String name, String message) throws IllegalArgumentException {
+    Integer id = nameIds.get(name);
+    if (id == null || slotByName[id] < 0) {
+      throw new IllegalArgumentException(message);
+    }
+    return slotByName[id];
+  }
+}
@@ -0,0 +1,105 @@
+package photoalbum.model;
+
+/**
+ * One change to an album, as a value. Commands let a group of changes be built up first and then
+ * handed to IPhotoalbum.applyBatch, which applies all of them or none.
+ */
+public sealed interface Command {
+
+  /**
+   * Method to make this change to an album.
+   *
+   * @param album the album being changed.
+   * @throws IllegalArgumentException if the album rejects the change.
+   */
+  void applyTo(IPhotoalbum album) throws IllegalArgumentException;
+
+  /**
+   * A command to add a shape.
+   *
+   * @param shape the shape being added.
+   */
+  record AddShape(IShape shape) implements Command {
+    @Override
+    public void applyTo(IPhotoalbum album) throws IllegalArgumentException {
+      album.addShape(shape);
+    }
+  }
+
+  /**
+   * A command to remove a shape.
+   *
+   * @param name the name of the shape being removed.
+   */
+  record RemoveShape(String name) implements Command {
+    @Override
+    public void applyTo(IPhotoalbum album) throws IllegalArgumentException {
+      album.removeShape(album.getShape(name));
+    }
+  }
+
+  /**
+   * A command to move a shape.
+   *
+   * @param name the name of the shape.
+   * @param position the new position of the shape.
+   */
+  record MoveShape(String name, Coordinate position) implements Command {
+    @Override
+    public void applyTo(IPhotoalbum album) throws IllegalArgumentException {
+      album.moveShape(name, position);
+    }
+  }
+
+  /**
+   * A command to change the color of a shape.
+   *
+   * @param name the name of the shape.
+   * @param color the new color of the shape.
+   */
+  record SetColor(String name, Color color) implements Command {
+    @Override
+    public void applyTo(IPhotoalbum album) throws IllegalArgumentException {
+      album.setColor(name, color);
+    }
+  }
+
+  /**
+   * A command to resize a shape.
+   *
+   * @param name the name of the shape.
+   * @param width the new first dimension of the shape.
+   * @param height the new second dimension of the shape.
+   */
+  record ResizeShape(String name, double width, double height) implements Command {
+    @Override
+    public void applyTo(IPhotoalbum album) throws IllegalArgumentException {
+      album.resizeShape(name, width, height);
+    }
+  }
+
+  /**
+   * A command to move a shape to another layer.
+   *
+   * @param name the name of the shape.
+   * @param zIndex the new z-index of the shape.
+   */
+  record SetZIndex(String name, long zIndex) implements Command {
+    @Override
+    public void applyTo(IPhotoalbum album) throws IllegalArgumentException {
+      album.setZIndex(name, zIndex);
+    }
+  }
+
+  /**
+   * A command to take a snapshot.
+   *
+   * @param description the description of the snapshot.
+   */
+  record TakeSnapshot(String description) implements Command {
+    @Override
+    public void applyTo(IPhotoalbum album) {
+      album.takeSnapshot(description);
+    }
+  }
+}
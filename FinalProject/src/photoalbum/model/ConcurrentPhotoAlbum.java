@@ -0,0 +1,252 @@
+package photoalbum.model;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * A photo album that several threads can change at once, for example one thread per input
+ * stream. The whole album is a single reference to an immutable shape store. Every change builds
+ * the next version of the store from the current one and installs it with compare-and-set,
+ * retrying if another thread got there first, so no update is lost and readers never take a
+ * lock. Each change looks the shape up once, in the same version it replaces, and installs a
+ * frozen copy of it, so the shapes that snapshots and listeners hold never change.
+ * Taking a snapshot only reads the reference, so every snapshot is an exact point-in-time cut
+ * of the album. Each version also carries a persistent grid over the shapes' boxes, updated with
+ * the store, so spatial queries only look at the shapes near the query in one version.
+ * A batch is built on a private version of the store and installed with one compare-and-set at
+ * the end. It is applied again if another thread changed the album in the meantime, and a failed
+ * batch simply never installs its version.
+ * Listeners hear about each change after it is installed; changes made by different threads at
+ * the same moment may reach them in either order.
+ */
+public class ConcurrentPhotoAlbum extends AbstractPhotoAlbum {
+  private final AtomicReference<State> state;
+  private final ThreadLocal<Batch> batch;
+
+  /**
+   * A constructor for the concurrent photo album class.
+   */
+  public ConcurrentPhotoAlbum() {
+    this(Clock.systemDefaultZone());
+  }
+
+  /**
+   * A constructor for a concurrent photo album that reads snapshot timestamps from the given
+   * clock.
+   *
+   * @param clock the clock used to timestamp snapshots.
+   */
+  public ConcurrentPhotoAlbum(Clock clock) {
+    super(clock);
+    state = new AtomicReference<>(new State(ShapeStore.EMPTY, 0, PersistentGrid.EMPTY));
+    batch = new ThreadLocal<>();
+  }
+
+  @Override
+  public void addShape(IShape shape) throws IllegalArgumentException {
+    State next = transition(current -> {
+      if (current.shapes.get(shape.getName()) != null) {
+        throw new IllegalArgumentException("This shape exists");
+      }
+      IShape copy = shape.copy();
+      copy.setZIndex(current.topZIndex + 1);
+      IShape added = FrozenShape.of(copy);
+      return new State(current.shapes.put(added), current.topZIndex + 1,
+              current.grid.put(null, added));
+    });
+    fireShape(AlbumEvent.Kind.SHAPE_ADDED, shape.getName(), next.shapes.get(shape.getName()));
+  }
+
+  @Override
+  public void removeShape(IShape shape) throws IllegalArgumentException {
+    transition(current -> {
+      IShape old = current.shapes.get(shape.getName());
+      if (old == null) {
+        throw new IllegalArgumentException("Shape is not in the Album");
+      }
+      return new State(current.shapes.remove(shape.getName()), current.topZIndex,
+              current.grid.remove(old));
+    });
+    fireShape(AlbumEvent.Kind.SHAPE_REMOVED, shape.getName(), null);
+  }
+
+  @Override
+  public IShape getShape(String name) throws IllegalArgumentException {
+    IShape shape = current().shapes.get(name);
+    if (shape == null) {
+      throw new IllegalArgumentException("Getter: Shape does not exist");
+    }
+    return shape.copy();
+  }
+
+  @Override
+  public List<IShape> getAllShapes() {
+    return current().shapes.values().stream().map(IShape::copy).toList();
+  }
+
+  @Override
+  public void moveShape(String name, Coordinate move) {
+    update(name, "Transpose: Shape does not exist", AlbumEvent.Kind.SHAPE_MOVED,
+            shape -> shape.setPosition(move));
+  }
+
+  @Override
+  public void resizeShape(String name, double dx, double dy) {
+    update(name, "Transform: Shape does not exist", AlbumEvent.Kind.SHAPE_RESIZED,
+            shape -> shape.resize(dx, dy));
+  }
+
+  @Override
+  public void setColor(String name, Color newColor) {
+    update(name, "Color: Shape does not exist", AlbumEvent.Kind.SHAPE_RECOLORED,
+            shape -> shape.setColor(newColor));
+  }
+
+  @Override
+  public void setZIndex(String name, long zIndex) {
+    update(name, "Layer: Shape does not exist", AlbumEvent.Kind.SHAPE_LAYERED,
+            shape -> shape.setZIndex(zIndex));
+  }
+
+  @Override
+  public List<IShape> shapesIntersecting(double x, double y, double width, double height) {
+    State version = current();
+    return copiesOf(version.grid.intersecting(x, y, width, height, version.shapes::get));
+  }
+
+  @Override
+  public List<IShape> shapesContaining(Coordinate point) {
+    State version = current();
+    List<IShape> result = new ArrayList<>();
+    for (IShape shape : version.grid.intersecting(point.x(), point.y(), 0, 0,
+            version.shapes::get)) {
+      if (shape.contains(point)) {
+        result.add(shape.copy());
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public List<IShape> nearestShapes(Coordinate point, int k) {
+    State version = current();
+    return copiesOf(version.grid.nearest(point.x(), point.y(), k, version.shapes::get));
+  }
+
+  @Override
+  public void takeSnapshot(String name) {
+    Snapshot snapshot;
+    synchronized (this) {
+      ShapeStore cut = current().shapes;
+      snapshot = recordSnapshot(name, cut::values);
+    }
+    fireSnapshot(snapshot);
+  }
+
+  @Override
+  public void reset() {
+    transition(current -> new State(ShapeStore.EMPTY, current.topZIndex, PersistentGrid.EMPTY));
+    fireShape(AlbumEvent.Kind.ALBUM_RESET, null, null);
+  }
+
+  @Override
+  protected void beginBatch() {
+    batch.set(new Batch(state.get()));
+  }
+
+  @Override
+  protected boolean endBatch(boolean commit) {
+    Batch finished = batch.get();
+    batch.remove();
+    return !commit || state.compareAndSet(finished.start, finished.state);
+  }
+
+  /**
+   * Method to get the version of the album this thread sees, which inside a batch includes the
+   * batch's own changes.
+   *
+   * @return the current State.
+   */
+  private State current() {
+    Batch running = batch.get();
+    return running != null ? running.state : state.get();
+  }
+
+  /**
+   * Method to move the album to its next version, or only the batch's version inside a batch.
+   *
+   * @param next the function building the next version; it may run more than once.
+   * @return the version this change installed.
+   */
+  private State transition(UnaryOperator<State> next) {
+    Batch running = batch.get();
+    if (running != null) {
+      running.state = next.apply(running.state);
+      return running.state;
+    }
+    return state.updateAndGet(next);
+  }
+
+  /**
+   * Method to replace one shape with a changed copy of it.
+   *
+   * @param name the name of the shape.
+   * @param message the message for the exception if the shape is missing.
+   * @param kind the kind of change, for the listeners.
+   * @param change the change made to the copy; it may run more than once.
+   * @throws IllegalArgumentException if the shape is not in the album or the change fails.
+   */
+  private void update(String name, String message, AlbumEvent.Kind kind,
+                      Consumer<IShape> change) throws IllegalArgumentException {
+    State next = transition(current -> {
+      IShape shape = current.shapes.get(name);
+      if (shape == null) {
+        throw new IllegalArgumentException(message);
+      }
+      IShape copy = shape.copy();
+      change.accept(copy);
+      IShape changed = FrozenShape.of(copy);
+      return new State(current.shapes.put(changed),
+              Math.max(current.topZIndex, changed.getZIndex()), current.grid.put(shape, changed));
+    });
+    fireShape(kind, name, next.shapes.get(name));
+  }
+
+  /**
+   * Method to copy shapes before handing them out.
+   *
+   * @param shapes the shapes.
+   * @return a List of copies, in the same order.
+   */
+  private static List<IShape> copiesOf(List<IShape> shapes) {
+    List<IShape> result = new ArrayList<>(shapes.size());
+    for (IShape shape : shapes) {
+      result.add(shape.copy());
+    }
+    return result;
+  }
+
+  /**
+   * A tuple for one version of the album: its shapes, the highest z-index handed out and the
+   * grid over the shapes.
+   */
+  private record State(ShapeStore shapes, long topZIndex, PersistentGrid grid) {
+  }
+
+  /**
+   * The versions of the album at the start of a batch and after its changes so far.
+   */
+  private static final class Batch {
+    private final State start;
+    private State state;
+
+    private Batch(State start) {
+      this.start = start;
+      this.state = start;
+    }
+  }
+}
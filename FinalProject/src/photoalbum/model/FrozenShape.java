@@ -0,0 +1,108 @@
+package photoalbum.model;
+
+/**
+ * A shape that cannot be changed, wrapping one that nobody else holds. Albums keep their shapes
+ * frozen, because each one may be shared by the album, its snapshots and its listeners; a copy
+ * of a frozen shape is an ordinary shape that can be changed again.
+ */
+final class FrozenShape implements IShape {
+  private final IShape shape;
+
+  /**
+   * A constructor for a frozen shape.
+   *
+   * @param shape the shape being frozen, which must not be changed or handed out afterwards.
+   */
+  private FrozenShape(IShape shape) {
+    this.shape = shape;
+  }
+
+  /**
+   * Method to freeze a shape that nobody else holds.
+   *
+   * @param shape the shape being frozen, which must not be changed or handed out afterwards.
+   * @return the frozen shape, or the shape itself if it is already frozen.
+   */
+  static IShape of(IShape shape) {
+    return shape instanceof FrozenShape ? shape : new FrozenShape(shape);
+  }
+
+  @Override
+  public String getName() {
+    return shape.getName();
+  }
+
+  @Override
+  public Color getColor() {
+    return shape.getColor();
+  }
+
+  @Override
+  public void setColor(Color color) {
+    throw frozen();
+  }
+
+  @Override
+  public Coordinate getPosition() {
+    return shape.getPosition();
+  }
+
+  @Override
+  public void setPosition(Coordinate position) {
+    throw frozen();
+  }
+
+  @Override
+  public String getType() {
+    return shape.getType();
+  }
+
+  @Override
+  public IShape copy() {
+    return shape.copy();
+  }
+
+  @Override
+  public void resize(double dx, double dy) {
+    throw frozen();
+  }
+
+  @Override
+  public double getFirstDimension() {
+    return shape.getFirstDimension();
+  }
+
+  @Override
+  public double getSecondDimension() {
+    return shape.getSecondDimension();
+  }
+
+  @Override
+  public long getZIndex() {
+    return shape.getZIndex();
+  }
+
+  @Override
+  public void setZIndex(long zIndex) {
+    throw frozen();
+  }
+
+  @Override
+  public boolean contains(Coordinate point) {
+    return shape.contains(point);
+  }
+
+  /**
+   * Method to create the exception for an attempt to change the shape.
+   *
+   * @return the UnsupportedOperationException.
+   */
+  private static UnsupportedOperationException frozen() {
+    return new UnsupportedOperationException("Album shapes cannot be changed; change a copy");
+  }
+
+  @Override
+  public String toString() {
+    return shape.toString();
+  }
+}
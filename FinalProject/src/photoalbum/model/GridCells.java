@@ -0,0 +1,134 @@
+package photoalbum.model;
+
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * The cell arithmetic shared by the uniform grids the albums index their shapes with. A cell is
+ * named by its column and row packed into one long, and nearest-neighbour searches walk the
+ * cells in square rings around the cell of the query point.
+ */
+final class GridCells {
+  /**
+   * The width and height of one cell, which suits shapes of a few dozen units up to a few
+   * hundred.
+   */
+  static final double CELL_SIZE = 64.0;
+
+  /**
+   * The most cells a shape is listed in; larger shapes, like a background, are kept apart and
+   * checked by every query instead.
+   */
+  static final int MAX_CELLS_PER_SHAPE = 1024;
+
+  /**
+   * Constructor that is not used, as this class only has static methods.
+   */
+  private GridCells() {
+  }
+
+  /**
+   * Method to find the column or row a coordinate falls in.
+   *
+   * @param coordinate the x or y coordinate.
+   * @param cellSize the width and height of one cell.
+   * @return the column or row, clamped so that neighbouring cells never overflow.
+   */
+  static int cell(double coordinate, double cellSize) {
+    double c = Math.floor(coordinate / cellSize);
+    return (int) Math.max(Integer.MIN_VALUE / 2, Math.min(Integer.MAX_VALUE / 2, c));
+  }
+
+  /**
+   * Method to pack a column and a row into the key of a cell.
+   *
+   * @param cx the column.
+   * @param cy the row.
+   * @return the key of the cell.
+   */
+  static long key(int cx, int cy) {
+    return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Method to count the cells a box overlaps.
+   *
+   * @param minX the left edge of the box.
+   * @param minY the top edge of the box.
+   * @param maxX the right edge of the box.
+   * @param maxY the bottom edge of the box.
+   * @param cellSize the width and height of one cell.
+   * @return the number of cells, which may be larger than any int.
+   */
+  static long cellCount(double minX, double minY, double maxX, double maxY, double cellSize) {
+    return ((long) cell(maxX, cellSize) - cell(minX, cellSize) + 1)
+            * ((long) cell(maxY, cellSize) - cell(minY, cellSize) + 1);
+  }
+
+  /**
+   * Method to get the distance from a point to a box, 0 if the point is inside it.
+   *
+   * @param minX the left edge of the box.
+   * @param minY the top edge of the box.
+   * @param maxX the right edge of the box.
+   * @param maxY the bottom edge of the box.
+   * @param px the x coordinate of the point.
+   * @param py the y coordinate of the point.
+   * @return the distance.
+   */
+  static double distance(double minX, double minY, double maxX, double maxY,
+                         double px, double py) {
+    double dx = Math.max(Math.max(minX - px, 0), px - maxX);
+    double dy = Math.max(Math.max(minY - py, 0), py - maxY);
+    return Math.sqrt(dx * dx + dy * dy);
+  }
+
+  /**
+   * Method to visit the cells of a grid in square rings around one cell, nearest ring first,
+   * skipping cells outside the range that holds shapes. After each ring the walk asks whether
+   * to stop: a shape none of whose cells has been visited yet is at least ring * cellSize away
+   * from any point in the centre cell.
+   *
+   * @param cx the column of the centre cell.
+   * @param cy the row of the centre cell.
+   * @param minCellX the first column that holds shapes.
+   * @param minCellY the first row that holds shapes.
+   * @param maxCellX the last column that holds shapes.
+   * @param maxCellY the last row that holds shapes.
+   * @param visit the action run with the key of each cell.
+   * @param done the test run with the number of each finished ring, true to stop.
+   */
+  static void walkRings(int cx, int cy, int minCellX, int minCellY, int maxCellX, int maxCellY,
+                        LongConsumer visit, LongPredicate done) {
+    if (minCellX > maxCellX || minCellY > maxCellY) {
+      return;
+    }
+    long firstRing = Math.max(0, Math.max(Math.max((long) minCellX - cx, (long) cx - maxCellX),
+            Math.max((long) minCellY - cy, (long) cy - maxCellY)));
+    long lastRing = Math.max(Math.max((long) cx - minCellX, (long) maxCellX - cx),
+            Math.max((long) cy - minCellY, (long) maxCellY - cy));
+    for (long ring = firstRing; ring <= lastRing; ring++) {
+      long fromX = Math.max(cx - ring, minCellX);
+      long toX = Math.min(cx + ring, maxCellX);
+      for (long x = fromX; x <= toX; x++) {
+        if (Math.abs(x - cx) == ring) {
+          long fromY = Math.max(cy - ring, minCellY);
+          long toY = Math.min(cy + ring, maxCellY);
+          for (long y = fromY; y <= toY; y++) {
+            visit.accept(key((int) x, (int) y));
+          }
+        } else {
+          if (cy - ring >= minCellY) {
+            visit.accept(key((int) x, (int) (cy - ring)));
+          }
+          if (cy + ring <= maxCellY) {
+            visit.accept(key((int) x, (int) (cy + ring)));
+          }
+        }
+      }
+      if (done.test(ring)) {
+        return;
+      }
+    }
+  }
+}
@@ -7,7 +7,8 @@ import java.util.List;
  */
 public interface IPhotoalbum {
   /**
-   * Add a Shape object to a list of shapes.
+   * Add a Shape object to a list of shapes. Changing the shape afterwards does not change the
+   * album.
    *
    * @param shape a shape object that is being added.
    */
@@ -24,14 +25,16 @@ public interface IPhotoalbum {
    *  Get a shape in the list.
    *
    * @param name a String name to represent the shape being looked for.
-   * @return a Shape that has the same name.
+   * @return a Shape that has the same name, which the album and its snapshots do not see
+   *         changes to.
    */
   IShape getShape(String name);
 
   /**
    * Method to return an unmodifiable list of shapes in the album.
    *
-   * @return an unmodifiable List of all shapes.
+   * @return an unmodifiable List of all shapes, in drawing order, which the album and its
+   *         snapshots do not see changes to.
    */
   List<IShape> getAllShapes();
 
@@ -51,6 +54,15 @@ public interface IPhotoalbum {
    */
   void setColor(String name, Color color);
 
+  /**
+   * Method to move a shape above or below other shapes. Shapes are drawn from the lowest z-index
+   * to the highest, and a shape that is added goes above every shape already in the album.
+   *
+   * @param name the name of the shape.
+   * @param zIndex the new z-index of the shape.
+   */
+  void setZIndex(String name, long zIndex);
+
   /**
    * A current snapshot of the shapes in the list.
    *
@@ -65,6 +77,50 @@ public interface IPhotoalbum {
    */
   List<Snapshot> getSnapshots();
 
+  /**
+   * Method to find a snapshot by its ID in constant time.
+   *
+   * @param id the ID of the snapshot.
+   * @return the Snapshot with that ID.
+   */
+  Snapshot getSnapshot(long id);
+
+  /**
+   * Method to find the position of a snapshot in the list returned by getSnapshots.
+   *
+   * @param id the ID of the snapshot.
+   * @return the index of the Snapshot with that ID.
+   */
+  int getSnapshotIndex(long id);
+
+  /**
+   * Method to find the shapes whose bounding boxes intersect a rectangle.
+   *
+   * @param x the left edge of the rectangle.
+   * @param y the top edge of the rectangle.
+   * @param width the width of the rectangle.
+   * @param height the height of the rectangle.
+   * @return a List of the matching shapes.
+   */
+  List<IShape> shapesIntersecting(double x, double y, double width, double height);
+
+  /**
+   * Method to find the shapes that contain a point.
+   *
+   * @param point the point being checked.
+   * @return a List of the shapes that contain the point.
+   */
+  List<IShape> shapesContaining(Coordinate point);
+
+  /**
+   * Method to find the shapes whose bounding boxes are closest to a point.
+   *
+   * @param point the point being checked.
+   * @param k the number of shapes wanted.
+   * @return a List of up to k shapes, nearest first.
+   */
+  List<IShape> nearestShapes(Coordinate point, int k);
+
   /**
    * Method to resize the dimensions of the Shape.
    *
@@ -74,9 +130,33 @@ public interface IPhotoalbum {
    */
   void resizeShape(String name, double x, double y);
 
+  /**
+   * Method to apply a group of changes as one. Either every command is applied, or the album,
+   * including its snapshots, is left as it was and the first failure is thrown. Listeners hear
+   * about a committed batch as one BATCH_APPLIED event holding its changes.
+   *
+   * @param commands the changes, in the order they are applied.
+   * @throws IllegalArgumentException if any of the commands is rejected.
+   */
+  void applyBatch(List<Command> commands) throws IllegalArgumentException;
+
   /**
    * Method to clear the shapes map.
    */
   void reset();
 
+  /**
+   * Method to register a listener that is told about every later change to the album.
+   *
+   * @param listener the listener being added.
+   */
+  void addListener(AlbumListener listener);
+
+  /**
+   * Method to stop telling a listener about changes.
+   *
+   * @param listener the listener being removed.
+   */
+  void removeListener(AlbumListener listener);
+
 }
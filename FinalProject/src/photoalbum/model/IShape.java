@@ -75,4 +75,27 @@ public interface IShape {
    * @return a double for the second-dimension.
    */
   double getSecondDimension();
+
+  /**
+   * Method to get the z-index of the shape. Shapes with a lower z-index are drawn first, and
+   * shapes with the same z-index are drawn in order of their names.
+   *
+   * @return the long z-index.
+   */
+  long getZIndex();
+
+  /**
+   * Method to set the z-index of the shape.
+   *
+   * @param zIndex the new z-index.
+   */
+  void setZIndex(long zIndex);
+
+  /**
+   * Method to check whether a point lies inside the shape.
+   *
+   * @param point the point being checked.
+   * @return true if the point is on or inside the outline of the shape.
+   */
+  boolean contains(Coordinate point);
 }
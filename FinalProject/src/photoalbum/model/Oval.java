@@ -35,9 +35,36 @@ public class Oval extends AbstractShape {
    * @return a IShape Object of type Oval.
    */
   public IShape copy() {
-    return new Oval(name, position, color, firstDimension, secondDimension);
+    Oval copy = new Oval(name, position, color, firstDimension, secondDimension);
+    copy.zIndex = zIndex;
+    return copy;
   }
 
+  @Override
+  public boolean contains(Coordinate point) {
+    return contains(position.x(), position.y(), firstDimension, secondDimension, point);
+  }
+
+  /**
+   * Method to check whether a point lies inside the oval drawn in a bounding box.
+   *
+   * @param x the left edge of the box.
+   * @param y the top edge of the box.
+   * @param width the width of the box.
+   * @param height the height of the box.
+   * @param point the point being checked.
+   * @return true if the point is on or inside the oval.
+   */
+  static boolean contains(double x, double y, double width, double height, Coordinate point) {
+    double rx = width / 2;
+    double ry = height / 2;
+    double dx = point.x() - (x + rx);
+    double dy = point.y() - (y + ry);
+    if (rx == 0 || ry == 0) {
+      return (rx == 0 ? dx == 0 : Math.abs(dx) <= rx) && (ry == 0 ? dy == 0 : Math.abs(dy) <= ry);
+    }
+    return (dx * dx) / (rx * rx) + (dy * dy) / (ry * ry) <= 1.0;
+  }
 
   @Override
   public String toString() {
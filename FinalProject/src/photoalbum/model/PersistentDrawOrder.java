@@ -0,0 +1,132 @@
+package photoalbum.model;
+
+import java.util.function.Consumer;
+
+/**
+ * An immutable treap of shapes sorted by z-index, then by name, which is the order they are
+ * drawn in. Like PersistentShapeMap, updates copy only the path to the changed node, so an old
+ * version stays valid and shares everything else with the new one.
+ */
+final class PersistentDrawOrder {
+  static final PersistentDrawOrder EMPTY = new PersistentDrawOrder(null);
+
+  private final Node root;
+
+  private PersistentDrawOrder(Node root) {
+    this.root = root;
+  }
+
+  /**
+   * Method to add a shape, or replace the shape with the same z-index and name.
+   *
+   * @param shape the shape being stored.
+   * @return an order that contains the shape.
+   */
+  PersistentDrawOrder put(IShape shape) {
+    return new PersistentDrawOrder(insert(root, shape, priority(shape.getName())));
+  }
+
+  /**
+   * Method to remove the shape with the same z-index and name as the given one.
+   *
+   * @param shape the shape being removed.
+   * @return an order without the shape.
+   */
+  PersistentDrawOrder remove(IShape shape) {
+    Node newRoot = delete(root, shape);
+    return newRoot == root ? this : new PersistentDrawOrder(newRoot);
+  }
+
+  /**
+   * Method to visit the shapes from the bottom of the drawing to the top.
+   *
+   * @param action the action run for each shape.
+   */
+  void forEach(Consumer<IShape> action) {
+    forEach(root, action);
+  }
+
+  /**
+   * Method to compare two shapes by drawing order.
+   *
+   * @param a the first shape.
+   * @param b the second shape.
+   * @return a negative number if a is drawn first, 0 if they have the same position.
+   */
+  static int compare(IShape a, IShape b) {
+    int byZ = Long.compare(a.getZIndex(), b.getZIndex());
+    return byZ != 0 ? byZ : a.getName().compareTo(b.getName());
+  }
+
+  private static Node insert(Node node, IShape shape, int priority) {
+    if (node == null) {
+      return new Node(shape, priority, null, null);
+    }
+    int cmp = compare(shape, node.shape);
+    if (cmp == 0) {
+      return new Node(shape, node.priority, node.left, node.right);
+    }
+    if (cmp < 0) {
+      Node left = insert(node.left, shape, priority);
+      if (left.priority > node.priority) {
+        return new Node(left.shape, left.priority, left.left,
+                new Node(node.shape, node.priority, left.right, node.right));
+      }
+      return new Node(node.shape, node.priority, left, node.right);
+    }
+    Node right = insert(node.right, shape, priority);
+    if (right.priority > node.priority) {
+      return new Node(right.shape, right.priority,
+              new Node(node.shape, node.priority, node.left, right.left), right.right);
+    }
+    return new Node(node.shape, node.priority, node.left, right);
+  }
+
+  private static Node delete(Node node, IShape shape) {
+    if (node == null) {
+      return null;
+    }
+    int cmp = compare(shape, node.shape);
+    if (cmp == 0) {
+      return merge(node.left, node.right);
+    }
+    if (cmp < 0) {
+      Node left = delete(node.left, shape);
+      return left == node.left ? node : new Node(node.shape, node.priority, left, node.right);
+    }
+    Node right = delete(node.right, shape);
+    return right == node.right ? node : new Node(node.shape, node.priority, node.left, right);
+  }
+
+  private static Node merge(Node a, Node b) {
+    if (a == null) {
+      return b;
+    }
+    if (b == null) {
+      return a;
+    }
+    if (a.priority > b.priority) {
+      return new Node(a.shape, a.priority, a.left, merge(a.right, b));
+    }
+    return new Node(b.shape, b.priority, merge(a, b.left), b.right);
+  }
+
+  private static void forEach(Node node, Consumer<IShape> action) {
+    while (node != null) {
+      forEach(node.left, action);
+      action.accept(node.shape);
+      node = node.right;
+    }
+  }
+
+  private static int priority(String name) {
+    int h = name.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 15);
+  }
+
+  /**
+   * A node of the treap, ordered by shape and heap-ordered by priority.
+   */
+  private record Node(IShape shape, int priority, Node left, Node right) {
+  }
+}
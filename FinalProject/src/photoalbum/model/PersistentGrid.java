@@ -0,0 +1,318 @@
+package photoalbum.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * An immutable uniform grid over the bounding boxes of shapes, keyed by name, for albums that
+ * install a new version of their shapes with every change. It is a treap of (cell, name) entries
+ * sorted by cell, so like PersistentDrawOrder, every update copies only the paths to the entries
+ * it touches and an old version stays valid. The grid keeps no boxes: queries read them from the
+ * version of the shapes the grid belongs to. Shapes that would cover a very large number of
+ * cells are listed under one separate key that every query checks.
+ * A shape is reported once even though it is listed in several cells: a query only takes it from
+ * the first of its cells the query looks at.
+ */
+final class PersistentGrid {
+  static final PersistentGrid EMPTY = new PersistentGrid(null, Integer.MAX_VALUE,
+          Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE);
+
+  /**
+   * The key oversized shapes are listed under. Cells are clamped to half the int range, so no
+   * cell has this key.
+   */
+  private static final long OVERSIZED = GridCells.key(Integer.MIN_VALUE, 0);
+
+  private final Node root;
+  private final int minCellX;
+  private final int minCellY;
+  private final int maxCellX;
+  private final int maxCellY;
+
+  private PersistentGrid(Node root, int minCellX, int minCellY, int maxCellX, int maxCellY) {
+    this.root = root;
+    this.minCellX = minCellX;
+    this.minCellY = minCellY;
+    this.maxCellX = maxCellX;
+    this.maxCellY = maxCellY;
+  }
+
+  /**
+   * Method to add a shape, or to move it to the cells of its new box.
+   *
+   * @param old the version of the shape in the grid, or null if it is new.
+   * @param shape the shape after the change.
+   * @return a grid that lists the shape in the cells of its box.
+   */
+  PersistentGrid put(IShape old, IShape shape) {
+    if (old != null && sameCells(old, shape)) {
+      return this;
+    }
+    Node newRoot = old == null ? root : unlink(root, old);
+    String name = shape.getName();
+    if (isOversized(shape)) {
+      return new PersistentGrid(insert(newRoot, OVERSIZED, name), minCellX, minCellY, maxCellX,
+              maxCellY);
+    }
+    int fromX = cell(shape.getPosition().x());
+    int toX = cell(maxX(shape));
+    int fromY = cell(shape.getPosition().y());
+    int toY = cell(maxY(shape));
+    for (int cx = fromX; cx <= toX; cx++) {
+      for (int cy = fromY; cy <= toY; cy++) {
+        newRoot = insert(newRoot, GridCells.key(cx, cy), name);
+      }
+    }
+    return new PersistentGrid(newRoot, Math.min(minCellX, fromX), Math.min(minCellY, fromY),
+            Math.max(maxCellX, toX), Math.max(maxCellY, toY));
+  }
+
+  /**
+   * Method to remove a shape.
+   *
+   * @param old the version of the shape in the grid.
+   * @return a grid without the shape.
+   */
+  PersistentGrid remove(IShape old) {
+    return new PersistentGrid(unlink(root, old), minCellX, minCellY, maxCellX, maxCellY);
+  }
+
+  /**
+   * Method to find the shapes whose bounding boxes intersect a rectangle.
+   *
+   * @param x the left edge of the rectangle.
+   * @param y the top edge of the rectangle.
+   * @param width the width of the rectangle.
+   * @param height the height of the rectangle.
+   * @param shapes the lookup of the shapes this grid was built from.
+   * @return the matching shapes.
+   */
+  List<IShape> intersecting(double x, double y, double width, double height,
+                            Function<String, IShape> shapes) {
+    double maxX = x + width;
+    double maxY = y + height;
+    List<IShape> result = new ArrayList<>();
+    forEachIn(root, OVERSIZED, name -> {
+      IShape shape = shapes.apply(name);
+      if (intersects(shape, x, y, maxX, maxY)) {
+        result.add(shape);
+      }
+    });
+
+    int fromX = Math.max(cell(x), minCellX);
+    int toX = Math.min(cell(maxX), maxCellX);
+    int fromY = Math.max(cell(y), minCellY);
+    int toY = Math.min(cell(maxY), maxCellY);
+    for (long cx = fromX; cx <= toX; cx++) {
+      for (long cy = fromY; cy <= toY; cy++) {
+        long column = cx;
+        long row = cy;
+        forEachIn(root, GridCells.key((int) cx, (int) cy), name -> {
+          IShape shape = shapes.apply(name);
+          if (Math.max(cell(shape.getPosition().x()), fromX) == column
+                  && Math.max(cell(shape.getPosition().y()), fromY) == row
+                  && intersects(shape, x, y, maxX, maxY)) {
+            result.add(shape);
+          }
+        });
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Method to find the shapes whose bounding boxes are closest to a point, nearest first, and by
+   * name between shapes at the same distance.
+   *
+   * @param px the x coordinate of the point.
+   * @param py the y coordinate of the point.
+   * @param k the number of shapes wanted.
+   * @param shapes the lookup of the shapes this grid was built from.
+   * @return up to k shapes.
+   */
+  List<IShape> nearest(double px, double py, int k, Function<String, IShape> shapes) {
+    if (k <= 0 || root == null) {
+      return new ArrayList<>();
+    }
+    Comparator<Candidate> farthestFirst = Comparator.comparingDouble(Candidate::distance)
+            .thenComparing(c -> c.shape.getName()).reversed();
+    PriorityQueue<Candidate> best = new PriorityQueue<>(farthestFirst);
+    Consumer<IShape> offer = shape -> {
+      Candidate candidate = new Candidate(shape, distance(shape, px, py));
+      if (best.size() < k) {
+        best.add(candidate);
+      } else if (farthestFirst.compare(candidate, best.peek()) > 0) {
+        best.poll();
+        best.add(candidate);
+      }
+    };
+    forEachIn(root, OVERSIZED, name -> offer.accept(shapes.apply(name)));
+
+    int cx = cell(px);
+    int cy = cell(py);
+    GridCells.walkRings(cx, cy, minCellX, minCellY, maxCellX, maxCellY,
+            key -> forEachIn(root, key, name -> {
+              IShape shape = shapes.apply(name);
+              if (GridCells.key(clamp(cx, cell(shape.getPosition().x()), cell(maxX(shape))),
+                      clamp(cy, cell(shape.getPosition().y()), cell(maxY(shape)))) == key) {
+                offer.accept(shape);
+              }
+            }),
+            ring -> best.size() == k && best.peek().distance <= ring * GridCells.CELL_SIZE);
+
+    List<IShape> result = new ArrayList<>(best.size());
+    while (!best.isEmpty()) {
+      result.add(0, best.poll().shape);
+    }
+    return result;
+  }
+
+  private static Node unlink(Node root, IShape old) {
+    String name = old.getName();
+    if (isOversized(old)) {
+      return delete(root, OVERSIZED, name);
+    }
+    for (int cx = cell(old.getPosition().x()); cx <= cell(maxX(old)); cx++) {
+      for (int cy = cell(old.getPosition().y()); cy <= cell(maxY(old)); cy++) {
+        root = delete(root, GridCells.key(cx, cy), name);
+      }
+    }
+    return root;
+  }
+
+  private static boolean sameCells(IShape a, IShape b) {
+    if (isOversized(a) || isOversized(b)) {
+      return isOversized(a) && isOversized(b);
+    }
+    return cell(a.getPosition().x()) == cell(b.getPosition().x())
+            && cell(a.getPosition().y()) == cell(b.getPosition().y())
+            && cell(maxX(a)) == cell(maxX(b)) && cell(maxY(a)) == cell(maxY(b));
+  }
+
+  private static boolean isOversized(IShape shape) {
+    return GridCells.cellCount(shape.getPosition().x(), shape.getPosition().y(), maxX(shape),
+            maxY(shape), GridCells.CELL_SIZE) > GridCells.MAX_CELLS_PER_SHAPE;
+  }
+
+  private static boolean intersects(IShape shape, double minX, double minY, double maxX,
+                                    double maxY) {
+    return shape.getPosition().x() <= maxX && minX <= maxX(shape)
+            && shape.getPosition().y() <= maxY && minY <= maxY(shape);
+  }
+
+  private static double distance(IShape shape, double px, double py) {
+    return GridCells.distance(shape.getPosition().x(), shape.getPosition().y(), maxX(shape),
+            maxY(shape), px, py);
+  }
+
+  private static double maxX(IShape shape) {
+    return shape.getPosition().x() + shape.getFirstDimension();
+  }
+
+  private static double maxY(IShape shape) {
+    return shape.getPosition().y() + shape.getSecondDimension();
+  }
+
+  private static int cell(double coordinate) {
+    return GridCells.cell(coordinate, GridCells.CELL_SIZE);
+  }
+
+  private static int clamp(int value, int min, int max) {
+    return Math.max(min, Math.min(max, value));
+  }
+
+  private static int compare(long cell, String name, Node node) {
+    int byCell = Long.compare(cell, node.cell);
+    return byCell != 0 ? byCell : name.compareTo(node.name);
+  }
+
+  private static void forEachIn(Node node, long cell, Consumer<String> action) {
+    while (node != null) {
+      if (cell < node.cell) {
+        node = node.left;
+      } else if (cell > node.cell) {
+        node = node.right;
+      } else {
+        forEachIn(node.left, cell, action);
+        action.accept(node.name);
+        node = node.right;
+      }
+    }
+  }
+
+  private static Node insert(Node node, long cell, String name) {
+    if (node == null) {
+      return new Node(cell, name, priority(cell, name), null, null);
+    }
+    int cmp = compare(cell, name, node);
+    if (cmp == 0) {
+      return node;
+    }
+    if (cmp < 0) {
+      Node left = insert(node.left, cell, name);
+      if (left.priority > node.priority) {
+        return new Node(left.cell, left.name, left.priority, left.left,
+                new Node(node.cell, node.name, node.priority, left.right, node.right));
+      }
+      return new Node(node.cell, node.name, node.priority, left, node.right);
+    }
+    Node right = insert(node.right, cell, name);
+    if (right.priority > node.priority) {
+      return new Node(right.cell, right.name, right.priority,
+              new Node(node.cell, node.name, node.priority, node.left, right.left), right.right);
+    }
+    return new Node(node.cell, node.name, node.priority, node.left, right);
+  }
+
+  private static Node delete(Node node, long cell, String name) {
+    if (node == null) {
+      return null;
+    }
+    int cmp = compare(cell, name, node);
+    if (cmp == 0) {
+      return merge(node.left, node.right);
+    }
+    if (cmp < 0) {
+      Node left = delete(node.left, cell, name);
+      return left == node.left ? node
+              : new Node(node.cell, node.name, node.priority, left, node.right);
+    }
+    Node right = delete(node.right, cell, name);
+    return right == node.right ? node
+            : new Node(node.cell, node.name, node.priority, node.left, right);
+  }
+
+  private static Node merge(Node a, Node b) {
+    if (a == null) {
+      return b;
+    }
+    if (b == null) {
+      return a;
+    }
+    if (a.priority > b.priority) {
+      return new Node(a.cell, a.name, a.priority, a.left, merge(a.right, b));
+    }
+    return new Node(b.cell, b.name, b.priority, merge(a, b.left), b.right);
+  }
+
+  private static int priority(long cell, String name) {
+    int h = (name.hashCode() ^ Long.hashCode(cell)) * 0x9E3779B9;
+    return h ^ (h >>> 15);
+  }
+
+  /**
+   * A node of the treap, ordered by cell and name and heap-ordered by priority.
+   */
+  private record Node(long cell, String name, int priority, Node left, Node right) {
+  }
+
+  /**
+   * A tuple for a shape found by a nearest-neighbour search.
+   */
+  private record Candidate(IShape shape, double distance) {
+  }
+}
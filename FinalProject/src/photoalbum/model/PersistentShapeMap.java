@@ -0,0 +1,316 @@
+package photoalbum.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * An immutable hash trie of shapes keyed by name. Every update returns a new map that shares
+ * all untouched branches with the old one, so keeping an old version around only costs the
+ * nodes on the path that changed.
+ */
+final class PersistentShapeMap {
+  static final PersistentShapeMap EMPTY = new PersistentShapeMap(null, 0);
+
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+
+  private final Node root;
+  private final int size;
+
+  private PersistentShapeMap(Node root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  /**
+   * Method to find a shape by its name.
+   *
+   * @param name the name of the shape.
+   * @return the shape, or null if no shape has that name.
+   */
+  IShape get(String name) {
+    return root == null ? null : root.find(hash(name), 0, name);
+  }
+
+  /**
+   * Method to add a shape or replace the shape with the same name.
+   *
+   * @param shape the shape being stored.
+   * @return a map that contains the shape.
+   */
+  PersistentShapeMap put(IShape shape) {
+    boolean[] added = new boolean[1];
+    int hash = hash(shape.getName());
+    Node newRoot = root == null
+            ? new BitmapNode(bit(hash, 0), new Object[] {shape})
+            : root.put(hash, 0, shape, added);
+    if (root == null) {
+      added[0] = true;
+    }
+    if (newRoot == root) {
+      return this;
+    }
+    return new PersistentShapeMap(newRoot, added[0] ? size + 1 : size);
+  }
+
+  /**
+   * Method to remove the shape with the given name.
+   *
+   * @param name the name of the shape.
+   * @return a map without the shape, or this map if the name was not present.
+   */
+  PersistentShapeMap remove(String name) {
+    if (root == null) {
+      return this;
+    }
+    Node newRoot = root.remove(hash(name), 0, name);
+    if (newRoot == root) {
+      return this;
+    }
+    return newRoot == null ? EMPTY : new PersistentShapeMap(newRoot, size - 1);
+  }
+
+  /**
+   * Method to get the number of shapes.
+   *
+   * @return the number of shapes in the map.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Method to visit every shape in the map.
+   *
+   * @param action the action run for each shape.
+   */
+  void forEach(Consumer<IShape> action) {
+    if (root != null) {
+      root.forEach(action);
+    }
+  }
+
+  /**
+   * Method to collect the shapes into a new list.
+   *
+   * @return a modifiable List of all shapes.
+   */
+  List<IShape> values() {
+    List<IShape> result = new ArrayList<>(size);
+    forEach(result::add);
+    return result;
+  }
+
+  private static int hash(String name) {
+    int h = name.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  private static int bit(int hash, int shift) {
+    return 1 << ((hash >>> shift) & MASK);
+  }
+
+  /**
+   * A node of the trie. Nodes are never modified once they are reachable from a map.
+   */
+  private abstract static class Node {
+    abstract IShape find(int hash, int shift, String name);
+
+    abstract Node put(int hash, int shift, IShape shape, boolean[] added);
+
+    abstract Node remove(int hash, int shift, String name);
+
+    abstract void forEach(Consumer<IShape> action);
+  }
+
+  /**
+   * A node holding up to 32 slots, each either a shape or a child node.
+   */
+  private static final class BitmapNode extends Node {
+    private final int bitmap;
+    private final Object[] slots;
+
+    BitmapNode(int bitmap, Object[] slots) {
+      this.bitmap = bitmap;
+      this.slots = slots;
+    }
+
+    @Override
+    IShape find(int hash, int shift, String name) {
+      int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return null;
+      }
+      Object slot = slots[index(bit)];
+      if (slot instanceof Node child) {
+        return child.find(hash, shift + BITS, name);
+      }
+      IShape shape = (IShape) slot;
+      return shape.getName().equals(name) ? shape : null;
+    }
+
+    @Override
+    Node put(int hash, int shift, IShape shape, boolean[] added) {
+      int bit = bit(hash, shift);
+      int idx = index(bit);
+      if ((bitmap & bit) == 0) {
+        Object[] copy = new Object[slots.length + 1];
+        System.arraycopy(slots, 0, copy, 0, idx);
+        copy[idx] = shape;
+        System.arraycopy(slots, idx, copy, idx + 1, slots.length - idx);
+        added[0] = true;
+        return new BitmapNode(bitmap | bit, copy);
+      }
+
+      Object slot = slots[idx];
+      if (slot instanceof Node child) {
+        Node newChild = child.put(hash, shift + BITS, shape, added);
+        return newChild == child ? this : with(idx, newChild);
+      }
+
+      IShape existing = (IShape) slot;
+      if (existing.getName().equals(shape.getName())) {
+        return existing == shape ? this : with(idx, shape);
+      }
+      added[0] = true;
+      return with(idx, merge(existing, hash(existing.getName()), shape, hash, shift + BITS));
+    }
+
+    @Override
+    Node remove(int hash, int shift, String name) {
+      int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return this;
+      }
+      int idx = index(bit);
+      Object slot = slots[idx];
+      if (slot instanceof Node child) {
+        Node newChild = child.remove(hash, shift + BITS, name);
+        if (newChild == child) {
+          return this;
+        }
+        return newChild == null ? without(bit, idx) : with(idx, newChild);
+      }
+      return ((IShape) slot).getName().equals(name) ? without(bit, idx) : this;
+    }
+
+    @Override
+    void forEach(Consumer<IShape> action) {
+      for (Object slot : slots) {
+        if (slot instanceof Node child) {
+          child.forEach(action);
+        } else {
+          action.accept((IShape) slot);
+        }
+      }
+    }
+
+    private int index(int bit) {
+      return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    private Node with(int idx, Object value) {
+      Object[] copy = slots.clone();
+      copy[idx] = value;
+      return new BitmapNode(bitmap, copy);
+    }
+
+    private Node without(int bit, int idx) {
+      if (bitmap == bit) {
+        return null;
+      }
+      Object[] copy = new Object[slots.length - 1];
+      System.arraycopy(slots, 0, copy, 0, idx);
+      System.arraycopy(slots, idx + 1, copy, idx, slots.length - idx - 1);
+      return new BitmapNode(bitmap & ~bit, copy);
+    }
+
+    private static Node merge(IShape a, int hashA, IShape b, int hashB, int shift) {
+      if (hashA == hashB) {
+        return new CollisionNode(hashA, new IShape[] {a, b});
+      }
+      int bitA = bit(hashA, shift);
+      int bitB = bit(hashB, shift);
+      if (bitA == bitB) {
+        return new BitmapNode(bitA, new Object[] {merge(a, hashA, b, hashB, shift + BITS)});
+      }
+      Object[] pair = Integer.compareUnsigned(bitA, bitB) < 0
+              ? new Object[] {a, b}
+              : new Object[] {b, a};
+      return new BitmapNode(bitA | bitB, pair);
+    }
+  }
+
+  /**
+   * A node for shapes whose names have the same full hash.
+   */
+  private static final class CollisionNode extends Node {
+    private final int hash;
+    private final IShape[] shapes;
+
+    CollisionNode(int hash, IShape[] shapes) {
+      this.hash = hash;
+      this.shapes = shapes;
+    }
+
+    @Override
+    IShape find(int hash, int shift, String name) {
+      int idx = indexOf(name);
+      return idx < 0 ? null : shapes[idx];
+    }
+
+    @Override
+    Node put(int hash, int shift, IShape shape, boolean[] added) {
+      if (hash != this.hash) {
+        return new BitmapNode(bit(this.hash, shift), new Object[] {this})
+                .put(hash, shift, shape, added);
+      }
+      int idx = indexOf(shape.getName());
+      if (idx >= 0) {
+        if (shapes[idx] == shape) {
+          return this;
+        }
+        IShape[] copy = shapes.clone();
+        copy[idx] = shape;
+        return new CollisionNode(hash, copy);
+      }
+      IShape[] copy = new IShape[shapes.length + 1];
+      System.arraycopy(shapes, 0, copy, 0, shapes.length);
+      copy[shapes.length] = shape;
+      added[0] = true;
+      return new CollisionNode(hash, copy);
+    }
+
+    @Override
+    Node remove(int hash, int shift, String name) {
+      int idx = indexOf(name);
+      if (idx < 0) {
+        return this;
+      }
+      if (shapes.length == 1) {
+        return null;
+      }
+      IShape[] copy = new IShape[shapes.length - 1];
+      System.arraycopy(shapes, 0, copy, 0, idx);
+      System.arraycopy(shapes, idx + 1, copy, idx, shapes.length - idx - 1);
+      return new CollisionNode(hash, copy);
+    }
+
+    @Override
+    void forEach(Consumer<IShape> action) {
+      for (IShape shape : shapes) {
+        action.accept(shape);
+      }
+    }
+
+    private int indexOf(String name) {
+      for (int i = 0; i < shapes.length; i++) {
+        if (shapes[i].getName().equals(name)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+}
@@ -1,105 +1,296 @@
 package photoalbum.model;
 
+import java.time.Clock;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.NavigableSet;
-import java.util.TreeSet;
 
 /**
  * The Concrete class PhotoAlbum that implements an album system.
+ * Shapes are kept in a persistent store, so taking a snapshot only keeps a handle to the current
+ * version of the store. The shapes in the store are frozen, since a snapshot, a checkpoint or a
+ * listener may hold the same object: every mutation replaces the shape with an updated copy. For
+ * the same reason the album keeps a copy of every shape added to it, and hands out copies of its
+ * shapes.
+ * The store keeps the shapes sorted by z-index, and a new shape is placed above all others, so
+ * views can draw a snapshot by walking its shapes in order.
+ * With a keyframe interval above 1, only every N-th snapshot keeps a whole store and the others
+ * keep the shapes that changed since the snapshot before them.
+ * A spatial grid over the shapes' bounding boxes is kept up to date by every mutation, so region,
+ * point and nearest-shape queries do not scan the whole album.
+ * Because the store is persistent, a checkpoint of the whole album is only a few references, and
+ * the album can later be restored to it, dropping every change and snapshot made since.
  */
-public class PhotoAlbum implements IPhotoalbum {
-  private final Map<String, IShape> shapes;
-  private final NavigableSet<Snapshot> snapshotList;
+public class PhotoAlbum extends AbstractPhotoAlbum {
+  private ShapeStore shapes;
+  private long topZIndex;
+  private final SpatialGrid spatialIndex;
+  private final SnapshotTimeline timeline;
+  private final Map<String, ShapeDelta> pendingDeltas;
+  private boolean deltasValid;
+  private Checkpoint checkpoint;
 
   /**
    * A constructor for the photo album class.
    */
   public PhotoAlbum() {
-    shapes = new HashMap<>();
-    snapshotList = new TreeSet<>();
+    this(1);
+  }
+
+  /**
+   * A constructor for a photo album that delta-encodes the snapshots between keyframes.
+   *
+   * @param keyframeInterval how many snapshots apart full keyframes are kept.
+   * @throws IllegalArgumentException if the interval is less than 1.
+   */
+  public PhotoAlbum(int keyframeInterval) throws IllegalArgumentException {
+    this(keyframeInterval, Clock.systemDefaultZone());
+  }
+
+  /**
+   * A constructor for a photo album that reads snapshot timestamps from the given clock.
+   *
+   * @param keyframeInterval how many snapshots apart full keyframes are kept.
+   * @param clock the clock used to timestamp snapshots.
+   * @throws IllegalArgumentException if the interval is less than 1.
+   */
+  public PhotoAlbum(int keyframeInterval, Clock clock) throws IllegalArgumentException {
+    super(clock);
+    shapes = ShapeStore.EMPTY;
+    spatialIndex = new SpatialGrid(GridCells.CELL_SIZE);
+    timeline = new SnapshotTimeline(keyframeInterval);
+    pendingDeltas = new LinkedHashMap<>();
+    deltasValid = true;
   }
 
   @Override
   public void removeShape(IShape shape) throws IllegalArgumentException {
-    if (!shapes.containsKey(shape.getName())) {
-      throw new IllegalArgumentException("Shape is not in the Album");
-    }
-    shapes.remove(shape.getName());
+    lookup(shape.getName(), "Shape is not in the Album");
+    shapes = shapes.remove(shape.getName());
+    spatialIndex.remove(shape.getName());
+    record(ShapeDelta.Kind.REMOVE, shape.getName(), null);
+    fireShape(AlbumEvent.Kind.SHAPE_REMOVED, shape.getName(), null);
   }
 
   @Override
   public void addShape(IShape shape) throws IllegalArgumentException {
-    if (shapes.containsKey(shape.getName())) {
+    if (shapes.get(shape.getName()) != null) {
       throw new IllegalArgumentException("This shape exists");
     }
-    shapes.put(shape.getName(), shape);
+    IShape copy = shape.copy();
+    copy.setZIndex(++topZIndex);
+    IShape added = FrozenShape.of(copy);
+    shapes = shapes.put(added);
+    spatialIndex.put(added);
+    record(ShapeDelta.Kind.ADD, added.getName(), added);
+    fireShape(AlbumEvent.Kind.SHAPE_ADDED, added.getName(), added);
   }
 
 
   @Override
   public IShape getShape(String name) throws IllegalArgumentException {
-    if (!shapes.containsKey(name)) {
-      throw new IllegalArgumentException("Getter: Shape does not exist");
-    }
-    return shapes.get(name);
+    return lookup(name, "Getter: Shape does not exist").copy();
   }
 
   @Override
   public List<IShape> getAllShapes() {
-    return new ArrayList<>(shapes.values());
+    return shapes.values().stream().map(IShape::copy).toList();
   }
 
   @Override
   public void moveShape(String name, Coordinate move) {
-    if (!shapes.containsKey(name)) {
-      throw new IllegalArgumentException("Transpose: Shape does not exist");
-    }
-    getShape(name).setPosition(move);
+    IShape changed = lookup(name, "Transpose: Shape does not exist").copy();
+    changed.setPosition(move);
+    IShape shape = FrozenShape.of(changed);
+    shapes = shapes.put(shape);
+    spatialIndex.put(shape);
+    record(ShapeDelta.Kind.MOVE, name, shape);
+    fireShape(AlbumEvent.Kind.SHAPE_MOVED, name, shape);
   }
 
   @Override
   public void resizeShape(String name, double dx, double dy) {
-    if (!shapes.containsKey(name)) {
-      throw new IllegalArgumentException("Transform: Shape does not exist");
-    }
-    getShape(name).resize(dx, dy);
+    IShape changed = lookup(name, "Transform: Shape does not exist").copy();
+    changed.resize(dx, dy);
+    IShape shape = FrozenShape.of(changed);
+    shapes = shapes.put(shape);
+    spatialIndex.put(shape);
+    record(ShapeDelta.Kind.RESIZE, name, shape);
+    fireShape(AlbumEvent.Kind.SHAPE_RESIZED, name, shape);
   }
 
   @Override
   public void setColor(String name, Color newColor) {
-    if (!shapes.containsKey(name)) {
-      throw new IllegalArgumentException("Color: Shape does not exist");
+    IShape changed = lookup(name, "Color: Shape does not exist").copy();
+    changed.setColor(newColor);
+    IShape shape = FrozenShape.of(changed);
+    shapes = shapes.put(shape);
+    record(ShapeDelta.Kind.COLOR, name, shape);
+    fireShape(AlbumEvent.Kind.SHAPE_RECOLORED, name, shape);
+  }
+
+  @Override
+  public void setZIndex(String name, long zIndex) {
+    IShape changed = lookup(name, "Layer: Shape does not exist").copy();
+    changed.setZIndex(zIndex);
+    IShape shape = FrozenShape.of(changed);
+    shapes = shapes.put(shape);
+    topZIndex = Math.max(topZIndex, zIndex);
+    record(ShapeDelta.Kind.LAYER, name, shape);
+    fireShape(AlbumEvent.Kind.SHAPE_LAYERED, name, shape);
+  }
+
+  @Override
+  public List<IShape> shapesIntersecting(double x, double y, double width, double height) {
+    List<IShape> result = new ArrayList<>();
+    for (String name : spatialIndex.intersecting(x, y, width, height)) {
+      result.add(shapes.get(name).copy());
     }
-    getShape(name).setColor(newColor);
+    return result;
   }
 
   @Override
-  public void takeSnapshot(String name) {
-    snapshotList.add(new Snapshot(name, getAllShapes()));
+  public List<IShape> shapesContaining(Coordinate point) {
+    List<IShape> result = new ArrayList<>();
+    for (String name : spatialIndex.intersecting(point.x(), point.y(), 0, 0)) {
+      IShape shape = shapes.get(name);
+      if (shape.contains(point)) {
+        result.add(shape.copy());
+      }
+    }
+    return result;
   }
 
   @Override
-  public List<Snapshot> getSnapshots() {
-    return new ArrayList<>(snapshotList);
+  public List<IShape> nearestShapes(Coordinate point, int k) {
+    List<IShape> result = new ArrayList<>();
+    for (String name : spatialIndex.nearest(point.x(), point.y(), k)) {
+      result.add(shapes.get(name).copy());
+    }
+    return result;
+  }
+
+  @Override
+  public void takeSnapshot(String name) {
+    addSnapshot(name, timeline.record(shapes, deltasValid ? pendingDeltas.values() : null));
+    pendingDeltas.clear();
+    deltasValid = true;
   }
 
   @Override
   public void reset() {
-    shapes.clear();
+    shapes = ShapeStore.EMPTY;
+    spatialIndex.clear();
+    pendingDeltas.clear();
+    deltasValid = false;
+    fireShape(AlbumEvent.Kind.ALBUM_RESET, null, null);
+  }
+
+  /**
+   * Method to capture the current state of the album, its shapes and its snapshots, so that it
+   * can be restored later.
+   *
+   * @return the Checkpoint.
+   */
+  public Checkpoint checkpoint() {
+    return new Checkpoint(this, shapes, topZIndex, new LinkedHashMap<>(pendingDeltas),
+            deltasValid, timeline.size());
+  }
+
+  /**
+   * Method to put the album back in the state of a checkpoint, dropping the changes and the
+   * snapshots made after it. The snapshots taken before it are kept as they are. Listeners are
+   * not told.
+   *
+   * @param checkpoint a checkpoint of this album.
+   * @throws IllegalArgumentException if the checkpoint is from another album, or from after an
+   *         earlier restore went back past it.
+   */
+  public void restore(Checkpoint checkpoint) throws IllegalArgumentException {
+    if (checkpoint.album != this) {
+      throw new IllegalArgumentException("Checkpoint is from another album");
+    }
+    if (checkpoint.snapshots > timeline.size()) {
+      throw new IllegalArgumentException("Checkpoint is no longer in the album");
+    }
+    shapes = checkpoint.shapes;
+    topZIndex = checkpoint.topZIndex;
+    pendingDeltas.clear();
+    pendingDeltas.putAll(checkpoint.pendingDeltas);
+    deltasValid = checkpoint.deltasValid;
+    timeline.truncate(checkpoint.snapshots);
+    truncateSnapshots(checkpoint.snapshots);
+    spatialIndex.clear();
+    shapes.forEach(spatialIndex::put);
+  }
+
+  @Override
+  protected void beginBatch() {
+    checkpoint = checkpoint();
   }
 
   @Override
-  public String toString() {
-    StringBuilder sb = new StringBuilder();
+  protected boolean endBatch(boolean commit) {
+    if (!commit) {
+      restore(checkpoint);
+    }
+    checkpoint = null;
+    return true;
+  }
 
-    sb.append("Printing Snapshots\n");
-    for (Snapshot snapshot : snapshotList) {
-      sb.append(snapshot.toString()).append("\n");
+  /**
+   * Method to remember a change for the next delta-encoded snapshot.
+   *
+   * @param kind the kind of change.
+   * @param name the name of the shape that changed.
+   * @param shape the shape after the change, or null if it was removed.
+   */
+  private void record(ShapeDelta.Kind kind, String name, IShape shape) {
+    if (!timeline.tracksDeltas() || !deltasValid) {
+      return;
     }
+    ShapeDelta delta = new ShapeDelta(kind, name, shape);
+    pendingDeltas.merge(name, delta, ShapeDelta::then);
+  }
 
-    return sb.toString();
+  /**
+   * Method to find a shape or fail with the given message.
+   *
+   * @param name the name of the shape.
+   * @param message the message for the exception if the shape is missing.
+   * @return the shape with that name.
+   * @throws IllegalArgumentException if the shape is not in the album.
+   */
+  private IShape lookup(String name, String message) throws IllegalArgumentException {
+    IShape shape = shapes.get(name);
+    if (shape == null) {
+      throw new IllegalArgumentException(message);
+    }
+    return shape;
+  }
+
+  /**
+   * The state of an album at one moment, for restoring the album to it later. Only the album it
+   * was taken from can read it.
+   */
+  public static final class Checkpoint {
+    private final PhotoAlbum album;
+    private final ShapeStore shapes;
+    private final long topZIndex;
+    private final Map<String, ShapeDelta> pendingDeltas;
+    private final boolean deltasValid;
+    private final int snapshots;
+
+    private Checkpoint(PhotoAlbum album, ShapeStore shapes, long topZIndex,
+                       Map<String, ShapeDelta> pendingDeltas, boolean deltasValid,
+                       int snapshots) {
+      this.album = album;
+      this.shapes = shapes;
+      this.topZIndex = topZIndex;
+      this.pendingDeltas = pendingDeltas;
+      this.deltasValid = deltasValid;
+      this.snapshots = snapshots;
+    }
   }
 }
@@ -35,9 +35,16 @@ public class Rectangle extends AbstractShape {
    * @return a IShape Object of type Rectangle.
    */
   public IShape copy() {
-    return new Rectangle(name, position, firstDimension, secondDimension, color);
+    Rectangle copy = new Rectangle(name, position, firstDimension, secondDimension, color);
+    copy.zIndex = zIndex;
+    return copy;
   }
 
+  @Override
+  public boolean contains(Coordinate point) {
+    return point.x() >= position.x() && point.x() <= position.x() + firstDimension
+            && point.y() >= position.y() && point.y() <= position.y() + secondDimension;
+  }
 
   @Override
   public String toString() {
@@ -0,0 +1,227 @@
+package photoalbum.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parallel primitive arrays holding the state of many shapes, one slot per shape. A slot whose
+ * type is FREE holds no shape. Columns are either live, owned and changed by an album, or
+ * frozen copies that back a snapshot and never change.
+ * Live columns also keep the occupied slots sorted in drawing order, by z-index and then name.
+ * Adding a shape on top only appends to that order; other changes mark it stale, and it is
+ * sorted again the next time it is needed. Frozen columns are stored in drawing order.
+ */
+final class ShapeColumns {
+  static final byte FREE = -1;
+  static final byte RECTANGLE = 0;
+  static final byte OVAL = 1;
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  double[] x;
+  double[] y;
+  double[] width;
+  double[] height;
+  double[] red;
+  double[] green;
+  double[] blue;
+  byte[] type;
+  long[] z;
+  int[] nameIndex;
+  String[] names;
+  int count;
+  final boolean frozen;
+  private int[] order;
+  private int ordered;
+  private boolean orderValid;
+
+  /**
+   * A constructor for empty live columns.
+   *
+   * @param names the name dictionary the name indexes refer to.
+   */
+  ShapeColumns(String[] names) {
+    this(INITIAL_CAPACITY, names, false);
+  }
+
+  private ShapeColumns(int capacity, String[] names, boolean frozen) {
+    this.x = new double[capacity];
+    this.y = new double[capacity];
+    this.width = new double[capacity];
+    this.height = new double[capacity];
+    this.red = new double[capacity];
+    this.green = new double[capacity];
+    this.blue = new double[capacity];
+    this.type = new byte[capacity];
+    this.z = new long[capacity];
+    this.nameIndex = new int[capacity];
+    this.names = names;
+    this.frozen = frozen;
+    this.order = new int[0];
+    this.orderValid = true;
+  }
+
+  /**
+   * Method to make sure there is room for at least one more slot.
+   */
+  void ensureCapacity() {
+    if (count < type.length) {
+      return;
+    }
+    int capacity = type.length + (type.length >> 1) + 1;
+    x = Arrays.copyOf(x, capacity);
+    y = Arrays.copyOf(y, capacity);
+    width = Arrays.copyOf(width, capacity);
+    height = Arrays.copyOf(height, capacity);
+    red = Arrays.copyOf(red, capacity);
+    green = Arrays.copyOf(green, capacity);
+    blue = Arrays.copyOf(blue, capacity);
+    type = Arrays.copyOf(type, capacity);
+    z = Arrays.copyOf(z, capacity);
+    nameIndex = Arrays.copyOf(nameIndex, capacity);
+  }
+
+  /**
+   * Method to add a newly filled slot to the drawing order.
+   *
+   * @param slot the slot that now holds a shape.
+   */
+  void appendToOrder(int slot) {
+    if (!orderValid || (ordered > 0 && compare(order[ordered - 1], slot) > 0)) {
+      orderValid = false;
+      return;
+    }
+    if (ordered == order.length) {
+      order = Arrays.copyOf(order, Math.max(INITIAL_CAPACITY, ordered + (ordered >> 1)));
+    }
+    order[ordered++] = slot;
+  }
+
+  /**
+   * Method to mark the drawing order as stale after a shape was removed or moved between layers.
+   */
+  void invalidateOrder() {
+    orderValid = false;
+  }
+
+  /**
+   * Method to forget the drawing order after every slot was cleared.
+   */
+  void clearOrder() {
+    ordered = 0;
+    orderValid = true;
+  }
+
+  /**
+   * Method to get the occupied slots in drawing order, sorting them again if the order is stale.
+   *
+   * @return the slots, from the bottom shape to the top one.
+   */
+  int[] drawOrder() {
+    if (frozen) {
+      int[] slots = new int[count];
+      Arrays.setAll(slots, i -> i);
+      return slots;
+    }
+    if (!orderValid) {
+      Integer[] slots = new Integer[count];
+      int n = 0;
+      for (int i = 0; i < count; i++) {
+        if (type[i] != FREE) {
+          slots[n++] = i;
+        }
+      }
+      Arrays.sort(slots, 0, n, this::compare);
+      order = new int[Math.max(INITIAL_CAPACITY, n)];
+      for (int i = 0; i < n; i++) {
+        order[i] = slots[i];
+      }
+      ordered = n;
+      orderValid = true;
+    }
+    return Arrays.copyOf(order, ordered);
+  }
+
+  private int compare(int a, int b) {
+    int byZ = Long.compare(z[a], z[b]);
+    return byZ != 0 ? byZ : names[nameIndex[a]].compareTo(names[nameIndex[b]]);
+  }
+
+  /**
+   * Method to copy the occupied slots into compact frozen columns.
+   *
+   * @param size the number of occupied slots.
+   * @return frozen columns that hold only the occupied slots, in drawing order.
+   */
+  ShapeColumns freeze(int size) {
+    ShapeColumns copy = new ShapeColumns(size, names, true);
+    int j = 0;
+    for (int i : drawOrder()) {
+      copy.x[j] = x[i];
+      copy.y[j] = y[i];
+      copy.width[j] = width[i];
+      copy.height[j] = height[i];
+      copy.red[j] = red[i];
+      copy.green[j] = green[i];
+      copy.blue[j] = blue[i];
+      copy.type[j] = type[i];
+      copy.z[j] = z[i];
+      copy.nameIndex[j] = nameIndex[i];
+      j++;
+    }
+    copy.count = j;
+    return copy;
+  }
+
+  /**
+   * Method to create a flyweight view for every occupied slot.
+   *
+   * @return a List of shapes backed by these columns, in drawing order.
+   */
+  List<IShape> views() {
+    int[] slots = drawOrder();
+    List<IShape> result = new ArrayList<>(slots.length);
+    for (int slot : slots) {
+      result.add(new ColumnShape(this, slot));
+    }
+    return result;
+  }
+
+  /**
+   * Method to store a color in a slot.
+   *
+   * @param slot the slot.
+   * @param color the color.
+   */
+  void setColor(int slot, Color color) {
+    red[slot] = color.r();
+    green[slot] = color.g();
+    blue[slot] = color.b();
+  }
+
+  /**
+   * Method to read the color of a slot.
+   *
+   * @param slot the slot.
+   * @return the Color record.
+   */
+  Color getColor(int slot) {
+    return new Color(red[slot], green[slot], blue[slot]);
+  }
+
+  /**
+   * Method to turn a shape type name into its type byte.
+   *
+   * @param shapeType the type name, as returned by IShape.getType.
+   * @return the type byte.
+   * @throws IllegalArgumentException if the type is not supported.
+   */
+  static byte typeOf(String shapeType) throws IllegalArgumentException {
+    return switch (shapeType.toLowerCase()) {
+      case "rectangle" -> RECTANGLE;
+      case "oval" -> OVAL;
+      default -> throw new IllegalArgumentException("Unsupported shape type: " + shapeType);
+    };
+  }
+}
@@ -0,0 +1,46 @@
+package photoalbum.model;
+
+/**
+ * A tuple describing how one shape changed between two consecutive snapshots.
+ *
+ * @param kind the kind of change.
+ * @param name the name of the shape that changed.
+ * @param shape the state of the shape after the change, or null if it was removed.
+ */
+record ShapeDelta(Kind kind, String name, IShape shape) {
+
+  /**
+   * The kinds of changes an album can make to a shape.
+   */
+  enum Kind {
+    ADD,
+    REMOVE,
+    MOVE,
+    COLOR,
+    RESIZE,
+    LAYER
+  }
+
+  /**
+   * Method to fold a later change to the same shape into this one.
+   *
+   * @param later the change that happened after this one.
+   * @return a single delta with the same effect as both.
+   */
+  ShapeDelta then(ShapeDelta later) {
+    if (kind == Kind.ADD && later.kind != Kind.REMOVE) {
+      return new ShapeDelta(Kind.ADD, name, later.shape);
+    }
+    return later;
+  }
+
+  /**
+   * Method to apply this change to a version of the shape store.
+   *
+   * @param shapes the shape store before the change.
+   * @return the shape store after the change.
+   */
+  ShapeStore applyTo(ShapeStore shapes) {
+    return kind == Kind.REMOVE ? shapes.remove(name) : shapes.put(shape);
+  }
+}
@@ -0,0 +1,91 @@
+package photoalbum.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * An immutable set of shapes that can be looked up by name and walked in drawing order. It pairs
+ * a PersistentShapeMap with a PersistentDrawOrder, so like both of them, every update returns a
+ * new store that shares all unchanged structure with the old one.
+ */
+final class ShapeStore {
+  static final ShapeStore EMPTY = new ShapeStore(PersistentShapeMap.EMPTY,
+          PersistentDrawOrder.EMPTY);
+
+  private final PersistentShapeMap byName;
+  private final PersistentDrawOrder drawOrder;
+
+  private ShapeStore(PersistentShapeMap byName, PersistentDrawOrder drawOrder) {
+    this.byName = byName;
+    this.drawOrder = drawOrder;
+  }
+
+  /**
+   * Method to find a shape by its name.
+   *
+   * @param name the name of the shape.
+   * @return the shape, or null if no shape has that name.
+   */
+  IShape get(String name) {
+    return byName.get(name);
+  }
+
+  /**
+   * Method to add a shape or replace the shape with the same name.
+   *
+   * @param shape the shape being stored.
+   * @return a store that contains the shape.
+   */
+  ShapeStore put(IShape shape) {
+    IShape old = byName.get(shape.getName());
+    PersistentDrawOrder order = drawOrder;
+    if (old != null && old.getZIndex() != shape.getZIndex()) {
+      order = order.remove(old);
+    }
+    return new ShapeStore(byName.put(shape), order.put(shape));
+  }
+
+  /**
+   * Method to remove the shape with the given name.
+   *
+   * @param name the name of the shape.
+   * @return a store without the shape, or this store if the name was not present.
+   */
+  ShapeStore remove(String name) {
+    IShape old = byName.get(name);
+    if (old == null) {
+      return this;
+    }
+    return new ShapeStore(byName.remove(name), drawOrder.remove(old));
+  }
+
+  /**
+   * Method to get the number of shapes.
+   *
+   * @return the number of shapes in the store.
+   */
+  int size() {
+    return byName.size();
+  }
+
+  /**
+   * Method to visit the shapes in drawing order.
+   *
+   * @param action the action run for each shape.
+   */
+  void forEach(Consumer<IShape> action) {
+    drawOrder.forEach(action);
+  }
+
+  /**
+   * Method to collect the shapes into a new list in drawing order.
+   *
+   * @return a modifiable List of all shapes, bottom first.
+   */
+  List<IShape> values() {
+    List<IShape> result = new ArrayList<>(size());
+    drawOrder.forEach(result::add);
+    return result;
+  }
+}
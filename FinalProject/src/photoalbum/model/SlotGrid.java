@@ -0,0 +1,319 @@
+package photoalbum.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A uniform grid over the bounding boxes of the shapes in a ShapeColumns, keyed by slot. Each
+ * cell lists the slots its shapes are in, in an int array, and the boxes are read straight from
+ * the columns, so the grid keeps no object per shape. Shapes that would cover a very large number
+ * of cells are kept in a separate list that every query checks, as in SpatialGrid.
+ * A shape is reported once even though it is listed in several cells: a query only takes it from
+ * the first of its cells the query looks at.
+ * The columns must not change the box of a slot while the slot is in the grid; the album removes
+ * the slot first and adds it again afterwards.
+ */
+final class SlotGrid {
+  private final ShapeColumns columns;
+  private final double cellSize;
+  private final Map<Long, int[]> cells;
+  private int[] oversized;
+  private int oversizedCount;
+  private int minCellX;
+  private int minCellY;
+  private int maxCellX;
+  private int maxCellY;
+
+  /**
+   * Constructor for an empty grid over the given columns.
+   *
+   * @param columns the live columns of an album.
+   * @param cellSize the width and height of one cell.
+   */
+  SlotGrid(ShapeColumns columns, double cellSize) {
+    this.columns = columns;
+    this.cellSize = cellSize;
+    this.cells = new HashMap<>();
+    this.oversized = new int[4];
+    clear();
+  }
+
+  /**
+   * Method to add a slot with the box it has in the columns.
+   *
+   * @param slot the slot, which is not in the grid yet.
+   */
+  void add(int slot) {
+    if (isOversized(slot)) {
+      if (oversizedCount == oversized.length) {
+        oversized = Arrays.copyOf(oversized, oversizedCount * 2);
+      }
+      oversized[oversizedCount++] = slot;
+      return;
+    }
+    int fromX = cell(columns.x[slot]);
+    int toX = cell(maxX(slot));
+    int fromY = cell(columns.y[slot]);
+    int toY = cell(maxY(slot));
+    for (int cx = fromX; cx <= toX; cx++) {
+      for (int cy = fromY; cy <= toY; cy++) {
+        long key = GridCells.key(cx, cy);
+        int[] list = cells.get(key);
+        if (list == null || list[0] + 1 == list.length) {
+          list = list == null ? new int[3] : Arrays.copyOf(list, list.length * 2);
+          cells.put(key, list);
+        }
+        list[++list[0]] = slot;
+      }
+    }
+    minCellX = Math.min(minCellX, fromX);
+    minCellY = Math.min(minCellY, fromY);
+    maxCellX = Math.max(maxCellX, toX);
+    maxCellY = Math.max(maxCellY, toY);
+  }
+
+  /**
+   * Method to remove a slot, while the columns still hold the box it was added with.
+   *
+   * @param slot the slot, which is in the grid.
+   */
+  void remove(int slot) {
+    if (isOversized(slot)) {
+      for (int i = 0; i < oversizedCount; i++) {
+        if (oversized[i] == slot) {
+          oversized[i] = oversized[--oversizedCount];
+          return;
+        }
+      }
+      return;
+    }
+    for (int cx = cell(columns.x[slot]); cx <= cell(maxX(slot)); cx++) {
+      for (int cy = cell(columns.y[slot]); cy <= cell(maxY(slot)); cy++) {
+        long key = GridCells.key(cx, cy);
+        int[] list = cells.get(key);
+        for (int i = 1; i <= list[0]; i++) {
+          if (list[i] == slot) {
+            list[i] = list[list[0]--];
+            break;
+          }
+        }
+        if (list[0] == 0) {
+          cells.remove(key);
+        }
+      }
+    }
+  }
+
+  /**
+   * Method to remove every slot from the grid.
+   */
+  void clear() {
+    cells.clear();
+    oversizedCount = 0;
+    minCellX = Integer.MAX_VALUE;
+    minCellY = Integer.MAX_VALUE;
+    maxCellX = Integer.MIN_VALUE;
+    maxCellY = Integer.MIN_VALUE;
+  }
+
+  /**
+   * Method to find the slots whose boxes intersect a rectangle.
+   *
+   * @param x the left edge of the rectangle.
+   * @param y the top edge of the rectangle.
+   * @param width the width of the rectangle.
+   * @param height the height of the rectangle.
+   * @return the matching slots.
+   */
+  int[] intersecting(double x, double y, double width, double height) {
+    double maxX = x + width;
+    double maxY = y + height;
+    int[] found = new int[16];
+    int count = 0;
+    for (int i = 0; i < oversizedCount; i++) {
+      if (intersects(oversized[i], x, y, maxX, maxY)) {
+        found = grow(found, count);
+        found[count++] = oversized[i];
+      }
+    }
+
+    int fromX = Math.max(cell(x), minCellX);
+    int toX = Math.min(cell(maxX), maxCellX);
+    int fromY = Math.max(cell(y), minCellY);
+    int toY = Math.min(cell(maxY), maxCellY);
+    for (long cx = fromX; cx <= toX; cx++) {
+      for (long cy = fromY; cy <= toY; cy++) {
+        int[] list = cells.get(GridCells.key((int) cx, (int) cy));
+        if (list == null) {
+          continue;
+        }
+        for (int i = 1; i <= list[0]; i++) {
+          int slot = list[i];
+          if (Math.max(cell(columns.x[slot]), fromX) == cx
+                  && Math.max(cell(columns.y[slot]), fromY) == cy
+                  && intersects(slot, x, y, maxX, maxY)) {
+            found = grow(found, count);
+            found[count++] = slot;
+          }
+        }
+      }
+    }
+    return Arrays.copyOf(found, count);
+  }
+
+  /**
+   * Method to find the slots whose boxes are closest to a point, nearest first, and by name
+   * between slots at the same distance.
+   *
+   * @param px the x coordinate of the point.
+   * @param py the y coordinate of the point.
+   * @param k the number of slots wanted, at most the number of slots in the grid.
+   * @return up to k slots.
+   */
+  int[] nearest(double px, double py, int k) {
+    if (k <= 0) {
+      return new int[0];
+    }
+    Nearest best = new Nearest(k);
+    for (int i = 0; i < oversizedCount; i++) {
+      best.offer(oversized[i], distance(oversized[i], px, py));
+    }
+
+    int cx = cell(px);
+    int cy = cell(py);
+    GridCells.walkRings(cx, cy, minCellX, minCellY, maxCellX, maxCellY,
+            key -> {
+              int[] list = cells.get(key);
+              if (list == null) {
+                return;
+              }
+              for (int i = 1; i <= list[0]; i++) {
+                int slot = list[i];
+                if (GridCells.key(clamp(cx, cell(columns.x[slot]), cell(maxX(slot))),
+                        clamp(cy, cell(columns.y[slot]), cell(maxY(slot)))) == key) {
+                  best.offer(slot, distance(slot, px, py));
+                }
+              }
+            },
+            ring -> best.count == k && best.distance[0] <= ring * cellSize);
+    return best.drain();
+  }
+
+  private boolean isOversized(int slot) {
+    return GridCells.cellCount(columns.x[slot], columns.y[slot], maxX(slot), maxY(slot),
+            cellSize) > GridCells.MAX_CELLS_PER_SHAPE;
+  }
+
+  private boolean intersects(int slot, double minX, double minY, double maxX, double maxY) {
+    return columns.x[slot] <= maxX && minX <= maxX(slot)
+            && columns.y[slot] <= maxY && minY <= maxY(slot);
+  }
+
+  private double distance(int slot, double px, double py) {
+    return GridCells.distance(columns.x[slot], columns.y[slot], maxX(slot), maxY(slot), px, py);
+  }
+
+  private double maxX(int slot) {
+    return columns.x[slot] + columns.width[slot];
+  }
+
+  private double maxY(int slot) {
+    return columns.y[slot] + columns.height[slot];
+  }
+
+  private int cell(double coordinate) {
+    return GridCells.cell(coordinate, cellSize);
+  }
+
+  private static int clamp(int value, int min, int max) {
+    return Math.max(min, Math.min(max, value));
+  }
+
+  private static int[] grow(int[] array, int count) {
+    return count < array.length ? array : Arrays.copyOf(array, count * 2);
+  }
+
+  /**
+   * The k best slots of a nearest-neighbour search so far, as a max-heap on distance with the
+   * farthest slot at the root.
+   */
+  private final class Nearest {
+    private final int[] slots;
+    private final double[] distance;
+    private int count;
+
+    private Nearest(int k) {
+      slots = new int[k];
+      distance = new double[k];
+    }
+
+    private void offer(int slot, double d) {
+      if (count < slots.length) {
+        slots[count] = slot;
+        distance[count] = d;
+        siftUp(count++);
+      } else if (farther(slots[0], distance[0], slot, d)) {
+        slots[0] = slot;
+        distance[0] = d;
+        siftDown(0);
+      }
+    }
+
+    private int[] drain() {
+      int[] result = new int[count];
+      while (count > 0) {
+        result[count - 1] = slots[0];
+        count--;
+        slots[0] = slots[count];
+        distance[0] = distance[count];
+        siftDown(0);
+      }
+      return result;
+    }
+
+    private void siftUp(int i) {
+      while (i > 0) {
+        int parent = (i - 1) / 2;
+        if (!farther(slots[i], distance[i], slots[parent], distance[parent])) {
+          return;
+        }
+        swap(i, parent);
+        i = parent;
+      }
+    }
+
+    private void siftDown(int i) {
+      while (true) {
+        int largest = i;
+        for (int child = 2 * i + 1; child <= 2 * i + 2 && child < count; child++) {
+          if (farther(slots[child], distance[child], slots[largest], distance[largest])) {
+            largest = child;
+          }
+        }
+        if (largest == i) {
+          return;
+        }
+        swap(i, largest);
+        i = largest;
+      }
+    }
+
+    private boolean farther(int a, double da, int b, double db) {
+      if (da != db) {
+        return da > db;
+      }
+      return columns.names[columns.nameIndex[a]].compareTo(columns.names[columns.nameIndex[b]])
+              > 0;
+    }
+
+    private void swap(int i, int j) {
+      int slot = slots[i];
+      slots[i] = slots[j];
+      slots[j] = slot;
+      double d = distance[i];
+      distance[i] = distance[j];
+      distance[j] = d;
+    }
+  }
+}
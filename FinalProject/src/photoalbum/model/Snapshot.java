@@ -1,18 +1,31 @@
 package photoalbum.model;
 
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
  * A concrete class Snapshot that acts as a freeze-frame of the model state of the album.
+ * Snapshots are identified by a sequence number that only ever increases, so two snapshots
+ * taken within the same clock tick still get distinct, correctly ordered IDs.
  */
 public class Snapshot implements Comparable<Snapshot> {
-  private final String id;
-  private final String timestamp;
+  private static final AtomicLong SEQUENCE = new AtomicLong();
+  private static final DateTimeFormatter TIMESTAMP_FORMAT =
+          DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+
+  private final long id;
+  private final Instant takenAt;
+  private final ZoneId zone;
   private final String description;
-  private final List<IShape> shapes;
+  private final Supplier<List<IShape>> shapes;
+  private String timestamp;
 
   /**
    * A constructor for a snapshot of the album.
@@ -21,31 +34,96 @@ public class Snapshot implements Comparable<Snapshot> {
    * @param shapes the list of shapes inside this snapshot.
    */
   public Snapshot(String description, List<IShape> shapes) {
-    this.id = java.time.Instant.now().toString();
-    this.timestamp = java.time.LocalDateTime.now().format(
-            java.time.format.DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss"));
+    this(description, shapes, Clock.systemDefaultZone());
+  }
+
+  /**
+   * A constructor for a snapshot of the album that reads the time from the given clock.
+   *
+   * @param description a description for the current snapshot.
+   * @param shapes the list of shapes inside this snapshot.
+   * @param clock the clock used for the timestamp.
+   */
+  public Snapshot(String description, List<IShape> shapes, Clock clock) {
+    this(description, copyOf(shapes), clock);
+  }
+
+  /**
+   * A constructor for a snapshot whose shapes are kept by the album instead of copied.
+   * The album never changes a shape that is reachable from a snapshot, so this is O(1).
+   *
+   * @param description a description for the current snapshot.
+   * @param shapes the source that produces the frozen shapes on demand.
+   * @param clock the clock used for the timestamp.
+   */
+  Snapshot(String description, Supplier<List<IShape>> shapes, Clock clock) {
+    this.id = SEQUENCE.incrementAndGet();
+    this.takenAt = clock.instant();
+    this.zone = clock.getZone();
     this.description = description;
-    this.shapes = shapes.stream().map(IShape::copy).collect(Collectors.toList());
+    this.shapes = shapes;
+  }
+
+  /**
+   * A constructor for a snapshot that was taken earlier and is being loaded back, keeping its
+   * original ID and time. New snapshots in this process are numbered after it.
+   *
+   * @param id the ID the snapshot was given when it was taken.
+   * @param takenAt the moment the snapshot was taken.
+   * @param zone the time zone used for the timestamp.
+   * @param description a description for the snapshot.
+   * @param shapes the source that produces the frozen shapes on demand.
+   */
+  Snapshot(long id, Instant takenAt, ZoneId zone, String description,
+           Supplier<List<IShape>> shapes) {
+    SEQUENCE.accumulateAndGet(id, Math::max);
+    this.id = id;
+    this.takenAt = takenAt;
+    this.zone = zone;
+    this.description = description;
+    this.shapes = shapes;
   }
 
   /**
    * Method to get the ID of the snapshot.
    *
-   * @return a String representing the ID.
+   * @return a long sequence number representing the ID.
    */
-  public String getId() {
+  public long getId() {
     return id;
   }
 
   /**
-   * Method to get the timestamp of the snapshot.
+   * Method to get the timestamp of the snapshot. It is only formatted the first time it is asked
+   * for.
    *
    * @return a String for the Timestamp.
    */
   public String getTimestamp() {
+    if (timestamp == null) {
+      timestamp = TIMESTAMP_FORMAT.format(takenAt.atZone(zone));
+    }
     return timestamp;
   }
 
+  /**
+   * Method to get the moment the snapshot was taken.
+   *
+   * @return the Instant the snapshot was taken.
+   */
+  public Instant getTakenAt() {
+    return takenAt;
+  }
+
+  /**
+   * Method to get the time zone the timestamp is shown in.
+   *
+   * @return the ZoneId of the clock that took the snapshot.
+   */
+  ZoneId getZone() {
+    return zone;
+  }
+
   /**
    * Method to get a description for the snapshot.
    *
@@ -56,17 +134,18 @@ public class Snapshot implements Comparable<Snapshot> {
   }
 
   /**
-   * A method to get the list of shapes in the snapshot.
+   * A method to get the list of shapes in the snapshot. The shapes of an album's snapshots
+   * cannot be changed; copy them to get shapes that can.
    *
    * @return a List of shapes that is unmodifiable.
    */
   public List<IShape> getShapes() {
-    return Collections.unmodifiableList(shapes);
+    return Collections.unmodifiableList(shapes.get());
   }
 
   @Override
   public int compareTo(Snapshot o) {
-    return id.compareTo(o.id);
+    return Long.compare(id, o.id);
   }
 
   @Override
@@ -77,12 +156,12 @@ public class Snapshot implements Comparable<Snapshot> {
     if (!(o instanceof Snapshot snapshot)) {
       return false;
     }
-    return id.equals(snapshot.id);
+    return id == snapshot.id;
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(id);
+    return Long.hashCode(id);
   }
 
   @Override
@@ -90,15 +169,26 @@ public class Snapshot implements Comparable<Snapshot> {
     StringBuilder sb = new StringBuilder();
     sb.append("Printing Snapshots\n");
     sb.append("Snapshot ID: ").append(id).append("\n");
-    sb.append("Timestamp: ").append(timestamp).append("\n");
+    sb.append("Timestamp: ").append(getTimestamp()).append("\n");
     sb.append("Description: ").append(description).append("\n");
     sb.append("Shape Information:\n");
 
-    for (IShape shape : shapes) {
+    for (IShape shape : getShapes()) {
       sb.append(shape.toString()).append("\n\n");
     }
 
     return sb.toString();
   }
-}
 
+  /**
+   * Method to freeze a list of shapes by copying each of them.
+   *
+   * @param shapes the shapes being copied.
+   * @return the source of the frozen copies.
+   */
+  private static Supplier<List<IShape>> copyOf(List<IShape> shapes) {
+    List<IShape> copies = shapes.stream().map(shape -> FrozenShape.of(shape.copy()))
+            .collect(Collectors.toList());
+    return () -> copies;
+  }
+}
@@ -0,0 +1,394 @@
+package photoalbum.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A binary file of snapshots that can be opened without reading it all. The file starts with a
+ * header and an index of record offsets, followed by one record per snapshot:
+ *
+ * <pre>
+ * header:  int magic, int version, int snapshot count, int reserved
+ * index:   per snapshot, long offset and int length of its record
+ * record:  long id, long epoch second, int nano, zone, description, int shape count, shapes
+ * shape:   byte type, name, double x, y, width, height, red, green, blue, long z-index
+ * </pre>
+ *
+ * <p>Shapes are stored in drawing order. Strings are stored as an int byte length followed by
+ * UTF-8 bytes. The file is read through a memory mapping, so opening snapshot k only touches the
+ * pages of its own record, and several processes reading the same archive share it through the
+ * page cache. Snapshots opened before the archive is closed stay readable, as a mapping outlives
+ * its channel. An archive can also be read whole onto the heap, leaving nothing open or mapped.
+ */
+public class SnapshotArchive implements Closeable {
+  private static final int MAGIC = 0x50415341;
+  private static final int VERSION = 2;
+  private static final int HEADER_BYTES = 16;
+  private static final int INDEX_ENTRY_BYTES = 12;
+  private static final int SHAPE_FIXED_BYTES = 1 + 4 + 7 * Double.BYTES + Long.BYTES;
+
+  private final FileChannel channel;
+  private final ByteBuffer file;
+  private final ByteBuffer index;
+  private final int count;
+  private final Snapshot[] opened;
+
+  /**
+   * Constructor for an archive that has been opened for reading.
+   *
+   * @param path the archive file.
+   * @throws IOException if the file cannot be read or is not an archive.
+   */
+  private SnapshotArchive(Path path) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      long size = channel.size();
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+      if (size < HEADER_BYTES || channel.read(header, 0) != HEADER_BYTES) {
+        throw new IOException("Not a snapshot archive: " + path);
+      }
+      this.count = readHeader(header.flip(), size, path);
+      this.index = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES,
+              (long) count * INDEX_ENTRY_BYTES);
+      checkIndex(index, count, size, path);
+      this.file = size <= Integer.MAX_VALUE
+              ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+              : null;
+      this.opened = new Snapshot[count];
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Constructor for an archive whose whole file has been read into memory.
+   *
+   * @param contents the contents of the file.
+   * @param path the archive file, for messages.
+   * @throws IOException if the contents are not an archive.
+   */
+  private SnapshotArchive(ByteBuffer contents, Path path) throws IOException {
+    this.channel = null;
+    if (contents.limit() < HEADER_BYTES) {
+      throw new IOException("Not a snapshot archive: " + path);
+    }
+    this.count = readHeader(contents.duplicate(), contents.limit(), path);
+    this.index = contents.slice(HEADER_BYTES, count * INDEX_ENTRY_BYTES);
+    checkIndex(index, count, contents.limit(), path);
+    this.file = contents;
+    this.opened = new Snapshot[count];
+  }
+
+  /**
+   * Method to open an archive for reading.
+   *
+   * @param path the archive file.
+   * @return the opened archive.
+   * @throws IOException if the file cannot be read or is not an archive.
+   */
+  public static SnapshotArchive open(Path path) throws IOException {
+    return new SnapshotArchive(path);
+  }
+
+  /**
+   * Method to read every snapshot of an archive onto the heap. The file is read once and closed,
+   * so it can be deleted or replaced while the snapshots are still in use; their shapes are kept
+   * encoded and decoded each time they are asked for, as with an opened archive.
+   *
+   * @param path the archive file.
+   * @return the snapshots, in the order they were stored.
+   * @throws IOException if the file cannot be read or is not an archive.
+   */
+  public static List<Snapshot> readAll(Path path) throws IOException {
+    SnapshotArchive archive = new SnapshotArchive(ByteBuffer.wrap(Files.readAllBytes(path)), path);
+    try {
+      return List.copyOf(archive.asList());
+    } catch (IndexOutOfBoundsException | BufferUnderflowException | DateTimeException e) {
+      throw new IOException("Damaged snapshot archive: " + path, e);
+    }
+  }
+
+  /**
+   * Method to check whether a file is a snapshot archive without opening it.
+   *
+   * @param path the file being checked.
+   * @return true if the file starts with the archive header.
+   */
+  public static boolean isArchive(Path path) {
+    if (!Files.isRegularFile(path)) {
+      return false;
+    }
+    try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(8);
+      if (in.read(header, 0) != 8) {
+        return false;
+      }
+      header.flip();
+      return header.getInt() == MAGIC && header.getInt() == VERSION;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Method to write snapshots to a new archive, replacing the file if it exists.
+   *
+   * @param path the archive file.
+   * @param snapshots the snapshots, in the order they should be stored.
+   * @throws IOException if the file cannot be written.
+   */
+  public static void write(Path path, List<Snapshot> snapshots) throws IOException {
+    try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      int count = snapshots.size();
+      ByteBuffer index = ByteBuffer.allocate(count * INDEX_ENTRY_BYTES);
+      ByteBuffer record = ByteBuffer.allocate(64 * 1024);
+      long position = HEADER_BYTES + (long) count * INDEX_ENTRY_BYTES;
+
+      for (Snapshot snapshot : snapshots) {
+        record = encode(snapshot, record);
+        index.putLong(position).putInt(record.remaining());
+        position += writeFully(out, record, position);
+      }
+
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+      header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(0).flip();
+      writeFully(out, header, 0);
+      index.flip();
+      writeFully(out, index, HEADER_BYTES);
+    }
+  }
+
+  /**
+   * Method to get the number of snapshots in the archive.
+   *
+   * @return the number of snapshots.
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * Method to open one snapshot. Only its own record is read, and its shapes are decoded each
+   * time they are asked for instead of being kept on the heap.
+   *
+   * @param k the position of the snapshot in the archive.
+   * @return the Snapshot at that position.
+   * @throws IndexOutOfBoundsException if there is no snapshot at that position.
+   */
+  public synchronized Snapshot get(int k) throws IndexOutOfBoundsException {
+    if (k < 0 || k >= count) {
+      throw new IndexOutOfBoundsException("No snapshot at " + k);
+    }
+    if (opened[k] != null) {
+      return opened[k];
+    }
+
+    ByteBuffer record = record(k);
+    long id = record.getLong();
+    Instant takenAt = Instant.ofEpochSecond(record.getLong(), record.getInt());
+    ZoneId zone = ZoneId.of(getString(record));
+    String description = getString(record);
+    ByteBuffer shapes = record.slice();
+
+    opened[k] = new Snapshot(id, takenAt, zone, description,
+            () -> decodeShapes(shapes.duplicate()));
+    return opened[k];
+  }
+
+  /**
+   * Method to view the archive as a read-only list, which is what the views take.
+   *
+   * @return a List that opens snapshots as they are asked for.
+   */
+  public List<Snapshot> asList() {
+    return new SnapshotList();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (channel != null) {
+      channel.close();
+    }
+  }
+
+  /**
+   * Method to check the header of an archive.
+   *
+   * @param header a buffer positioned at the start of the header.
+   * @param size the size of the file in bytes.
+   * @param path the archive file, for messages.
+   * @return the number of snapshots in the archive.
+   * @throws IOException if the header is not an archive header, or its count does not fit in
+   *     the file.
+   */
+  private static int readHeader(ByteBuffer header, long size, Path path) throws IOException {
+    if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+      throw new IOException("Not a snapshot archive: " + path);
+    }
+    int count = header.getInt();
+    if (count < 0 || (long) count * INDEX_ENTRY_BYTES > size - HEADER_BYTES) {
+      throw new IOException("Damaged snapshot archive: " + path);
+    }
+    return count;
+  }
+
+  /**
+   * Method to check that every record in the index lies inside the file, after the index.
+   *
+   * @param index the index of the archive.
+   * @param count the number of snapshots in the archive.
+   * @param size the size of the file in bytes.
+   * @param path the archive file, for messages.
+   * @throws IOException if a record lies outside the file.
+   */
+  private static void checkIndex(ByteBuffer index, int count, long size, Path path)
+          throws IOException {
+    long first = HEADER_BYTES + (long) count * INDEX_ENTRY_BYTES;
+    for (int k = 0; k < count; k++) {
+      long offset = index.getLong(k * INDEX_ENTRY_BYTES);
+      int length = index.getInt(k * INDEX_ENTRY_BYTES + Long.BYTES);
+      if (offset < first || length < 0 || offset > size - length) {
+        throw new IOException("Damaged snapshot archive: " + path);
+      }
+    }
+  }
+
+  /**
+   * Method to get the bytes of one record.
+   *
+   * @param k the position of the snapshot.
+   * @return a buffer positioned at the start of the record.
+   */
+  private ByteBuffer record(int k) {
+    long offset = index.getLong(k * INDEX_ENTRY_BYTES);
+    int length = index.getInt(k * INDEX_ENTRY_BYTES + Long.BYTES);
+    if (file != null) {
+      return file.slice((int) offset, length);
+    }
+    try {
+      return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not read snapshot " + k, e);
+    }
+  }
+
+  /**
+   * Method to encode one snapshot into a record.
+   *
+   * @param snapshot the snapshot being stored.
+   * @param buffer a buffer that may be reused.
+   * @return a buffer, possibly a larger one, holding the record ready to be written.
+   */
+  private static ByteBuffer encode(Snapshot snapshot, ByteBuffer buffer) {
+    byte[] zone = snapshot.getZone().getId().getBytes(StandardCharsets.UTF_8);
+    String text = snapshot.getDescription() == null ? "" : snapshot.getDescription();
+    byte[] description = text.getBytes(StandardCharsets.UTF_8);
+    List<IShape> shapes = snapshot.getShapes();
+    List<byte[]> names = new ArrayList<>(shapes.size());
+    int size = 8 + 8 + 4 + 4 + zone.length + 4 + description.length + 4;
+    for (IShape shape : shapes) {
+      byte[] name = shape.getName().getBytes(StandardCharsets.UTF_8);
+      names.add(name);
+      size += SHAPE_FIXED_BYTES + name.length;
+    }
+
+    if (buffer.capacity() < size) {
+      buffer = ByteBuffer.allocate(Math.max(size, buffer.capacity() * 2));
+    }
+    buffer.clear();
+    buffer.putLong(snapshot.getId());
+    buffer.putLong(snapshot.getTakenAt().getEpochSecond());
+    buffer.putInt(snapshot.getTakenAt().getNano());
+    buffer.putInt(zone.length).put(zone);
+    buffer.putInt(description.length).put(description);
+    buffer.putInt(shapes.size());
+    for (int i = 0; i < shapes.size(); i++) {
+      IShape shape = shapes.get(i);
+      byte[] name = names.get(i);
+      buffer.put(ShapeColumns.typeOf(shape.getType()));
+      buffer.putInt(name.length).put(name);
+      buffer.putDouble(shape.getPosition().x());
+      buffer.putDouble(shape.getPosition().y());
+      buffer.putDouble(shape.getFirstDimension());
+      buffer.putDouble(shape.getSecondDimension());
+      buffer.putDouble(shape.getColor().r());
+      buffer.putDouble(shape.getColor().g());
+      buffer.putDouble(shape.getColor().b());
+      buffer.putLong(shape.getZIndex());
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * Method to decode the shapes at the end of a record.
+   *
+   * @param buffer a buffer positioned at the shape count.
+   * @return a new List of the shapes.
+   */
+  private static List<IShape> decodeShapes(ByteBuffer buffer) {
+    int size = buffer.getInt();
+    List<IShape> shapes = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      byte type = buffer.get();
+      String name = getString(buffer);
+      Coordinate position = new Coordinate(buffer.getDouble(), buffer.getDouble());
+      double width = buffer.getDouble();
+      double height = buffer.getDouble();
+      Color color = new Color(buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+      IShape shape = type == ShapeColumns.OVAL
+              ? new Oval(name, position, color, width, height)
+              : new Rectangle(name, position, width, height, color);
+      shape.setZIndex(buffer.getLong());
+      shapes.add(shape);
+    }
+    return shapes;
+  }
+
+  private static String getString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static int writeFully(FileChannel out, ByteBuffer buffer, long position)
+          throws IOException {
+    int written = 0;
+    while (buffer.hasRemaining()) {
+      written += out.write(buffer, position + written);
+    }
+    return written;
+  }
+
+  /**
+   * A read-only list view that opens snapshots lazily.
+   */
+  private class SnapshotList extends AbstractList<Snapshot> implements RandomAccess {
+    @Override
+    public Snapshot get(int k) {
+      return SnapshotArchive.this.get(k);
+    }
+
+    @Override
+    public int size() {
+      return count;
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package photoalbum.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The storage behind an album's snapshots. Every N-th snapshot is kept as a keyframe, which is a
+ * handle to the full shape store, and the snapshots in between only keep the per-shape deltas
+ * since the snapshot before them. Shape lists are rebuilt on demand from the nearest keyframe.
+ * Each delta frame links back to the one before it, so a snapshot rebuilds its shapes from its
+ * own frames even after the timeline has been truncated past it.
+ */
+class SnapshotTimeline {
+  private final int keyframeInterval;
+  private final List<Frame> frames;
+  private int sinceKeyframe;
+
+  private Frame cachedFrame;
+  private ShapeStore cachedShapes;
+
+  /**
+   * Constructor for a timeline.
+   *
+   * @param keyframeInterval how many snapshots apart keyframes are, 1 keeps every snapshot whole.
+   * @throws IllegalArgumentException if the interval is less than 1.
+   */
+  SnapshotTimeline(int keyframeInterval) throws IllegalArgumentException {
+    if (keyframeInterval < 1) {
+      throw new IllegalArgumentException("Keyframe interval must be at least 1");
+    }
+    this.keyframeInterval = keyframeInterval;
+    this.frames = new ArrayList<>();
+  }
+
+  /**
+   * Method to tell if the album needs to report its changes to this timeline.
+   *
+   * @return true if snapshots between keyframes are stored as deltas.
+   */
+  boolean tracksDeltas() {
+    return keyframeInterval > 1;
+  }
+
+  /**
+   * Method to record a new snapshot.
+   *
+   * @param shapes the current shape store of the album.
+   * @param deltas the changes since the previous snapshot, or null if they are unknown.
+   * @return the source of the shapes for the new snapshot.
+   */
+  synchronized Supplier<List<IShape>> record(ShapeStore shapes, Collection<ShapeDelta> deltas) {
+    boolean keyframe = deltas == null
+            || frames.isEmpty()
+            || sinceKeyframe + 1 >= keyframeInterval
+            || deltas.size() >= shapes.size();
+
+    if (keyframe) {
+      frames.add(new Frame(null, shapes, null, 0));
+      sinceKeyframe = 0;
+      return shapes::values;
+    }
+
+    Frame previous = frames.get(frames.size() - 1);
+    Frame frame = new Frame(previous, null, deltas.toArray(new ShapeDelta[0]),
+            previous.sinceKeyframe + 1);
+    frames.add(frame);
+    sinceKeyframe++;
+    return () -> shapesOf(frame).values();
+  }
+
+  /**
+   * Method to get the number of snapshots recorded.
+   *
+   * @return the number of snapshots.
+   */
+  synchronized int size() {
+    return frames.size();
+  }
+
+  /**
+   * Method to forget the snapshots recorded after a point, as when a batch is rolled back. The
+   * snapshots already handed out for them keep their shapes.
+   *
+   * @param size the number of snapshots to keep.
+   */
+  synchronized void truncate(int size) {
+    while (frames.size() > size) {
+      frames.remove(frames.size() - 1);
+    }
+    sinceKeyframe = size == 0 ? 0 : frames.get(size - 1).sinceKeyframe;
+  }
+
+  /**
+   * Method to rebuild the shape store of a snapshot from its keyframe and the deltas after it,
+   * starting from the last rebuilt snapshot instead if it lies on the way.
+   *
+   * @param frame the frame of the snapshot.
+   * @return the shape store the album had when the snapshot was taken.
+   */
+  private synchronized ShapeStore shapesOf(Frame frame) {
+    Deque<Frame> path = new ArrayDeque<>();
+    Frame from = frame;
+    while (from.keyframe == null && from != cachedFrame) {
+      path.push(from);
+      from = from.previous;
+    }
+    ShapeStore shapes = from == cachedFrame ? cachedShapes : from.keyframe;
+
+    for (Frame next : path) {
+      for (ShapeDelta delta : next.deltas) {
+        shapes = delta.applyTo(shapes);
+      }
+    }
+
+    cachedFrame = frame;
+    cachedShapes = shapes;
+    return shapes;
+  }
+
+  /**
+   * A stored snapshot: either a keyframe, or the deltas from the snapshot before it, which it
+   * keeps a link to, so that it does not depend on the timeline it was recorded in.
+   *
+   * @param previous the frame of the snapshot before, or null for a keyframe.
+   * @param keyframe the whole shape store, or null if this frame holds deltas.
+   * @param deltas the changes since the snapshot before, or null for a keyframe.
+   * @param sinceKeyframe the number of frames since the last keyframe, 0 for a keyframe.
+   */
+  private record Frame(Frame previous, ShapeStore keyframe, ShapeDelta[] deltas,
+                       int sinceKeyframe) {
+  }
+}
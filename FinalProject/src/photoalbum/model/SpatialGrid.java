@@ -0,0 +1,246 @@
+package photoalbum.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * A uniform grid over the bounding boxes of shapes, keyed by shape name. Each shape is listed in
+ * every cell its box overlaps, so region, point and nearest-neighbour queries only look at the
+ * cells near the query instead of at every shape. Shapes that would cover a very large number of
+ * cells, like a background, are kept in a separate list that every query checks.
+ */
+final class SpatialGrid {
+  private final double cellSize;
+  private final Map<Long, List<String>> cells;
+  private final Map<String, Bounds> bounds;
+  private final Set<String> oversized;
+  private int minCellX;
+  private int minCellY;
+  private int maxCellX;
+  private int maxCellY;
+
+  /**
+   * Constructor for an empty grid.
+   *
+   * @param cellSize the width and height of one cell.
+   * @throws IllegalArgumentException if the cell size is not positive.
+   */
+  SpatialGrid(double cellSize) throws IllegalArgumentException {
+    if (!(cellSize > 0)) {
+      throw new IllegalArgumentException("Cell size must be positive");
+    }
+    this.cellSize = cellSize;
+    this.cells = new HashMap<>();
+    this.bounds = new HashMap<>();
+    this.oversized = new LinkedHashSet<>();
+    clear();
+  }
+
+  /**
+   * Method to add a shape, or to update it if the grid already has a shape with its name.
+   *
+   * @param shape the shape being indexed.
+   */
+  void put(IShape shape) {
+    Bounds box = Bounds.of(shape);
+    Bounds old = bounds.put(shape.getName(), box);
+    if (old != null) {
+      if (sameCells(old, box)) {
+        return;
+      }
+      unlink(shape.getName(), old);
+    }
+    link(shape.getName(), box);
+  }
+
+  /**
+   * Method to remove a shape from the grid.
+   *
+   * @param name the name of the shape.
+   */
+  void remove(String name) {
+    Bounds old = bounds.remove(name);
+    if (old != null) {
+      unlink(name, old);
+    }
+  }
+
+  /**
+   * Method to remove every shape from the grid.
+   */
+  void clear() {
+    cells.clear();
+    bounds.clear();
+    oversized.clear();
+    minCellX = Integer.MAX_VALUE;
+    minCellY = Integer.MAX_VALUE;
+    maxCellX = Integer.MIN_VALUE;
+    maxCellY = Integer.MIN_VALUE;
+  }
+
+  /**
+   * Method to find the shapes whose bounding boxes intersect a rectangle.
+   *
+   * @param x the left edge of the rectangle.
+   * @param y the top edge of the rectangle.
+   * @param width the width of the rectangle.
+   * @param height the height of the rectangle.
+   * @return the names of the matching shapes.
+   */
+  List<String> intersecting(double x, double y, double width, double height) {
+    Bounds query = new Bounds(x, y, x + width, y + height);
+    Set<String> seen = new LinkedHashSet<>();
+    int fromX = Math.max(cell(query.minX), minCellX);
+    int toX = Math.min(cell(query.maxX), maxCellX);
+    int fromY = Math.max(cell(query.minY), minCellY);
+    int toY = Math.min(cell(query.maxY), maxCellY);
+    for (long cx = fromX; cx <= toX; cx++) {
+      for (long cy = fromY; cy <= toY; cy++) {
+        List<String> names = cells.get(GridCells.key((int) cx, (int) cy));
+        if (names != null) {
+          seen.addAll(names);
+        }
+      }
+    }
+    seen.addAll(oversized);
+
+    List<String> result = new ArrayList<>();
+    for (String name : seen) {
+      if (bounds.get(name).intersects(query)) {
+        result.add(name);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Method to find the shapes whose bounding boxes are closest to a point, nearest first.
+   *
+   * @param px the x coordinate of the point.
+   * @param py the y coordinate of the point.
+   * @param k the number of shapes wanted.
+   * @return the names of up to k shapes.
+   */
+  List<String> nearest(double px, double py, int k) {
+    if (k <= 0 || bounds.isEmpty()) {
+      return new ArrayList<>();
+    }
+    Comparator<Candidate> farthestFirst = Comparator.comparingDouble(Candidate::distance)
+            .thenComparing(Candidate::name).reversed();
+    PriorityQueue<Candidate> best = new PriorityQueue<>(farthestFirst);
+    Set<String> seen = new LinkedHashSet<>(oversized);
+    for (String name : oversized) {
+      offer(best, k, new Candidate(name, bounds.get(name).distance(px, py)), farthestFirst);
+    }
+
+    if (!cells.isEmpty()) {
+      GridCells.walkRings(cell(px), cell(py), minCellX, minCellY, maxCellX, maxCellY,
+              key -> visit(key, px, py, k, best, seen, farthestFirst),
+              ring -> best.size() == k && best.peek().distance <= ring * cellSize);
+    }
+
+    List<String> result = new ArrayList<>(best.size());
+    while (!best.isEmpty()) {
+      result.add(0, best.poll().name);
+    }
+    return result;
+  }
+
+  private void visit(long key, double px, double py, int k, PriorityQueue<Candidate> best,
+                     Set<String> seen, Comparator<Candidate> farthestFirst) {
+    List<String> names = cells.get(key);
+    if (names == null) {
+      return;
+    }
+    for (String name : names) {
+      if (seen.add(name)) {
+        offer(best, k, new Candidate(name, bounds.get(name).distance(px, py)), farthestFirst);
+      }
+    }
+  }
+
+  private static void offer(PriorityQueue<Candidate> best, int k, Candidate candidate,
+                            Comparator<Candidate> farthestFirst) {
+    if (best.size() < k) {
+      best.add(candidate);
+    } else if (farthestFirst.compare(candidate, best.peek()) > 0) {
+      best.poll();
+      best.add(candidate);
+    }
+  }
+
+  private void link(String name, Bounds box) {
+    if (GridCells.cellCount(box.minX, box.minY, box.maxX, box.maxY, cellSize)
+            > GridCells.MAX_CELLS_PER_SHAPE) {
+      oversized.add(name);
+      return;
+    }
+    for (int cx = cell(box.minX); cx <= cell(box.maxX); cx++) {
+      for (int cy = cell(box.minY); cy <= cell(box.maxY); cy++) {
+        cells.computeIfAbsent(GridCells.key(cx, cy), c -> new ArrayList<>(2)).add(name);
+      }
+    }
+    minCellX = Math.min(minCellX, cell(box.minX));
+    minCellY = Math.min(minCellY, cell(box.minY));
+    maxCellX = Math.max(maxCellX, cell(box.maxX));
+    maxCellY = Math.max(maxCellY, cell(box.maxY));
+  }
+
+  private void unlink(String name, Bounds box) {
+    if (oversized.remove(name)) {
+      return;
+    }
+    for (int cx = cell(box.minX); cx <= cell(box.maxX); cx++) {
+      for (int cy = cell(box.minY); cy <= cell(box.maxY); cy++) {
+        long key = GridCells.key(cx, cy);
+        List<String> names = cells.get(key);
+        names.remove(name);
+        if (names.isEmpty()) {
+          cells.remove(key);
+        }
+      }
+    }
+  }
+
+  private boolean sameCells(Bounds a, Bounds b) {
+    return cell(a.minX) == cell(b.minX) && cell(a.maxX) == cell(b.maxX)
+            && cell(a.minY) == cell(b.minY) && cell(a.maxY) == cell(b.maxY);
+  }
+
+  private int cell(double coordinate) {
+    return GridCells.cell(coordinate, cellSize);
+  }
+
+  /**
+   * A tuple for an axis-aligned bounding box.
+   */
+  private record Bounds(double minX, double minY, double maxX, double maxY) {
+
+    static Bounds of(IShape shape) {
+      double x = shape.getPosition().x();
+      double y = shape.getPosition().y();
+      return new Bounds(x, y, x + shape.getFirstDimension(), y + shape.getSecondDimension());
+    }
+
+    boolean intersects(Bounds other) {
+      return minX <= other.maxX && other.minX <= maxX
+              && minY <= other.maxY && other.minY <= maxY;
+    }
+
+    double distance(double px, double py) {
+      return GridCells.distance(minX, minY, maxX, maxY, px, py);
+    }
+  }
+
+  /**
+   * A tuple for a shape found by a nearest-neighbour search.
+   */
+  private record Candidate(String name, double distance) {
+  }
+}
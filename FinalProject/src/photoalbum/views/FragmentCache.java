@@ -0,0 +1,309 @@
+package photoalbum.views;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A cache of rendered page fragments, so that regenerating a page after a small change to an
+ * album only renders the snapshots whose shapes changed. A fragment is keyed by a hash of
+ * everything it was rendered from, which WebView computes, and holds the encoded bytes.
+ *
+ * <p>Fragments are kept in memory under a total size, evicting the least recently used first.
+ * A cache can also keep fragments in a directory, so they outlive the process: a fragment not in
+ * memory is looked for there, and every fragment stored is written there too. The directory is
+ * kept under its own size in the same way ParseCache keeps its entries, by the time each file was
+ * last used. A fragment that cannot be written to disk is kept in memory only.
+ *
+ * <p>What is read from disk goes into a page as it is, so the directory must be private to the
+ * user, such as one opened by CacheDirectories. Each file also starts with a SHA-256 hash of its
+ * key and its fragment, and a file that is not a regular file or does not match its hash is
+ * deleted and treated as a miss, so a damaged or truncated fragment, or a file copied in under
+ * another key, never reaches a page.
+ *
+ * <p>A cache can be shared by several pages and used from several threads at once.
+ */
+public class FragmentCache {
+  private static final String SUFFIX = ".frag";
+  private static final int ENTRY_OVERHEAD = 128;
+  private static final int HASH_BYTES = 32;
+
+  private final long maxMemoryBytes;
+  private final Path directory;
+  private final long maxDiskBytes;
+  private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(64, 0.75f, true);
+  private long memoryBytes;
+  private long diskBytes = -1;
+  private long hits;
+  private long misses;
+
+  /**
+   * Constructor for a cache kept in memory only.
+   *
+   * @param maxMemoryBytes the total size the fragments in memory are kept under.
+   * @throws IllegalArgumentException if the size is not positive.
+   */
+  public FragmentCache(long maxMemoryBytes) throws IllegalArgumentException {
+    this(maxMemoryBytes, null, 1);
+  }
+
+  /**
+   * Constructor for a cache kept in memory and in a directory.
+   *
+   * @param maxMemoryBytes the total size the fragments in memory are kept under.
+   * @param directory the directory holding the fragments on disk; it is created when first
+   *                  needed. Null keeps fragments in memory only.
+   * @param maxDiskBytes the total size the fragments on disk are kept under.
+   * @throws IllegalArgumentException if a size is not positive.
+   */
+  public FragmentCache(long maxMemoryBytes, Path directory, long maxDiskBytes)
+          throws IllegalArgumentException {
+    if (maxMemoryBytes <= 0 || maxDiskBytes <= 0) {
+      throw new IllegalArgumentException("Cache size must be positive");
+    }
+    this.maxMemoryBytes = maxMemoryBytes;
+    this.directory = directory;
+    this.maxDiskBytes = maxDiskBytes;
+  }
+
+  /**
+   * Method to look up a fragment, marking it as recently used.
+   *
+   * @param key the key of the fragment.
+   * @return the fragment, or null if the cache does not hold it.
+   */
+  public byte[] lookup(String key) {
+    byte[] fragment;
+    synchronized (this) {
+      fragment = entries.get(key);
+    }
+    if (fragment == null && directory != null) {
+      Path file = entryFile(key);
+      try {
+        if (Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+          fragment = checked(key, Files.readAllBytes(file));
+          if (fragment == null) {
+            Files.deleteIfExists(file);
+          } else {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+          }
+        }
+      } catch (IOException e) {
+        // not on disk, or unreadable, which is the same for a cache
+      }
+      if (fragment != null) {
+        remember(key, fragment);
+      }
+    }
+    synchronized (this) {
+      if (fragment == null) {
+        misses++;
+      } else {
+        hits++;
+      }
+    }
+    return fragment;
+  }
+
+  /**
+   * Method to store a fragment, then evict fragments until the cache fits. On disk the fragment
+   * is written after its hash, to a temporary file first, so a reader never sees half of it.
+   *
+   * @param key the key of the fragment.
+   * @param fragment the fragment, which must not be changed afterwards.
+   */
+  public void store(String key, byte[] fragment) {
+    remember(key, fragment);
+    if (directory == null) {
+      return;
+    }
+    try {
+      Files.createDirectories(directory);
+      Path temporary = Files.createTempFile(directory, key, ".tmp");
+      try {
+        Files.write(temporary, hash(key, fragment));
+        Files.write(temporary, fragment, StandardOpenOption.APPEND);
+        Files.move(temporary, entryFile(key), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temporary);
+      }
+      if (addToDisk(HASH_BYTES + fragment.length)) {
+        evictFromDisk();
+      }
+    } catch (IOException | UncheckedIOException e) {
+      // the fragment is still in memory
+    }
+  }
+
+  /**
+   * Method to get the number of lookups that found their fragment.
+   *
+   * @return the number of hits.
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * Method to get the number of lookups that did not find their fragment.
+   *
+   * @return the number of misses.
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Method to keep a fragment in memory, evicting the least recently used ones until the cache
+   * fits. A fragment bigger than the whole cache is not kept.
+   *
+   * @param key the key of the fragment.
+   * @param fragment the fragment.
+   */
+  private synchronized void remember(String key, byte[] fragment) {
+    long size = fragment.length + ENTRY_OVERHEAD;
+    if (size > maxMemoryBytes) {
+      return;
+    }
+    byte[] replaced = entries.put(key, fragment);
+    memoryBytes += size;
+    if (replaced != null) {
+      memoryBytes -= replaced.length + ENTRY_OVERHEAD;
+    }
+    Iterator<byte[]> oldest = entries.values().iterator();
+    while (memoryBytes > maxMemoryBytes) {
+      memoryBytes -= oldest.next().length + ENTRY_OVERHEAD;
+      oldest.remove();
+    }
+  }
+
+  /**
+   * Method to check a file read from disk against the hash it starts with.
+   *
+   * @param key the key the file was stored under.
+   * @param file the contents of the file.
+   * @return the fragment in the file, or null if it does not match its hash.
+   */
+  private static byte[] checked(String key, byte[] file) {
+    if (file.length < HASH_BYTES) {
+      return null;
+    }
+    byte[] fragment = Arrays.copyOfRange(file, HASH_BYTES, file.length);
+    boolean matches = MessageDigest.isEqual(hash(key, fragment),
+            Arrays.copyOf(file, HASH_BYTES));
+    return matches ? fragment : null;
+  }
+
+  /**
+   * Method to compute the hash a fragment is written after on disk.
+   *
+   * @param key the key of the fragment.
+   * @param fragment the fragment.
+   * @return the SHA-256 hash of the key and the fragment.
+   */
+  private static byte[] hash(String key, byte[] fragment) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+    digest.update(key.getBytes(StandardCharsets.UTF_8));
+    return digest.digest(fragment);
+  }
+
+  /**
+   * Method to count a fragment written to disk, measuring the directory the first time.
+   *
+   * @param size the size of the fragment.
+   * @return true if the directory has grown past its size.
+   * @throws IOException if the directory cannot be listed.
+   */
+  private synchronized boolean addToDisk(long size) throws IOException {
+    if (diskBytes < 0) {
+      diskBytes = 0;
+      for (Path entry : listEntries()) {
+        diskBytes += Files.size(entry);
+      }
+    } else {
+      diskBytes += size;
+    }
+    return diskBytes > maxDiskBytes;
+  }
+
+  /**
+   * Method to delete the least recently used fragments on disk until the directory is under
+   * three quarters of its size, so that it is not listed again for every fragment stored.
+   *
+   * @throws IOException if the directory cannot be listed.
+   */
+  private synchronized void evictFromDisk() throws IOException {
+    List<Path> files = listEntries().stream()
+            .sorted(Comparator.comparing(FragmentCache::lastUsed).reversed())
+            .toList();
+    long total = 0;
+    for (Path entry : files) {
+      long size = Files.size(entry);
+      if (total + size > maxDiskBytes / 4 * 3) {
+        Files.deleteIfExists(entry);
+      } else {
+        total += size;
+      }
+    }
+    diskBytes = total;
+  }
+
+  /**
+   * Method to list the fragments on disk.
+   *
+   * @return the files of the fragments.
+   * @throws IOException if the directory cannot be listed.
+   */
+  private List<Path> listEntries() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).toList();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Method to get the file holding a fragment.
+   *
+   * @param key the key of the fragment.
+   * @return the path of the fragment.
+   */
+  private Path entryFile(String key) {
+    return directory.resolve(key + SUFFIX);
+  }
+
+  /**
+   * Method to get the time a fragment on disk was last stored or read.
+   *
+   * @param entry the file of the fragment.
+   * @return the time it was last used.
+   * @throws UncheckedIOException if the time cannot be read.
+   */
+  private static FileTime lastUsed(Path entry) throws UncheckedIOException {
+    try {
+      return Files.getLastModifiedTime(entry);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
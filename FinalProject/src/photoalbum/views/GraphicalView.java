@@ -5,14 +5,19 @@ import photoalbum.model.Snapshot;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A graphical view class that has interactive buttons to display the snapshots passed in.
  */
 public class GraphicalView extends JFrame implements IGraphicalView {
   private List<Snapshot> snapshotList;
+  private final Map<Long, Integer> indexById;
   private int index;
+  private boolean growable;
 
   private JPanel mainPanel;
   private JPanel canvasPanel;
@@ -29,6 +34,10 @@ public class GraphicalView extends JFrame implements IGraphicalView {
    */
   public GraphicalView(List<Snapshot> snapshotList) {
     this.snapshotList = snapshotList;
+    this.indexById = new HashMap<>();
+    for (int i = 0; i < snapshotList.size(); i++) {
+      indexById.put(snapshotList.get(i).getId(), i);
+    }
     this.index = 0;
 
     initComponents();
@@ -62,7 +71,9 @@ public class GraphicalView extends JFrame implements IGraphicalView {
     prevButton = new JButton("PREV");
     infoButton = new JButton("INFO");
 
-    String[] snapshotIds = snapshotList.stream().map(Snapshot::getId).toArray(String[]::new);
+    String[] snapshotIds = snapshotList.stream()
+            .map(snapshot -> String.valueOf(snapshot.getId()))
+            .toArray(String[]::new);
     snapshotSelector = new JComboBox<>(snapshotIds);
   }
 
@@ -89,7 +100,8 @@ public class GraphicalView extends JFrame implements IGraphicalView {
   }
 
   /**
-   * Creates the current snapshot. Insures proper order when creating the objects in the snap.
+   * Creates the current snapshot. The snapshot lists its shapes in drawing order, from the
+   * lowest z-index to the highest, so they are drawn in a single pass.
    *
    * @param g the object type Graphics where the snapshot is being created.
    */
@@ -99,19 +111,9 @@ public class GraphicalView extends JFrame implements IGraphicalView {
     }
 
     Snapshot snapshot = snapshotList.get(index);
-    List<IShape> shapes = snapshot.getShapes();
-
-    // First pass: Draw any shape marked as background
-    shapes.stream()
-            .filter(s -> s.getName().toLowerCase().contains("background") ||
-                    s.getName().toLowerCase().contains("rect1"))  // Including RECT1 as it serves as background
-            .forEach(shape -> drawShape(g, shape));
-
-    // Second pass: Draw all other shapes in order
-    shapes.stream()
-            .filter(s -> !s.getName().toLowerCase().contains("background") &&
-                    !s.getName().toLowerCase().contains("rect1"))
-            .forEach(shape -> drawShape(g, shape));
+    for (IShape shape : snapshot.getShapes()) {
+      drawShape(g, shape);
+    }
   }
 
   /**
@@ -132,8 +134,10 @@ public class GraphicalView extends JFrame implements IGraphicalView {
     });
 
     snapshotSelector.addActionListener(e -> {
-      String id = (String) snapshotSelector.getSelectedItem();
-      jumpToSnapshot(id);
+      int selected = snapshotSelector.getSelectedIndex();
+      if (selected >= 0) {
+        jumpToSnapshot(snapshotList.get(selected).getId());
+      }
     });
   }
 
@@ -144,7 +148,13 @@ public class GraphicalView extends JFrame implements IGraphicalView {
       return;
     }
 
-    this.index = snapshotList.indexOf(snapshot);
+    Integer position = indexById.get(snapshot.getId());
+    if (position == null) {
+      JOptionPane.showMessageDialog(this, "Snapshot is not in this album");
+      return;
+    }
+
+    this.index = position;
     snapshotSelector.setSelectedIndex(index);
 
     String description = snapshot.getDescription();
@@ -162,6 +172,45 @@ public class GraphicalView extends JFrame implements IGraphicalView {
     return snapshotList;
   }
 
+  @Override
+  public void addSnapshot(Snapshot snapshot) {
+    // Copy the list passed in once, so the caller's list is never changed
+    if (!growable) {
+      snapshotList = new ArrayList<>(snapshotList);
+      growable = true;
+    }
+    boolean atEnd = index >= snapshotList.size() - 1;
+    snapshotList.add(snapshot);
+    indexById.put(snapshot.getId(), snapshotList.size() - 1);
+    snapshotSelector.addItem(String.valueOf(snapshot.getId()));
+    if (atEnd) {
+      displaySnapshot(snapshot);
+    }
+  }
+
+  @Override
+  public void updateSnapshots(int firstChanged, List<Snapshot> snapshots) {
+    for (int i = snapshotList.size() - 1; i >= firstChanged; i--) {
+      indexById.remove(snapshotList.get(i).getId());
+      snapshotSelector.removeItemAt(i);
+    }
+    snapshotList = new ArrayList<>(snapshots);
+    growable = true;
+    for (int i = firstChanged; i < snapshotList.size(); i++) {
+      indexById.put(snapshotList.get(i).getId(), i);
+      snapshotSelector.addItem(String.valueOf(snapshotList.get(i).getId()));
+    }
+
+    if (snapshotList.isEmpty()) {
+      index = 0;
+      snapshotInfoLabel.setText("Please choose a Snapshot:)");
+      canvasPanel.repaint();
+    } else if (index >= firstChanged) {
+      index = Math.min(index, snapshotList.size() - 1);
+      displaySnapshot(snapshotList.get(index));
+    }
+  }
+
   @Override
   public void goToNextSnapshot() {
     if (snapshotList.isEmpty()) {
@@ -193,13 +242,11 @@ public class GraphicalView extends JFrame implements IGraphicalView {
   }
 
   @Override
-  public void jumpToSnapshot(String snapshotId) {
-    for (Snapshot snapshot : snapshotList) {
-      if (snapshot.getId().equals(snapshotId)) {
-        this.index = snapshotList.indexOf(snapshot);
-        displaySnapshot(snapshot);
-        return;
-      }
+  public void jumpToSnapshot(long snapshotId) {
+    Integer position = indexById.get(snapshotId);
+    if (position != null) {
+      this.index = position;
+      displaySnapshot(snapshotList.get(position));
     }
   }
 
@@ -0,0 +1,362 @@
+package photoalbum.views;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A writer for HTML that encodes text as UTF-8 straight into a byte array and writes the array to
+ * a file through a FileChannel whenever it fills up. Numbers are formatted without going through
+ * a Formatter and text is escaped as it is encoded, so writing a shape allocates nothing.
+ *
+ * <p>Writes are positional, so a writer can start in the middle of a file and overwrite
+ * everything after that point, as WebView does when only some snapshots changed. A writer can
+ * also have no file at all, in which case its array grows to hold everything written until it is
+ * copied into another writer, which is how sections rendered on other threads are put together.
+ */
+final class HtmlWriter implements Closeable {
+  private static final String NEWLINE = System.lineSeparator();
+  private static final double FAST_LIMIT = 1e6;
+  private static final double TIE_MARGIN = 1e-6;
+
+  private final FileChannel channel;
+  private final boolean ownsChannel;
+  private byte[] buffer;
+  private int count;
+  private long flushed;
+
+  /**
+   * Constructor for a writer that writes into a file from a position on.
+   *
+   * @param channel the file, which the writer does not close.
+   * @param position where the first byte goes.
+   * @param buffer the array bytes are collected in before they are written.
+   */
+  HtmlWriter(FileChannel channel, long position, byte[] buffer) {
+    this(channel, false, position, buffer);
+  }
+
+  /**
+   * Constructor for a writer that collects everything in memory.
+   *
+   * @param capacity the size the array starts at.
+   */
+  HtmlWriter(int capacity) {
+    this(null, false, 0, new byte[capacity]);
+  }
+
+  /**
+   * Constructor for a writer.
+   *
+   * @param channel the file, or null to collect everything in memory.
+   * @param ownsChannel whether closing the writer closes the file.
+   * @param position where the first byte goes.
+   * @param buffer the array bytes are collected in before they are written.
+   */
+  private HtmlWriter(FileChannel channel, boolean ownsChannel, long position, byte[] buffer) {
+    this.channel = channel;
+    this.ownsChannel = ownsChannel;
+    this.flushed = position;
+    this.buffer = buffer;
+  }
+
+  /**
+   * Method to create a writer for a new file, replacing the file if it exists.
+   *
+   * @param file the file.
+   * @param buffer the array bytes are collected in before they are written.
+   * @return the writer, which closes the file when it is closed.
+   * @throws IOException if the file cannot be opened.
+   */
+  static HtmlWriter create(Path file, byte[] buffer) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    return new HtmlWriter(channel, true, 0, buffer);
+  }
+
+  /**
+   * Method to get where in the file the next byte goes.
+   *
+   * @return the position.
+   */
+  long position() {
+    return flushed + count;
+  }
+
+  /**
+   * Method to write text as it is, with no escaping.
+   *
+   * @param text the text.
+   * @return this writer.
+   * @throws IOException if the file cannot be written.
+   */
+  HtmlWriter append(String text) throws IOException {
+    for (int i = 0; i < text.length(); i++) {
+      i = put(text, i);
+    }
+    return this;
+  }
+
+  /**
+   * Method to write text followed by a line separator.
+   *
+   * @param text the text.
+   * @return this writer.
+   * @throws IOException if the file cannot be written.
+   */
+  HtmlWriter line(String text) throws IOException {
+    return append(text).append(NEWLINE);
+  }
+
+  /**
+   * Method to write text with the characters that are special in HTML replaced by entities.
+   *
+   * @param text the text, or null to write nothing.
+   * @return this writer.
+   * @throws IOException if the file cannot be written.
+   */
+  HtmlWriter appendEscaped(String text) throws IOException {
+    if (text == null) {
+      return this;
+    }
+    for (int i = 0; i < text.length(); i++) {
+      switch (text.charAt(i)) {
+        case '&' -> append("&amp;");
+        case '<' -> append("&lt;");
+        case '>' -> append("&gt;");
+        case '"' -> append("&quot;");
+        case '\'' -> append("&#x27;");
+        default -> i = put(text, i);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Method to write bytes that are already encoded.
+   *
+   * @param bytes the bytes.
+   * @return this writer.
+   * @throws IOException if the file cannot be written.
+   */
+  HtmlWriter append(byte[] bytes) throws IOException {
+    write(bytes, bytes.length);
+    return this;
+  }
+
+  /**
+   * Method to write a whole number.
+   *
+   * @param number the number.
+   * @return this writer.
+   * @throws IOException if the file cannot be written.
+   */
+  HtmlWriter append(long number) throws IOException {
+    if (number == Long.MIN_VALUE) {
+      return append(Long.toString(number));
+    }
+    room(20);
+    if (number < 0) {
+      buffer[count++] = '-';
+      number = -number;
+    }
+    int end = count + digits(number);
+    count = end;
+    do {
+      buffer[--end] = (byte) ('0' + number % 10);
+      number /= 10;
+    } while (number != 0);
+    return this;
+  }
+
+  /**
+   * Method to write a number with one digit after the point, exactly as
+   * String.format("%.1f", number) does in an English locale: halves round away from zero, and a
+   * negative number keeps its sign even when it rounds to zero.
+   *
+   * @param number the number.
+   * @return this writer.
+   * @throws IOException if the file cannot be written.
+   */
+  HtmlWriter appendFixed1(double number) throws IOException {
+    double magnitude = Math.abs(number);
+    if (!(magnitude < FAST_LIMIT)) {
+      return append(slowFixed1(number));
+    }
+    double scaled = magnitude * 10;
+    double whole = Math.floor(scaled);
+    double fraction = scaled - whole;
+    if (Math.abs(fraction - 0.5) < TIE_MARGIN) {
+      // Too close to a half to trust the multiplication; decide on the decimal form instead
+      return append(slowFixed1(number));
+    }
+    long tenths = (long) whole + (fraction > 0.5 ? 1 : 0);
+    if (Double.doubleToRawLongBits(number) < 0) {
+      room(1);
+      buffer[count++] = '-';
+    }
+    append(tenths / 10);
+    room(2);
+    buffer[count++] = '.';
+    buffer[count++] = (byte) ('0' + tenths % 10);
+    return this;
+  }
+
+  /**
+   * Method to format a number with one digit after the point the slow way, for numbers that are
+   * very large, not finite, or a hair away from a half.
+   *
+   * @param number the number.
+   * @return the formatted number.
+   */
+  private static String slowFixed1(double number) {
+    if (Double.isNaN(number)) {
+      return "NaN";
+    }
+    if (Double.isInfinite(number)) {
+      return number > 0 ? "Infinity" : "-Infinity";
+    }
+    String rounded = new BigDecimal(Double.toString(Math.abs(number)))
+            .setScale(1, RoundingMode.HALF_UP).toPlainString();
+    return Double.doubleToRawLongBits(number) < 0 ? "-" + rounded : rounded;
+  }
+
+  /**
+   * Method to copy everything this writer has collected into another writer.
+   *
+   * @param target the writer the bytes go to.
+   * @throws IOException if the target cannot be written.
+   */
+  void writeTo(HtmlWriter target) throws IOException {
+    target.write(buffer, count);
+  }
+
+  /**
+   * Method to get a copy of everything this writer has collected since it was last flushed or
+   * reset.
+   *
+   * @return the bytes.
+   */
+  byte[] toByteArray() {
+    return Arrays.copyOf(buffer, count);
+  }
+
+  /**
+   * Method to drop everything collected so far, keeping the array for what is written next.
+   */
+  void reset() {
+    count = 0;
+  }
+
+  /**
+   * Method to write everything collected so far to the file. Does nothing for a writer that
+   * collects in memory.
+   *
+   * @throws IOException if the file cannot be written.
+   */
+  void flush() throws IOException {
+    if (channel == null) {
+      return;
+    }
+    ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, count);
+    while (bytes.hasRemaining()) {
+      flushed += channel.write(bytes, flushed);
+    }
+    count = 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      if (ownsChannel) {
+        channel.close();
+      }
+    }
+  }
+
+  /**
+   * Method to encode one character, or a surrogate pair, as UTF-8.
+   *
+   * @param text the text.
+   * @param i the index of the character.
+   * @return the index of the last character used.
+   * @throws IOException if the file cannot be written.
+   */
+  private int put(String text, int i) throws IOException {
+    room(4);
+    char c = text.charAt(i);
+    if (c < 0x80) {
+      buffer[count++] = (byte) c;
+    } else if (c < 0x800) {
+      buffer[count++] = (byte) (0xc0 | c >> 6);
+      buffer[count++] = (byte) (0x80 | c & 0x3f);
+    } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+            && Character.isLowSurrogate(text.charAt(i + 1))) {
+      int code = Character.toCodePoint(c, text.charAt(++i));
+      buffer[count++] = (byte) (0xf0 | code >> 18);
+      buffer[count++] = (byte) (0x80 | code >> 12 & 0x3f);
+      buffer[count++] = (byte) (0x80 | code >> 6 & 0x3f);
+      buffer[count++] = (byte) (0x80 | code & 0x3f);
+    } else if (Character.isSurrogate(c)) {
+      buffer[count++] = '?';
+    } else {
+      buffer[count++] = (byte) (0xe0 | c >> 12);
+      buffer[count++] = (byte) (0x80 | c >> 6 & 0x3f);
+      buffer[count++] = (byte) (0x80 | c & 0x3f);
+    }
+    return i;
+  }
+
+  /**
+   * Method to collect the start of an array of bytes, writing out this writer's array as often as
+   * it fills up.
+   *
+   * @param bytes the bytes.
+   * @param length how many of them to collect.
+   * @throws IOException if the file cannot be written.
+   */
+  private void write(byte[] bytes, int length) throws IOException {
+    int done = 0;
+    while (done < length) {
+      room(1);
+      int next = Math.min(length - done, buffer.length - count);
+      System.arraycopy(bytes, done, buffer, count, next);
+      count += next;
+      done += next;
+    }
+  }
+
+  /**
+   * Method to make sure the array has room for more bytes, writing it out if it does not, or
+   * growing it for a writer that collects in memory.
+   *
+   * @param bytes the number of bytes about to be collected.
+   * @throws IOException if the file cannot be written.
+   */
+  private void room(int bytes) throws IOException {
+    if (count + bytes > buffer.length) {
+      if (channel == null) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + bytes));
+      } else {
+        flush();
+      }
+    }
+  }
+
+  private static int digits(long number) {
+    int digits = 1;
+    while (number >= 10) {
+      number /= 10;
+      digits++;
+    }
+    return digits;
+  }
+}
@@ -1,5 +1,7 @@
 package photoalbum.views;
 
+import java.util.List;
+
 import photoalbum.model.Snapshot;
 
 /**
@@ -22,7 +24,7 @@ public interface IGraphicalView extends IPhotoAlbumView {
    *
    * @param snapshotId the snapshot that is trying to be reached.
    */
-  void jumpToSnapshot(String snapshotId);
+  void jumpToSnapshot(long snapshotId);
 
   /**
    * A method to display the information of a specific snapshot or return a message otherwise.
@@ -30,6 +32,25 @@ public interface IGraphicalView extends IPhotoAlbumView {
    * @param snapshot the snapshot of which its information is being displayed.
    */
   void showSnapshot(Snapshot snapshot);
+
+  /**
+   * A method to add a snapshot after the view was created, for an album that is still being
+   * read. The view moves to the new snapshot if it was showing the last one. It must be called on
+   * the event dispatch thread.
+   *
+   * @param snapshot the snapshot being added.
+   */
+  void addSnapshot(Snapshot snapshot);
+
+  /**
+   * A method to replace the snapshots from a given index on, for an album whose input was edited.
+   * The view stays on the snapshot it was showing if that one did not change. It must be called
+   * on the event dispatch thread.
+   *
+   * @param firstChanged the index of the first snapshot that changed.
+   * @param snapshots every snapshot, in order.
+   */
+  void updateSnapshots(int firstChanged, List<Snapshot> snapshots);
 }
 
 
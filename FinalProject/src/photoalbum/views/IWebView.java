@@ -1,5 +1,10 @@
 package photoalbum.views;
 
+import java.io.IOException;
+import java.util.List;
+
+import photoalbum.model.Snapshot;
+
 /**
  * A interface to specify the web view of the photo album.
  */
@@ -11,4 +16,53 @@ public interface IWebView extends IPhotoAlbumView {
    * @param outputFilePath the output file path as a String.
    */
   void generateWebPage(String outputFilePath);
+
+  /**
+   * Starts an output file that snapshots are written to one at a time, for an album that is
+   * still being read. The file holds every snapshot appended so far and can be opened while it
+   * grows.
+   *
+   * @param outputFilePath the output file path as a String.
+   * @throws IOException if the file cannot be created.
+   */
+  void startWebPage(String outputFilePath) throws IOException;
+
+  /**
+   * Writes one snapshot to the output file started by startWebPage.
+   *
+   * @param snapshot the snapshot being written.
+   * @throws IllegalStateException if no output file has been started.
+   */
+  void appendSnapshot(Snapshot snapshot) throws IllegalStateException;
+
+  /**
+   * Ends the output file started by startWebPage.
+   */
+  void finishWebPage();
+
+  /**
+   * Rewrites the output file for a new list of snapshots of which only the ones from a given
+   * index on have changed since the last time this view wrote the file. The earlier snapshots
+   * are left in the file as they are, and only the changed ones are written.
+   *
+   * @param outputFilePath the output file path as a String.
+   * @param snapshots every snapshot, in order.
+   * @param firstChanged the index of the first snapshot that changed.
+   * @throws IOException if the file cannot be written.
+   */
+  void updateWebPage(String outputFilePath, List<Snapshot> snapshots, int firstChanged)
+          throws IOException;
+
+  /**
+   * Creates an output directory holding an index.html and one file for each page of snapshots,
+   * for albums too big to show on one page. The index loads each page as it is scrolled to, so
+   * it has to be opened from a web server; opened from the disk it links to the pages instead.
+   *
+   * @param outputDirectory the output directory as a String; it is created if it does not exist.
+   * @param snapshotsPerPage how many snapshots go in each page file.
+   * @throws IOException if a file cannot be written.
+   * @throws IllegalArgumentException if there would be less than one snapshot per page.
+   */
+  void generateWebPages(String outputDirectory, int snapshotsPerPage)
+          throws IOException, IllegalArgumentException;
 }
@@ -1,22 +1,93 @@
 package photoalbum.views;
 
+import photoalbum.model.Color;
 import photoalbum.model.IShape;
 import photoalbum.model.Snapshot;
 
 
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Constructor for the HTML view of the photo album. Has the list of snapshots that will be shown.
+ * The page is written through an HtmlWriter, which encodes straight into one reusable 1 MB
+ * buffer, so the time to write a large album goes to the disk rather than to formatting.
+ *
+ * <p>Snapshot sections do not depend on each other, so a whole page is rendered on several
+ * threads, each section into its own buffer, and the sections are copied into the file in
+ * snapshot order as they come back. At most two sections per thread are rendered ahead of the one
+ * being written, which keeps the memory a page takes bounded however many snapshots it has.
+ *
+ * <p>In the SHARED output mode each distinct shape, by type, position, size and color, is written
+ * out once, with an id, where it is first drawn, and every later drawing of it is a use element
+ * that refers to that id. A snapshot with the same shapes as the one before it refers to that
+ * snapshot's group of shapes as a whole. References work across the svg elements of one page, so
+ * shapes can be shared as snapshots arrive, and a shape drawn only once costs just its id.
+ *
+ * <p>With a FragmentCache set, the shapes of each section are looked up in the cache by a hash
+ * of the shapes, and of what the section shares in the SHARED mode, before they are rendered.
+ * Regenerating a page after a small change then renders only the snapshots whose shapes changed.
+ * The few lines about the snapshot itself are always written fresh, as a snapshot read again gets
+ * a new ID and time.
+ *
+ * <p>An album too big for one page is written by generateWebPages as an index page and one file
+ * for each page of snapshots. The index holds a placeholder for every page, sized like the page,
+ * and a small script that fetches a page into its placeholder once it is scrolled near, so the
+ * browser only ever lays out the snapshots around the one being looked at. In the SHARED mode
+ * each page file shares shapes only within itself, so it can be loaded on its own, and its ids
+ * carry on from the page before so they stay unique in the index.
  */
 public class WebView implements IWebView {
+  private static final int BUFFER_BYTES = 1 << 20;
+  private static final int SECTION_BYTES = 64 * 1024;
+  private static final String SHAPE_INDENT = "            ";
+  private static final String GROUP_INDENT = "                ";
+  private static final String FRAGMENT_FORMAT = "photoalbum-fragment-1";
+  private static final String PAGE_DIRECTORY = "pages";
+  private static final int SECTION_HEIGHT = 950;
+
+  /**
+   * How shapes are written into a page.
+   */
+  public enum Output {
+    /** Every shape of every snapshot is written out in full. */
+    FULL,
+    /** Each distinct shape is written once and snapshots refer to it. */
+    SHARED
+  }
+
   private final List<Snapshot> snapshots;
-  private static final int SVG_WIDTH = 800;
-  private static final int SVG_HEIGHT = 800;
+  private final int workers;
+  private final Output output;
+  private final List<Long> sectionStarts;
+  private byte[] buffer;
+  private HtmlWriter stream;
+  private SharedShapes shared;
+  private FragmentCache cache;
+  private String updatedPage;
+  private long footerStart;
 
   /**
    * Constructor for creating a html view of the photo album.
@@ -24,45 +95,355 @@ public class WebView implements IWebView {
    * @param snapshots the list of snapshots that are being compiled and depicted into an output file.
    */
   public WebView(List<Snapshot> snapshots) {
+    this(snapshots, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructor for creating a html view of the photo album that renders on the given number of
+   * threads.
+   *
+   * @param snapshots the list of snapshots that are being compiled and depicted into an output file.
+   * @param workers the number of threads rendering a page; 1 renders on the calling thread.
+   * @throws IllegalArgumentException if the number of workers is less than 1.
+   */
+  public WebView(List<Snapshot> snapshots, int workers) throws IllegalArgumentException {
+    this(snapshots, workers, Output.FULL);
+  }
+
+  /**
+   * Constructor for creating a html view of the photo album that renders on every core and
+   * writes shapes in the given way.
+   *
+   * @param snapshots the list of snapshots that are being compiled and depicted into an output file.
+   * @param output how shapes are written.
+   */
+  public WebView(List<Snapshot> snapshots, Output output) {
+    this(snapshots, Runtime.getRuntime().availableProcessors(), output);
+  }
+
+  /**
+   * Constructor for creating a html view of the photo album.
+   *
+   * @param snapshots the list of snapshots that are being compiled and depicted into an output file.
+   * @param workers the number of threads rendering a page; 1 renders on the calling thread.
+   * @param output how shapes are written.
+   * @throws IllegalArgumentException if the number of workers is less than 1.
+   */
+  public WebView(List<Snapshot> snapshots, int workers, Output output)
+          throws IllegalArgumentException {
+    if (workers < 1) {
+      throw new IllegalArgumentException("Need at least one worker");
+    }
     this.snapshots = snapshots;
+    this.workers = workers;
+    this.output = output;
+    this.sectionStarts = new ArrayList<>();
+  }
+
+  /**
+   * Method to set the cache the rendered shapes of each snapshot are kept in, so that later pages
+   * with the same shapes do not render them again.
+   *
+   * @param cache the cache, which may be shared with other views, or null for none.
+   */
+  public void setFragmentCache(FragmentCache cache) {
+    this.cache = cache;
   }
 
   @Override
   public void generateWebPage(String output) {
-    try (PrintWriter writer = new PrintWriter(new FileWriter(output))) {
-      writeHtmlHeader(writer);
-      for (Snapshot snapshot : snapshots) {
-        writeSnapshotSection(writer, snapshot);
+    try {
+      startWebPage(output);
+      writeSections(stream, snapshots, null);
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+    }
+    finishWebPage();
+  }
+
+  @Override
+  public void startWebPage(String output) throws IOException {
+    finishWebPage();
+    stream = HtmlWriter.create(Path.of(output), buffer());
+    shared = newSharedShapes();
+    writeHtmlHeader(stream, false);
+    stream.flush();
+  }
+
+  @Override
+  public void generateWebPages(String outputDirectory, int snapshotsPerPage)
+          throws IOException, IllegalArgumentException {
+    if (snapshotsPerPage < 1) {
+      throw new IllegalArgumentException("Need at least one snapshot per page");
+    }
+    finishWebPage();
+    Path directory = Path.of(outputDirectory);
+    Files.createDirectories(directory.resolve(PAGE_DIRECTORY));
+    int pages = (snapshots.size() + snapshotsPerPage - 1) / snapshotsPerPage;
+
+    shared = newSharedShapes();
+    for (int page = 0; page < pages; page++) {
+      if (shared != null) {
+        shared.startPage();
       }
-      writeHtmlFooter(writer);
+      int first = page * snapshotsPerPage;
+      List<Snapshot> onPage = snapshots.subList(first,
+              Math.min(first + snapshotsPerPage, snapshots.size()));
+      try (HtmlWriter writer = HtmlWriter.create(directory.resolve(pageFile(page)), buffer())) {
+        writeSections(writer, onPage, null);
+      }
+    }
+
+    // The index goes last, so it never refers to a page that is not there yet
+    try (HtmlWriter index = HtmlWriter.create(directory.resolve("index.html"), buffer())) {
+      writeHtmlHeader(index, true);
+      for (int page = 0; page < pages; page++) {
+        int first = page * snapshotsPerPage;
+        int count = Math.min(snapshotsPerPage, snapshots.size() - first);
+        index.append("    <div class=\"page\" data-src=\"").append(pageFile(page))
+                .append("\" style=\"min-height: ").append((long) count * SECTION_HEIGHT)
+                .line("px\">");
+        index.append("        <a href=\"").append(pageFile(page)).append("\">Snapshots ")
+                .append(first + 1).append(" to ").append(first + count).line("</a>");
+        index.line("    </div>");
+      }
+      writePageLoader(index);
+      writeHtmlFooter(index);
+    }
+  }
 
+  @Override
+  public void appendSnapshot(Snapshot snapshot) throws IllegalStateException {
+    if (stream == null) {
+      throw new IllegalStateException("No web page has been started");
+    }
+    try {
+      writeSnapshotSection(stream, snapshot, plan(snapshot));
+      stream.flush();
     } catch (IOException e) {
       System.err.println(e.getMessage());
     }
   }
 
+  @Override
+  public void finishWebPage() {
+    if (stream != null) {
+      try (HtmlWriter closing = stream) {
+        stream = null;
+        writeHtmlFooter(closing);
+      } catch (IOException e) {
+        System.err.println(e.getMessage());
+      }
+    }
+  }
+
+  @Override
+  public void updateWebPage(String output, List<Snapshot> snapshots, int firstChanged)
+          throws IOException {
+    boolean known = output.equals(updatedPage);
+    updatedPage = null;
+    try (FileChannel channel = FileChannel.open(Path.of(output), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE)) {
+      int keep = known ? Math.min(firstChanged, sectionStarts.size()) : 0;
+      HtmlWriter writer;
+      if (known) {
+        writer = new HtmlWriter(channel,
+                keep < sectionStarts.size() ? sectionStarts.get(keep) : footerStart, buffer());
+        sectionStarts.subList(keep, sectionStarts.size()).clear();
+        shared = newSharedShapes();
+        for (Snapshot snapshot : snapshots.subList(0, keep)) {
+          plan(snapshot);
+        }
+      } else {
+        sectionStarts.clear();
+        shared = newSharedShapes();
+        writer = new HtmlWriter(channel, 0, buffer());
+        writeHtmlHeader(writer, false);
+      }
+
+      writeSections(writer, snapshots.subList(keep, snapshots.size()), sectionStarts);
+      footerStart = writer.position();
+      writeHtmlFooter(writer);
+      writer.flush();
+      channel.truncate(writer.position());
+    }
+    updatedPage = output;
+  }
+
+  /**
+   * Method to get the buffer pages are written through, which is kept for the next page.
+   *
+   * @return the buffer.
+   */
+  private byte[] buffer() {
+    if (buffer == null) {
+      buffer = new byte[BUFFER_BYTES];
+    }
+    return buffer;
+  }
+
+  /**
+   * Method to write the sections of several snapshots in order, rendering them on the worker
+   * threads when there is more than one of each.
+   *
+   * @param writer the output writer.
+   * @param sections the snapshots, in the order they go in the page.
+   * @param starts where the position each section starts at is added, or null.
+   * @throws IOException if the file cannot be written, or the thread is interrupted.
+   */
+  private void writeSections(HtmlWriter writer, List<Snapshot> sections, List<Long> starts)
+          throws IOException {
+    int threads = Math.min(workers, sections.size());
+    if (threads < 2) {
+      for (Snapshot snapshot : sections) {
+        if (starts != null) {
+          starts.add(writer.position());
+        }
+        writeSnapshotSection(writer, snapshot, plan(snapshot));
+      }
+      return;
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    Queue<HtmlWriter> spare = new ConcurrentLinkedQueue<>();
+    try {
+      Deque<Future<HtmlWriter>> window = new ArrayDeque<>();
+      Iterator<Snapshot> next = sections.iterator();
+      while (next.hasNext() || !window.isEmpty()) {
+        while (next.hasNext() && window.size() < threads * 2) {
+          Snapshot snapshot = next.next();
+          SectionPlan plan = plan(snapshot);
+          window.add(pool.submit(() -> renderSection(snapshot, plan, spare)));
+        }
+        HtmlWriter section = window.poll().get();
+        if (starts != null) {
+          starts.add(writer.position());
+        }
+        section.writeTo(writer);
+        section.reset();
+        spare.add(section);
+      }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException cause) {
+        throw cause;
+      }
+      throw new IllegalStateException("Rendering failed", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while writing the page", e);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Method to render one snapshot section into a buffer of its own, on a worker thread.
+   *
+   * @param snapshot the snapshot.
+   * @param plan which shared shapes the section draws and refers to, or null.
+   * @param spare buffers that have been written out and can be used again.
+   * @return the buffer holding the section.
+   * @throws IOException never, as the buffer is in memory.
+   */
+  private HtmlWriter renderSection(Snapshot snapshot, SectionPlan plan, Queue<HtmlWriter> spare)
+          throws IOException {
+    HtmlWriter section = spare.poll();
+    if (section == null) {
+      section = new HtmlWriter(SECTION_BYTES);
+    }
+    writeSnapshotSection(section, snapshot, plan);
+    return section;
+  }
+
+  /**
+   * Method to start over the shapes a page shares, for a page being written from the top.
+   *
+   * @return the shared shapes, or null if shapes are written in full.
+   */
+  private SharedShapes newSharedShapes() {
+    return output == Output.SHARED ? new SharedShapes() : null;
+  }
+
+  /**
+   * Method to work out which shared shapes the next section of the page draws and refers to. This
+   * runs on the writing thread in page order, so that the rendering itself can happen anywhere.
+   *
+   * @param snapshot the snapshot of the next section.
+   * @return the plan for the section, or null if shapes are written in full.
+   */
+  private SectionPlan plan(Snapshot snapshot) {
+    return shared == null ? null : shared.plan(snapshot);
+  }
+
+  /**
+   * Method to get the file a page of snapshots is written to, relative to the index.
+   *
+   * @param page the number of the page, from 0.
+   * @return the path of the file, with forward slashes as in a URL.
+   */
+  private static String pageFile(int page) {
+    return PAGE_DIRECTORY + "/page-" + (page + 1) + ".html";
+  }
+
+  /**
+   * Method to write the script of an index page, which fetches each page of snapshots into its
+   * placeholder when the placeholder comes within two screens of the window. If a page cannot be
+   * fetched, as when the index is opened straight from the disk rather than from a web server,
+   * the link to the page is left in its place.
+   *
+   * @param writer the output writer.
+   * @throws IOException if the file cannot be written.
+   */
+  private void writePageLoader(HtmlWriter writer) throws IOException {
+    writer.line("    <script>");
+    writer.line("        const loader = new IntersectionObserver((entries) => {");
+    writer.line("            for (const entry of entries) {");
+    writer.line("                if (!entry.isIntersecting) {");
+    writer.line("                    continue;");
+    writer.line("                }");
+    writer.line("                const page = entry.target;");
+    writer.line("                loader.unobserve(page);");
+    writer.line("                fetch(page.dataset.src)");
+    writer.line("                    .then((response) => response.ok ? response.text()");
+    writer.line("                            : Promise.reject(new Error(response.statusText)))");
+    writer.line("                    .then((html) => {");
+    writer.line("                        page.innerHTML = html;");
+    writer.line("                        page.style.minHeight = \"\";");
+    writer.line("                    })");
+    writer.line("                    .catch(() => {});");
+    writer.line("            }");
+    writer.line("        }, { rootMargin: \"200% 0px\" });");
+    writer.line("        for (const page of document.querySelectorAll(\".page\")) {");
+    writer.line("            loader.observe(page);");
+    writer.line("        }");
+    writer.line("    </script>");
+  }
+
   /**
    * Method to create a header for the snapshots.
    *
    * @param writer the output writer.
+   * @param paged whether the page is an index that loads its snapshots from other files.
    */
-  private void writeHtmlHeader(PrintWriter writer) {
-    writer.println("<!DOCTYPE html>");
-    writer.println("<html lang=\"en\">");
-    writer.println("<head>");
-    writer.println("    <meta charset=\"UTF-8\">");
-    writer.println("    <title>Photo Album Snapshots</title>");
-    writer.println("    <style>");
-    writer.println("        body { font-family: Arial, sans-serif; max-width: 1000px; margin: 0 auto; }");
-    writer.println("        .snapshot { margin-bottom: 20px; border-bottom: 1px solid #ccc; padding-bottom: 20px; }");
-    writer.println("        .snapshot-info { background-color: #f4f4f4; padding: 10px; margin-bottom: 10px; }");
-    writer.println("        .snapshot-info h2 { color: #333; margin-top: 0; }");
-    writer.println("        .snapshot-info p { margin: 5px 0; }");
-    writer.println("        .snapshot-info .description { color: #666; font-style: italic; margin-top: 10px; }");
-    writer.println("    </style>");
-    writer.println("</head>");
-    writer.println("<body>");
-    writer.println("    <h1>Photo Album Snapshots</h1>");
+  private void writeHtmlHeader(HtmlWriter writer, boolean paged) throws IOException {
+    writer.line("<!DOCTYPE html>");
+    writer.line("<html lang=\"en\">");
+    writer.line("<head>");
+    writer.line("    <meta charset=\"UTF-8\">");
+    writer.line("    <title>Photo Album Snapshots</title>");
+    writer.line("    <style>");
+    writer.line("        body { font-family: Arial, sans-serif; max-width: 1000px; margin: 0 auto; }");
+    writer.line("        .snapshot { margin-bottom: 20px; border-bottom: 1px solid #ccc; padding-bottom: 20px; }");
+    writer.line("        .snapshot-info { background-color: #f4f4f4; padding: 10px; margin-bottom: 10px; }");
+    writer.line("        .snapshot-info h2 { color: #333; margin-top: 0; }");
+    writer.line("        .snapshot-info p { margin: 5px 0; }");
+    writer.line("        .snapshot-info .description { color: #666; font-style: italic; margin-top: 10px; }");
+    if (paged) {
+      writer.line("        .page > a { display: block; padding: 10px; color: #333; }");
+    }
+    writer.line("    </style>");
+    writer.line("</head>");
+    writer.line("<body>");
+    writer.line("    <h1>Photo Album Snapshots</h1>");
   }
 
   /**
@@ -70,76 +451,183 @@ public class WebView implements IWebView {
    *
    * @param writer the output writer
    * @param snapshot the snapshot being processed.
+   * @param plan which shared shapes the section draws and refers to, or null to write them in full.
    */
-  private void writeSnapshotSection(PrintWriter writer, Snapshot snapshot) {
-    writer.println("    <div class=\"snapshot\">");
+  private void writeSnapshotSection(HtmlWriter writer, Snapshot snapshot, SectionPlan plan)
+          throws IOException {
+    writer.line("    <div class=\"snapshot\">");
 
 
-    writer.println("        <div class=\"snapshot-info\">");
-    writer.println("            <h2>Snapshot: " + escapeHtml(snapshot.getId()) + "</h2>");
-    writer.println("            <p>Timestamp: " + escapeHtml(snapshot.getTimestamp().toString()) + "</p>");
+    writer.line("        <div class=\"snapshot-info\">");
+    writer.append("            <h2>Snapshot: ").append(snapshot.getId()).line("</h2>");
+    writer.append("            <p>Timestamp: ").appendEscaped(snapshot.getTimestamp())
+            .line("</p>");
 
     String description = snapshot.getDescription();
     if (description != null && !description.trim().isEmpty()) {
-      writer.println("            <p class=\"description\">Description: " + escapeHtml(description) + "</p>");
+      writer.append("            <p class=\"description\">Description: ")
+              .appendEscaped(description).line("</p>");
     }
-    writer.println("        </div>");
+    writer.line("        </div>");
 
 
-    writer.println("        <svg width=\"800\" height=\"800\" xmlns=\"http://www.w3.org/2000/svg\">");
+    writer.line("        <svg width=\"800\" height=\"800\" xmlns=\"http://www.w3.org/2000/svg\">");
 
     List<IShape> shapes = snapshot.getShapes();
+    FragmentCache fragments = cache;
+    if (fragments == null) {
+      writeShapes(writer, shapes, plan);
+    } else {
+      String key = fragmentKey(shapes, plan);
+      byte[] fragment = fragments.lookup(key);
+      if (fragment == null) {
+        HtmlWriter rendered = new HtmlWriter(SECTION_BYTES);
+        writeShapes(rendered, shapes, plan);
+        fragment = rendered.toByteArray();
+        fragments.store(key, fragment);
+      }
+      writer.append(fragment);
+    }
 
-    shapes.stream()
-            .filter(s -> s.getName().toLowerCase().contains("background") ||
-                    s.getName().toLowerCase().contains("rect1"))
-            .forEach(shape -> writeSvgShape(writer, shape));
-
+    writer.line("        </svg>");
+    writer.line("    </div>");
+  }
 
-    shapes.stream()
-            .filter(s -> !s.getName().toLowerCase().contains("background") &&
-                    !s.getName().toLowerCase().contains("rect1"))
-            .forEach(shape -> writeSvgShape(writer, shape));
+  /**
+   * Method to write the shapes of a section.
+   *
+   * @param writer the output writer.
+   * @param shapes the shapes of the snapshot.
+   * @param plan which shared shapes the section draws and refers to, or null to write them in
+   *             full.
+   * @throws IOException if the file cannot be written.
+   */
+  private void writeShapes(HtmlWriter writer, List<IShape> shapes, SectionPlan plan)
+          throws IOException {
+    if (plan == null) {
+      for (IShape shape : shapes) {
+        writeSvgShape(writer, shape, SHAPE_INDENT, -1);
+      }
+    } else {
+      writeSharedShapes(writer, shapes, plan);
+    }
+  }
 
-    writer.println("        </svg>");
-    writer.println("    </div>");
+  /**
+   * Method to compute the key the rendered shapes of a section are cached under, from everything
+   * they are rendered from.
+   *
+   * @param shapes the shapes of the snapshot.
+   * @param plan which shared shapes the section draws and refers to, or null.
+   * @return the SHA-256 hash of the shapes and the plan, in hex.
+   */
+  private static String fragmentKey(List<IShape> shapes, SectionPlan plan) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+    digest.update(FRAGMENT_FORMAT.getBytes(StandardCharsets.US_ASCII));
+    if (plan != null) {
+      ByteBuffer ids = ByteBuffer.allocate(Integer.BYTES * (plan.ids().length + 3));
+      ids.putInt(plan.frame()).putInt(plan.firstNew()).putInt(plan.repeats());
+      ids.asIntBuffer().put(plan.ids());
+      digest.update(ids.clear());
+    }
+    ByteBuffer values = ByteBuffer.allocate(Integer.BYTES + Double.BYTES * 7);
+    for (IShape shape : shapes) {
+      byte[] type = shape.getType().getBytes(StandardCharsets.UTF_8);
+      digest.update(values.clear().putInt(type.length).flip());
+      digest.update(type);
+      values.clear().putDouble(shape.getPosition().x()).putDouble(shape.getPosition().y())
+              .putDouble(shape.getFirstDimension()).putDouble(shape.getSecondDimension())
+              .putDouble(shape.getColor().r()).putDouble(shape.getColor().g())
+              .putDouble(shape.getColor().b());
+      digest.update(values.flip());
+    }
+    StringBuilder hex = new StringBuilder();
+    for (byte b : digest.digest()) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
   }
 
 
+  /**
+   * Method to write the shapes of a section as a group, drawing the shapes no earlier section has
+   * in full and the others as references to where they were first drawn.
+   *
+   * @param writer the output writer.
+   * @param shapes the shapes of the snapshot.
+   * @param plan which shared shapes the section draws and refers to.
+   * @throws IOException if the file cannot be written.
+   */
+  private void writeSharedShapes(HtmlWriter writer, List<IShape> shapes, SectionPlan plan)
+          throws IOException {
+    if (plan.repeats() >= 0) {
+      writer.append(SHAPE_INDENT).append("<use href=\"#f").append(plan.repeats()).line("\" />");
+      return;
+    }
+    writer.append(SHAPE_INDENT).append("<g id=\"f").append(plan.frame()).line("\">");
+    int[] ids = plan.ids();
+    int nextNew = plan.firstNew();
+    for (int i = 0; i < ids.length; i++) {
+      // New ids are handed out in the order the shapes come in, so the first use of each is here
+      if (ids[i] == nextNew) {
+        writeSvgShape(writer, shapes.get(i), GROUP_INDENT, nextNew++);
+      } else if (ids[i] >= 0) {
+        writer.append(GROUP_INDENT).append("<use href=\"#s").append(ids[i]).line("\" />");
+      }
+    }
+    writer.append(SHAPE_INDENT).line("</g>");
+  }
+
   /**
    * Method to create the shape in the out.
    *
    * @param writer the output file.
    * @param shape the object Shape being created.
+   * @param indent the spaces the line starts with.
+   * @param id the number of the shared shape this is the first drawing of, or -1 for none.
+   * @throws IOException if the file cannot be written.
    */
-  private void writeSvgShape(PrintWriter writer, IShape shape) {
-    String shapeType = shape.getType().toLowerCase();
+  private void writeSvgShape(HtmlWriter writer, IShape shape, String indent, int id)
+          throws IOException {
     double x = shape.getPosition().x();
     double y = shape.getPosition().y();
     double width = shape.getFirstDimension();
     double height = shape.getSecondDimension();
 
-    String colorString = String.format("rgb(%d,%d,%d)",
-            (int)shape.getColor().r(),
-            (int)shape.getColor().g(),
-            (int)shape.getColor().b());
-
-    switch (shapeType) {
+    switch (shape.getType().toLowerCase()) {
       case "rectangle":
-        writer.println(String.format(
-                "            <rect x=\"%.1f\" y=\"%.1f\" width=\"%.1f\" height=\"%.1f\" fill=\"%s\" />",
-                x, y, width, height, colorString));
+        writer.append(indent).append("<rect");
+        writeId(writer, id);
+        writer.append(" x=\"").appendFixed1(x)
+                .append("\" y=\"").appendFixed1(y)
+                .append("\" width=\"").appendFixed1(width)
+                .append("\" height=\"").appendFixed1(height);
         break;
       case "oval":
-        // For the moon, we need to center it properly
-        double cx = x + width/2;  // Center x
-        double cy = y + height/2; // Center y
-        double rx = width/2;      // x radius
-        double ry = height/2;     // y radius
-        writer.println(String.format(
-                "            <ellipse cx=\"%.1f\" cy=\"%.1f\" rx=\"%.1f\" ry=\"%.1f\" fill=\"%s\" />",
-                cx, cy, rx, ry, colorString));
+        // SVG places an ellipse by its center and radii
+        writer.append(indent).append("<ellipse");
+        writeId(writer, id);
+        writer.append(" cx=\"").appendFixed1(x + width / 2)
+                .append("\" cy=\"").appendFixed1(y + height / 2)
+                .append("\" rx=\"").appendFixed1(width / 2)
+                .append("\" ry=\"").appendFixed1(height / 2);
         break;
+      default:
+        return;
+    }
+    writer.append("\" fill=\"rgb(").append((int) shape.getColor().r())
+            .append(",").append((int) shape.getColor().g())
+            .append(",").append((int) shape.getColor().b()).line(")\" />");
+  }
+
+  private static void writeId(HtmlWriter writer, int id) throws IOException {
+    if (id >= 0) {
+      writer.append(" id=\"s").append(id).append("\"");
     }
   }
 
@@ -148,22 +636,9 @@ public class WebView implements IWebView {
    *
    * @param writer the write class for the output.
    */
-  private void writeHtmlFooter(PrintWriter writer) {
-    writer.println("</body>");
-    writer.println("</html>");
-  }
-
-  /**
-   * Method to handle html special characters.
-   */
-  private String escapeHtml(String input) {
-    if (input == null) return "";
-    return input
-            .replace("&", "&amp;")
-            .replace("<", "&lt;")
-            .replace(">", "&gt;")
-            .replace("\"", "&quot;")
-            .replace("'", "&#x27;");
+  private void writeHtmlFooter(HtmlWriter writer) throws IOException {
+    writer.line("</body>");
+    writer.line("</html>");
   }
 
   @Override
@@ -174,4 +649,88 @@ public class WebView implements IWebView {
   @Override
   public void displaySnapshot(Snapshot snapshot) {}
 
+  /**
+   * A tuple for what a shape looks like in a page, which is all that decides whether two shapes
+   * can share a definition.
+   *
+   * @param type the type of the shape, in lower case.
+   * @param x the left edge.
+   * @param y the top edge.
+   * @param width the width.
+   * @param height the height.
+   * @param color the color.
+   */
+  private record ShapeState(String type, double x, double y, double width, double height,
+                            Color color) {
+  }
+
+  /**
+   * A tuple for the shared shapes one section of a page draws and refers to.
+   *
+   * @param frame the number of the section in the page, which names its group of shapes.
+   * @param ids the shared shape each shape of the snapshot is, or -1 for one not drawn.
+   * @param firstNew the first id the section draws in full; every id from it on is new.
+   * @param repeats the section whose group of shapes this one draws instead, or -1.
+   */
+  private record SectionPlan(int frame, int[] ids, int firstNew, int repeats) {
+  }
+
+  /**
+   * The distinct shapes written into a page so far, each with the id it is defined under.
+   */
+  private static final class SharedShapes {
+    private final Map<ShapeState, Integer> ids = new HashMap<>();
+    private int[] previous;
+    private int previousFrame;
+    private int frames;
+    private int firstOnPage;
+
+    /**
+     * Method to start a page that shares nothing with the pages before it. Ids carry on from
+     * where the last page stopped, so the ids of all pages are distinct.
+     */
+    private void startPage() {
+      firstOnPage += ids.size();
+      ids.clear();
+      previous = null;
+    }
+
+    /**
+     * Method to plan the next section, handing out ids to shapes not seen before.
+     *
+     * @param snapshot the snapshot of the section.
+     * @return the plan.
+     */
+    private SectionPlan plan(Snapshot snapshot) {
+      List<IShape> shapes = snapshot.getShapes();
+      int firstNew = firstOnPage + ids.size();
+      int[] planned = new int[shapes.size()];
+      for (int i = 0; i < planned.length; i++) {
+        planned[i] = id(shapes.get(i));
+      }
+      int frame = frames++;
+      if (previous != null && Arrays.equals(planned, previous)) {
+        return new SectionPlan(frame, planned, firstNew, previousFrame);
+      }
+      previous = planned;
+      previousFrame = frame;
+      return new SectionPlan(frame, planned, firstNew, -1);
+    }
+
+    private int id(IShape shape) {
+      String type = shape.getType().toLowerCase();
+      if (!type.equals("rectangle") && !type.equals("oval")) {
+        return -1;
+      }
+      ShapeState state = new ShapeState(type, shape.getPosition().x(), shape.getPosition().y(),
+              shape.getFirstDimension(), shape.getSecondDimension(), shape.getColor());
+      Integer id = ids.get(state);
+      if (id == null) {
+        id = firstOnPage + ids.size();
+        ids.put(state, id);
+      }
+      return id;
+    }
+  }
+
 }
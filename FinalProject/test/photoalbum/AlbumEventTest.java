@@ -0,0 +1,177 @@
+package photoalbum;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import photoalbum.model.AlbumEvent;
+import photoalbum.model.AlbumEventPublisher;
+import photoalbum.model.Color;
+import photoalbum.model.ColumnarPhotoAlbum;
+import photoalbum.model.Command;
+import photoalbum.model.ConcurrentPhotoAlbum;
+import photoalbum.model.Coordinate;
+import photoalbum.model.IPhotoalbum;
+import photoalbum.model.PhotoAlbum;
+import photoalbum.model.Rectangle;
+
+/**
+ * Tests for the change events sent by the albums.
+ */
+public class AlbumEventTest {
+
+  /**
+   * Tests that every album reports the same events for the same changes.
+   */
+  @Test
+  public void testEventsFromEveryAlbum() {
+    for (IPhotoalbum album : List.of(new PhotoAlbum(), new ColumnarPhotoAlbum(),
+            new ConcurrentPhotoAlbum())) {
+      List<AlbumEvent> events = new ArrayList<>();
+      album.addListener(events::add);
+      album.addShape(new Rectangle("R1", new Coordinate(0, 0), 10, 10, new Color(0, 0, 0)));
+      album.moveShape("R1", new Coordinate(5, 5));
+      album.setColor("R1", new Color(255, 0, 0));
+      album.resizeShape("R1", 20, 20);
+      album.setZIndex("R1", 7);
+      album.takeSnapshot("One");
+      album.removeShape(album.getShape("R1"));
+      album.reset();
+
+      assertEquals(List.of(AlbumEvent.Kind.SHAPE_ADDED, AlbumEvent.Kind.SHAPE_MOVED,
+              AlbumEvent.Kind.SHAPE_RECOLORED, AlbumEvent.Kind.SHAPE_RESIZED,
+              AlbumEvent.Kind.SHAPE_LAYERED, AlbumEvent.Kind.SNAPSHOT_TAKEN,
+              AlbumEvent.Kind.SHAPE_REMOVED, AlbumEvent.Kind.ALBUM_RESET),
+              events.stream().map(AlbumEvent::kind).toList());
+      assertEquals(new Coordinate(5, 5), events.get(1).shape().getPosition());
+      assertEquals(7, events.get(4).shape().getZIndex());
+      assertEquals("One", events.get(5).snapshot().getDescription());
+      assertNull(events.get(6).shape());
+    }
+  }
+
+  /**
+   * Tests that the events of a batch arrive as one event after it commits, and never if it rolls
+   * back.
+   */
+  @Test
+  public void testBatchEvents() {
+    PhotoAlbum album = new PhotoAlbum();
+    List<AlbumEvent> events = new ArrayList<>();
+    album.addListener(event -> {
+      assertEquals(1, album.getAllShapes().size());
+      events.add(event);
+    });
+
+    assertThrows(IllegalArgumentException.class, () -> album.applyBatch(List.of(
+            new Command.AddShape(new Rectangle("R1", new Coordinate(0, 0), 1, 1,
+                    new Color(0, 0, 0))),
+            new Command.MoveShape("R2", new Coordinate(1, 1)))));
+    assertTrue(events.isEmpty());
+
+    album.applyBatch(List.of(
+            new Command.AddShape(new Rectangle("R1", new Coordinate(0, 0), 1, 1,
+                    new Color(0, 0, 0))),
+            new Command.TakeSnapshot("Batch")));
+    assertEquals(1, events.size());
+    assertEquals(AlbumEvent.Kind.BATCH_APPLIED, events.get(0).kind());
+    assertEquals(List.of(AlbumEvent.Kind.SHAPE_ADDED, AlbumEvent.Kind.SNAPSHOT_TAKEN),
+            events.get(0).unpack().stream().map(AlbumEvent::kind).toList());
+  }
+
+  /**
+   * Tests that batches committed by different threads reach the listeners in the order they
+   * committed, so the last change a listener hears about is the album's state.
+   *
+   * @throws InterruptedException thrown if the test is interrupted while waiting.
+   */
+  @Test
+  public void testBatchesArriveInCommitOrder() throws InterruptedException {
+    ConcurrentPhotoAlbum album = new ConcurrentPhotoAlbum();
+    album.addShape(new Rectangle("R1", new Coordinate(0, 0), 1, 1, new Color(0, 0, 0)));
+    List<Coordinate> heard = new CopyOnWriteArrayList<>();
+    album.addListener(event -> {
+      for (AlbumEvent change : event.unpack()) {
+        heard.add(change.shape().getPosition());
+      }
+    });
+
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      int thread = t;
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < 200; i++) {
+          album.applyBatch(List.of(
+                  new Command.MoveShape("R1", new Coordinate(thread, i)),
+                  new Command.ResizeShape("R1", 2, 2)));
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(1600, heard.size());
+    assertEquals(album.getShape("R1").getPosition(), heard.get(heard.size() - 1));
+  }
+
+  /**
+   * Tests that a subscriber with a small buffer receives every event and then completes.
+   *
+   * @throws InterruptedException thrown if the test is interrupted while waiting.
+   */
+  @Test
+  public void testPublisher() throws InterruptedException {
+    IPhotoalbum album = new PhotoAlbum();
+    List<AlbumEvent> received = new CopyOnWriteArrayList<>();
+    CountDownLatch done = new CountDownLatch(1);
+
+    try (AlbumEventPublisher publisher = new AlbumEventPublisher(album, 2)) {
+      publisher.subscribe(new Flow.Subscriber<>() {
+        private Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+          this.subscription = subscription;
+          subscription.request(1);
+        }
+
+        @Override
+        public void onNext(AlbumEvent item) {
+          received.add(item);
+          subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+          done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+          done.countDown();
+        }
+      });
+      album.addShape(new Rectangle("R1", new Coordinate(0, 0), 1, 1, new Color(0, 0, 0)));
+      for (int i = 0; i < 50; i++) {
+        album.moveShape("R1", new Coordinate(i, i));
+      }
+    }
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals(51, received.size());
+    assertEquals(new Coordinate(49, 49), received.get(50).shape().getPosition());
+  }
+}
@@ -0,0 +1,130 @@
+package photoalbum;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import photoalbum.controller.BatchProcessor;
+import photoalbum.controller.ViewType;
+import photoalbum.model.SnapshotArchive;
+
+/**
+ * Tests for processing many command files in one run.
+ */
+public class BatchProcessorTest {
+
+  /**
+   * Temp folder for the inputs and outputs.
+   */
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  /**
+   * Tests that every file gets its own output and result, in order, and that a missing file
+   * fails without stopping the others.
+   *
+   * @throws IOException thrown if the file operation fails.
+   * @throws InterruptedException thrown if the test is interrupted while waiting.
+   */
+  @Test
+  public void testProcessFiles() throws IOException, InterruptedException {
+    Path inputs = tempFolder.newFolder("in").toPath();
+    List<Path> files = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      Path file = inputs.resolve("album" + i + ".txt");
+      StringBuilder text = new StringBuilder("shape R rectangle 0 0 10 10 0 0 0\n");
+      for (int s = 0; s <= i % 3; s++) {
+        text.append("move R ").append(s).append(" 1\nsnapshot\n");
+      }
+      Files.writeString(file, text, StandardCharsets.UTF_8);
+      files.add(file);
+    }
+    Files.writeString(inputs.resolve("album0.txt"), "move R oops 1\nsnapshot\n",
+            StandardCharsets.UTF_8);
+    files.add(inputs.resolve("missing.txt"));
+    Path outputs = tempFolder.getRoot().toPath().resolve("out");
+
+    List<BatchProcessor.Result> results =
+            new BatchProcessor(ViewType.ARCHIVE, outputs, 4).process(files);
+
+    assertEquals(21, results.size());
+    for (int i = 1; i < 20; i++) {
+      BatchProcessor.Result result = results.get(i);
+      assertEquals(files.get(i), result.input());
+      assertTrue(result.succeeded());
+      assertEquals(outputs.resolve("album" + i + ".snaps"), result.output());
+      try (SnapshotArchive archive = SnapshotArchive.open(result.output())) {
+        assertEquals(i % 3 + 1, archive.size());
+      }
+    }
+    assertTrue(results.get(0).succeeded());
+    assertEquals(1, results.get(0).errors());
+    assertFalse(results.get(20).succeeded());
+    assertFalse(BatchProcessor.printSummary(results));
+  }
+
+  /**
+   * Tests that inputs that differ only in their extension keep it in their output names instead
+   * of writing over each other, and that inputs with the same file name fail.
+   *
+   * @throws IOException thrown if the file operation fails.
+   * @throws InterruptedException thrown if the test is interrupted while waiting.
+   */
+  @Test
+  public void testOutputNamesDoNotCollide() throws IOException, InterruptedException {
+    Path inputs = tempFolder.newFolder("in").toPath();
+    Path other = tempFolder.newFolder("other").toPath();
+    Files.writeString(inputs.resolve("a.txt"), "snapshot\n");
+    Files.writeString(inputs.resolve("a.ndjson"), "{\"command\": \"snapshot\"}\n");
+    Files.writeString(inputs.resolve("b.txt"), "snapshot\n");
+    Files.writeString(other.resolve("b.txt"), "snapshot\n");
+    Files.writeString(inputs.resolve("c.txt"), "snapshot\n");
+    Path outputs = tempFolder.getRoot().toPath().resolve("out");
+
+    List<BatchProcessor.Result> results = new BatchProcessor(ViewType.WEB, outputs, 2)
+            .process(List.of(inputs.resolve("a.txt"), inputs.resolve("a.ndjson"),
+                    inputs.resolve("b.txt"), other.resolve("b.txt"), inputs.resolve("c.txt")));
+
+    assertEquals(outputs.resolve("a.txt.html"), results.get(0).output());
+    assertEquals(outputs.resolve("a.ndjson.html"), results.get(1).output());
+    assertFalse(results.get(2).succeeded());
+    assertFalse(results.get(3).succeeded());
+    assertEquals(outputs.resolve("c.html"), results.get(4).output());
+    assertTrue(Files.exists(outputs.resolve("a.txt.html")));
+    assertTrue(Files.exists(outputs.resolve("a.ndjson.html")));
+    assertFalse(Files.exists(outputs.resolve("b.html")));
+  }
+
+  /**
+   * Tests finding the files named by a directory and by a glob, and rejecting a view type that
+   * has no output file.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testResolve() throws IOException {
+    Path inputs = tempFolder.newFolder("in").toPath();
+    Files.writeString(inputs.resolve("b.txt"), "");
+    Files.writeString(inputs.resolve("a.txt"), "");
+    Files.writeString(inputs.resolve("notes.md"), "");
+    Files.createDirectory(inputs.resolve("sub.txt"));
+
+    assertEquals(List.of(inputs.resolve("a.txt"), inputs.resolve("b.txt"),
+            inputs.resolve("notes.md")), BatchProcessor.resolve(inputs.toString()));
+    assertEquals(List.of(inputs.resolve("a.txt"), inputs.resolve("b.txt")),
+            BatchProcessor.resolve(inputs + "/*.txt"));
+    assertThrows(IllegalArgumentException.class,
+            () -> new BatchProcessor(ViewType.GRAPHICAL, inputs, 1));
+  }
+}
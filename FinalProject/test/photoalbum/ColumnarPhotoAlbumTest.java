@@ -0,0 +1,212 @@
+package photoalbum;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+import photoalbum.model.Color;
+import photoalbum.model.ColumnarPhotoAlbum;
+import photoalbum.model.Command;
+import photoalbum.model.Coordinate;
+import photoalbum.model.IShape;
+import photoalbum.model.Oval;
+import photoalbum.model.Rectangle;
+import photoalbum.model.Snapshot;
+
+/**
+ * A Test class for the columnar photo album.
+ */
+public class ColumnarPhotoAlbumTest {
+  private ColumnarPhotoAlbum model;
+
+  /**
+   * Set up for the tests.
+   */
+  @Before
+  public void setUp() {
+    model = new ColumnarPhotoAlbum();
+    model.addShape(new Rectangle("R1", new Coordinate(100.0, 200.0),
+            50.0, 75.0, new Color(255.0, 0.0, 0.0)));
+    model.addShape(new Oval("O1", new Coordinate(300.0, 400.0), new Color(0.0, 0.0, 255.0),
+            30.0, 40.0));
+  }
+
+  /**
+   * Testing that shapes are listed in drawing order after layer changes and removals.
+   */
+  @Test
+  public void testDrawOrder() {
+    model.addShape(new Rectangle("background", new Coordinate(0, 0), 800, 800,
+            new Color(0, 0, 0)));
+    model.setZIndex("background", -1);
+    model.takeSnapshot("Background moved down");
+    model.removeShape(model.getShape("R1"));
+    model.addShape(new Oval("top", new Coordinate(0, 0), new Color(0, 0, 0), 1, 1));
+
+    assertEquals(List.of("background", "O1", "top"),
+            model.getAllShapes().stream().map(IShape::getName).toList());
+    assertEquals(List.of("background", "R1", "O1"),
+            model.getSnapshots().get(0).getShapes().stream().map(IShape::getName).toList());
+    assertEquals(-1, model.getSnapshots().get(0).getShapes().get(0).getZIndex());
+    assertThrows(IllegalArgumentException.class, () -> model.setZIndex("none", 1));
+  }
+
+  /**
+   * Testing that a failed batch undoes every change it made, including reused slots.
+   */
+  @Test
+  public void testApplyBatchRollback() {
+    model.removeShape(model.getShape("R1"));
+    List<IShape> before = model.getAllShapes().stream().map(IShape::copy).toList();
+
+    assertThrows(IllegalArgumentException.class, () -> model.applyBatch(List.of(
+            new Command.AddShape(new Rectangle("R2", new Coordinate(0, 0), 1, 1,
+                    new Color(0, 0, 0))),
+            new Command.AddShape(new Rectangle("R3", new Coordinate(0, 0), 1, 1,
+                    new Color(0, 0, 0))),
+            new Command.MoveShape("O1", new Coordinate(1, 1)),
+            new Command.SetZIndex("O1", -5),
+            new Command.RemoveShape("O1"),
+            new Command.TakeSnapshot("In the batch"),
+            new Command.ResizeShape("R2", -1, 1))));
+
+    assertEquals(1, model.size());
+    assertEquals(0, model.getSnapshots().size());
+    assertEquals(before.toString(), model.getAllShapes().toString());
+    assertEquals(before.get(0).getZIndex(), model.getShape("O1").getZIndex());
+    model.addShape(new Rectangle("R4", new Coordinate(0, 0), 1, 1, new Color(0, 0, 0)));
+    assertEquals(List.of("O1", "R4"),
+            model.getAllShapes().stream().map(IShape::getName).toList());
+  }
+
+  /**
+   * Testing that shapes read back the same as they were added.
+   */
+  @Test
+  public void testAddAndGet() {
+    IShape oval = model.getShape("O1");
+    assertEquals("oval", oval.getType());
+    assertEquals(new Coordinate(300.0, 400.0), oval.getPosition());
+    assertEquals(new Color(0.0, 0.0, 255.0), oval.getColor());
+    assertEquals(30.0, oval.getFirstDimension(), 0.001);
+    assertEquals("Name: O1\n"
+            + "Type: oval\n"
+            + "Center: (300.0,400.0), X radius: 30.0, Y radius: 40.0,"
+            + " Color: (0.0,0.0,255.0)", oval.toString());
+  }
+
+  /**
+   * Testing that colors keep their exact channels through snapshots and a rolled back change,
+   * as they do in PhotoAlbum.
+   */
+  @Test
+  public void testColorsAreExact() {
+    Color exact = new Color(10.4, 20.6, 30.5);
+    model.setColor("R1", exact);
+    model.takeSnapshot("Exact");
+    assertThrows(IllegalArgumentException.class, () -> model.applyBatch(List.of(
+            new Command.SetColor("R1", new Color(1.0, 2.0, 3.0)),
+            new Command.RemoveShape("missing"))));
+
+    assertEquals(exact, model.getShape("R1").getColor());
+    assertEquals(exact, model.getSnapshots().get(0).getShapes().get(0).getColor());
+  }
+
+  /**
+   * Testing the mutators and their errors.
+   */
+  @Test
+  public void testMutators() {
+    model.moveShape("R1", new Coordinate(1.0, 2.0));
+    model.setColor("R1", new Color(0.0, 128.0, 0.0));
+    model.resizeShape("R1", 5.0, 6.0);
+
+    IShape rect = model.getShape("R1");
+    assertEquals(new Coordinate(1.0, 2.0), rect.getPosition());
+    assertEquals(new Color(0.0, 128.0, 0.0), rect.getColor());
+    assertEquals(6.0, rect.getSecondDimension(), 0.001);
+    assertThrows(IllegalArgumentException.class, () -> model.resizeShape("R1", -1.0, 1.0));
+    assertThrows(IllegalArgumentException.class, () -> model.moveShape("none", rect.getPosition()));
+    assertThrows(IllegalArgumentException.class, () -> model.addShape(rect.copy()));
+  }
+
+  /**
+   * Testing that removed slots are reused and that names can come back.
+   */
+  @Test
+  public void testRemoveAndReuse() {
+    model.removeShape(model.getShape("R1"));
+    assertEquals(1, model.getAllShapes().size());
+    assertThrows(IllegalArgumentException.class, () -> model.getShape("R1"));
+
+    model.addShape(new Oval("R1", new Coordinate(0.0, 0.0), new Color(1.0, 1.0, 1.0), 1.0, 1.0));
+    assertEquals("oval", model.getShape("R1").getType());
+    assertEquals(2, model.size());
+  }
+
+  /**
+   * Testing that changing a shape handed out by the album, even inside a batch that fails, does
+   * not change the album, and that a held shape keeps its state after its slot is reused.
+   */
+  @Test
+  public void testShapesHandedOutAreCopies() {
+    IShape held = model.getShape("R1");
+    held.setPosition(new Coordinate(5.0, 5.0));
+    model.getAllShapes().get(1).setColor(new Color(0.0, 0.0, 0.0));
+    model.shapesContaining(new Coordinate(110.0, 210.0)).get(0).resize(1.0, 1.0);
+    assertThrows(IllegalArgumentException.class, () -> model.applyBatch(List.of(
+            new Command.MoveShape("R1", new Coordinate(7.0, 7.0)),
+            new Command.RemoveShape("missing"))));
+
+    assertEquals(new Coordinate(100.0, 200.0), model.getShape("R1").getPosition());
+    assertEquals(50.0, model.getShape("R1").getFirstDimension(), 0.001);
+    assertEquals(new Color(0.0, 0.0, 255.0), model.getShape("O1").getColor());
+
+    model.removeShape(model.getShape("R1"));
+    model.addShape(new Rectangle("S1", new Coordinate(9.0, 9.0), 1.0, 1.0,
+            new Color(1.0, 1.0, 1.0)));
+    assertEquals("R1", held.getName());
+    assertEquals(new Coordinate(5.0, 5.0), held.getPosition());
+  }
+
+  /**
+   * Testing that snapshots keep their state and cannot be changed.
+   */
+  @Test
+  public void testSnapshotsAreFrozen() {
+    model.takeSnapshot("Before");
+    model.moveShape("R1", new Coordinate(0.0, 0.0));
+    model.removeShape(model.getShape("O1"));
+    model.takeSnapshot("After");
+
+    List<Snapshot> snapshots = model.getSnapshots();
+    List<IShape> before = snapshots.get(0).getShapes();
+    assertEquals(2, before.size());
+    assertEquals(new Coordinate(100.0, 200.0), before.get(0).getPosition());
+    assertEquals(1, snapshots.get(1).getShapes().size());
+    assertThrows(UnsupportedOperationException.class,
+            () -> before.get(0).setPosition(new Coordinate(5.0, 5.0)));
+  }
+
+  /**
+   * Testing growth past the initial capacity and reset.
+   */
+  @Test
+  public void testManyShapesAndReset() {
+    for (int i = 0; i < 10000; i++) {
+      model.addShape(new Rectangle("S" + i, new Coordinate(i, i), 1.0, 1.0,
+              new Color(0.0, 0.0, 0.0)));
+    }
+    assertEquals(10002, model.getAllShapes().size());
+    assertEquals(new Coordinate(9999.0, 9999.0), model.getShape("S9999").getPosition());
+
+    model.reset();
+    assertEquals(0, model.getAllShapes().size());
+    model.addShape(new Rectangle("S1", new Coordinate(0.0, 0.0), 1.0, 1.0,
+            new Color(0.0, 0.0, 0.0)));
+    assertEquals(1, model.size());
+  }
+}
@@ -0,0 +1,144 @@
+package photoalbum;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import photoalbum.controller.CommandValidator;
+import photoalbum.controller.Diagnostics;
+import photoalbum.controller.InputProcessor;
+import photoalbum.model.PhotoAlbum;
+
+/**
+ * Tests for checking command files before they are applied.
+ */
+public class CommandValidatorTest {
+
+  /**
+   * Temp folder for the inputs.
+   */
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  /**
+   * Tests that every kind of problem in a file is reported at once, with its line.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testReportsEveryProblem() throws IOException {
+    Path file = tempFolder.newFile("album.txt").toPath();
+    Files.writeString(file, String.join("\n",
+            "# canvas 0 0 100 100",
+            "shape R1 rectangle 10 10 20 20 255 0 0",
+            "shape R1 oval 0 0 5 5 0 0 0",
+            "color R1 0 300 0",
+            "resize R1 -4 5",
+            "move R1 90 90",
+            "move O1 0 0",
+            "remove R1",
+            "layer R1 3",
+            "commit",
+            "spin R1",
+            "begin",
+            "shape R1 rectangle 0 0 10 10 0 0 0",
+            "snapshot"), StandardCharsets.UTF_8);
+
+    List<String> found = new CommandValidator(1).validate(file).stream()
+            .map(Diagnostics.Diagnostic::toString).toList();
+
+    assertEquals(List.of(
+            "Error: Line 3: Shape R1 already exists, added on line 2",
+            "Error: Line 4, column 12: expected a color value from 0 to 255 but found 300",
+            "Error: Line 5, column 11: expected a size of at least 0 but found -4",
+            "Warning: Line 6: Shape R1 goes outside the canvas",
+            "Error: Line 7: Shape O1 is not defined",
+            "Error: Line 9: Shape R1 was removed on line 8",
+            "Error: Line 10: Commit without begin",
+            "Warning: Line 11: Unknown command: spin",
+            "Error: Line 12: Batch is never committed, so its 2 commands are not applied"),
+            found);
+  }
+
+  /**
+   * Tests that the commands of a batch are only checked once it is committed, that a batch that
+   * fails or is dropped leaves every name as it was, and that the file has as many errors as
+   * reading it into an album reports.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testChecksBatchesWhenCommitted() throws IOException {
+    Path file = tempFolder.newFile("batches.txt").toPath();
+    Files.writeString(file, String.join("\n",
+            "begin",
+            "shape X rectangle 0 0 10 10 0 0 0",
+            "begin",
+            "shape X rectangle 0 0 10 10 0 0 0",
+            "commit",
+            "move X 1 1",
+            "begin",
+            "shape Y rectangle 0 0 10 10 0 0 0",
+            "remove Z",
+            "commit",
+            "move Y 1 1",
+            "begin",
+            "remove X",
+            "snapshot"), StandardCharsets.UTF_8);
+
+    List<Diagnostics.Diagnostic> found = new CommandValidator(1).validate(file);
+
+    assertEquals(List.of(
+            "Error: Line 3: Begin inside the batch opened on line 1 drops its 1 commands",
+            "Error: Line 9: Shape Z is not defined",
+            "Error: Line 11: Shape Y is not defined",
+            "Error: Line 12: Batch is never committed, so its 2 commands are not applied"),
+            found.stream().map(Diagnostics.Diagnostic::toString).toList());
+    InputProcessor processor = new InputProcessor(new PhotoAlbum(),
+            new Diagnostics(Diagnostics.Mode.QUIET));
+    processor.readDoc(file.toString());
+    assertEquals(found.size(), processor.getErrorCount());
+  }
+
+  /**
+   * Tests that a file parsed on several threads gets the same report as on one, and that a clean
+   * file has no errors.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testParallelMatchesSequential() throws IOException {
+    Path file = tempFolder.newFile("large.txt").toPath();
+    StringBuilder text = new StringBuilder("# canvas 0 0 1000 1000\n");
+    for (int i = 0; i < 60000; i++) {
+      text.append("shape s").append(i).append(" rectangle ").append(i % 990).append(" 5 10 10")
+              .append(" 0 0 0\n");
+      text.append("# a comment that pads the file out past a few chunks of input\n");
+      if (i % 9973 == 0) {
+        text.append("move s").append(i).append(" 995 0\nremove s").append(i + 1).append('\n');
+      }
+    }
+    Files.writeString(file, text, StandardCharsets.UTF_8);
+
+    List<Diagnostics.Diagnostic> sequential = new CommandValidator(1).validate(file);
+    List<Diagnostics.Diagnostic> parallel = new CommandValidator(4).validate(file);
+
+    assertEquals(sequential, parallel);
+    assertEquals(14, sequential.size());
+    assertTrue(CommandValidator.hasErrors(sequential));
+
+    Path clean = tempFolder.newFile("clean.txt").toPath();
+    Files.writeString(clean, "shape R1 rectangle 0 0 10 10 0 0 0\nremove R1\n"
+            + "shape R1 oval 0 0 10 10 0 0 0\nsnapshot\n", StandardCharsets.UTF_8);
+    assertFalse(CommandValidator.hasErrors(new CommandValidator().validate(clean)));
+  }
+}
@@ -0,0 +1,165 @@
+package photoalbum;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Before;
+import org.junit.Test;
+
+import photoalbum.model.Color;
+import photoalbum.model.Command;
+import photoalbum.model.ConcurrentPhotoAlbum;
+import photoalbum.model.Coordinate;
+import photoalbum.model.IShape;
+import photoalbum.model.Oval;
+import photoalbum.model.Rectangle;
+import photoalbum.model.Snapshot;
+
+/**
+ * A Test class for the concurrent photo album.
+ */
+public class ConcurrentPhotoAlbumTest {
+  private static final int THREADS = 4;
+  private static final int SHAPES_PER_THREAD = 500;
+
+  private ConcurrentPhotoAlbum model;
+
+  /**
+   * Set up for the tests.
+   */
+  @Before
+  public void setUp() {
+    model = new ConcurrentPhotoAlbum();
+  }
+
+  /**
+   * Testing the single-threaded behaviour matches the other albums.
+   */
+  @Test
+  public void testMutators() {
+    model.addShape(new Rectangle("R1", new Coordinate(100.0, 200.0),
+            50.0, 75.0, new Color(255.0, 0.0, 0.0)));
+    model.addShape(new Oval("O1", new Coordinate(300.0, 400.0), new Color(0.0, 0.0, 255.0),
+            30.0, 40.0));
+    model.takeSnapshot("Before");
+    model.moveShape("R1", new Coordinate(1.0, 2.0));
+    model.resizeShape("R1", 5.0, 6.0);
+    model.setZIndex("R1", 10);
+    model.removeShape(model.getShape("O1"));
+
+    IShape rect = model.getShape("R1");
+    assertEquals(new Coordinate(1.0, 2.0), rect.getPosition());
+    assertEquals(6.0, rect.getSecondDimension(), 0.001);
+    assertEquals(new Coordinate(100.0, 200.0),
+            model.getSnapshots().get(0).getShapes().get(0).getPosition());
+    assertEquals(2, model.getSnapshots().get(0).getShapes().size());
+    assertThrows(IllegalArgumentException.class, () -> model.resizeShape("R1", -1.0, 1.0));
+    assertThrows(IllegalArgumentException.class, () -> model.moveShape("O1", rect.getPosition()));
+    assertThrows(IllegalArgumentException.class, () -> model.addShape(rect.copy()));
+  }
+
+  /**
+   * Testing that batches from several threads are each applied whole, or not at all.
+   *
+   * @throws Exception thrown if a producer fails.
+   */
+  @Test
+  public void testConcurrentBatches() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<?>> producers = new ArrayList<>();
+      for (int t = 0; t < THREADS; t++) {
+        int thread = t;
+        producers.add(pool.submit(() -> {
+          for (int i = 0; i < 100; i++) {
+            String name = "t" + thread + "-" + i;
+            List<Command> commands = List.of(
+                    new Command.AddShape(new Rectangle(name, new Coordinate(0, 0), 1, 1,
+                            new Color(0, 0, 0))),
+                    new Command.MoveShape(name, new Coordinate(i, i)),
+                    new Command.TakeSnapshot(name));
+            model.applyBatch(commands);
+            assertThrows(IllegalArgumentException.class, () -> model.applyBatch(List.of(
+                    new Command.RemoveShape(name), new Command.RemoveShape(name))));
+          }
+        }));
+      }
+      for (Future<?> producer : producers) {
+        producer.get();
+      }
+    } finally {
+      pool.shutdown();
+    }
+
+    assertEquals(THREADS * 100, model.getAllShapes().size());
+    assertEquals(THREADS * 100, model.getSnapshots().size());
+    for (Snapshot snapshot : model.getSnapshots()) {
+      IShape own = snapshot.getShapes().stream()
+              .filter(s -> s.getName().equals(snapshot.getDescription()))
+              .findFirst()
+              .orElseThrow();
+      assertEquals(own.getPosition().x(), own.getPosition().y(), 0.0);
+      assertEquals(Integer.parseInt(own.getName().split("-")[1]), own.getPosition().x(), 0.0);
+    }
+  }
+
+  /**
+   * Testing that producer threads lose no updates and that every snapshot taken while they run
+   * is a point-in-time cut: each thread's shapes are seen as a prefix of the ones it added.
+   *
+   * @throws Exception thrown if a producer fails.
+   */
+  @Test
+  public void testConcurrentProducers() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(THREADS + 1);
+    try {
+      List<Future<?>> producers = new ArrayList<>();
+      for (int t = 0; t < THREADS; t++) {
+        int thread = t;
+        producers.add(pool.submit(() -> {
+          for (int i = 0; i < SHAPES_PER_THREAD; i++) {
+            String name = "t" + thread + "-" + i;
+            model.addShape(new Rectangle(name, new Coordinate(i, thread), 1, 1,
+                    new Color(0, 0, 0)));
+            model.moveShape(name, new Coordinate(i, i));
+          }
+        }));
+      }
+      Future<?> snapshots = pool.submit(() -> {
+        for (int i = 0; i < 50; i++) {
+          model.takeSnapshot("During " + i);
+        }
+      });
+      for (Future<?> producer : producers) {
+        producer.get();
+      }
+      snapshots.get();
+    } finally {
+      pool.shutdown();
+    }
+
+    assertEquals(THREADS * SHAPES_PER_THREAD, model.getAllShapes().size());
+    for (IShape shape : model.getAllShapes()) {
+      assertEquals(shape.getPosition().x(), shape.getPosition().y(), 0.0);
+    }
+    for (Snapshot snapshot : model.getSnapshots()) {
+      Map<String, Integer> countByThread = new HashMap<>();
+      Map<String, Integer> highestByThread = new HashMap<>();
+      for (IShape shape : snapshot.getShapes()) {
+        String[] parts = shape.getName().split("-");
+        countByThread.merge(parts[0], 1, Integer::sum);
+        highestByThread.merge(parts[0], Integer.parseInt(parts[1]), Math::max);
+      }
+      for (Map.Entry<String, Integer> entry : countByThread.entrySet()) {
+        assertEquals(entry.getValue() - 1, (int) highestByThread.get(entry.getKey()));
+      }
+    }
+  }
+}
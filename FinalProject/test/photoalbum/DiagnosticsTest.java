@@ -0,0 +1,105 @@
+package photoalbum;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import photoalbum.controller.Diagnostics;
+import photoalbum.controller.InputProcessor;
+import photoalbum.model.PhotoAlbum;
+
+/**
+ * Tests for collecting and reporting what happens while commands are read.
+ */
+public class DiagnosticsTest {
+
+  /**
+   * Temp folder for the input.
+   */
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  /**
+   * Tests that a quiet processor prints nothing while reading, counts every command, and keeps
+   * warnings and errors with their line and column.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testQuietProcessing() throws IOException {
+    Path file = tempFolder.newFile("commands.txt").toPath();
+    Files.writeString(file, "shape R1 rectangle 0 0 10 10 255 0 0\n"
+            + "\n"
+            + "move R1 1 oops\n"
+            + "frobnicate R1\n"
+            + "move R1 5 5\n"
+            + "remove O1\n"
+            + "snapshot\n", StandardCharsets.UTF_8);
+    Diagnostics diagnostics = new Diagnostics(Diagnostics.Mode.QUIET);
+    InputProcessor processor = new InputProcessor(new PhotoAlbum(), diagnostics);
+    PrintStream out = System.out;
+    PrintStream err = System.err;
+    ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    try (PrintStream capture = new PrintStream(printed, true, StandardCharsets.UTF_8)) {
+      System.setOut(capture);
+      System.setErr(capture);
+      processor.readDoc(file.toString());
+    } finally {
+      System.setOut(out);
+      System.setErr(err);
+    }
+
+    assertEquals("", printed.toString(StandardCharsets.UTF_8));
+    assertEquals(1, diagnostics.getCommandCount("shape"));
+    assertEquals(1, diagnostics.getCommandCount("move"));
+    assertEquals(1, diagnostics.getCommandCount("snapshot"));
+    assertEquals(1, diagnostics.getCount(Diagnostics.Severity.INFO));
+    assertEquals(1, diagnostics.getCount(Diagnostics.Severity.WARNING));
+    assertEquals(2, processor.getErrorCount());
+
+    List<Diagnostics.Diagnostic> kept = diagnostics.getDiagnostics();
+    assertEquals(3, kept.size());
+    assertEquals("Error: Line 3, column 11: expected a number but found oops",
+            kept.get(0).toString());
+    assertEquals(new Diagnostics.Diagnostic(Diagnostics.Severity.WARNING, 4, 0,
+            "Unknown command: frobnicate"), kept.get(1));
+    assertEquals(6, kept.get(2).line());
+    assertEquals(0, kept.get(2).column());
+  }
+
+  /**
+   * Tests that only the first messages are built, and that the report lists them, counts the
+   * rest, and sums up the commands.
+   */
+  @Test
+  public void testReport() {
+    Diagnostics diagnostics = new Diagnostics(Diagnostics.Mode.QUIET);
+    int[] built = new int[1];
+    for (int i = 1; i <= 1000; i++) {
+      diagnostics.error(i, 1, () -> "bad line " + ++built[0]);
+    }
+    diagnostics.count("shape");
+    diagnostics.count("move");
+    diagnostics.count("move");
+
+    ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    diagnostics.report(new PrintStream(printed, true, StandardCharsets.UTF_8));
+    String report = printed.toString(StandardCharsets.UTF_8);
+
+    assertEquals(20, built[0]);
+    assertEquals(1000, diagnostics.getCount(Diagnostics.Severity.ERROR));
+    assertTrue(report.startsWith("Error: Line 1, column 1: bad line 1"));
+    assertTrue(report.contains("... and 980 more"));
+    assertTrue(report.contains("Applied 3 commands (shape 1, move 2); 0 warnings, 1000 errors"));
+  }
+}
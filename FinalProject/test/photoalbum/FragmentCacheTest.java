@@ -0,0 +1,180 @@
+package photoalbum;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import photoalbum.controller.CacheDirectories;
+import photoalbum.model.Color;
+import photoalbum.model.Coordinate;
+import photoalbum.model.IShape;
+import photoalbum.model.Oval;
+import photoalbum.model.Rectangle;
+import photoalbum.model.Snapshot;
+import photoalbum.views.FragmentCache;
+import photoalbum.views.WebView;
+
+/**
+ * Tests for the cache of rendered page fragments.
+ */
+public class FragmentCacheTest {
+
+  /**
+   * Temp folder for the pages and the cache.
+   */
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  /**
+   * Tests that regenerating a page after one snapshot changed renders only that snapshot, even
+   * though every snapshot was read again, and that the page is the same as one rendered without
+   * a cache, in both output modes. In the SHARED mode the snapshots after the changed one still
+   * hit, as they draw and refer to the same shared shapes as before.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testRegeneratesOnlyChangedSnapshots() throws IOException {
+    for (WebView.Output output : WebView.Output.values()) {
+      FragmentCache cache = new FragmentCache(1 << 20);
+      render(album(0), output, cache);
+      assertEquals(0, cache.getHits());
+      assertEquals(10, cache.getMisses());
+
+      List<Snapshot> edited = album(4);
+      String page = render(edited, output, cache);
+      assertEquals(9, cache.getHits());
+      assertEquals(page, render(edited, output, null));
+    }
+  }
+
+  /**
+   * Tests that the least recently used fragments leave memory first, that they are still found
+   * on disk by a later cache, and that the directory is kept under its size.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testEvictsLeastRecentlyUsed() throws IOException {
+    Path directory = tempFolder.newFolder("fragments").toPath();
+    byte[] fragment = new byte[1000];
+    FragmentCache cache = new FragmentCache(2500, directory, 1 << 20);
+    cache.store("first", fragment);
+    cache.store("second", fragment);
+    cache.lookup("first");
+    cache.store("third", fragment);
+    assertEquals(0, cache.getMisses());
+
+    FragmentCache memoryOnly = new FragmentCache(2500);
+    memoryOnly.store("first", fragment);
+    memoryOnly.store("second", fragment);
+    memoryOnly.lookup("first");
+    memoryOnly.store("third", fragment);
+    assertNull(memoryOnly.lookup("second"));
+    assertArrayEquals(fragment, memoryOnly.lookup("first"));
+
+    FragmentCache later = new FragmentCache(2500, directory, 2500);
+    assertArrayEquals(fragment, later.lookup("second"));
+    later.store("fourth", fragment);
+    try (Stream<Path> files = Files.list(directory)) {
+      assertEquals(1, files.count());
+    }
+  }
+
+  /**
+   * Tests that a fragment file that does not match the hash it was written with is deleted and
+   * missed instead of being read into a page, whether it was changed or planted under a key.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testRejectsFilesNotWrittenByTheCache() throws IOException {
+    Path directory = tempFolder.newFolder("fragments").toPath();
+    new FragmentCache(2500, directory, 1 << 20).store("kept", new byte[] {'<', 'g', '>'});
+    Path kept = directory.resolve("kept.frag");
+    byte[] stored = Files.readAllBytes(kept);
+    stored[stored.length - 1] = 'x';
+    Files.write(kept, stored);
+    Files.writeString(directory.resolve("planted.frag"), "<script>alert(1)</script>");
+
+    FragmentCache later = new FragmentCache(2500, directory, 1 << 20);
+    assertNull(later.lookup("kept"));
+    assertNull(later.lookup("planted"));
+    assertEquals(2, later.getMisses());
+    assertFalse(Files.exists(kept));
+  }
+
+  /**
+   * Tests that a cache directory is created readable by its owner only, and refused once others
+   * can write to it.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testCacheDirectoryIsPrivate() throws IOException {
+    Path root = tempFolder.getRoot().toPath();
+    Path directory = CacheDirectories.open(root, "fragments");
+    assertEquals(directory, CacheDirectories.open(root, "fragments"));
+    if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      return;
+    }
+    assertEquals("rwx------",
+            PosixFilePermissions.toString(Files.getPosixFilePermissions(directory)));
+    Files.setPosixFilePermissions(directory, PosixFilePermissions.fromString("rwxrwxrwx"));
+    assertThrows(IOException.class, () -> CacheDirectories.open(root, "fragments"));
+  }
+
+  /**
+   * Helper method to build an album of ten snapshots of a moving oval in front of some
+   * rectangles, as if it was read from its commands again.
+   *
+   * @param edited the snapshot whose oval is moved somewhere else, or 0 for none.
+   * @return the snapshots.
+   */
+  private List<Snapshot> album(int edited) {
+    List<Snapshot> snapshots = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      List<IShape> shapes = new ArrayList<>();
+      for (int j = 0; j < 20; j++) {
+        shapes.add(new Rectangle("r" + j, new Coordinate(j * 40, 700), 30, 30,
+                new Color(0, 0, 255)));
+      }
+      double x = i == edited && edited > 0 ? 500 : i * 10;
+      shapes.add(new Oval("ball", new Coordinate(x, 100), new Color(255, 0, 0), 20, 20));
+      snapshots.add(new Snapshot("Frame " + i, shapes));
+    }
+    return snapshots;
+  }
+
+  /**
+   * Helper method to render a page on one thread and read it back.
+   *
+   * @param snapshots the snapshots of the page.
+   * @param output how shapes are written.
+   * @param cache the fragment cache, or null.
+   * @return the page.
+   * @throws IOException thrown if the file operation fails.
+   */
+  private String render(List<Snapshot> snapshots, WebView.Output output, FragmentCache cache)
+          throws IOException {
+    Path page = Files.createTempFile(tempFolder.getRoot().toPath(), "page", ".html");
+    WebView view = new WebView(snapshots, 1, output);
+    view.setFragmentCache(cache);
+    view.generateWebPage(page.toString());
+    return Files.readString(page);
+  }
+}
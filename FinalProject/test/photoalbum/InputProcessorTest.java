@@ -1,11 +1,25 @@
 package photoalbum;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
-
-
+import org.junit.rules.TemporaryFolder;
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Locale;
+import java.util.Random;
 
+import photoalbum.controller.CommandCompiler;
 import photoalbum.controller.InputProcessor;
 import photoalbum.model.Color;
 import photoalbum.model.Coordinate;
@@ -19,6 +33,13 @@ import static org.junit.Assert.*;
  * Tests for the Input processor - this will also test the classes in controller.
  */
 public class InputProcessorTest {
+
+  /**
+   * Temp folder for test file input.
+   */
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
   private IPhotoalbum album;
   private InputProcessor processor;
 
@@ -219,4 +240,248 @@ public class InputProcessorTest {
     assertEquals(1, snapshots.size());
     assertEquals(0, snapshots.get(0).getShapes().size());
   }
-}
\ No newline at end of file
+
+  /**
+   * Tests that a batch is applied only when it is committed, and not at all if it fails.
+   */
+  @Test
+  public void testBatch() {
+    processor.processInput("begin");
+    processor.processInput("shape rect1 rectangle 0 0 100 50 255 0 0");
+    processor.processInput("snapshot In the batch");
+    assertEquals(0, album.getAllShapes().size());
+    processor.processInput("commit");
+    assertEquals(1, album.getAllShapes().size());
+    assertEquals(1, album.getSnapshots().size());
+
+    processor.processInput("begin");
+    processor.processInput("move rect1 10 10");
+    processor.processInput("snapshot Moved");
+    processor.processInput("remove missing");
+    processor.processInput("commit");
+    assertEquals(new Coordinate(0, 0), album.getShape("rect1").getPosition());
+    assertEquals(1, album.getSnapshots().size());
+  }
+
+  /**
+   * Tests that a batch opened inside another one, or left open at the end of a file, is dropped
+   * with an error, and that the next file does not start inside it.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testUnclosedBatch() throws IOException {
+    Path first = tempFolder.newFile("first.txt").toPath();
+    Files.writeString(first, String.join("\n",
+            "begin",
+            "shape rect1 rectangle 0 0 100 50 255 0 0",
+            "begin",
+            "shape oval1 oval 50 50 100 100 0 255 0",
+            "commit",
+            "begin",
+            "snapshot Never taken"));
+    Path second = tempFolder.newFile("second.txt").toPath();
+    Files.writeString(second, "snapshot Taken\n");
+
+    String errors = captureErrors(() -> {
+      processor.readDoc(first.toString());
+      processor.readDoc(second.toString());
+    });
+    assertTrue(errors.contains("Line 3: Begin inside an open batch; dropped the 1 commands"));
+    assertTrue(errors.contains("Line 6: Begin without commit; dropped the 1 commands"));
+    assertEquals(2, processor.getErrorCount());
+    assertEquals(List.of("oval1"), album.getAllShapes().stream().map(IShape::getName).toList());
+    assertEquals(1, album.getSnapshots().size());
+  }
+
+  /**
+   * Tests reading a file with comments, blank lines, tabs and Windows line endings.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testReadDoc() throws IOException {
+    Path file = tempFolder.newFile("commands.txt").toPath();
+    Files.writeString(file, "# canvas 0 0 800 800\r\n\r\n"
+            + "\tShape  sun Oval 1.5 -2.25 10 20 255 200 0\r\n"
+            + "   # a comment\n"
+            + "move sun 3e1 .5\n"
+            + "snapshot  Sun \t moved\r\n"
+            + "move sun", StandardCharsets.UTF_8);
+    processor.readDoc(file.toString());
+
+    List<Snapshot> snapshots = album.getSnapshots();
+    assertEquals(1, snapshots.size());
+    assertEquals("Sun moved", snapshots.get(0).getDescription());
+    assertEquals(new Coordinate(30, 0.5), album.getShape("sun").getPosition());
+    assertEquals(new Color(255, 200, 0), album.getShape("sun").getColor());
+  }
+
+  /**
+   * Tests that numbers read from the bytes match the standard parser.
+   */
+  @Test
+  public void testNumberParsing() {
+    processor.processInput("shape r rectangle 0 0 1 1 0 0 0");
+    Random random = new Random(42);
+    for (int i = 0; i < 2000; i++) {
+      String x = Double.toString((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12)));
+      String y = String.format(Locale.ROOT, "%.6f", random.nextDouble() * 1000);
+      processor.processInput("move r " + x + " " + y);
+      assertEquals(x, Double.parseDouble(x), album.getShape("r").getPosition().x(), 0.0);
+      assertEquals(y, Double.parseDouble(y), album.getShape("r").getPosition().y(), 0.0);
+    }
+    processor.processInput("move r 0.1 123456789012345678901234567890");
+    assertEquals(1.2345678901234568e29, album.getShape("r").getPosition().y(), 0.0);
+  }
+
+  /**
+   * Tests that a malformed number is reported and leaves the album unchanged.
+   */
+  @Test
+  public void testBadNumber() {
+    processor.processInput("shape r rectangle 0 0 1 1 0 0 0");
+    processor.processInput("move r 1 two");
+    processor.processInput("move r 1");
+    processor.processInput("layer r 1.5");
+    assertEquals(new Coordinate(0, 0), album.getShape("r").getPosition());
+    assertEquals(1, album.getShape("r").getZIndex());
+  }
+
+  /**
+   * Tests that parsing in a pipeline gives the same album and the same messages as parsing on
+   * one thread, for a file that spans several chunks.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testPipelinedMatchesSequential() throws IOException {
+    Path file = tempFolder.newFile("large.txt").toPath();
+    StringBuilder text = new StringBuilder();
+    Random random = new Random(7);
+    for (int i = 0; i < 20000; i++) {
+      text.append("shape s").append(i).append(" rectangle ").append(random.nextInt(800))
+              .append(' ').append(random.nextInt(800)).append(" 10 10 0 0 0\n");
+      text.append("move s").append(random.nextInt(i + 1)).append(' ')
+              .append(random.nextDouble() * 800).append(" 1.5\n");
+      text.append("# comment line that pads the file out to several megabytes of input\n");
+      if (i % 997 == 0) {
+        text.append("move s0 oops 1\n").append("snapshot At ").append(i).append('\n');
+      }
+      if (i % 1499 == 0) {
+        text.append("remove s").append(i).append('\n').append("remove s").append(i).append('\n');
+      }
+    }
+    Files.writeString(file, text, StandardCharsets.UTF_8);
+
+    String sequential = captureErrors(() -> processor.readDoc(file.toString(), 1));
+    IPhotoalbum pipelinedAlbum = new PhotoAlbum();
+    String pipelined = captureErrors(
+            () -> new InputProcessor(pipelinedAlbum).readDoc(file.toString(), 4));
+
+    assertEquals(sequential, pipelined);
+    assertTrue(sequential.contains("Line 4, column 9:"));
+    assertEquals(album.getAllShapes().toString(), pipelinedAlbum.getAllShapes().toString());
+    assertEquals(album.getSnapshots().size(), pipelinedAlbum.getSnapshots().size());
+    for (int i = 0; i < album.getSnapshots().size(); i++) {
+      assertEquals(album.getSnapshots().get(i).getDescription(),
+              pipelinedAlbum.getSnapshots().get(i).getDescription());
+    }
+  }
+
+  /**
+   * Tests that replaying a compiled file gives the same album and the same messages as reading
+   * the text it was compiled from, including lines that fail and numbers that are not whole.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testCompiledMatchesText() throws IOException {
+    Path text = tempFolder.newFile("commands.txt").toPath();
+    Files.writeString(text, String.join("\n",
+            "# canvas 0 0 800 800",
+            "shape R1 rectangle 10 20 30 40 255 0 0",
+            "shape O1 oval -0.25 1e3 12.5 7 0 128 255",
+            "",
+            "move R1 -5 2147483648",
+            "color O1 1 2 3",
+            "resize R1 2.5 2.5",
+            "layer R1 -3",
+            "frobnicate R1",
+            "move R1 oops 1",
+            "begin",
+            "move O1 0 0",
+            "commit",
+            "snapshot  Two   words",
+            "remove O1",
+            "remove O1",
+            "snapshot"), StandardCharsets.UTF_8);
+    Path compiled = tempFolder.getRoot().toPath().resolve("commands.pac");
+    CommandCompiler.compile(text, compiled);
+
+    assertTrue(CommandCompiler.isCompiled(compiled));
+    assertFalse(CommandCompiler.isCompiled(text));
+    String fromText = captureErrors(() -> processor.readDoc(text.toString()));
+    IPhotoalbum compiledAlbum = new PhotoAlbum();
+    String fromCompiled = captureErrors(
+            () -> new InputProcessor(compiledAlbum).readDoc(compiled.toString()));
+
+    assertEquals(fromText, fromCompiled);
+    assertTrue(fromText.contains("Error: Line 10, column 9: expected a number but found oops"));
+    assertEquals(album.getSnapshots().size(), compiledAlbum.getSnapshots().size());
+    for (int i = 0; i < album.getSnapshots().size(); i++) {
+      assertEquals(album.getSnapshots().get(i).getDescription(),
+              compiledAlbum.getSnapshots().get(i).getDescription());
+      assertEquals(album.getSnapshots().get(i).getShapes().toString(),
+              compiledAlbum.getSnapshots().get(i).getShapes().toString());
+    }
+    assertEquals(2147483648.0, compiledAlbum.getShape("R1").getPosition().y(), 0);
+    assertEquals(-3, compiledAlbum.getShape("R1").getZIndex());
+  }
+
+  /**
+   * Tests that following a stream that delivers a few bytes at a time applies every line once it
+   * is complete, counts lines across reads, and applies a last line that has no line break.
+   */
+  @Test
+  public void testFollowStream() {
+    byte[] text = ("shape R1 rectangle 0 0 10 10 255 0 0\n"
+            + "# a comment\n"
+            + "move R1 oops 1\n"
+            + "move R1 15 25\n"
+            + "snapshot Moved").getBytes(StandardCharsets.UTF_8);
+    InputStream trickle = new ByteArrayInputStream(text) {
+      @Override
+      public synchronized int read(byte[] b, int off, int len) {
+        return super.read(b, off, Math.min(len, 3));
+      }
+    };
+
+    String errors = captureErrors(() -> processor.followStream(trickle));
+
+    assertTrue(errors.contains("Line 3, column 9: expected a number but found oops"));
+    assertEquals(new Coordinate(15, 25), album.getShape("R1").getPosition());
+    assertEquals("Moved", album.getSnapshots().get(0).getDescription());
+  }
+
+  /**
+   * Helper method to run an action and collect what it prints to standard error.
+   *
+   * @param action the action being run.
+   * @return the text printed to standard error.
+   */
+  private String captureErrors(Runnable action) {
+    PrintStream original = System.err;
+    PrintStream originalOut = System.out;
+    ByteArrayOutputStream errors = new ByteArrayOutputStream();
+    System.setErr(new PrintStream(errors, true, StandardCharsets.UTF_8));
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    try {
+      action.run();
+    } finally {
+      System.setErr(original);
+      System.setOut(originalOut);
+    }
+    return errors.toString(StandardCharsets.UTF_8);
+  }
+}
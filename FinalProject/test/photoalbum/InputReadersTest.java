@@ -0,0 +1,169 @@
+package photoalbum;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import photoalbum.controller.CommandCompiler;
+import photoalbum.controller.Diagnostics;
+import photoalbum.controller.InputProcessor;
+import photoalbum.model.Coordinate;
+import photoalbum.model.PhotoAlbum;
+
+/**
+ * Tests for reading gzip, zip and NDJSON input.
+ */
+public class InputReadersTest {
+  private static final String COMMANDS = "shape R1 rectangle 10 20 30 40 255 0 0\n"
+          + "# a comment\n"
+          + "move R1 oops 1\n"
+          + "move R1 15 25\n"
+          + "snapshot Moved\n";
+
+  /**
+   * Temp folder for the inputs.
+   */
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  /**
+   * Tests that a gzipped command file gives the same album and errors as the plain one, and that
+   * it can be compiled without unpacking it first.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testGzip() throws IOException {
+    Path plain = tempFolder.getRoot().toPath().resolve("album.txt");
+    Files.writeString(plain, COMMANDS, StandardCharsets.UTF_8);
+    Path gzipped = tempFolder.getRoot().toPath().resolve("album.txt.gz");
+    try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzipped))) {
+      out.write(COMMANDS.getBytes(StandardCharsets.UTF_8));
+    }
+
+    PhotoAlbum fromPlain = new PhotoAlbum();
+    Diagnostics plainDiagnostics = read(fromPlain, plain);
+    PhotoAlbum fromGzip = new PhotoAlbum();
+    Diagnostics gzipDiagnostics = read(fromGzip, gzipped);
+
+    assertEquals(fromPlain.getAllShapes().toString(), fromGzip.getAllShapes().toString());
+    assertEquals(plainDiagnostics.getDiagnostics(), gzipDiagnostics.getDiagnostics());
+    assertEquals("Error: Line 3, column 9: expected a number but found oops",
+            gzipDiagnostics.getDiagnostics().get(0).toString());
+
+    Path compiled = tempFolder.getRoot().toPath().resolve("album.pac");
+    CommandCompiler.compile(gzipped, compiled);
+    PhotoAlbum fromCompiled = new PhotoAlbum();
+    assertEquals(plainDiagnostics.getDiagnostics(), read(fromCompiled, compiled).getDiagnostics());
+    assertEquals(fromPlain.getAllShapes().toString(), fromCompiled.getAllShapes().toString());
+  }
+
+  /**
+   * Tests that every command file in a zip file is read in turn, including a gzipped one and an
+   * NDJSON one, and that other files in it are skipped.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testZip() throws IOException {
+    Path bundle = tempFolder.getRoot().toPath().resolve("bundle.zip");
+    try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(bundle))) {
+      zip.putNextEntry(new ZipEntry("logs/"));
+      zip.putNextEntry(new ZipEntry("logs/first.txt"));
+      zip.write(COMMANDS.getBytes(StandardCharsets.UTF_8));
+      zip.putNextEntry(new ZipEntry("logs/Notes.java"));
+      zip.write("class Notes {}\n".getBytes(StandardCharsets.UTF_8));
+      zip.putNextEntry(new ZipEntry("__MACOSX/logs/._first.txt"));
+      zip.write(new byte[] {0, 5, 22, 7});
+      zip.putNextEntry(new ZipEntry("logs/second.txt.gz"));
+      ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+      try (OutputStream out = new GZIPOutputStream(gzipped)) {
+        out.write("move R1 1 2\nsnapshot Second\n".getBytes(StandardCharsets.UTF_8));
+      }
+      zip.write(gzipped.toByteArray());
+      zip.putNextEntry(new ZipEntry("logs/third.ndjson"));
+      zip.write("{\"command\": \"snapshot\", \"description\": \"Third\"}\n"
+              .getBytes(StandardCharsets.UTF_8));
+    }
+
+    PhotoAlbum album = new PhotoAlbum();
+    Diagnostics diagnostics = read(album, bundle);
+
+    assertEquals(List.of("Moved", "Second", "Third"), album.getSnapshots().stream()
+            .map(snapshot -> snapshot.getDescription()).toList());
+    assertEquals(new Coordinate(1, 2), album.getShape("R1").getPosition());
+    assertEquals(1, diagnostics.getCount(Diagnostics.Severity.ERROR));
+    assertEquals(0, diagnostics.getCount(Diagnostics.Severity.WARNING));
+    assertEquals(4, diagnostics.getCount(Diagnostics.Severity.INFO));
+  }
+
+  /**
+   * Tests reading NDJSON commands, including batches, escapes, unknown commands, and lines that
+   * fail with the column of the problem.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testNdjson() throws IOException {
+    Path file = tempFolder.getRoot().toPath().resolve("album.ndjson");
+    Files.writeString(file, String.join("\n",
+            "{\"command\": \"shape\", \"name\": \"R1\", \"type\": \"rectangle\", \"x\": 10,"
+                    + " \"y\": 20, \"width\": 30, \"height\": 40, \"r\": 255, \"g\": 0, \"b\": 0}",
+            "{\"command\": \"shape\", \"name\": \"O1\", \"type\": \"oval\", \"x\": -1.5e1,"
+                    + " \"y\": 0, \"width\": 5, \"height\": 5, \"r\": 0, \"g\": 0, \"b\": 255}",
+            "",
+            "{\"command\": \"begin\"}",
+            "{\"command\": \"move\", \"name\": \"R1\", \"x\": 1, \"y\": 2}",
+            "{\"command\": \"resize\", \"name\": \"O1\", \"width\": 8, \"height\": 9}",
+            "{\"command\": \"commit\"}",
+            "{\"command\": \"layer\", \"name\": \"R1\", \"z\": 7}",
+            "{\"command\": \"move\", \"name\": \"R1\", \"x\": \"far\", \"y\": 2}",
+            "{\"command\": \"move\", \"name\": \"R1\", \"x\": 3}",
+            "{\"command\": \"spin\", \"name\": \"R1\"}",
+            "{\"command\": \"move\" \"name\": \"R1\"}",
+            "{\"command\": \"snapshot\", \"description\": \"Tab\\tand \\u00e9\"}"),
+            StandardCharsets.UTF_8);
+
+    PhotoAlbum album = new PhotoAlbum();
+    List<Diagnostics.Diagnostic> reported = read(album, file).getDiagnostics();
+
+    assertEquals(new Coordinate(1, 2), album.getShape("R1").getPosition());
+    assertEquals(new Coordinate(-15, 0), album.getShape("O1").getPosition());
+    assertEquals(8, album.getShape("O1").getFirstDimension(), 0);
+    assertEquals(7, album.getShape("R1").getZIndex());
+    assertEquals("Tab\tand \u00e9", album.getSnapshots().get(0).getDescription());
+    assertEquals(4, reported.size());
+    assertEquals("Error: Line 9, column 40: expected a number for \"x\"",
+            reported.get(0).toString());
+    assertEquals("Error: Line 10, column 42: expected a field \"y\"",
+            reported.get(1).toString());
+    assertEquals("Warning: Line 11: Unknown command: spin", reported.get(2).toString());
+    assertEquals("Error: Line 12, column 20: expected ',' or '}' but found '\"'",
+            reported.get(3).toString());
+  }
+
+  /**
+   * Helper method to read a file quietly into an album.
+   *
+   * @param album the album.
+   * @param file the file.
+   * @return the diagnostics of the read.
+   */
+  private Diagnostics read(PhotoAlbum album, Path file) {
+    Diagnostics diagnostics = new Diagnostics(Diagnostics.Mode.QUIET);
+    new InputProcessor(album, diagnostics).readDoc(file.toString(), 1);
+    return diagnostics;
+  }
+}
@@ -0,0 +1,87 @@
+package photoalbum;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import photoalbum.controller.InputProcessor;
+import photoalbum.controller.InputWatcher;
+import photoalbum.model.Coordinate;
+import photoalbum.model.PhotoAlbum;
+import photoalbum.model.Snapshot;
+import photoalbum.views.WebView;
+
+/**
+ * Tests for re-reading an edited command file from the last checkpoint before the edit.
+ */
+public class InputWatcherTest {
+
+  /**
+   * Temp folder for the command file and the web page.
+   */
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  /**
+   * Tests that an edit near the end keeps the snapshots before it, and that the album and the
+   * web page end up the same as reading the edited file from scratch.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testEditResumesFromCheckpoint() throws IOException {
+    Path file = tempFolder.newFile("scene.txt").toPath();
+    List<String> lines = new ArrayList<>();
+    lines.add("shape R rectangle 0 0 10 10 0 0 0");
+    for (int i = 0; i < 10; i++) {
+      lines.add("move R " + i + " " + i);
+      lines.add("snapshot Step " + i);
+    }
+    lines.add("begin");
+    lines.add("move R 50 50");
+    lines.add("snapshot Inside");
+    lines.add("commit");
+    Files.write(file, lines, StandardCharsets.UTF_8);
+
+    PhotoAlbum album = new PhotoAlbum();
+    InputWatcher watcher = new InputWatcher(file, album);
+    assertEquals(0, watcher.refresh());
+    assertEquals(11, watcher.getCheckpointCount());
+    List<Snapshot> before = album.getSnapshots();
+    Path page = tempFolder.getRoot().toPath().resolve("scene.html");
+    WebView view = new WebView(List.of());
+    view.updateWebPage(page.toString(), before, 0);
+    assertEquals(-1, watcher.refresh());
+
+    lines.set(17, "move R 70 80");
+    Files.write(file, lines, StandardCharsets.UTF_8);
+    assertEquals(8, watcher.refresh());
+    List<Snapshot> after = album.getSnapshots();
+    view.updateWebPage(page.toString(), after, 8);
+
+    PhotoAlbum fresh = new PhotoAlbum();
+    new InputProcessor(fresh).readDoc(file.toString());
+    Path freshPage = tempFolder.getRoot().toPath().resolve("fresh.html");
+    new WebView(List.of()).updateWebPage(freshPage.toString(), fresh.getSnapshots(), 0);
+
+    assertEquals(11, after.size());
+    for (int i = 0; i < 8; i++) {
+      assertSame(before.get(i), after.get(i));
+    }
+    assertNotEquals(before.get(8).getId(), after.get(8).getId());
+    assertEquals(new Coordinate(70, 80), after.get(8).getShapes().get(0).getPosition());
+    assertEquals(fresh.getAllShapes().toString(), album.getAllShapes().toString());
+    assertEquals(Files.readString(freshPage).replaceAll("Snapshot: \\d+|Timestamp: .*", ""),
+            Files.readString(page).replaceAll("Snapshot: \\d+|Timestamp: .*", ""));
+  }
+}
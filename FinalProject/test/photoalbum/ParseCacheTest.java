@@ -0,0 +1,141 @@
+package photoalbum;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import photoalbum.controller.Diagnostics;
+import photoalbum.controller.InputProcessor;
+import photoalbum.controller.ParseCache;
+import photoalbum.model.PhotoAlbum;
+
+/**
+ * Tests for the on-disk cache of parsed command files.
+ */
+public class ParseCacheTest {
+
+  /**
+   * Temp folder for the inputs and the cache.
+   */
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  /**
+   * Tests that a stored entry is found by the hash of the same contents and holds the snapshots,
+   * the final shapes and what reading the file reported, that it does not need its files once it
+   * is found, and that other contents miss.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testStoreAndLookup() throws IOException {
+    Path input = writeInput("one.txt", "shape R1 rectangle 0 0 10 10 255 0 0\n"
+            + "snapshot First\n"
+            + "shape O1 oval 5 5 2 2 0 0 255\n"
+            + "layer R1 9\n"
+            + "move R1 oops 1\n");
+    PhotoAlbum album = new PhotoAlbum();
+    Diagnostics read = new Diagnostics(Diagnostics.Mode.QUIET);
+    new InputProcessor(album, read).readDoc(input.toString());
+    Path directory = tempFolder.newFolder("cache").toPath();
+    ParseCache cache = new ParseCache(directory, 1 << 20);
+    String key = ParseCache.key(input);
+    assertNull(cache.lookup(key));
+
+    cache.store(key, album.getSnapshots(), album.getAllShapes(), read.summary());
+    Path copy = writeInput("copy.txt", Files.readString(input));
+    ParseCache.Entry entry = cache.lookup(ParseCache.key(copy));
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : files.toList()) {
+        Files.delete(file);
+      }
+    }
+
+    assertNotNull(entry);
+    Diagnostics replayed = new Diagnostics(Diagnostics.Mode.QUIET);
+    replayed.replay(entry.summary());
+    assertEquals(read.getDiagnostics(), replayed.getDiagnostics());
+    assertEquals(1, replayed.getCount(Diagnostics.Severity.ERROR));
+    assertEquals(2, replayed.getCommandCount("shape"));
+    assertEquals(1, entry.snapshots().size());
+    assertEquals("First", entry.snapshots().get(0).getDescription());
+    assertEquals(album.getAllShapes().toString(), entry.shapes().toString());
+    assertEquals(9, entry.shapes().get(1).getZIndex());
+    assertNotEquals(key, ParseCache.key(writeInput("two.txt", "snapshot First\n")));
+  }
+
+  /**
+   * Tests that the same contents under another extension, which can pick another reader, get
+   * another key, while another name with the same extension gets the same key.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testKeyIncludesExtension() throws IOException {
+    String text = "{\"command\": \"snapshot\"}\n";
+    String key = ParseCache.key(writeInput("events.txt", text));
+
+    assertEquals(key, ParseCache.key(writeInput("other.txt", text)));
+    assertNotEquals(key, ParseCache.key(writeInput("events.ndjson", text)));
+    assertNotEquals(key, ParseCache.key(writeInput("events", text)));
+  }
+
+  /**
+   * Tests that the least recently used entries are deleted once the cache is over its size.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testEvictsLeastRecentlyUsed() throws IOException {
+    Path directory = tempFolder.newFolder("cache").toPath();
+    PhotoAlbum album = new PhotoAlbum();
+    new InputProcessor(album).readDoc(writeInput("a.txt",
+            "shape R1 rectangle 0 0 10 10 255 0 0\nsnapshot\n").toString());
+    Diagnostics.Summary summary = new Diagnostics(Diagnostics.Mode.QUIET).summary();
+    ParseCache probe = new ParseCache(directory, Long.MAX_VALUE);
+    probe.store("size", album.getSnapshots(), album.getAllShapes(), summary);
+    long entryBytes = Files.size(directory.resolve("size.snaps"))
+            + Files.size(directory.resolve("size.diag"));
+    Files.delete(directory.resolve("size.snaps"));
+    Files.delete(directory.resolve("size.diag"));
+
+    ParseCache cache = new ParseCache(directory, entryBytes * 2);
+    cache.store("first", album.getSnapshots(), album.getAllShapes(), summary);
+    cache.store("second", album.getSnapshots(), album.getAllShapes(), summary);
+    Files.setLastModifiedTime(directory.resolve("first.snaps"), FileTime.fromMillis(1000));
+    Files.setLastModifiedTime(directory.resolve("second.snaps"), FileTime.fromMillis(2000));
+    assertNotNull(cache.lookup("first"));
+    cache.store("third", album.getSnapshots(), album.getAllShapes(), summary);
+
+    assertNotNull(cache.lookup("first"));
+    assertNull(cache.lookup("second"));
+    assertNotNull(cache.lookup("third"));
+    assertFalse(Files.exists(directory.resolve("second.diag")));
+  }
+
+  /**
+   * Helper method to write an input file.
+   *
+   * @param name the name of the file.
+   * @param text the commands.
+   * @return the path of the file.
+   * @throws IOException thrown if the file operation fails.
+   */
+  private Path writeInput(String name, String text) throws IOException {
+    Path file = tempFolder.getRoot().toPath().resolve(name);
+    Files.writeString(file, text, StandardCharsets.UTF_8);
+    return file;
+  }
+}
@@ -1,15 +1,21 @@
 package photoalbum;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
 
 import photoalbum.model.Color;
+import photoalbum.model.Command;
 import photoalbum.model.Coordinate;
 import photoalbum.model.IShape;
 import photoalbum.model.Oval;
@@ -122,7 +128,7 @@ public class PhotoalbumTest {
   @Test
   public void testAddShape() {
     model.addShape(rectangle);
-    assertEquals(rectangle, model.getShape("R1"));
+    assertEquals(rectangle.toString(), model.getShape("R1").toString());
   }
 
 
@@ -194,7 +200,42 @@ public class PhotoalbumTest {
 
     List<Snapshot> snapshots = model.getSnapshots();
     assertEquals(2, snapshots.size());
-    assertTrue(snapshots.get(0).getId().compareTo(snapshots.get(1).getId()) < 0);
+    assertTrue(snapshots.get(0).getId() < snapshots.get(1).getId());
+  }
+
+  /**
+   * PhotoAlbum Class
+   * Testing that snapshots taken in the same clock tick are all kept, in order.
+   */
+  @Test
+  public void testSnapshotsInSameTick() {
+    Clock frozen = Clock.fixed(Instant.parse("2024-03-01T10:15:30Z"), ZoneOffset.UTC);
+    PhotoAlbum album = new PhotoAlbum(1, frozen);
+    for (int i = 0; i < 100; i++) {
+      album.takeSnapshot("Snapshot " + i);
+    }
+
+    List<Snapshot> snapshots = album.getSnapshots();
+    assertEquals(100, snapshots.size());
+    assertEquals("01-03-2024 10:15:30", snapshots.get(0).getTimestamp());
+    for (int i = 0; i < snapshots.size(); i++) {
+      assertEquals("Snapshot " + i, snapshots.get(i).getDescription());
+      assertEquals(i, album.getSnapshotIndex(snapshots.get(i).getId()));
+    }
+  }
+
+  /**
+   * PhotoAlbum Class
+   * Testing lookup of snapshots by ID.
+   */
+  @Test
+  public void testGetSnapshotById() {
+    model.takeSnapshot("First");
+    model.takeSnapshot("Second");
+    Snapshot second = model.getSnapshots().get(1);
+
+    assertSame(second, model.getSnapshot(second.getId()));
+    assertThrows(IllegalArgumentException.class, () -> model.getSnapshot(-1));
   }
 
   /**
@@ -212,6 +253,162 @@ public class PhotoalbumTest {
     assertEquals(1, model.getSnapshots().size());
   }
 
+  /**
+   * PhotoAlbum Class
+   * Testing that a snapshot keeps its state after the album changes.
+   */
+  @Test
+  public void testSnapshotUnaffectedByLaterChanges() {
+    model.addShape(rectangle);
+    model.takeSnapshot("Before move");
+    model.moveShape("R1", new Coordinate(1.0, 2.0));
+    model.setColor("R1", new Color(0.0, 0.0, 0.0));
+    model.resizeShape("R1", 5.0, 5.0);
+    model.takeSnapshot("After move");
+
+    IShape before = model.getSnapshots().get(0).getShapes().get(0);
+    IShape after = model.getSnapshots().get(1).getShapes().get(0);
+    assertEquals(new Coordinate(100.0, 200.0), before.getPosition());
+    assertEquals(new Color(1.0, 0.0, 0.0), before.getColor());
+    assertEquals(50.0, before.getFirstDimension(), 0.001);
+    assertEquals(new Coordinate(1.0, 2.0), after.getPosition());
+    assertEquals(5.0, after.getSecondDimension(), 0.001);
+  }
+
+  /**
+   * PhotoAlbum Class
+   * Testing that changing a shape that was added or looked up does not change the album or its
+   * snapshots.
+   */
+  @Test
+  public void testShapesHandedOutAreCopies() {
+    model.addShape(rectangle);
+    model.takeSnapshot("Added");
+    rectangle.setPosition(new Coordinate(99.0, 99.0));
+    model.getShape("R1").resize(555.0, 555.0);
+    model.getAllShapes().get(0).setColor(new Color(0.0, 0.0, 0.0));
+
+    for (IShape shape : List.of(model.getShape("R1"),
+            model.getSnapshots().get(0).getShapes().get(0))) {
+      assertEquals(new Coordinate(100.0, 200.0), shape.getPosition());
+      assertEquals(50.0, shape.getFirstDimension(), 0.001);
+      assertEquals(new Color(1.0, 0.0, 0.0), shape.getColor());
+    }
+  }
+
+  /**
+   * PhotoAlbum Class
+   * Testing that the shapes of a snapshot and of an event cannot be changed, so the album, later
+   * snapshots and the spatial index keep what the album was told.
+   */
+  @Test
+  public void testSnapshotShapesCannotBeChanged() {
+    List<IShape> heard = new ArrayList<>();
+    model.addListener(event -> heard.add(event.shape()));
+    model.addShape(rectangle);
+    model.takeSnapshot("Added");
+    IShape kept = model.getSnapshots().get(0).getShapes().get(0);
+
+    assertThrows(UnsupportedOperationException.class,
+            () -> kept.setPosition(new Coordinate(500.0, 500.0)));
+    assertThrows(UnsupportedOperationException.class, () -> kept.resize(1.0, 1.0));
+    assertThrows(UnsupportedOperationException.class,
+            () -> heard.get(0).setColor(new Color(0.0, 0.0, 0.0)));
+    model.takeSnapshot("Later");
+
+    assertEquals(new Coordinate(100.0, 200.0), model.getShape("R1").getPosition());
+    assertEquals(new Coordinate(100.0, 200.0),
+            model.getSnapshots().get(1).getShapes().get(0).getPosition());
+    assertEquals(1, model.shapesIntersecting(100.0, 200.0, 1.0, 1.0).size());
+    assertEquals(0, model.shapesIntersecting(500.0, 500.0, 1.0, 1.0).size());
+    IShape copy = kept.copy();
+    copy.setPosition(new Coordinate(500.0, 500.0));
+    assertEquals(new Coordinate(100.0, 200.0), kept.getPosition());
+  }
+
+  /**
+   * PhotoAlbum Class
+   * Testing that unchanged shapes are shared between snapshots instead of copied.
+   */
+  @Test
+  public void testSnapshotsShareUnchangedShapes() {
+    model.addShape(rectangle);
+    model.addShape(oval);
+    model.takeSnapshot("First");
+    model.moveShape("R1", new Coordinate(0.0, 0.0));
+    model.takeSnapshot("Second");
+
+    List<Snapshot> snapshots = model.getSnapshots();
+    assertSame(findShape(snapshots.get(0), "O1"), findShape(snapshots.get(1), "O1"));
+    assertNotSame(findShape(snapshots.get(0), "R1"), findShape(snapshots.get(1), "R1"));
+  }
+
+  /**
+   * PhotoAlbum Class
+   * Testing lookups, removals and replacements on a large album.
+   */
+  @Test
+  public void testManyShapes() {
+    for (int i = 0; i < 5000; i++) {
+      model.addShape(new Rectangle("S" + i, new Coordinate(i, i), 1.0, 1.0,
+              new Color(0.0, 0.0, 0.0)));
+    }
+    for (int i = 0; i < 5000; i += 2) {
+      model.removeShape(model.getShape("S" + i));
+    }
+    model.moveShape("S4999", new Coordinate(7.0, 7.0));
+
+    assertEquals(2500, model.getAllShapes().size());
+    assertEquals(new Coordinate(7.0, 7.0), model.getShape("S4999").getPosition());
+    assertEquals(new Coordinate(1.0, 1.0), model.getShape("S1").getPosition());
+    assertThrows(IllegalArgumentException.class, () -> model.getShape("S0"));
+  }
+
+  /**
+   * PhotoAlbum Class
+   * Testing that delta-encoded snapshots rebuild the same shapes as full snapshots.
+   */
+  @Test
+  public void testKeyframeTimeline() {
+    PhotoAlbum full = new PhotoAlbum();
+    PhotoAlbum delta = new PhotoAlbum(4);
+    for (PhotoAlbum album : List.of(full, delta)) {
+      for (int i = 0; i < 10; i++) {
+        album.addShape(new Rectangle("S" + i, new Coordinate(i, i), 1.0, 1.0,
+                new Color(0.0, 0.0, 0.0)));
+      }
+      album.takeSnapshot("Start");
+      for (int step = 0; step < 10; step++) {
+        album.moveShape("S" + step, new Coordinate(step * 10.0, 0.0));
+        album.setColor("S" + (9 - step), new Color(step, step, step));
+        if (step % 3 == 0) {
+          album.removeShape(album.getShape("S" + step));
+          album.addShape(new Oval("S" + step, new Coordinate(1.0, 1.0),
+                  new Color(0.0, 0.0, 1.0), 2.0, 2.0));
+        }
+        album.takeSnapshot("Step " + step);
+      }
+      album.reset();
+      album.takeSnapshot("Empty");
+    }
+
+    List<Snapshot> expected = full.getSnapshots();
+    List<Snapshot> actual = delta.getSnapshots();
+    assertEquals(expected.size(), actual.size());
+    for (int i = actual.size() - 1; i >= 0; i--) {
+      assertEquals(describe(expected.get(i)), describe(actual.get(i)));
+    }
+  }
+
+  /**
+   * PhotoAlbum Class
+   * Testing that the keyframe interval has to be positive.
+   */
+  @Test
+  public void testBadKeyframeInterval() {
+    assertThrows(IllegalArgumentException.class, () -> new PhotoAlbum(0));
+  }
+
   /**
    * Snapshot Class
    * Test Comparable methods.
@@ -290,4 +487,166 @@ public class PhotoalbumTest {
       model.resizeShape("hi", 1,1);
     });
   }
+
+  /**
+   * PhotoAlbum Class
+   * Testing that shapes are listed in drawing order and that snapshots keep their own order.
+   */
+  @Test
+  public void testDrawOrder() {
+    model = new PhotoAlbum(3);
+    model.addShape(rectangle);
+    model.addShape(oval);
+    model.addShape(new Rectangle("background", new Coordinate(0, 0), 800, 800,
+            new Color(0, 0, 0)));
+    model.takeSnapshot("Added in order");
+    assertEquals(List.of("R1", "O1", "background"), names(model.getAllShapes()));
+
+    model.setZIndex("background", -1);
+    model.takeSnapshot("Background moved down");
+    model.setZIndex("R1", model.getShape("O1").getZIndex());
+    model.takeSnapshot("Tied layers");
+    model.addShape(new Oval("top", new Coordinate(0, 0), new Color(0, 0, 0), 1, 1));
+
+    assertEquals(List.of("background", "O1", "R1", "top"), names(model.getAllShapes()));
+    List<Snapshot> snapshots = model.getSnapshots();
+    assertEquals(List.of("R1", "O1", "background"), names(snapshots.get(0).getShapes()));
+    assertEquals(List.of("background", "R1", "O1"), names(snapshots.get(1).getShapes()));
+    assertEquals(List.of("background", "O1", "R1"), names(snapshots.get(2).getShapes()));
+  }
+
+  /**
+   * PhotoAlbum Class
+   * Testing bad setZIndex method.
+   */
+  @Test
+  public void testBadSetZIndex() {
+    assertThrows(IllegalArgumentException.class, () -> {
+      model.setZIndex("hi", 1);
+    });
+  }
+
+  /**
+   * PhotoAlbum Class
+   * Testing that a failed batch leaves the shapes, snapshots and delta timeline as they were.
+   */
+  @Test
+  public void testApplyBatchRollback() {
+    model = new PhotoAlbum(3);
+    model.addShape(rectangle);
+    model.takeSnapshot("Before");
+    model.moveShape("R1", new Coordinate(5, 5));
+
+    assertThrows(IllegalArgumentException.class, () -> model.applyBatch(List.of(
+            new Command.AddShape(oval),
+            new Command.MoveShape("R1", new Coordinate(1, 1)),
+            new Command.TakeSnapshot("In the batch"),
+            new Command.SetColor("missing", new Color(0, 0, 0)))));
+
+    assertEquals(1, model.getSnapshots().size());
+    assertEquals(List.of("R1"), names(model.getAllShapes()));
+    assertEquals(new Coordinate(5, 5), model.getShape("R1").getPosition());
+    assertEquals(List.of(), model.shapesIntersecting(0, 0, 2, 2));
+
+    model.applyBatch(List.of(new Command.AddShape(oval), new Command.TakeSnapshot("After")));
+    model.takeSnapshot("Last");
+    List<Snapshot> snapshots = model.getSnapshots();
+    assertEquals(3, snapshots.size());
+    assertEquals(new Coordinate(5, 5), findShape(snapshots.get(1), "R1").getPosition());
+    assertEquals(List.of("R1", "O1"), names(snapshots.get(2).getShapes()));
+  }
+
+  /**
+   * Tests that restoring a checkpoint drops the later changes and snapshots but keeps the
+   * earlier snapshots as they were.
+   */
+  @Test
+  public void testCheckpointRestore() {
+    PhotoAlbum album = new PhotoAlbum(3);
+    album.addShape(new Rectangle("R1", new Coordinate(0, 0), 10, 10, new Color(0, 0, 0)));
+    album.takeSnapshot("First");
+    Snapshot first = album.getSnapshots().get(0);
+    PhotoAlbum.Checkpoint checkpoint = album.checkpoint();
+
+    album.moveShape("R1", new Coordinate(5, 5));
+    album.addShape(new Oval("O1", new Coordinate(1, 1), new Color(0, 0, 0), 2, 2));
+    album.takeSnapshot("Second");
+    album.restore(checkpoint);
+
+    assertEquals(1, album.getSnapshots().size());
+    assertSame(first, album.getSnapshots().get(0));
+    assertEquals(List.of("R1"), names(album.getAllShapes()));
+    assertEquals(new Coordinate(0, 0), album.getShape("R1").getPosition());
+    assertTrue(album.shapesContaining(new Coordinate(1, 1)).stream()
+            .allMatch(shape -> shape.getName().equals("R1")));
+
+    album.moveShape("R1", new Coordinate(7, 7));
+    album.takeSnapshot("Again");
+    assertEquals(new Coordinate(7, 7), findShape(album.getSnapshots().get(1), "R1").getPosition());
+    assertEquals(new Coordinate(0, 0), findShape(album.getSnapshots().get(0), "R1").getPosition());
+    album.restore(album.checkpoint());
+    assertThrows(IllegalArgumentException.class, () -> new PhotoAlbum().restore(checkpoint));
+  }
+
+  /**
+   * Tests that a delta-encoded snapshot that was handed out keeps its own shapes after a restore
+   * drops it, both once another snapshot has taken its place and once there is none.
+   */
+  @Test
+  public void testDroppedSnapshotKeepsItsShapes() {
+    PhotoAlbum album = new PhotoAlbum(4);
+    album.addShape(rectangle);
+    album.addShape(oval);
+    album.takeSnapshot("Keyframe");
+    PhotoAlbum.Checkpoint checkpoint = album.checkpoint();
+    album.moveShape("R1", new Coordinate(1.0, 1.0));
+    album.takeSnapshot("Dropped");
+    Snapshot dropped = album.getSnapshots().get(1);
+
+    album.restore(checkpoint);
+    album.moveShape("R1", new Coordinate(2.0, 2.0));
+    album.takeSnapshot("Replacement");
+    assertEquals(new Coordinate(1.0, 1.0), findShape(dropped, "R1").getPosition());
+    assertEquals(new Coordinate(2.0, 2.0),
+            findShape(album.getSnapshots().get(1), "R1").getPosition());
+
+    album.restore(checkpoint);
+    assertEquals(new Coordinate(1.0, 1.0), findShape(dropped, "R1").getPosition());
+    assertEquals(new Coordinate(100.0, 200.0),
+            findShape(album.getSnapshots().get(0), "R1").getPosition());
+  }
+
+  /**
+   * Helper method to list the names of shapes in order.
+   *
+   * @param shapes the shapes being named.
+   * @return a List of the shape names.
+   */
+  private List<String> names(List<IShape> shapes) {
+    return shapes.stream().map(IShape::getName).toList();
+  }
+
+  /**
+   * Helper method to find a shape in a snapshot by name.
+   *
+   * @param snapshot the snapshot being searched.
+   * @param name the name of the shape.
+   * @return the shape with that name.
+   */
+  private IShape findShape(Snapshot snapshot, String name) {
+    return snapshot.getShapes().stream()
+            .filter(s -> s.getName().equals(name))
+            .findFirst()
+            .orElseThrow();
+  }
+
+  /**
+   * Helper method to describe the shapes of a snapshot independent of their order.
+   *
+   * @param snapshot the snapshot being described.
+   * @return a sorted List of shape descriptions.
+   */
+  private List<String> describe(Snapshot snapshot) {
+    return snapshot.getShapes().stream().map(IShape::toString).sorted().toList();
+  }
 }
\ No newline at end of file
@@ -0,0 +1,211 @@
+package photoalbum;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import photoalbum.model.Color;
+import photoalbum.model.Coordinate;
+import photoalbum.model.IShape;
+import photoalbum.model.Oval;
+import photoalbum.model.PhotoAlbum;
+import photoalbum.model.Rectangle;
+import photoalbum.model.Snapshot;
+import photoalbum.model.SnapshotArchive;
+
+/**
+ * Test Class for the binary snapshot archive.
+ */
+public class SnapshotArchiveTest {
+
+  /**
+   * Temp folder for test file output.
+   */
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private PhotoAlbum album;
+
+  /**
+   * Set up an album with a few snapshots.
+   */
+  @Before
+  public void setUp() {
+    album = new PhotoAlbum();
+    album.addShape(new Rectangle("background", new Coordinate(0, 0), 800, 800,
+            new Color(33, 94, 248)));
+    album.takeSnapshot("Only the background");
+    album.addShape(new Oval("moon", new Coordinate(200.5, 200.25), new Color(229, 229, 255),
+            100, 100));
+    album.takeSnapshot("");
+    album.moveShape("moon", new Coordinate(10, 20));
+    album.takeSnapshot("Moon moved \u263E");
+  }
+
+  /**
+   * Tests that every snapshot reads back the way it was written.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testRoundTrip() throws IOException {
+    Path path = tempFolder.newFile("album.snaps").toPath();
+    List<Snapshot> expected = album.getSnapshots();
+    SnapshotArchive.write(path, expected);
+
+    try (SnapshotArchive archive = SnapshotArchive.open(path)) {
+      assertEquals(3, archive.size());
+      for (int k = 0; k < expected.size(); k++) {
+        Snapshot want = expected.get(k);
+        Snapshot got = archive.get(k);
+        assertEquals(want.getId(), got.getId());
+        assertEquals(want.getTimestamp(), got.getTimestamp());
+        assertEquals(want.getDescription(), got.getDescription());
+        assertEquals(want.getShapes().size(), got.getShapes().size());
+        for (int i = 0; i < want.getShapes().size(); i++) {
+          assertEquals(want.getShapes().get(i).toString(), got.getShapes().get(i).toString());
+          assertEquals(want.getShapes().get(i).getZIndex(), got.getShapes().get(i).getZIndex());
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests that a single snapshot can be opened directly and through the list view.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testRandomAccess() throws IOException {
+    Path path = tempFolder.newFile("random.snaps").toPath();
+    SnapshotArchive.write(path, album.getSnapshots());
+
+    try (SnapshotArchive archive = SnapshotArchive.open(path)) {
+      List<Snapshot> list = archive.asList();
+      Snapshot last = list.get(2);
+      assertEquals("Moon moved \u263E", last.getDescription());
+      IShape moon = last.getShapes().get(1);
+      assertEquals("moon", moon.getName());
+      assertEquals(new Coordinate(10, 20), moon.getPosition());
+      assertThrows(IndexOutOfBoundsException.class, () -> archive.get(3));
+      assertThrows(UnsupportedOperationException.class, () -> list.remove(0));
+    }
+  }
+
+  /**
+   * Tests that archives are told apart from command files.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testIsArchive() throws IOException {
+    Path path = tempFolder.newFile("check.snaps").toPath();
+    SnapshotArchive.write(path, album.getSnapshots());
+    File text = tempFolder.newFile("commands.txt");
+
+    assertTrue(SnapshotArchive.isArchive(path));
+    assertFalse(SnapshotArchive.isArchive(text.toPath()));
+    assertThrows(IOException.class, () -> SnapshotArchive.open(text.toPath()));
+  }
+
+  /**
+   * Tests that new snapshots are numbered after the ones loaded from an archive.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testIdsStayUnique() throws IOException {
+    Path path = tempFolder.newFile("ids.snaps").toPath();
+    SnapshotArchive.write(path, album.getSnapshots());
+
+    try (SnapshotArchive archive = SnapshotArchive.open(path)) {
+      long loaded = archive.get(2).getId();
+      album.takeSnapshot("Later");
+      List<Snapshot> snapshots = album.getSnapshots();
+      assertTrue(snapshots.get(snapshots.size() - 1).getId() > loaded);
+    }
+  }
+
+  /**
+   * Tests that a snapshot without a description is stored with an empty one.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testNullDescription() throws IOException {
+    Path path = tempFolder.newFile("untitled.snaps").toPath();
+    SnapshotArchive.write(path, List.of(new Snapshot(null, album.getAllShapes())));
+
+    assertEquals("", SnapshotArchive.readAll(path).get(0).getDescription());
+  }
+
+  /**
+   * Tests that snapshots opened from an archive can still be read after it is closed.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testSnapshotsOutliveArchive() throws IOException {
+    Path path = tempFolder.newFile("closed.snaps").toPath();
+    SnapshotArchive.write(path, album.getSnapshots());
+
+    List<Snapshot> snapshots;
+    try (SnapshotArchive archive = SnapshotArchive.open(path)) {
+      snapshots = List.copyOf(archive.asList());
+    }
+    assertEquals(new Coordinate(10, 20), snapshots.get(2).getShapes().get(1).getPosition());
+  }
+
+  /**
+   * Tests that a header or index pointing outside the file is reported as a damaged archive.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testDamagedIndex() throws IOException {
+    Path path = tempFolder.newFile("damaged.snaps").toPath();
+    SnapshotArchive.write(path, album.getSnapshots());
+    byte[] contents = Files.readAllBytes(path);
+
+    byte[] count = contents.clone();
+    ByteBuffer.wrap(count).putInt(8, 1_000_000);
+    assertDamaged(path, count);
+
+    byte[] negative = contents.clone();
+    ByteBuffer.wrap(negative).putInt(8, -1);
+    assertDamaged(path, negative);
+
+    byte[] offset = contents.clone();
+    ByteBuffer.wrap(offset).putLong(16 + 12, contents.length);
+    assertDamaged(path, offset);
+
+    byte[] length = contents.clone();
+    ByteBuffer.wrap(length).putInt(16 + 8, Integer.MAX_VALUE);
+    assertDamaged(path, length);
+  }
+
+  /**
+   * Helper method to check that both ways of reading an archive reject its contents.
+   *
+   * @param path the archive file.
+   * @param contents the damaged contents written to it.
+   * @throws IOException thrown if the file operation fails.
+   */
+  private void assertDamaged(Path path, byte[] contents) throws IOException {
+    Files.write(path, contents);
+    assertThrows(IOException.class, () -> SnapshotArchive.open(path));
+    assertThrows(IOException.class, () -> SnapshotArchive.readAll(path));
+  }
+}
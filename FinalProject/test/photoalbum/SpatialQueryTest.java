@@ -0,0 +1,199 @@
+package photoalbum;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import photoalbum.model.Color;
+import photoalbum.model.ColumnarPhotoAlbum;
+import photoalbum.model.Command;
+import photoalbum.model.ConcurrentPhotoAlbum;
+import photoalbum.model.Coordinate;
+import photoalbum.model.IPhotoalbum;
+import photoalbum.model.IShape;
+import photoalbum.model.Oval;
+import photoalbum.model.PhotoAlbum;
+import photoalbum.model.Rectangle;
+
+/**
+ * Tests for the region, point and nearest-shape queries of the albums.
+ */
+public class SpatialQueryTest {
+
+  /**
+   * Tests point queries against the shape outlines.
+   */
+  @Test
+  public void testShapesContaining() {
+    IPhotoalbum album = new PhotoAlbum();
+    album.addShape(new Rectangle("background", new Coordinate(0, 0), 800, 800,
+            new Color(0, 0, 0)));
+    album.addShape(new Oval("moon", new Coordinate(200, 200), new Color(255, 255, 255), 100, 100));
+
+    assertEquals(List.of("background", "moon"), sortedNames(album.shapesContaining(
+            new Coordinate(250, 250))));
+    assertEquals(List.of("background"), sortedNames(album.shapesContaining(new Coordinate(205, 205))));
+    assertEquals(List.of(), sortedNames(album.shapesContaining(new Coordinate(900, 900))));
+  }
+
+  /**
+   * Tests that the index follows shapes as they are moved, resized and removed.
+   */
+  @Test
+  public void testIndexFollowsMutations() {
+    IPhotoalbum album = new PhotoAlbum();
+    album.addShape(new Rectangle("R1", new Coordinate(0, 0), 10, 10, new Color(0, 0, 0)));
+    album.moveShape("R1", new Coordinate(500, 500));
+    assertEquals(List.of(), sortedNames(album.shapesIntersecting(0, 0, 100, 100)));
+    assertEquals(List.of("R1"), sortedNames(album.shapesIntersecting(505, 505, 1, 1)));
+
+    album.resizeShape("R1", 1000, 1000);
+    assertEquals(List.of("R1"), sortedNames(album.shapesContaining(new Coordinate(1400, 1400))));
+
+    album.removeShape(album.getShape("R1"));
+    assertEquals(List.of(), sortedNames(album.shapesIntersecting(0, 0, 5000, 5000)));
+    assertEquals(List.of(), sortedNames(album.nearestShapes(new Coordinate(0, 0), 3)));
+  }
+
+  /**
+   * Tests that the index of every album follows shapes that are moved, resized, removed, put
+   * back by a failed batch and cleared by a reset.
+   */
+  @Test
+  public void testEveryIndexFollowsMutations() {
+    for (IPhotoalbum album : List.of(new PhotoAlbum(), new ColumnarPhotoAlbum(),
+            new ConcurrentPhotoAlbum())) {
+      album.addShape(new Rectangle("R1", new Coordinate(0, 0), 10, 10, new Color(0, 0, 0)));
+      album.addShape(new Rectangle("wide", new Coordinate(-5000, -5000), 10000, 10000,
+              new Color(0, 0, 0)));
+      album.moveShape("R1", new Coordinate(500, 500));
+      assertEquals(List.of("wide"), sortedNames(album.shapesIntersecting(0, 0, 100, 100)));
+      assertEquals(List.of("R1", "wide"), sortedNames(album.shapesIntersecting(505, 505, 1, 1)));
+
+      album.resizeShape("R1", 1000, 1000);
+      assertEquals(List.of("R1", "wide"),
+              sortedNames(album.shapesContaining(new Coordinate(1400, 1400))));
+      assertThrows(IllegalArgumentException.class, () -> album.applyBatch(List.of(
+              new Command.MoveShape("R1", new Coordinate(3000, 3000)),
+              new Command.RemoveShape("wide"),
+              new Command.MoveShape("missing", new Coordinate(0, 0)))));
+      assertEquals(List.of("R1", "wide"),
+              sortedNames(album.shapesContaining(new Coordinate(1400, 1400))));
+      assertEquals(List.of("wide"),
+              sortedNames(album.shapesContaining(new Coordinate(3500, 3500))));
+      assertEquals(List.of("wide", "R1"), album.nearestShapes(new Coordinate(400, 400), 5)
+              .stream().map(IShape::getName).toList());
+
+      album.removeShape(album.getShape("R1"));
+      assertEquals(List.of("wide"), sortedNames(album.shapesIntersecting(0, 0, 5000, 5000)));
+      album.reset();
+      assertEquals(List.of(), sortedNames(album.shapesIntersecting(-1e6, -1e6, 2e6, 2e6)));
+      assertEquals(List.of(), sortedNames(album.nearestShapes(new Coordinate(0, 0), 3)));
+    }
+  }
+
+  /**
+   * Tests every album's queries against a brute-force search on random shapes.
+   */
+  @Test
+  public void testQueriesMatchBruteForce() {
+    Random random = new Random(42);
+    IPhotoalbum indexed = new PhotoAlbum();
+    IPhotoalbum columnar = new ColumnarPhotoAlbum();
+    IPhotoalbum concurrent = new ConcurrentPhotoAlbum();
+    for (int i = 0; i < 2000; i++) {
+      double x = random.nextInt(5000) - 1000;
+      double y = random.nextInt(5000) - 1000;
+      double w = random.nextInt(i % 100 == 0 ? 4000 : 80);
+      double h = random.nextInt(i % 100 == 0 ? 4000 : 80);
+      IShape shape = i % 2 == 0
+              ? new Rectangle("S" + i, new Coordinate(x, y), w, h, new Color(0, 0, 0))
+              : new Oval("S" + i, new Coordinate(x, y), new Color(0, 0, 0), w, h);
+      indexed.addShape(shape);
+      columnar.addShape(shape.copy());
+      concurrent.addShape(shape.copy());
+    }
+    for (int i = 0; i < 2000; i += 3) {
+      indexed.moveShape("S" + i, new Coordinate(random.nextInt(3000), random.nextInt(3000)));
+      columnar.moveShape("S" + i, indexed.getShape("S" + i).getPosition());
+      concurrent.moveShape("S" + i, indexed.getShape("S" + i).getPosition());
+    }
+    for (int i = 1; i < 2000; i += 7) {
+      indexed.resizeShape("S" + i, random.nextInt(200), random.nextInt(200));
+      columnar.resizeShape("S" + i, indexed.getShape("S" + i).getFirstDimension(),
+              indexed.getShape("S" + i).getSecondDimension());
+      concurrent.resizeShape("S" + i, indexed.getShape("S" + i).getFirstDimension(),
+              indexed.getShape("S" + i).getSecondDimension());
+    }
+    for (int i = 5; i < 2000; i += 11) {
+      for (IPhotoalbum album : List.of(indexed, columnar, concurrent)) {
+        album.removeShape(album.getShape("S" + i));
+      }
+    }
+
+    List<IShape> all = indexed.getAllShapes();
+    for (int q = 0; q < 50; q++) {
+      double x = random.nextInt(5000) - 1000;
+      double y = random.nextInt(5000) - 1000;
+      double w = random.nextInt(500);
+      double h = random.nextInt(500);
+      List<String> expected = all.stream()
+              .filter(s -> s.getPosition().x() <= x + w
+                      && x <= s.getPosition().x() + s.getFirstDimension()
+                      && s.getPosition().y() <= y + h
+                      && y <= s.getPosition().y() + s.getSecondDimension())
+              .map(IShape::getName).sorted().toList();
+      assertEquals(expected, sortedNames(indexed.shapesIntersecting(x, y, w, h)));
+      assertEquals(expected, sortedNames(columnar.shapesIntersecting(x, y, w, h)));
+      assertEquals(expected, sortedNames(concurrent.shapesIntersecting(x, y, w, h)));
+
+      Coordinate point = new Coordinate(x, y);
+      List<String> containing = all.stream().filter(s -> s.contains(point))
+              .map(IShape::getName).sorted().toList();
+      assertEquals(containing, sortedNames(indexed.shapesContaining(point)));
+      assertEquals(containing, sortedNames(columnar.shapesContaining(point)));
+      assertEquals(containing, sortedNames(concurrent.shapesContaining(point)));
+
+      List<Double> nearest = all.stream().map(s -> distance(s, point)).sorted().limit(7).toList();
+      assertEquals(nearest, indexed.nearestShapes(point, 7).stream()
+              .map(s -> distance(s, point)).toList());
+      assertEquals(nearest, columnar.nearestShapes(point, 7).stream()
+              .map(s -> distance(s, point)).toList());
+      assertEquals(nearest, concurrent.nearestShapes(point, 7).stream()
+              .map(s -> distance(s, point)).toList());
+    }
+    int size = all.size();
+    for (IPhotoalbum album : List.of(indexed, columnar, concurrent)) {
+      assertTrue(album.nearestShapes(new Coordinate(1e7, 1e7), 5000).size() == size);
+    }
+  }
+
+  /**
+   * Helper method to get the sorted names of shapes.
+   *
+   * @param shapes the shapes.
+   * @return a sorted List of their names.
+   */
+  private List<String> sortedNames(List<IShape> shapes) {
+    return shapes.stream().map(IShape::getName).sorted().toList();
+  }
+
+  /**
+   * Helper method for the distance from a point to a shape's bounding box.
+   *
+   * @param shape the shape.
+   * @param point the point.
+   * @return the distance.
+   */
+  private double distance(IShape shape, Coordinate point) {
+    double dx = Math.max(Math.max(shape.getPosition().x() - point.x(), 0),
+            point.x() - shape.getPosition().x() - shape.getFirstDimension());
+    double dy = Math.max(Math.max(shape.getPosition().y() - point.y(), 0),
+            point.y() - shape.getPosition().y() - shape.getSecondDimension());
+    return Math.sqrt(dx * dx + dy * dy);
+  }
+}
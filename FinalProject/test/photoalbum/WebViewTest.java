@@ -10,8 +10,10 @@ import java.io.File;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.stream.Collectors;
 import photoalbum.model.Color;
 import photoalbum.model.Coordinate;
@@ -73,11 +75,34 @@ public class WebViewTest {
       String content = reader.lines().collect(Collectors.joining("\n"));
       assertTrue("Should contain DOCTYPE", content.contains("<!DOCTYPE html>"));
       assertTrue("Should contain snapshot ID",
-              content.contains(testSnapshots.get(0).getId()));
+              content.contains("Snapshot: " + testSnapshots.get(0).getId()));
       assertTrue("Should contain SVG content", content.contains("<svg"));
     }
   }
 
+  /**
+   * Tests that a streamed page holds each snapshot as soon as it is appended, before the page is
+   * finished.
+   *
+   * @throws IOException thrown if the file operation fails.
+   */
+  @Test
+  public void testStreamedWebPage() throws IOException {
+    File output = tempFolder.newFile("stream.html");
+    WebView streaming = new WebView(new ArrayList<>());
+    streaming.startWebPage(output.getPath());
+
+    streaming.appendSnapshot(testSnapshots.get(0));
+    String partial = readFile(output);
+    assertTrue(partial.contains("Snapshot: " + testSnapshots.get(0).getId()));
+    assertFalse(partial.contains("</html>"));
+
+    streaming.finishWebPage();
+    assertTrue(readFile(output).contains("</html>"));
+    assertThrows(IllegalStateException.class,
+            () -> streaming.appendSnapshot(testSnapshots.get(0)));
+  }
+
   /**
    * Tests the getter method for snapshots.
    */
@@ -171,7 +196,7 @@ public class WebViewTest {
     webView.generateWebPage(output.getPath());
 
     String content = readFile(output);
-    assertTrue(content.contains(snapshot.getId()));
+    assertTrue(content.contains("Snapshot: " + snapshot.getId()));
     assertTrue(content.contains(snapshot.getTimestamp().toString()));
     assertTrue(content.contains("Test Description"));
   }
@@ -222,6 +247,151 @@ public class WebViewTest {
     assertTrue(content.contains("200.0"));
   }
 
+  /**
+   * Tests that numbers are rounded as String.format rounds them, halves and all, and that text
+   * outside ASCII is written as UTF-8 next to escaped characters.
+   *
+   * @throws IOException if the file is unreadable.
+   */
+  @Test
+  public void testNumberFormattingAndEncoding() throws IOException {
+    double[] values = {0.05, 0.15, 0.25, -0.04, 1e20, 1234567.85};
+    List<IShape> shapes = new ArrayList<>();
+    for (int i = 0; i < values.length; i++) {
+      shapes.add(new Rectangle("r" + i, new Coordinate(values[i], 0), 1, 1,
+              new Color(0, 0, 0)));
+    }
+    testSnapshots.add(new Snapshot("Caf\u00e9 <\u00fcber> & \ud83d\udcf7", shapes));
+    webView = new WebView(testSnapshots);
+
+    File output = tempFolder.newFile("numbers.html");
+    webView.generateWebPage(output.getPath());
+
+    String content = Files.readString(output.toPath());
+    for (double value : values) {
+      assertTrue(content.contains("x=\"" + String.format(Locale.ROOT, "%.1f", value)
+              + "\""));
+    }
+    assertTrue(content.contains("Caf\u00e9 &lt;\u00fcber&gt; &amp; \ud83d\udcf7"));
+  }
+
+  /**
+   * Tests that a page rendered on several threads is the same, byte for byte, as one rendered on
+   * the calling thread, including sections that outgrow their first buffer.
+   *
+   * @throws IOException if the file is unreadable.
+   */
+  @Test
+  public void testConcurrentRenderingKeepsOrder() throws IOException {
+    for (int i = 0; i < 200; i++) {
+      List<IShape> shapes = new ArrayList<>();
+      for (int j = 0; j < (i % 50 == 0 ? 2000 : i % 7); j++) {
+        shapes.add(new Oval("o" + j, new Coordinate(i + j / 10.0, j), new Color(0, 0, 255),
+                j + 1, i + 1));
+      }
+      testSnapshots.add(new Snapshot("Snapshot " + i, shapes));
+    }
+
+    File sequential = tempFolder.newFile("sequential.html");
+    new WebView(testSnapshots, 1).generateWebPage(sequential.getPath());
+    File concurrent = tempFolder.newFile("concurrent.html");
+    new WebView(testSnapshots, 4).generateWebPage(concurrent.getPath());
+
+    assertArrayEquals(Files.readAllBytes(sequential.toPath()),
+            Files.readAllBytes(concurrent.toPath()));
+    assertThrows(IllegalArgumentException.class, () -> new WebView(testSnapshots, 0));
+  }
+
+  /**
+   * Tests that a page with shared shapes draws each distinct shape once, refers to it after that,
+   * collapses a snapshot that repeats the one before it, and comes out the same whether it is
+   * generated at once, streamed, updated in part, or rendered on several threads.
+   *
+   * @throws IOException if the file is unreadable.
+   */
+  @Test
+  public void testSharedShapes() throws IOException {
+    IShape background = new Rectangle("background", new Coordinate(0, 0), 800, 800,
+            new Color(255, 255, 255));
+    IShape sun = new Oval("sun", new Coordinate(10, 10), new Color(255, 255, 0), 50, 50);
+    IShape setting = new Oval("sun", new Coordinate(10, 600), new Color(255, 128, 0), 50, 50);
+    testSnapshots.add(new Snapshot("Day", List.of(background, sun)));
+    testSnapshots.add(new Snapshot("Still day", List.of(background, sun)));
+    testSnapshots.add(new Snapshot("Evening", List.of(background, setting)));
+
+    File shared = tempFolder.newFile("shared.html");
+    new WebView(testSnapshots, 1, WebView.Output.SHARED).generateWebPage(shared.getPath());
+    String content = readFile(shared);
+    assertEquals(1, content.split("width=\"800.0\"", -1).length - 1);
+    assertTrue(content.contains("<rect id=\"s1\" x=\"0.0\""));
+    assertTrue(content.contains("<g id=\"f1\">"));
+    assertTrue(content.contains("<use href=\"#f1\" />"));
+    assertTrue(content.contains("<use href=\"#s1\" />"));
+    assertTrue(content.contains("<ellipse id=\"s3\" cx=\"35.0\" cy=\"625.0\""));
+
+    File concurrent = tempFolder.newFile("shared-concurrent.html");
+    new WebView(testSnapshots, 4, WebView.Output.SHARED).generateWebPage(concurrent.getPath());
+    assertEquals(content, readFile(concurrent));
+
+    File streamed = tempFolder.newFile("shared-streamed.html");
+    WebView streaming = new WebView(new ArrayList<>(), 1, WebView.Output.SHARED);
+    streaming.startWebPage(streamed.getPath());
+    for (Snapshot snapshot : testSnapshots) {
+      streaming.appendSnapshot(snapshot);
+    }
+    streaming.finishWebPage();
+    assertEquals(content, readFile(streamed));
+
+    File updated = tempFolder.newFile("shared-updated.html");
+    WebView updating = new WebView(new ArrayList<>(), 2, WebView.Output.SHARED);
+    updating.updateWebPage(updated.getPath(), testSnapshots.subList(0, 3), 0);
+    updating.updateWebPage(updated.getPath(), testSnapshots, 2);
+    assertEquals(content, readFile(updated));
+  }
+
+  /**
+   * Tests that a paged export splits the sections of the single page over its page files in
+   * order, that the index has a lazily loaded placeholder for each, and that in the SHARED mode
+   * every page file draws its own shapes under ids no other page uses.
+   *
+   * @throws IOException if a file is unreadable.
+   */
+  @Test
+  public void testPagedExport() throws IOException {
+    IShape background = new Rectangle("background", new Coordinate(0, 0), 800, 800,
+            new Color(255, 255, 255));
+    for (int i = 1; i < 7; i++) {
+      IShape ball = new Oval("ball", new Coordinate(i * 10, 0), new Color(255, 0, 0), 5, 5);
+      testSnapshots.add(new Snapshot("Frame " + i, List.of(background, ball)));
+    }
+
+    File single = tempFolder.newFile("single.html");
+    new WebView(testSnapshots, 2).generateWebPage(single.getPath());
+    File directory = tempFolder.newFolder("paged");
+    new WebView(testSnapshots, 2).generateWebPages(directory.getPath(), 3);
+
+    String page = Files.readString(single.toPath());
+    StringBuilder sections = new StringBuilder();
+    for (int i = 1; i <= 3; i++) {
+      sections.append(Files.readString(directory.toPath().resolve("pages/page-" + i + ".html")));
+    }
+    assertTrue(page.contains(sections));
+    assertFalse(Files.exists(directory.toPath().resolve("pages/page-4.html")));
+
+    String index = Files.readString(directory.toPath().resolve("index.html"));
+    assertEquals(4, index.split("class=\"page\"", -1).length);
+    assertTrue(index.contains("data-src=\"pages/page-3.html\""));
+    assertTrue(index.contains("Snapshots 7 to 7"));
+    assertTrue(index.contains("new IntersectionObserver"));
+
+    new WebView(testSnapshots, 1, WebView.Output.SHARED).generateWebPages(directory.getPath(), 3);
+    String second = Files.readString(directory.toPath().resolve("pages/page-2.html"));
+    assertTrue(second.contains("<rect id=\"s4\" x=\"0.0\" y=\"0.0\" width=\"800.0\""));
+    assertFalse(second.contains("href=\"#s0\""));
+    assertThrows(IllegalArgumentException.class,
+            () -> new WebView(testSnapshots).generateWebPages(directory.getPath(), 0));
+  }
+
   /**
    * Tests for modifying snapshots.
    */